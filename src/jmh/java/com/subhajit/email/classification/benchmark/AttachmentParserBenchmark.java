@@ -0,0 +1,93 @@
+package com.subhajit.email.classification.benchmark;
+
+import com.subhajit.email.classification.configuration.InstrumentationProperties;
+import com.subhajit.email.classification.configuration.OcrProperties;
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.configuration.TesseractConfiguration;
+import com.subhajit.email.classification.metrics.PipelineMetrics;
+import com.subhajit.email.classification.model.EmailAttachment;
+import com.subhajit.email.classification.ocr.OcrPreprocessor;
+import com.subhajit.email.classification.ocr.OcrWorkerPool;
+import com.subhajit.email.classification.parser.AttachmentSource;
+import com.subhajit.email.classification.parser.CsvHandler;
+import com.subhajit.email.classification.parser.ExtractionResult;
+import com.subhajit.email.classification.parser.ImageOcrHandler;
+import com.subhajit.email.classification.parser.OfficeHandler;
+import com.subhajit.email.classification.parser.ParserRegistry;
+import com.subhajit.email.classification.parser.PdfHandler;
+import com.subhajit.email.classification.parser.SpreadsheetHandler;
+import com.subhajit.email.classification.parser.TikaHandler;
+import com.subhajit.email.classification.util.AttachmentParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MIME type detection plus text extraction of a single attachment, once per extraction path. The PNG case runs
+ * Tesseract and needs its native library and language data, see {@code TESSDATA_PREFIX}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AttachmentParserBenchmark {
+
+    @Param({"PDF", "XLSX", "XLS", "DOCX", "CSV", "PNG"})
+    public EmailCorpus.AttachmentType type;
+
+    @Param({"16", "256"})
+    public int kb;
+
+    private OcrWorkerPool ocrWorkerPool;
+    private PdfHandler pdfHandler;
+    private CsvHandler csvHandler;
+    private AttachmentParser attachmentParser;
+    private EmailAttachment attachment;
+
+    @Setup
+    public void setup() {
+        ParserProperties parserProperties = new ParserProperties();
+        OcrProperties ocrProperties = new OcrProperties();
+        ocrProperties.setPrewarm(type == EmailCorpus.AttachmentType.PNG);
+        ocrWorkerPool = new TesseractConfiguration().ocrWorkerPool(ocrProperties);
+        pdfHandler = new PdfHandler(parserProperties, ocrWorkerPool);
+        csvHandler = new CsvHandler(parserProperties);
+        // The office handler extracts embedded objects through the registry it is part of
+        ParserRegistry[] registry = new ParserRegistry[1];
+        registry[0] = new ParserRegistry(List.of(
+                new ImageOcrHandler(new OcrPreprocessor(ocrWorkerPool, ocrProperties.getPreprocessing())),
+                new SpreadsheetHandler(parserProperties),
+                csvHandler,
+                pdfHandler,
+                new OfficeHandler(parserProperties, () -> registry[0]),
+                new TikaHandler(parserProperties)), parserProperties);
+        attachmentParser = new AttachmentParser(registry[0],
+                new PipelineMetrics(new SimpleMeterRegistry(), new InstrumentationProperties()));
+        attachment = EmailAttachment.ofBytes("attachment." + type.extension(),
+                EmailCorpus.attachment(type, kb, new Random(42)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        pdfHandler.shutdown();
+        csvHandler.shutdown();
+        ocrWorkerPool.close();
+    }
+
+    @Benchmark
+    public ExtractionResult parseAttachment() throws Exception {
+        try (AttachmentSource source = new AttachmentSource(attachment)) {
+            return attachmentParser.parseAttachment(source, attachmentParser.detectMimeType(source));
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package com.subhajit.email.classification.benchmark;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.DirectoryEntry;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Deterministic generator of synthetic .eml and .msg emails for the benchmarks.
+ * <p>
+ * The same {@link Spec} always produces the same bytes: text comes from a seeded {@link Random}, MIME boundaries and
+ * headers are fixed, and no timestamps are written. Emails have a plain text and HTML body of the profile's size,
+ * attachments cycling through the requested types, and {@code depth} levels of forwarded messages, each with its own
+ * attachments. The .msg files are minimal POIFS containers with only the property streams that
+ * {@code MsgReader} and most other readers use.
+ * <p>
+ * Run {@link #main} to write a corpus to disk for inspection or for other tools.
+ */
+public final class EmailCorpus {
+
+    private static final String CRLF = "\r\n";
+    private static final String[] WORDS = {
+            "Please", "find", "attached", "the", "notice", "for", "the", "facility", "regarding", "payment",
+            "of", "our", "share", "kindly", "confirm", "receipt", "and", "process", "accordingly", "regards",
+            "principal", "interest", "repayment", "drawdown", "rollover", "margin", "lender", "agent", "borrower"
+    };
+
+    /**
+     * The attachment formats with a dedicated extraction path.
+     */
+    public enum AttachmentType {
+        PDF("pdf", "application/pdf"),
+        XLSX("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"),
+        XLS("xls", "application/vnd.ms-excel"),
+        DOCX("docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document"),
+        CSV("csv", "text/csv"),
+        PNG("png", "image/png");
+
+        private final String extension;
+        private final String mimeType;
+
+        AttachmentType(String extension, String mimeType) {
+            this.extension = extension;
+            this.mimeType = mimeType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public String mimeType() {
+            return mimeType;
+        }
+
+        /**
+         * @param mix Comma separated types, e.g. {@code pdf,csv}, {@code all} or {@code none}
+         * @return The types
+         */
+        public static List<AttachmentType> parseMix(String mix) {
+            if ("all".equalsIgnoreCase(mix)) {
+                return List.of(values());
+            }
+            if (mix == null || mix.isBlank() || "none".equalsIgnoreCase(mix)) {
+                return List.of();
+            }
+            return Arrays.stream(mix.split(","))
+                    .map(type -> valueOf(type.trim().toUpperCase(Locale.ROOT)))
+                    .toList();
+        }
+    }
+
+    /**
+     * Size profiles: body size, attachments per message and approximate attachment size.
+     */
+    public enum Size {
+        SMALL(2, 1, 8),
+        MEDIUM(16, 3, 64),
+        LARGE(128, 6, 512);
+
+        private final int bodyKb;
+        private final int attachments;
+        private final int attachmentKb;
+
+        Size(int bodyKb, int attachments, int attachmentKb) {
+            this.bodyKb = bodyKb;
+            this.attachments = attachments;
+            this.attachmentKb = attachmentKb;
+        }
+
+        public int bodyKb() {
+            return bodyKb;
+        }
+
+        public int attachments() {
+            return attachments;
+        }
+
+        public int attachmentKb() {
+            return attachmentKb;
+        }
+    }
+
+    /**
+     * @param size  Size profile
+     * @param depth Number of nested forwarded messages
+     * @param mix   Attachment types, used in turn
+     * @param seed  Seed of the text generator; different seeds give different emails of the same shape
+     */
+    public record Spec(Size size, int depth, List<AttachmentType> mix, long seed) {
+    }
+
+    private EmailCorpus() {
+    }
+
+    /**
+     * @return The email as an RFC 822 message
+     */
+    public static byte[] eml(Spec spec) {
+        StringBuilder out = new StringBuilder();
+        writeEml(out, spec, new Random(spec.seed()), spec.depth());
+        return out.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return The email as an Outlook .msg container
+     */
+    public static byte[] msg(Spec spec) {
+        try (POIFSFileSystem fileSystem = new POIFSFileSystem()) {
+            writeMsg(fileSystem.getRoot(), spec, new Random(spec.seed()), spec.depth());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            fileSystem.writeFilesystem(out);
+            return out.toByteArray();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Generates a single attachment.
+     *
+     * @param type   The format
+     * @param kb     Approximate amount of text in kilobytes
+     * @param random Source of the text
+     * @return The file content
+     */
+    public static byte[] attachment(AttachmentType type, int kb, Random random) {
+        try {
+            return switch (type) {
+                case PDF -> pdf(lines(random, kb * 1024, 90));
+                case XLSX -> workbook(new XSSFWorkbook(), random, kb);
+                case XLS -> workbook(new HSSFWorkbook(), random, kb);
+                case DOCX -> docx(lines(random, kb * 1024, 400));
+                case CSV -> csv(random, kb);
+                // OCR cost grows with pixels, so images are capped at a page of text
+                case PNG -> png(lines(random, Math.min(kb, 8) * 1024, 90));
+            };
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void writeEml(StringBuilder out, Spec spec, Random random, int depth) {
+        String mixed = "mixed-" + depth;
+        String alternative = "alt-" + depth;
+        String body = text(random, spec.size().bodyKb() * 1024);
+        header(out, "From", "Agent Bank " + depth + " <agent" + depth + "@example.com>");
+        header(out, "To", "servicing@example.com");
+        header(out, "Subject", subject(random));
+        header(out, "Date", "Mon, 6 Jan 2025 09:00:00 +0000");
+        header(out, "Message-ID", "<corpus-" + spec.seed() + "-" + depth + "@example.com>");
+        header(out, "MIME-Version", "1.0");
+        header(out, "Content-Type", "multipart/mixed; boundary=\"" + mixed + "\"");
+        out.append(CRLF);
+
+        out.append("--").append(mixed).append(CRLF);
+        header(out, "Content-Type", "multipart/alternative; boundary=\"" + alternative + "\"");
+        out.append(CRLF);
+        out.append("--").append(alternative).append(CRLF);
+        header(out, "Content-Type", "text/plain; charset=US-ASCII");
+        out.append(CRLF).append(body.replace("\n", CRLF)).append(CRLF);
+        out.append("--").append(alternative).append(CRLF);
+        header(out, "Content-Type", "text/html; charset=US-ASCII");
+        out.append(CRLF).append(html(body)).append(CRLF);
+        out.append("--").append(alternative).append("--").append(CRLF);
+
+        for (int i = 0; i < spec.size().attachments() && !spec.mix().isEmpty(); i++) {
+            AttachmentType type = spec.mix().get((depth + i) % spec.mix().size());
+            String name = "attachment-" + depth + "-" + i + "." + type.extension();
+            out.append("--").append(mixed).append(CRLF);
+            header(out, "Content-Type", type.mimeType() + "; name=\"" + name + "\"");
+            header(out, "Content-Disposition", "attachment; filename=\"" + name + "\"");
+            header(out, "Content-Transfer-Encoding", "base64");
+            out.append(CRLF);
+            byte[] content = attachment(type, spec.size().attachmentKb(), random);
+            out.append(Base64.getMimeEncoder(76, CRLF.getBytes(StandardCharsets.US_ASCII))
+                    .encodeToString(content)).append(CRLF);
+        }
+
+        if (depth > 0) {
+            out.append("--").append(mixed).append(CRLF);
+            header(out, "Content-Type", "message/rfc822");
+            header(out, "Content-Disposition", "attachment; filename=\"forwarded-" + depth + ".eml\"");
+            out.append(CRLF);
+            writeEml(out, spec, random, depth - 1);
+            out.append(CRLF);
+        }
+        out.append("--").append(mixed).append("--").append(CRLF);
+    }
+
+    private static void header(StringBuilder out, String name, String value) {
+        out.append(name).append(": ").append(value).append(CRLF);
+    }
+
+    private static void writeMsg(DirectoryEntry message, Spec spec, Random random, int depth) throws IOException {
+        String body = text(random, spec.size().bodyKb() * 1024);
+        property(message, "0037", subject(random));
+        property(message, "0C1A", "Agent Bank " + depth);
+        property(message, "0C1F", "agent" + depth + "@example.com");
+        property(message, "1000", body);
+
+        int index = 0;
+        for (int i = 0; i < spec.size().attachments() && !spec.mix().isEmpty(); i++) {
+            AttachmentType type = spec.mix().get((depth + i) % spec.mix().size());
+            String name = "attachment-" + depth + "-" + i + "." + type.extension();
+            DirectoryEntry attachment = message.createDirectory(attachmentDirectory(index++));
+            property(attachment, "3707", name);
+            property(attachment, "3704", name);
+            attachment.createDocument("__substg1.0_37010102",
+                    new ByteArrayInputStream(attachment(type, spec.size().attachmentKb(), random)));
+        }
+        if (depth > 0) {
+            DirectoryEntry attachment = message.createDirectory(attachmentDirectory(index));
+            property(attachment, "3707", "forwarded-" + depth + ".msg");
+            writeMsg(attachment.createDirectory("__substg1.0_3701000D"), spec, random, depth - 1);
+        }
+    }
+
+    private static String attachmentDirectory(int index) {
+        return String.format(Locale.ROOT, "__attach_version1.0_#%08X", index);
+    }
+
+    private static void property(DirectoryEntry directory, String id, String value) throws IOException {
+        directory.createDocument("__substg1.0_" + id + "001F",
+                new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_16LE)));
+    }
+
+    private static byte[] pdf(List<String> lines) throws IOException {
+        int linesPerPage = 50;
+        try (PDDocument document = new PDDocument()) {
+            for (int start = 0; start < lines.size(); start += linesPerPage) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.setLeading(14);
+                    content.newLineAtOffset(50, 780);
+                    for (String line : lines.subList(start, Math.min(lines.size(), start + linesPerPage))) {
+                        content.showText(line);
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] workbook(Workbook workbook, Random random, int kb) throws IOException {
+        try (workbook) {
+            Sheet sheet = workbook.createSheet("Payments");
+            Row header = sheet.createRow(0);
+            String[] columns = {"Loan Number", "Deal Name", "Value Date", "Currency", "Amount", "Comment"};
+            for (int c = 0; c < columns.length; c++) {
+                header.createCell(c).setCellValue(columns[c]);
+            }
+            // Roughly 80 characters of cell text per row
+            int rows = Math.max(1, kb * 1024 / 80);
+            for (int r = 1; r <= rows; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue("LN-" + (100000 + random.nextInt(900000)));
+                row.createCell(1).setCellValue("Facility " + (char) ('A' + random.nextInt(26)));
+                row.createCell(2).setCellValue("2025-0" + (1 + random.nextInt(9)) + "-15");
+                row.createCell(3).setCellValue(random.nextBoolean() ? "USD" : "EUR");
+                row.createCell(4).setCellValue(random.nextInt(10_000_000) / 100.0);
+                row.createCell(5).setCellValue(words(random, 4));
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] docx(List<String> paragraphs) throws IOException {
+        try (XWPFDocument document = new XWPFDocument()) {
+            for (String paragraph : paragraphs) {
+                document.createParagraph().createRun().setText(paragraph);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] csv(Random random, int kb) {
+        StringBuilder out = new StringBuilder("loan_number,deal_name,value_date,currency,amount,comment\n");
+        while (out.length() < kb * 1024) {
+            out.append("LN-").append(100000 + random.nextInt(900000)).append(',')
+                    .append("Facility ").append((char) ('A' + random.nextInt(26))).append(',')
+                    .append("2025-0").append(1 + random.nextInt(9)).append("-15,")
+                    .append(random.nextBoolean() ? "USD" : "EUR").append(',')
+                    .append(random.nextInt(10_000_000) / 100.0).append(',')
+                    .append('"').append(words(random, 4)).append("\"\n");
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] png(List<String> lines) throws IOException {
+        int lineHeight = 28;
+        BufferedImage image = new BufferedImage(1400, 40 + lines.size() * lineHeight, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+            graphics.setColor(Color.BLACK);
+            graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            graphics.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 20));
+            for (int i = 0; i < lines.size(); i++) {
+                graphics.drawString(lines.get(i), 20, 40 + i * lineHeight);
+            }
+        } finally {
+            graphics.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static String subject(Random random) {
+        return "Payment notice - Deal Name: Facility " + (char) ('A' + random.nextInt(26))
+                + " - Loan Number LN-" + (100000 + random.nextInt(900000));
+    }
+
+    private static String html(String text) {
+        StringBuilder html = new StringBuilder("<html><head><style>p{margin:0}</style></head><body>");
+        for (String line : text.split("\n")) {
+            html.append("<p>").append(line).append("</p>").append(CRLF);
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    /**
+     * Prose with a labelled value about every 40 words, broken into lines of at most {@code width} characters.
+     */
+    private static List<String> lines(Random random, int length, int width) {
+        List<String> lines = new ArrayList<>();
+        for (String line : text(random, length).split("\n")) {
+            for (int start = 0; start < line.length(); start += width) {
+                lines.add(line.substring(start, Math.min(line.length(), start + width)));
+            }
+        }
+        return lines;
+    }
+
+    private static String text(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length + 64);
+        int lineStart = 0;
+        while (sb.length() < length) {
+            if (random.nextInt(40) == 0) {
+                switch (random.nextInt(4)) {
+                    case 0 -> sb.append("Amount: USD ").append(random.nextInt(1_000_000)).append(".00");
+                    case 1 -> sb.append("Effective Date: 2025-0").append(1 + random.nextInt(9)).append("-15");
+                    case 2 -> sb.append("Loan Number: LN-").append(100000 + random.nextInt(900000));
+                    default -> sb.append("Currency: EUR");
+                }
+                sb.append(".\n");
+                lineStart = sb.length();
+            } else {
+                sb.append(WORDS[random.nextInt(WORDS.length)]);
+                if (sb.length() - lineStart > 72) {
+                    sb.append('\n');
+                    lineStart = sb.length();
+                } else {
+                    sb.append(' ');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes a corpus covering every size, a flat and a nested variant and every attachment type.
+     *
+     * @param args Output directory, {@code build/corpus} by default
+     * @throws IOException if a file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "build/corpus");
+        Files.createDirectories(directory);
+        long seed = 1;
+        for (Size size : Size.values()) {
+            for (int depth : new int[]{0, 3}) {
+                Spec spec = new Spec(size, depth, List.of(AttachmentType.values()), seed++);
+                String name = size.name().toLowerCase(Locale.ROOT) + "-depth" + depth;
+                Files.write(directory.resolve(name + ".eml"), eml(spec));
+                Files.write(directory.resolve(name + ".msg"), msg(spec));
+            }
+        }
+        for (AttachmentType type : AttachmentType.values()) {
+            Files.write(directory.resolve("attachment." + type.extension()), attachment(type, 64, new Random(seed)));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.subhajit.email.classification.benchmark;
+
+import com.subhajit.email.classification.configuration.InstrumentationProperties;
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.metrics.PipelineMetrics;
+import com.subhajit.email.classification.model.ParsedEmail;
+import com.subhajit.email.classification.util.EmailParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of whole emails by format, size, forwarding depth and attachment mix, without extracting the attachments.
+ * Allocation per operation, reported by the GC profiler, shows whether attachments are copied more than once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EmailParserBenchmark {
+
+    @Param({"eml", "msg"})
+    public String format;
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public EmailCorpus.Size size;
+
+    @Param({"0", "3"})
+    public int depth;
+
+    @Param({"all"})
+    public String mix;
+
+    private EmailParser emailParser;
+    private String fileName;
+    private byte[] email;
+
+    @Setup
+    public void setup() {
+        emailParser = new EmailParser(new ParserProperties(),
+                new PipelineMetrics(new SimpleMeterRegistry(), new InstrumentationProperties()));
+        EmailCorpus.Spec spec = new EmailCorpus.Spec(size, depth, EmailCorpus.AttachmentType.parseMix(mix), 42);
+        fileName = "corpus." + format;
+        email = "eml".equals(format) ? EmailCorpus.eml(spec) : EmailCorpus.msg(spec);
+    }
+
+    @Benchmark
+    public void parseEmail(Blackhole blackhole) {
+        try (ParsedEmail parsed = emailParser.parseEmail(fileName, new ByteArrayInputStream(email))) {
+            blackhole.consume(parsed.getBody());
+            blackhole.consume(parsed.getAttachments());
+        }
+    }
+}
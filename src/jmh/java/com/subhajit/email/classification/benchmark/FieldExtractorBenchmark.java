@@ -0,0 +1,111 @@
+package com.subhajit.email.classification.benchmark;
+
+import com.subhajit.email.classification.configuration.FieldExtractionProperties;
+import com.subhajit.email.classification.model.KeyValue;
+import com.subhajit.email.classification.util.FieldExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Field extraction throughput by text size and number of field definitions. The time per operation should grow
+ * with {@code textKb} and stay flat across {@code fieldCount}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FieldExtractorBenchmark {
+
+    private static final String[] FILLER = {
+            "Please", "find", "attached", "the", "notice", "for", "the", "facility", "regarding", "payment",
+            "of", "our", "share", "kindly", "confirm", "receipt", "and", "process", "accordingly", "regards"
+    };
+
+    @Param({"6", "60", "600"})
+    public int fieldCount;
+
+    @Param({"4", "64"})
+    public int textKb;
+
+    private FieldExtractor fieldExtractor;
+    private String subject;
+    private String body;
+    private List<String> attachmentTexts;
+
+    @Setup
+    public void setup() {
+        FieldExtractionProperties properties = new FieldExtractionProperties();
+        properties.setDefinitions(definitions(fieldCount));
+        fieldExtractor = new FieldExtractor(properties);
+
+        Random random = new Random(42);
+        subject = "Payment notice - Deal Name: Acme Term Loan B";
+        body = text(random, textKb * 1024);
+        attachmentTexts = List.of(text(random, textKb * 1024), text(random, textKb * 1024));
+    }
+
+    @Benchmark
+    public List<KeyValue> extract() {
+        return fieldExtractor.extract(subject, body, attachmentTexts);
+    }
+
+    /**
+     * The default field definitions, padded with synthetic ones whose labels never occur in the text.
+     */
+    private static List<FieldExtractionProperties.Field> definitions(int count) {
+        List<FieldExtractionProperties.Field> fields = new ArrayList<>();
+        fields.add(field("Amount", List.of("amount", "principal amount", "total amount"),
+                "(?:[A-Z]{3}\\s?|[$€£]\\s?)?(?:\\d{1,3}(?:,\\d{3})+|\\d+)(?:\\.\\d{1,4})?", false));
+        fields.add(field("Currency", List.of("currency", "ccy"), "[A-Z]{3}", false));
+        fields.add(field("Date", List.of("date", "effective date", "value date"),
+                "\\d{4}-\\d{2}-\\d{2}|\\d{1,2}[/.-]\\d{1,2}[/.-]\\d{2,4}", false));
+        fields.add(field("Account Number", List.of("account number", "account"), "[A-Z0-9][A-Z0-9-]{3,33}", true));
+        fields.add(field("Loan Number", List.of("loan number", "loan id"), "[A-Z0-9][A-Z0-9-]{3,33}", false));
+        fields.add(field("Deal Name", List.of("deal name", "deal"), "[A-Za-z0-9][^\\r\\n;]{1,80}", true));
+        for (int i = fields.size(); i < count; i++) {
+            fields.add(field("Custom " + i, List.of("custom label " + i, "alt label " + i), "\\d+", false));
+        }
+        return fields;
+    }
+
+    private static FieldExtractionProperties.Field field(String name, List<String> labels, String pattern,
+                                                         boolean requireSeparator) {
+        FieldExtractionProperties.Field field = new FieldExtractionProperties.Field();
+        field.setName(name);
+        field.setLabels(new ArrayList<>(labels));
+        field.setPattern(pattern);
+        field.setRequireSeparator(requireSeparator);
+        return field;
+    }
+
+    /**
+     * Filler prose with a labelled value roughly every 40 words.
+     */
+    private static String text(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length + 64);
+        while (sb.length() < length) {
+            if (random.nextInt(40) == 0) {
+                switch (random.nextInt(4)) {
+                    case 0 -> sb.append("Amount: USD ").append(random.nextInt(1_000_000)).append(".00");
+                    case 1 -> sb.append("Effective Date: 2025-0").append(1 + random.nextInt(9)).append("-15");
+                    case 2 -> sb.append("Loan Number ").append("LN-").append(100000 + random.nextInt(900000));
+                    default -> sb.append("Currency: EUR");
+                }
+                sb.append(".\n");
+            } else {
+                sb.append(FILLER[random.nextInt(FILLER.length)]).append(' ');
+            }
+        }
+        return sb.toString();
+    }
+}
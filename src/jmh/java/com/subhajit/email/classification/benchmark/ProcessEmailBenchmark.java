@@ -0,0 +1,94 @@
+package com.subhajit.email.classification.benchmark;
+
+import com.subhajit.email.classification.EmailClassificationApplication;
+import com.subhajit.email.classification.model.ParsedEmailResponse;
+import com.subhajit.email.classification.service.EmailProcessingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * End-to-end {@code processEmail} on the full application context: parsing, concurrent attachment extraction,
+ * compaction, classification, field extraction and the duplicate check.
+ * <p>
+ * The LLM is replaced by the offline stub and the extraction cache is off, so every operation does the full work.
+ * Operations cycle through {@link #VARIANTS} emails of the same shape but different text; after the first round the
+ * duplicate check finds exact matches, as it would for re-sent mail. The context is started afresh for every
+ * iteration, so the duplicate index and the Bayes model learned in one iteration do not carry over to the next.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProcessEmailBenchmark {
+
+    private static final int VARIANTS = 16;
+
+    @Param({"eml", "msg"})
+    public String format;
+
+    @Param({"SMALL", "MEDIUM"})
+    public EmailCorpus.Size size;
+
+    @Param({"0", "2"})
+    public int depth;
+
+    @Param({"pdf,xlsx,xls,docx,csv", "all"})
+    public String mix;
+
+    private ConfigurableApplicationContext context;
+    private EmailProcessingService emailProcessingService;
+    private String fileName;
+    private byte[][] emails;
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        fileName = "corpus." + format;
+        emails = new byte[VARIANTS][];
+        for (int i = 0; i < VARIANTS; i++) {
+            EmailCorpus.Spec spec = new EmailCorpus.Spec(size, depth, EmailCorpus.AttachmentType.parseMix(mix), i);
+            emails[i] = "eml".equals(format) ? EmailCorpus.eml(spec) : EmailCorpus.msg(spec);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void startContext() {
+        context = new SpringApplicationBuilder(EmailClassificationApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "email.classification.classifier.llm.provider=stub",
+                        "email.classification.cache.enabled=false",
+                        "email.classification.duplicate.persist=false",
+                        "email.classification.persistence.enabled=false")
+                .run();
+        emailProcessingService = context.getBean(EmailProcessingService.class);
+        next.set(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public ParsedEmailResponse processEmail() {
+        byte[] email = emails[Math.floorMod(next.getAndIncrement(), VARIANTS)];
+        return emailProcessingService.processEmail(fileName, new ByteArrayInputStream(email));
+    }
+}
@@ -2,8 +2,10 @@ package com.subhajit.email.classification;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class EmailClassificationApplication {
 
 	public static void main(String[] args) {
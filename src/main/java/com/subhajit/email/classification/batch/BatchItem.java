@@ -0,0 +1,21 @@
+package com.subhajit.email.classification.batch;
+
+import com.subhajit.email.classification.model.EmailAttachment;
+
+/**
+ * A single email of a batch, buffered so it can be processed independently of the archive it came from.
+ *
+ * @param index   Position of the email in the batch
+ * @param name    File name of the email, e.g. {@code inbox.mbox#12.eml} or {@code export.zip!/a/b.msg}
+ * @param content Content of the email, or null if it could not be read
+ * @param error   Why the email could not be read, or null
+ */
+public record BatchItem(int index, String name, EmailAttachment content, String error) implements AutoCloseable {
+
+    @Override
+    public void close() {
+        if (content != null) {
+            content.close();
+        }
+    }
+}
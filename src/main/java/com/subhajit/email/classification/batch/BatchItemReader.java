@@ -0,0 +1,360 @@
+package com.subhajit.email.classification.batch;
+
+import com.subhajit.email.classification.model.EmailAttachment;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Splits the files of a batch upload into individual emails.
+ * <p>
+ * Uploaded .eml and .msg files are single emails, .zip archives are scanned for .eml, .msg and .mbox entries, and
+ * .mbox files are split on their {@code From } separator lines. Each email is buffered (in memory or in a spill
+ * file) before it is handed to the consumer, so archives are read strictly sequentially while the emails are
+ * processed concurrently. Once {@code maxItems} emails have been read, the next email found yields a final error
+ * item saying that the batch was truncated, and reading stops.
+ */
+public class BatchItemReader {
+
+    private final int maxItems;
+    private final long maxItemSize;
+    private final long spillThreshold;
+    private final Path spillDirectory;
+    private int index;
+    private boolean truncated;
+
+    public BatchItemReader(int maxItems, long maxItemSize, long spillThreshold, Path spillDirectory) {
+        this.maxItems = maxItems;
+        this.maxItemSize = maxItemSize;
+        this.spillThreshold = spillThreshold;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Consumer of the emails of a batch.
+     */
+    @FunctionalInterface
+    public interface ItemConsumer {
+        void accept(BatchItem item) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Reads all emails of the uploaded files, in order.
+     *
+     * @param files    The uploaded files
+     * @param consumer Receives every email, or an error item for a file or entry that could not be read
+     * @throws IOException          if the consumer fails to write
+     * @throws InterruptedException if interrupted while the consumer waits
+     */
+    public void read(List<MultipartFile> files, ItemConsumer consumer) throws IOException, InterruptedException {
+        for (MultipartFile file : files) {
+            String name = file.getOriginalFilename();
+            if (index >= maxItems) {
+                emitTruncated(name, consumer);
+                return;
+            }
+            try (InputStream inputStream = file.getInputStream()) {
+                read(name, inputStream, consumer);
+            } catch (IOException ex) {
+                emit(consumer, new BatchItem(index, name, null, "Error reading " + name + ": " + ex.getMessage()));
+            }
+            if (truncated) {
+                return;
+            }
+        }
+    }
+
+    private void read(String name, InputStream inputStream, ItemConsumer consumer)
+            throws IOException, InterruptedException {
+        String lowerName = name == null ? "" : name.toLowerCase(Locale.ROOT);
+        if (lowerName.endsWith(".eml") || lowerName.endsWith(".msg")) {
+            readEmail(name, inputStream, consumer);
+        } else if (lowerName.endsWith(".zip")) {
+            readZip(name, inputStream, consumer);
+        } else if (lowerName.endsWith(".mbox")) {
+            readMbox(name, inputStream, consumer);
+        } else {
+            emit(consumer, new BatchItem(index, name, null, "Unsupported file type: " + name));
+        }
+    }
+
+    private void readEmail(String name, InputStream inputStream, ItemConsumer consumer)
+            throws IOException, InterruptedException {
+        EmailAttachment content;
+        try {
+            content = EmailAttachment.read(name, new LimitedInputStream(inputStream, maxItemSize), spillThreshold,
+                    spillDirectory);
+        } catch (IOException ex) {
+            emit(consumer, new BatchItem(index, name, null, "Error reading " + name + ": " + ex.getMessage()));
+            return;
+        }
+        emit(consumer, new BatchItem(index, name, content, null));
+    }
+
+    private void readZip(String name, InputStream inputStream, ItemConsumer consumer)
+            throws IOException, InterruptedException {
+        ZipInputStream zip = new ZipInputStream(inputStream);
+        ZipEntry entry;
+        while (!truncated && (entry = zip.getNextEntry()) != null) {
+            if (!entry.isDirectory()) {
+                String entryName = name + "!/" + entry.getName();
+                String lowerName = entry.getName().toLowerCase(Locale.ROOT);
+                boolean email = lowerName.endsWith(".eml") || lowerName.endsWith(".msg");
+                if ((email || lowerName.endsWith(".mbox")) && index >= maxItems) {
+                    emitTruncated(entryName, consumer);
+                } else if (email) {
+                    readEmail(entryName, zip, consumer);
+                } else if (lowerName.endsWith(".mbox")) {
+                    readMbox(entryName, zip, consumer);
+                }
+            }
+            zip.closeEntry();
+        }
+    }
+
+    /**
+     * Splits an mbox file into messages. A message starts at a line beginning with {@code From } that follows an
+     * empty line (or starts the file); {@code >From } escaping of body lines is undone. Messages larger than the
+     * spill threshold are buffered in a spill file rather than in memory. No more than {@code maxItemSize} bytes of
+     * a line are held; a longer line makes its message too large.
+     */
+    private void readMbox(String name, InputStream inputStream, ItemConsumer consumer)
+            throws IOException, InterruptedException {
+        InputStream in = new BufferedInputStream(inputStream, 64 * 1024);
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        int maxLineBytes = (int) Math.min(maxItemSize + 1, Integer.MAX_VALUE - 8);
+        boolean previousBlank = true;
+        boolean tooLarge = false;
+        int messageNumber = 0;
+        long lineLength;
+
+        try (MessageBuffer message = new MessageBuffer()) {
+            while ((lineLength = readLine(in, line, maxLineBytes)) > 0) {
+                byte[] bytes = line.toByteArray();
+                if (previousBlank && startsWith(bytes, 0, "From ")) {
+                    if (messageNumber > 0) {
+                        emitMboxMessage(name, messageNumber, message, tooLarge, consumer);
+                    }
+                    messageNumber++;
+                    message.reset();
+                    tooLarge = false;
+                    if (index >= maxItems) {
+                        emitTruncated(name + "#" + messageNumber + ".eml", consumer);
+                        return;
+                    }
+                } else if (messageNumber > 0 && !tooLarge) {
+                    int offset = isEscapedFrom(bytes) ? 1 : 0;
+                    tooLarge = lineLength > bytes.length || message.size() + bytes.length - offset > maxItemSize;
+                    if (tooLarge) {
+                        message.reset();
+                    } else {
+                        message.write(bytes, offset, bytes.length - offset);
+                    }
+                }
+                previousBlank = bytes.length == 1 && bytes[0] == '\n' || bytes.length == 2 && bytes[0] == '\r';
+            }
+            if (messageNumber > 0) {
+                emitMboxMessage(name, messageNumber, message, tooLarge, consumer);
+            }
+        }
+    }
+
+    private void emitMboxMessage(String name, int messageNumber, MessageBuffer message, boolean tooLarge,
+                                 ItemConsumer consumer) throws IOException, InterruptedException {
+        String messageName = name + "#" + messageNumber + ".eml";
+        if (tooLarge) {
+            emit(consumer, new BatchItem(index, messageName, null, "Email exceeds the maximum size of "
+                    + maxItemSize + " bytes"));
+            return;
+        }
+        EmailAttachment content;
+        try {
+            content = message.take(messageName);
+        } catch (IOException ex) {
+            emit(consumer, new BatchItem(index, messageName, null, "Error reading " + messageName + ": "
+                    + ex.getMessage()));
+            return;
+        }
+        emit(consumer, new BatchItem(index, messageName, content, null));
+    }
+
+    private void emit(ItemConsumer consumer, BatchItem item) throws IOException, InterruptedException {
+        index++;
+        consumer.accept(item);
+    }
+
+    /**
+     * Ends the batch with an error item for the first email over the item limit.
+     */
+    private void emitTruncated(String name, ItemConsumer consumer) throws IOException, InterruptedException {
+        truncated = true;
+        emit(consumer, new BatchItem(index, name, null, "Batch truncated: only the first " + maxItems
+                + " emails are processed"));
+    }
+
+    /**
+     * Reads one line including its terminator into {@code line}, keeping no more than {@code maxBytes} of it and
+     * skipping the rest.
+     *
+     * @return The full length of the line, which exceeds the size of {@code line} if it was cut, or 0 at the end of
+     * the stream
+     */
+    private static long readLine(InputStream in, ByteArrayOutputStream line, int maxBytes) throws IOException {
+        line.reset();
+        long length = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            if (length++ < maxBytes) {
+                line.write(b);
+            }
+            if (b == '\n') {
+                return length;
+            }
+        }
+        return length;
+    }
+
+    private static boolean isEscapedFrom(byte[] line) {
+        int i = 0;
+        while (i < line.length && line[i] == '>') {
+            i++;
+        }
+        return i > 0 && startsWith(line, i, "From ");
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, String prefix) {
+        if (bytes.length - offset < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (bytes[offset + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects one mbox message, in memory up to the spill threshold and in a spill file beyond it.
+     */
+    private class MessageBuffer implements AutoCloseable {
+
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private Path file;
+        private OutputStream fileStream;
+        private long size;
+
+        void write(byte[] bytes, int offset, int length) throws IOException {
+            if (fileStream == null && size + length > spillThreshold) {
+                file = spillDirectory == null
+                        ? Files.createTempFile("att-", ".tmp")
+                        : Files.createTempFile(spillDirectory, "att-", ".tmp");
+                fileStream = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024);
+                memory.writeTo(fileStream);
+                // Drop the grown array rather than keeping it for the next message
+                memory = new ByteArrayOutputStream();
+            }
+            if (fileStream != null) {
+                fileStream.write(bytes, offset, length);
+            } else {
+                memory.write(bytes, offset, length);
+            }
+            size += length;
+        }
+
+        long size() {
+            return size;
+        }
+
+        /**
+         * Hands the collected message over as an attachment, which then owns the spill file, and empties the buffer.
+         */
+        EmailAttachment take(String name) throws IOException {
+            if (fileStream == null) {
+                EmailAttachment content = EmailAttachment.ofBytes(name, memory.toByteArray());
+                reset();
+                return content;
+            }
+            fileStream.close();
+            fileStream = null;
+            EmailAttachment content = EmailAttachment.ofFile(name, file);
+            file = null;
+            reset();
+            return content;
+        }
+
+        void reset() throws IOException {
+            memory.reset();
+            size = 0;
+            if (fileStream != null) {
+                fileStream.close();
+                fileStream = null;
+            }
+            if (file != null) {
+                Files.deleteIfExists(file);
+                file = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reset();
+        }
+    }
+
+    /**
+     * Fails once more than {@code limit} bytes have been read, protecting against oversized archive entries.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+            // The underlying stream belongs to the caller, e.g. an archive positioned at the next entry
+        }
+
+        private void count(int n) throws IOException {
+            count += n;
+            if (count > limit) {
+                throw new IOException("Email exceeds the maximum size of " + limit + " bytes");
+            }
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package com.subhajit.email.classification.cache;
+
+import com.subhajit.email.classification.configuration.CacheProperties;
+import com.subhajit.email.classification.configuration.OcrProperties;
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.model.EmailAttachment;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
+
+/**
+ * Cache of extracted attachment text keyed by the SHA-256 of the attachment bytes and of the extraction settings.
+ * <p>
+ * The settings part of the key is a fingerprint of {@link #EXTRACTOR_VERSION} and of every parser and OCR setting
+ * that changes the extracted text, so changing a limit or upgrading an extractor never serves text produced the old
+ * way; stale entries simply stop being hit and age out. The in-heap tier is an LRU map bounded by the total number of
+ * cached characters. The optional on-disk tier stores one UTF-8 file per key below the configured directory and is
+ * consulted on a heap miss, so results survive restarts. A background sweep keeps it within its size and age bounds,
+ * deleting the least recently used files first. Both tiers are best effort: an I/O error on disk is logged and
+ * treated as a miss.
+ */
+@Component
+public class ExtractionCache implements MeterBinder {
+
+    /**
+     * Version of the extraction code. Bump it when a handler changes the text it produces for the same input.
+     */
+    static final String EXTRACTOR_VERSION = "2";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExtractionCache.class);
+    private static final String ENTRY_SUFFIX = ".txt";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final CacheProperties properties;
+    private final byte[] fingerprint;
+    private final Path diskDirectory;
+    private final ScheduledExecutorService sweeper;
+    private final LinkedHashMap<String, String> heap = new LinkedHashMap<>(256, 0.75f, true);
+    private long heapChars;
+
+    private final AtomicLong heapHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+    private final AtomicLong diskBytes = new AtomicLong();
+
+    public ExtractionCache(CacheProperties properties, ParserProperties parserProperties,
+                           OcrProperties ocrProperties) {
+        this.properties = properties;
+        this.fingerprint = fingerprint(parserProperties, ocrProperties);
+        this.diskDirectory = properties.isDiskEnabled() ? Paths.get(properties.getDiskDirectory()) : null;
+        if (diskDirectory != null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cache-sweeper-");
+            threadFactory.setDaemon(true);
+            this.sweeper = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            long interval = Math.max(1, properties.getDiskSweepInterval().toMillis());
+            sweeper.scheduleWithFixedDelay(this::sweepDisk, 0, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.sweeper = null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * @return true if lookups and stores have any effect
+     */
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Computes the cache key of an attachment from its content and the extraction settings.
+     *
+     * @param attachment The attachment to hash
+     * @return Hex encoded SHA-256 of the settings fingerprint and the attachment bytes
+     * @throws IOException if the attachment cannot be read
+     */
+    public String hash(EmailAttachment attachment) throws IOException {
+        try (InputStream inputStream = attachment.openStream()) {
+            return hash(inputStream);
+        }
+    }
+
+    /**
+     * Computes the cache key of attachment content read from a stream. The stream is read to the end but not closed.
+     *
+     * @param inputStream The attachment content
+     * @return Hex encoded SHA-256 of the settings fingerprint and the content
+     * @throws IOException if the stream cannot be read
+     */
+    public String hash(InputStream inputStream) throws IOException {
+        MessageDigest digest = newDigest();
+        digest.update(fingerprint);
+        byte[] buffer = new byte[64 * 1024];
+        int bytesRead;
+        while ((bytesRead = inputStream.read(buffer)) != -1) {
+            digest.update(buffer, 0, bytesRead);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Looks up the extracted text for a content hash, first in heap and then on disk.
+     *
+     * @param key Content hash from {@link #hash(EmailAttachment)}
+     * @return The cached text, or null on a miss
+     */
+    public String get(String key) {
+        if (!isEnabled() || key == null) {
+            return null;
+        }
+        synchronized (heap) {
+            String text = heap.get(key);
+            if (text != null) {
+                heapHits.incrementAndGet();
+                return text;
+            }
+        }
+        String text = readFromDisk(key);
+        if (text != null) {
+            diskHits.incrementAndGet();
+            putInHeap(key, text);
+            return text;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores the extracted text for a content hash in both tiers.
+     *
+     * @param key  Content hash from {@link #hash(EmailAttachment)}
+     * @param text The extracted text
+     */
+    public void put(String key, String text) {
+        if (!isEnabled() || key == null || text == null) {
+            return;
+        }
+        putInHeap(key, text);
+        writeToDisk(key, text);
+    }
+
+    /**
+     * @return A snapshot of the cache counters
+     */
+    public ExtractionCacheMetrics metrics() {
+        synchronized (heap) {
+            return new ExtractionCacheMetrics(heapHits.get(), diskHits.get(), misses.get(), evictions.get(),
+                    diskEvictions.get(), heap.size(), heapChars, diskBytes.get());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Map<String, ToDoubleFunction<ExtractionCacheMetrics>> lookups = Map.of(
+                "heap", ExtractionCacheMetrics::heapHits,
+                "disk", ExtractionCacheMetrics::diskHits,
+                "miss", ExtractionCacheMetrics::misses);
+        lookups.forEach((result, value) -> FunctionCounter.builder("email.cache.lookups", this,
+                        c -> value.applyAsDouble(c.metrics()))
+                .description("Extraction cache lookups by the tier that answered them")
+                .tag("result", result)
+                .register(registry));
+        Map<String, ToDoubleFunction<ExtractionCacheMetrics>> evicted = Map.of(
+                "heap", ExtractionCacheMetrics::evictions,
+                "disk", ExtractionCacheMetrics::diskEvictions);
+        evicted.forEach((tier, value) -> FunctionCounter.builder("email.cache.evictions", this,
+                        c -> value.applyAsDouble(c.metrics()))
+                .description("Extraction cache entries dropped to stay within the size and age bounds")
+                .tag("tier", tier)
+                .register(registry));
+        Gauge.builder("email.cache.heap.entries", this, c -> c.metrics().heapEntries())
+                .description("Entries in the in-heap tier of the extraction cache")
+                .register(registry);
+        Gauge.builder("email.cache.heap.chars", this, c -> c.metrics().heapChars())
+                .description("Characters held in the in-heap tier of the extraction cache")
+                .baseUnit("characters")
+                .register(registry);
+        Gauge.builder("email.cache.disk.size", this, c -> c.metrics().diskBytes())
+                .description("Size of the on-disk tier of the extraction cache as of the last sweep")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private void putInHeap(String key, String text) {
+        if (text.length() > properties.getMaxEntryChars()) {
+            return;
+        }
+        synchronized (heap) {
+            String previous = heap.put(key, text);
+            heapChars += text.length() - (previous == null ? 0 : previous.length());
+
+            Iterator<Map.Entry<String, String>> eldest = heap.entrySet().iterator();
+            while (heapChars > properties.getMaxHeapChars() && eldest.hasNext()) {
+                Map.Entry<String, String> entry = eldest.next();
+                heapChars -= entry.getValue().length();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private String readFromDisk(String key) {
+        if (diskDirectory == null) {
+            return null;
+        }
+        Path path = diskPath(key);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            FileTime now = FileTime.from(Instant.now());
+            if (isExpired(Files.getLastModifiedTime(path), now)) {
+                deleteQuietly(path);
+                diskEvictions.incrementAndGet();
+                return null;
+            }
+            String text = Files.readString(path, StandardCharsets.UTF_8);
+            // The modification time orders entries for eviction, so a hit marks the entry as recently used
+            Files.setLastModifiedTime(path, now);
+            return text;
+        } catch (NoSuchFileException ex) {
+            // Deleted by a sweep since the check above
+            return null;
+        } catch (IOException ex) {
+            LOGGER.error("Error reading cache entry {}: {}", key, ex.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, String text) {
+        if (diskDirectory == null) {
+            return;
+        }
+        Path path = diskPath(key);
+        Path tempFile = null;
+        try {
+            Files.createDirectories(path.getParent());
+            tempFile = Files.createTempFile(path.getParent(), key, TEMP_SUFFIX);
+            Files.writeString(tempFile, text, StandardCharsets.UTF_8);
+            Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            LOGGER.error("Error writing cache entry {}: {}", key, ex.getMessage());
+            deleteQuietly(tempFile);
+        }
+    }
+
+    /**
+     * Deletes entries past the maximum age, then the least recently used ones until the tier is within its size
+     * bound, leaving some headroom so that the next writes do not start another round of deletions at once. Temp
+     * files left by interrupted writes are deleted once they are an hour old.
+     */
+    void sweepDisk() {
+        if (!Files.isDirectory(diskDirectory)) {
+            diskBytes.set(0);
+            return;
+        }
+        FileTime now = FileTime.from(Instant.now());
+        List<DiskEntry> entries = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> files = Files.walk(diskDirectory, 2)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                String name = path.getFileName().toString();
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (IOException ex) {
+                    // Deleted concurrently
+                    continue;
+                }
+                if (!attributes.isRegularFile()) {
+                    continue;
+                }
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    if (now.toMillis() - attributes.lastModifiedTime().toMillis() > TimeUnit.HOURS.toMillis(1)) {
+                        deleteQuietly(path);
+                    }
+                } else if (name.endsWith(ENTRY_SUFFIX)) {
+                    if (isExpired(attributes.lastModifiedTime(), now)) {
+                        deleteQuietly(path);
+                        diskEvictions.incrementAndGet();
+                    } else {
+                        entries.add(new DiskEntry(path, attributes.lastModifiedTime().toMillis(),
+                                attributes.size()));
+                        total += attributes.size();
+                    }
+                }
+            }
+        } catch (IOException | UncheckedIOException ex) {
+            LOGGER.error("Error sweeping cache directory {}: {}", diskDirectory, ex.getMessage());
+            return;
+        }
+
+        long maxBytes = properties.getMaxDiskSize().toBytes();
+        if (total > maxBytes) {
+            long target = maxBytes - maxBytes / 10;
+            entries.sort(Comparator.comparingLong(DiskEntry::lastUsed));
+            for (DiskEntry entry : entries) {
+                if (total <= target) {
+                    break;
+                }
+                deleteQuietly(entry.path());
+                diskEvictions.incrementAndGet();
+                total -= entry.size();
+            }
+        }
+        diskBytes.set(total);
+    }
+
+    private boolean isExpired(FileTime lastUsed, FileTime now) {
+        return now.toMillis() - lastUsed.toMillis() > properties.getMaxDiskAge().toMillis();
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            LOGGER.warn("Could not delete {}: {}", path, ex.getMessage());
+        }
+    }
+
+    /**
+     * Spreads entries over 256 sub-directories named after the first byte of the hash.
+     */
+    private Path diskPath(String key) {
+        return diskDirectory.resolve(key.substring(0, 2)).resolve(key + ENTRY_SUFFIX);
+    }
+
+    /**
+     * Hashes the extractor version and the settings that shape the extracted text. Thread counts, pool sizes and
+     * spill settings are left out as they do not change the text.
+     */
+    static byte[] fingerprint(ParserProperties parser, OcrProperties ocr) {
+        String settings = String.join("\n",
+                EXTRACTOR_VERSION,
+                String.valueOf(parser.getLimits()),
+                String.valueOf(new TreeMap<>(parser.getHandlerLimits())),
+                String.valueOf(parser.getTika()),
+                String.valueOf(parser.getSpreadsheet()),
+                String.valueOf(parser.getPdf()),
+                String.valueOf(parser.getOffice()),
+                String.valueOf(parser.getCsv()),
+                ocr.getLanguage(),
+                String.valueOf(ocr.getPreprocessing()));
+        return newDigest().digest(settings.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private record DiskEntry(Path path, long lastUsed, long size) {
+    }
+}
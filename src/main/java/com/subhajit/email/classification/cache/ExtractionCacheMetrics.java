@@ -0,0 +1,17 @@
+package com.subhajit.email.classification.cache;
+
+/**
+ * Point-in-time counters of the {@link ExtractionCache}.
+ *
+ * @param heapHits      Lookups answered from the in-heap tier
+ * @param diskHits      Lookups answered from the on-disk tier
+ * @param misses        Lookups answered by neither tier
+ * @param evictions     Entries dropped from the in-heap tier to stay within its size bound
+ * @param diskEvictions Entries deleted from the on-disk tier for its size or age bound
+ * @param heapEntries   Entries currently in the in-heap tier
+ * @param heapChars     Characters currently held in the in-heap tier
+ * @param diskBytes     Size of the on-disk tier as of the last sweep
+ */
+public record ExtractionCacheMetrics(long heapHits, long diskHits, long misses, long evictions, long diskEvictions,
+                                     int heapEntries, long heapChars, long diskBytes) {
+}
@@ -0,0 +1,170 @@
+package com.subhajit.email.classification.classification;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Case-insensitive multi-pattern matcher (Aho-Corasick automaton).
+ * <p>
+ * All patterns are compiled into one automaton, so a text is scanned once regardless of the number of patterns.
+ * Only whole-word matches are reported: the characters around a match must not be letters or digits.
+ * <p>
+ * The trie is built with maps and then frozen into primitive arrays: the edges of each node are a sorted run of
+ * {@code edgeChars}/{@code edgeTargets} found by binary search, and the root, where the scan spends most of its
+ * time, also has a dense table for ASCII characters. Scanning therefore allocates nothing.
+ */
+public class AhoCorasickMatcher {
+
+    private static final int ASCII = 128;
+
+    private final int[] patternLengths;
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] rootAscii = new int[ASCII];
+    private final int[][] outputs;
+    private final int[] failure;
+
+    /**
+     * Receives every whole-word match.
+     */
+    @FunctionalInterface
+    public interface MatchListener {
+        void onMatch(int patternIndex, int start, int end);
+    }
+
+    public AhoCorasickMatcher(List<String> patterns) {
+        patternLengths = new int[patterns.size()];
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<int[]> patternOutputs = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        patternOutputs.add(new int[0]);
+        for (int i = 0; i < patterns.size(); i++) {
+            String pattern = patterns.get(i);
+            patternLengths[i] = pattern.length();
+            int node = 0;
+            for (int j = 0; j < pattern.length(); j++) {
+                char c = Character.toLowerCase(pattern.charAt(j));
+                Integer next = trie.get(node).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    patternOutputs.add(new int[0]);
+                    trie.get(node).put(c, next);
+                }
+                node = next;
+            }
+            if (node != 0) {
+                patternOutputs.set(node, append(patternOutputs.get(node), i));
+            }
+        }
+
+        int nodes = trie.size();
+        int edges = trie.stream().mapToInt(TreeMap::size).sum();
+        edgeStart = new int[nodes + 1];
+        edgeChars = new char[edges];
+        edgeTargets = new int[edges];
+        int edge = 0;
+        for (int node = 0; node < nodes; node++) {
+            edgeStart[node] = edge;
+            for (Map.Entry<Character, Integer> entry : trie.get(node).entrySet()) {
+                edgeChars[edge] = entry.getKey();
+                edgeTargets[edge] = entry.getValue();
+                edge++;
+            }
+        }
+        edgeStart[nodes] = edge;
+        Arrays.fill(rootAscii, -1);
+        for (int e = edgeStart[0]; e < edgeStart[1]; e++) {
+            if (edgeChars[e] < ASCII) {
+                rootAscii[edgeChars[e]] = edgeTargets[e];
+            }
+        }
+        outputs = patternOutputs.toArray(new int[0][]);
+        failure = new int[nodes];
+        buildFailureLinks();
+    }
+
+    /**
+     * Scans the text once and reports all whole-word matches.
+     *
+     * @param text     The text to scan
+     * @param listener Receives the matches in order of their end position
+     */
+    public void match(CharSequence text, MatchListener listener) {
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = next(node, c)) < 0 && node != 0) {
+                node = failure[node];
+            }
+            node = Math.max(next, 0);
+            for (int pattern : outputs[node]) {
+                int start = i + 1 - patternLengths[pattern];
+                if (isBoundary(text, start - 1) && isBoundary(text, i + 1)) {
+                    listener.onMatch(pattern, start, i + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The child of {@code node} for {@code c}, or -1 if there is none
+     */
+    private int next(int node, char c) {
+        if (node == 0 && c < ASCII) {
+            return rootAscii[c];
+        }
+        int index = Arrays.binarySearch(edgeChars, edgeStart[node], edgeStart[node + 1], c);
+        return index >= 0 ? edgeTargets[index] : -1;
+    }
+
+    private static boolean isBoundary(CharSequence text, int index) {
+        return index < 0 || index >= text.length() || !Character.isLetterOrDigit(text.charAt(index));
+    }
+
+    /**
+     * Breadth-first construction of failure links; each node also inherits the outputs of its failure node.
+     */
+    private void buildFailureLinks() {
+        int[] queue = new int[failure.length];
+        int head = 0;
+        int tail = 0;
+        for (int e = edgeStart[0]; e < edgeStart[1]; e++) {
+            queue[tail++] = edgeTargets[e];
+        }
+        while (head < tail) {
+            int node = queue[head++];
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                int child = edgeTargets[e];
+                int fallback = failure[node];
+                int target;
+                while ((target = next(fallback, edgeChars[e])) < 0 && fallback != 0) {
+                    fallback = failure[fallback];
+                }
+                failure[child] = target < 0 || target == child ? 0 : target;
+                outputs[child] = concat(outputs[child], outputs[failure[child]]);
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    private static int[] append(int[] values, int value) {
+        int[] result = Arrays.copyOf(values, values.length + 1);
+        result[values.length] = value;
+        return result;
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        if (b.length == 0) {
+            return a;
+        }
+        int[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+}
@@ -0,0 +1,19 @@
+package com.subhajit.email.classification.classification;
+
+import java.util.List;
+
+/**
+ * The text of an email as seen by the classifier stages.
+ *
+ * @param subject         The subject line
+ * @param body            The body text
+ * @param attachmentTexts The extracted text of each attachment
+ */
+public record ClassificationInput(String subject, String body, List<String> attachmentTexts) {
+
+    public ClassificationInput {
+        subject = subject == null ? "" : subject;
+        body = body == null ? "" : body;
+        attachmentTexts = attachmentTexts == null ? List.of() : attachmentTexts;
+    }
+}
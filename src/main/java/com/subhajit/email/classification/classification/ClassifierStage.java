@@ -0,0 +1,35 @@
+package com.subhajit.email.classification.classification;
+
+import com.subhajit.email.classification.model.EmailClassification;
+
+import java.util.Optional;
+
+/**
+ * One tier of the classifier cascade. Stages are asked in {@link org.springframework.core.annotation.Order} order
+ * until one answers with enough confidence.
+ */
+public interface ClassifierStage {
+
+    /**
+     * @return Short name of the tier, recorded in the reasoning of its answers
+     */
+    String name();
+
+    /**
+     * Classifies an email.
+     *
+     * @param input The email text
+     * @return The classification with its confidence, or empty if the stage has no opinion
+     */
+    Optional<EmailClassification> classify(ClassificationInput input);
+
+    /**
+     * Called with the final answer of the cascade, so local stages can learn from answers of later tiers.
+     *
+     * @param input          The email text
+     * @param classification The accepted classification
+     * @param answeredBy     Name of the tier that answered
+     */
+    default void learn(ClassificationInput input, EmailClassification classification, String answeredBy) {
+    }
+}
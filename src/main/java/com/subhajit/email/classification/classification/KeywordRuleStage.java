@@ -0,0 +1,96 @@
+package com.subhajit.email.classification.classification;
+
+import com.subhajit.email.classification.configuration.ClassifierProperties;
+import com.subhajit.email.classification.model.EmailClassification;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * First tier: matches the configured rule keywords against the subject and body with one compiled automaton.
+ * <p>
+ * Every distinct keyword of a rule found in the body counts once, in the subject it counts with the subject weight.
+ * The confidence grows with the score of the best rule and shrinks with the score of the runner-up, so an email that
+ * matches several request types equally well is passed on to the next tier.
+ */
+@Component
+@Order(1)
+public class KeywordRuleStage implements ClassifierStage {
+
+    private final ClassifierProperties properties;
+    private final List<ClassifierProperties.Rule> rules;
+    private final int[] ruleOfKeyword;
+    private final List<String> keywords = new ArrayList<>();
+    private final AhoCorasickMatcher matcher;
+
+    public KeywordRuleStage(ClassifierProperties properties) {
+        this.properties = properties;
+        this.rules = properties.getRules();
+        List<Integer> owners = new ArrayList<>();
+        for (int r = 0; r < rules.size(); r++) {
+            for (String keyword : rules.get(r).getKeywords()) {
+                if (keyword != null && !keyword.isBlank()) {
+                    keywords.add(keyword.trim());
+                    owners.add(r);
+                }
+            }
+        }
+        this.ruleOfKeyword = owners.stream().mapToInt(Integer::intValue).toArray();
+        this.matcher = new AhoCorasickMatcher(keywords);
+    }
+
+    @Override
+    public String name() {
+        return "keyword-rules";
+    }
+
+    @Override
+    public Optional<EmailClassification> classify(ClassificationInput input) {
+        if (!properties.getKeywords().isEnabled() || keywords.isEmpty()) {
+            return Optional.empty();
+        }
+        int[] scores = new int[rules.size()];
+        BitSet seenInSubject = new BitSet(keywords.size());
+        BitSet seenInBody = new BitSet(keywords.size());
+        matcher.match(input.subject(), (pattern, start, end) -> seenInSubject.set(pattern));
+        matcher.match(input.body(), (pattern, start, end) -> seenInBody.set(pattern));
+
+        int subjectWeight = properties.getKeywords().getSubjectWeight();
+        seenInSubject.stream().forEach(k -> scores[ruleOfKeyword[k]] += subjectWeight);
+        seenInBody.stream().filter(k -> !seenInSubject.get(k)).forEach(k -> scores[ruleOfKeyword[k]]++);
+
+        int best = -1;
+        int runnerUp = 0;
+        for (int r = 0; r < scores.length; r++) {
+            if (best < 0 || scores[r] > scores[best]) {
+                if (best >= 0) {
+                    runnerUp = Math.max(runnerUp, scores[best]);
+                }
+                best = r;
+            } else {
+                runnerUp = Math.max(runnerUp, scores[r]);
+            }
+        }
+        if (best < 0 || scores[best] == 0) {
+            return Optional.empty();
+        }
+
+        double confidence = (scores[best] - runnerUp) / (scores[best] + 1.0);
+        ClassifierProperties.Rule rule = rules.get(best);
+        return Optional.of(new EmailClassification(rule.getRequestType(), rule.getSubRequestType(), confidence,
+                "Matched keywords " + matchedKeywords(best, seenInSubject, seenInBody) + " (score " + scores[best]
+                        + ", runner-up " + runnerUp + ")"));
+    }
+
+    private List<String> matchedKeywords(int rule, BitSet seenInSubject, BitSet seenInBody) {
+        BitSet seen = (BitSet) seenInSubject.clone();
+        seen.or(seenInBody);
+        List<String> matched = new ArrayList<>();
+        seen.stream().filter(k -> ruleOfKeyword[k] == rule).forEach(k -> matched.add(keywords.get(k)));
+        return matched;
+    }
+}
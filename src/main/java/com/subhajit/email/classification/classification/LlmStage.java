@@ -0,0 +1,48 @@
+package com.subhajit.email.classification.classification;
+
+import com.subhajit.email.classification.configuration.ClassifierProperties;
+import com.subhajit.email.classification.llm.LlmClassifier;
+import com.subhajit.email.classification.model.EmailClassification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Last tier: asks the configured {@link LlmClassifier}. Only reached when no local tier was confident enough.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class LlmStage implements ClassifierStage {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LlmStage.class);
+
+    private final ClassifierProperties properties;
+    private final LlmClassifier llmClassifier;
+
+    public LlmStage(ClassifierProperties properties, LlmClassifier llmClassifier) {
+        this.properties = properties;
+        this.llmClassifier = llmClassifier;
+    }
+
+    @Override
+    public String name() {
+        return "llm";
+    }
+
+    @Override
+    public Optional<EmailClassification> classify(ClassificationInput input) {
+        if (!properties.getLlm().isEnabled()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(llmClassifier.classify(input, properties.getRules()));
+        } catch (Exception ex) {
+            LOGGER.error("Error classifying email with LLM: {}", ex.getMessage());
+            return Optional.empty();
+        }
+    }
+}
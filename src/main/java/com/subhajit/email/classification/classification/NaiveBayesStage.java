@@ -0,0 +1,262 @@
+package com.subhajit.email.classification.classification;
+
+import com.subhajit.email.classification.configuration.ClassifierProperties;
+import com.subhajit.email.classification.model.EmailClassification;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Second tier: a multinomial naive Bayes scorer over the words of the subject and body.
+ * <p>
+ * It is seeded at startup from the rule keywords and trained from the optional training file, and keeps learning
+ * from confident answers of the LLM tier, so repetitive traffic is increasingly answered locally. The seeds only
+ * shape the word statistics; the scorer answers once enough real documents have been seen.
+ * <p>
+ * Naive Bayes posteriors are close to 1 for almost any email, because the words are treated as independent. The
+ * confidence reported is therefore measured rather than computed: whenever the LLM answers, the scorer's own guess
+ * is checked against it, and the share of correct guesses is tracked per band of the log-likelihood margin between
+ * the best and the second best class. A band has to prove itself before its guesses pass the threshold.
+ */
+@Component
+@Order(2)
+public class NaiveBayesStage implements ClassifierStage {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NaiveBayesStage.class);
+    private static final String LABEL_SEPARATOR = "\u0000";
+    private static final int MAX_TOKENS = 2000;
+    private static final int MARGIN_BANDS = 16;
+
+    private final ClassifierProperties properties;
+    private final Set<String> knownLabels = new HashSet<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, ClassStats> classes = new HashMap<>();
+    private final Map<String, Integer> vocabulary = new HashMap<>();
+    private final int[] bandGuesses = new int[MARGIN_BANDS];
+    private final int[] bandHits = new int[MARGIN_BANDS];
+    private int documents;
+    private int realDocuments;
+
+    public NaiveBayesStage(ClassifierProperties properties) {
+        this.properties = properties;
+        for (ClassifierProperties.Rule rule : properties.getRules()) {
+            knownLabels.add(label(rule.getRequestType(), rule.getSubRequestType()));
+            knownLabels.add(label(rule.getRequestType(), null));
+            train(label(rule.getRequestType(), rule.getSubRequestType()), String.join(" ", rule.getKeywords()),
+                    false);
+        }
+        loadTrainingFile(properties.getBayes().getTrainingFile());
+    }
+
+    @Override
+    public String name() {
+        return "naive-bayes";
+    }
+
+    @Override
+    public Optional<EmailClassification> classify(ClassificationInput input) {
+        if (!properties.getBayes().isEnabled()) {
+            return Optional.empty();
+        }
+        List<String> tokens = tokenize(input.subject() + " " + input.body());
+        lock.readLock().lock();
+        try {
+            if (realDocuments < properties.getBayes().getMinTrainingDocuments() || tokens.isEmpty()) {
+                return Optional.empty();
+            }
+            Guess guess = guess(tokens);
+            if (guess == null
+                    || classes.get(guess.label()).realDocuments < properties.getBayes().getMinClassDocuments()) {
+                return Optional.empty();
+            }
+            int band = guess.band();
+            // Share of confirmed guesses in the band, with one assumed hit and one assumed miss so that an
+            // untested band starts at 0.5
+            double confidence = (bandHits[band] + 1.0) / (bandGuesses[band] + 2.0);
+            String[] parts = guess.label().split(LABEL_SEPARATOR, -1);
+            return Optional.of(new EmailClassification(parts[0], StringUtils.defaultIfEmpty(parts[1], null),
+                    confidence, String.format("Naive Bayes margin %.1f; %d of %d similar guesses confirmed by the LLM,"
+                            + " trained on %d documents", guess.margin(), bandHits[band], bandGuesses[band],
+                    realDocuments)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Learns from an LLM answer that is confident and names a configured request type. Answers of the offline stub
+     * and made-up types are ignored, so they cannot teach the scorer to repeat them.
+     */
+    @Override
+    public void learn(ClassificationInput input, EmailClassification classification, String answeredBy) {
+        ClassifierProperties.Bayes bayes = properties.getBayes();
+        if (!bayes.isLearnFromLlm() || !"llm".equals(answeredBy)
+                || "stub".equals(properties.getLlm().getProvider())
+                || classification.getConfidence() < bayes.getLearnConfidence()) {
+            return;
+        }
+        String label = label(classification.getRequestType(), classification.getSubRequestType());
+        if (StringUtils.isEmpty(classification.getRequestType()) || !knownLabels.contains(label)) {
+            return;
+        }
+        List<String> tokens = tokenize(input.subject() + " " + input.body());
+        lock.writeLock().lock();
+        try {
+            Guess guess = tokens.isEmpty() ? null : guess(tokens);
+            if (guess != null) {
+                bandGuesses[guess.band()]++;
+                if (guess.label().equals(label)) {
+                    bandHits[guess.band()]++;
+                }
+            }
+            add(label, tokens, true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Scores all classes. Must be called under the lock.
+     *
+     * @return The best class and its margin over the second best, or null without classes
+     */
+    private Guess guess(List<String> tokens) {
+        String bestLabel = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        double secondScore = Double.NEGATIVE_INFINITY;
+        for (Map.Entry<String, ClassStats> entry : classes.entrySet()) {
+            double score = entry.getValue().logProbability(tokens, documents, vocabulary.size());
+            if (score > bestScore) {
+                secondScore = bestScore;
+                bestScore = score;
+                bestLabel = entry.getKey();
+            } else if (score > secondScore) {
+                secondScore = score;
+            }
+        }
+        return bestLabel == null ? null : new Guess(bestLabel, bestScore - secondScore);
+    }
+
+    private void train(String label, String text, boolean real) {
+        List<String> tokens = tokenize(text);
+        lock.writeLock().lock();
+        try {
+            add(label, tokens, real);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(String label, List<String> tokens, boolean real) {
+        ClassStats stats = classes.computeIfAbsent(label, key -> new ClassStats());
+        stats.documents++;
+        for (String token : tokens) {
+            stats.tokenCounts.merge(token, 1, Integer::sum);
+            stats.totalTokens++;
+            vocabulary.merge(token, 1, Integer::sum);
+        }
+        documents++;
+        if (real) {
+            stats.realDocuments++;
+            realDocuments++;
+        }
+    }
+
+    private void loadTrainingFile(String trainingFile) {
+        if (StringUtils.isEmpty(trainingFile)) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(Paths.get(trainingFile), StandardCharsets.UTF_8);
+             CSVParser parser = CSVFormat.DEFAULT.parse(reader)) {
+            int loaded = 0;
+            for (CSVRecord record : parser) {
+                if (record.size() >= 3) {
+                    train(label(record.get(0), record.get(1)), record.get(2), true);
+                    loaded++;
+                }
+            }
+            LOGGER.info("Trained naive Bayes classifier on {} documents from {}", loaded, trainingFile);
+        } catch (Exception ex) {
+            LOGGER.error("Error reading classifier training file {}: {}", trainingFile, ex.getMessage());
+        }
+    }
+
+    private static String label(String requestType, String subRequestType) {
+        return requestType + LABEL_SEPARATOR + Objects.toString(subRequestType, "");
+    }
+
+    /**
+     * Splits text into lower case words of letters and digits, ignoring single characters.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= text.length() && tokens.size() < MAX_TOKENS; i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else if (!token.isEmpty()) {
+                if (token.length() > 1) {
+                    tokens.add(token.toString());
+                }
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * The best class of an email and its log-likelihood margin over the second best.
+     */
+    private record Guess(String label, double margin) {
+
+        /**
+         * Bands double in width: margins below 1, below 3, below 7 and so on.
+         */
+        int band() {
+            if (Double.isInfinite(margin)) {
+                return MARGIN_BANDS - 1;
+            }
+            int band = 31 - Integer.numberOfLeadingZeros((int) Math.min(margin + 1, Integer.MAX_VALUE));
+            return Math.min(band, MARGIN_BANDS - 1);
+        }
+    }
+
+    private static class ClassStats {
+        private final Map<String, Integer> tokenCounts = new HashMap<>();
+        private int documents;
+        private int realDocuments;
+        private long totalTokens;
+
+        /**
+         * Log of prior times likelihood, with Laplace smoothing.
+         */
+        double logProbability(List<String> tokens, int totalDocuments, int vocabularySize) {
+            double logProbability = Math.log((double) documents / totalDocuments);
+            double denominator = Math.log(totalTokens + vocabularySize + 1.0);
+            for (String token : tokens) {
+                logProbability += Math.log(tokenCounts.getOrDefault(token, 0) + 1.0) - denominator;
+            }
+            return logProbability;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.subhajit.email.classification.compaction;
+
+/**
+ * Cumulative counters of the {@link TextCompactor}.
+ *
+ * @param texts           Texts compacted since startup
+ * @param originalChars   Characters before compaction
+ * @param savedChars      Characters removed in total
+ * @param quotedChars     Characters removed as quoted history
+ * @param signatureChars  Characters removed as signatures
+ * @param disclaimerChars Characters removed as disclaimers
+ * @param repeatedChars   Characters removed as repeated lines
+ */
+public record CompactionMetrics(long texts, long originalChars, long savedChars, long quotedChars,
+                                long signatureChars, long disclaimerChars, long repeatedChars) {
+}
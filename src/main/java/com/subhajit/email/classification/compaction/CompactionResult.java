@@ -0,0 +1,22 @@
+package com.subhajit.email.classification.compaction;
+
+/**
+ * Outcome of compacting one text.
+ *
+ * @param text              The compacted text
+ * @param originalChars     Length of the text before compaction
+ * @param quotedChars       Characters removed as quoted history
+ * @param signatureChars    Characters removed as signature
+ * @param disclaimerChars   Characters removed as disclaimer
+ * @param repeatedChars     Characters removed as repeated lines
+ */
+public record CompactionResult(String text, int originalChars, int quotedChars, int signatureChars,
+                               int disclaimerChars, int repeatedChars) {
+
+    /**
+     * @return Characters saved in total, including collapsed blank lines
+     */
+    public int savedChars() {
+        return originalChars - text.length();
+    }
+}
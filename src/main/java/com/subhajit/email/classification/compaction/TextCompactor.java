@@ -0,0 +1,520 @@
+package com.subhajit.email.classification.compaction;
+
+import com.subhajit.email.classification.configuration.CompactionProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Shrinks an email body to the text of the latest message before it is classified and searched for fields.
+ * <p>
+ * Removes, in this order:
+ * <ul>
+ *     <li>quoted history: everything from the first reply header ("On ... wrote:", an Outlook "From:/Sent:" block,
+ *     "-----Original Message-----") to the end, plus inline lines starting with '>';</li>
+ *     <li>disclaimer paragraphs starting with a configured prefix;</li>
+ *     <li>the signature: from a "-- " delimiter or a mobile footer, or from the last closing line when only a few
+ *     lines follow it and they read like a signature (names, titles, contact details) rather than sentences;</li>
+ *     <li>long lines repeating an earlier line, such as boilerplate pasted into every message.</li>
+ * </ul>
+ * Forwarded messages are kept, since they usually carry the actual request. The text is indexed by line once and
+ * every rule works on line offsets, so the cost is linear in the text length and the only large allocation is the
+ * output buffer.
+ */
+@Component
+public class TextCompactor implements MeterBinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TextCompactor.class);
+
+    private static final byte KEEP = 0;
+    private static final byte QUOTED = 1;
+    private static final byte SIGNATURE = 2;
+    private static final byte DISCLAIMER = 3;
+    private static final byte REPEATED = 4;
+
+    private static final int HEADER_LOOKAHEAD = 6;
+    private static final int MAX_SIGNATURE_LINE_LENGTH = 80;
+    private static final int MAX_SIGNATURE_LINE_WORDS = 8;
+
+    private final CompactionProperties properties;
+    private final Set<String> closings;
+    private final String[] signaturePrefixes;
+    private final String[] disclaimerPrefixes;
+
+    private final AtomicLong texts = new AtomicLong();
+    private final AtomicLong originalChars = new AtomicLong();
+    private final AtomicLong savedChars = new AtomicLong();
+    private final AtomicLong quotedChars = new AtomicLong();
+    private final AtomicLong signatureChars = new AtomicLong();
+    private final AtomicLong disclaimerChars = new AtomicLong();
+    private final AtomicLong repeatedChars = new AtomicLong();
+
+    public TextCompactor(CompactionProperties properties) {
+        this.properties = properties;
+        this.closings = new HashSet<>();
+        properties.getClosings().forEach(closing -> closings.add(closing.trim().toLowerCase(Locale.ROOT)));
+        this.signaturePrefixes = lowerCase(properties.getSignaturePrefixes());
+        this.disclaimerPrefixes = lowerCase(properties.getDisclaimerPrefixes());
+    }
+
+    /**
+     * Compacts a text.
+     *
+     * @param text The email body
+     * @return The compacted text and the number of characters removed by each rule
+     */
+    public CompactionResult compact(String text) {
+        if (text == null || text.isEmpty() || !properties.isEnabled()) {
+            String unchanged = text == null ? "" : text;
+            return new CompactionResult(unchanged, unchanged.length(), 0, 0, 0, 0);
+        }
+        Lines lines = Lines.of(text);
+        byte[] reasons = new byte[lines.count];
+
+        int historyStart = lines.count;
+        if (properties.isStripQuotedReplies()) {
+            historyStart = markQuoted(text, lines, reasons);
+        }
+        if (properties.isStripDisclaimers()) {
+            markDisclaimers(text, lines, reasons, historyStart);
+        }
+        if (properties.isStripSignatures()) {
+            markSignature(text, lines, reasons, historyStart);
+        }
+        if (properties.isStripRepeatedLines()) {
+            markRepeated(text, lines, reasons);
+        }
+
+        CompactionResult result = write(text, lines, reasons);
+        record(result);
+        return result;
+    }
+
+    public CompactionMetrics metrics() {
+        return new CompactionMetrics(texts.get(), originalChars.get(), savedChars.get(), quotedChars.get(),
+                signatureChars.get(), disclaimerChars.get(), repeatedChars.get());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("email.compaction.texts", this, c -> c.metrics().texts())
+                .description("Email bodies compacted")
+                .register(registry);
+        FunctionCounter.builder("email.compaction.chars.original", this, c -> c.metrics().originalChars())
+                .description("Characters of email bodies before compaction")
+                .baseUnit("characters")
+                .register(registry);
+        Map<String, ToDoubleFunction<CompactionMetrics>> saved = Map.of(
+                "quoted", CompactionMetrics::quotedChars,
+                "signature", CompactionMetrics::signatureChars,
+                "disclaimer", CompactionMetrics::disclaimerChars,
+                "repeated", CompactionMetrics::repeatedChars);
+        saved.forEach((rule, value) -> FunctionCounter.builder("email.compaction.chars.saved", this,
+                        c -> value.applyAsDouble(c.metrics()))
+                .description("Characters removed from email bodies before classification, by rule")
+                .baseUnit("characters")
+                .tag("rule", rule)
+                .register(registry));
+    }
+
+    /**
+     * Marks the quoted history and inline '>' lines.
+     *
+     * @return Index of the first line of the quoted history, or the line count if there is none
+     */
+    private int markQuoted(String text, Lines lines, byte[] reasons) {
+        int contentChars = 0;
+        int historyStart = lines.count;
+        for (int i = 0; i < lines.count; i++) {
+            if (contentChars >= properties.getMinReplyChars() && isReplyHeader(text, lines, i)) {
+                historyStart = i;
+                break;
+            }
+            int start = lines.firstNonBlank(text, i);
+            if (start < lines.ends[i] && text.charAt(start) != '>') {
+                contentChars += lines.ends[i] - start;
+            }
+        }
+        Arrays.fill(reasons, historyStart, lines.count, QUOTED);
+
+        // Inline quoting; kept when the email has nothing else to say
+        boolean hasOwnText = false;
+        for (int i = 0; i < historyStart && !hasOwnText; i++) {
+            int start = lines.firstNonBlank(text, i);
+            hasOwnText = start < lines.ends[i] && text.charAt(start) != '>';
+        }
+        if (hasOwnText) {
+            for (int i = 0; i < historyStart; i++) {
+                int start = lines.firstNonBlank(text, i);
+                if (start < lines.ends[i] && text.charAt(start) == '>') {
+                    reasons[i] = QUOTED;
+                }
+            }
+        }
+        return historyStart;
+    }
+
+    private boolean isReplyHeader(String text, Lines lines, int i) {
+        int start = lines.firstNonBlank(text, i);
+        int end = lines.lastNonBlank(text, i);
+        if (start >= end) {
+            return false;
+        }
+        if (containsIgnoreCase(text, start, end, "original message") && text.charAt(start) == '-') {
+            return true;
+        }
+        // "On Mon, 3 Mar 2025 at 10:00, Jane <jane@example.com> wrote:", possibly wrapped onto a second line
+        if (startsWithIgnoreCase(text, start, end, "on ")) {
+            if (endsWithIgnoreCase(text, start, end, "wrote:")) {
+                return true;
+            }
+            if (i + 1 < lines.count && endsWithIgnoreCase(text, lines.firstNonBlank(text, i + 1),
+                    lines.lastNonBlank(text, i + 1), "wrote:")) {
+                return true;
+            }
+        }
+        // Outlook: a "From:" line followed by "Sent:" or "Date:" and by "To:" or "Subject:", optionally after a line
+        // of underscores; not when it belongs to a forwarded message
+        if (startsWithIgnoreCase(text, start, end, "from:") && !isAfterForwardMarker(text, lines, i)) {
+            boolean sent = false;
+            boolean recipient = false;
+            for (int j = i + 1; j < Math.min(lines.count, i + HEADER_LOOKAHEAD); j++) {
+                int s = lines.firstNonBlank(text, j);
+                int e = lines.ends[j];
+                sent |= startsWithIgnoreCase(text, s, e, "sent:") || startsWithIgnoreCase(text, s, e, "date:");
+                recipient |= startsWithIgnoreCase(text, s, e, "to:") || startsWithIgnoreCase(text, s, e, "subject:");
+            }
+            return sent && recipient;
+        }
+        return false;
+    }
+
+    private boolean isAfterForwardMarker(String text, Lines lines, int i) {
+        for (int j = i - 1; j >= 0; j--) {
+            int start = lines.firstNonBlank(text, j);
+            int end = lines.lastNonBlank(text, j);
+            if (start < end) {
+                return containsIgnoreCase(text, start, end, "forwarded message");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks each paragraph starting with a disclaimer prefix, up to the next blank line.
+     */
+    private void markDisclaimers(String text, Lines lines, byte[] reasons, int limit) {
+        boolean inDisclaimer = false;
+        for (int i = 0; i < limit; i++) {
+            int start = lines.firstNonBlank(text, i);
+            int end = lines.ends[i];
+            if (start >= end) {
+                inDisclaimer = false;
+                continue;
+            }
+            if (!inDisclaimer && reasons[i] == KEEP) {
+                inDisclaimer = startsWithAny(text, start, end, disclaimerPrefixes);
+            }
+            if (inDisclaimer && reasons[i] == KEEP) {
+                reasons[i] = DISCLAIMER;
+            }
+        }
+    }
+
+    /**
+     * Marks the signature: from the first "-- " delimiter, or else the last closing line or signature prefix, to the
+     * end of the message, provided only a few lines follow. A closing line only counts when everything below it
+     * reads like a signature, so "Thanks!" followed by a question is kept.
+     */
+    private void markSignature(String text, Lines lines, byte[] reasons, int limit) {
+        int delimiter = -1;
+        int closing = -1;
+        boolean closingIsPrefix = false;
+        for (int i = 0; i < limit; i++) {
+            if (reasons[i] != KEEP) {
+                continue;
+            }
+            int start = lines.firstNonBlank(text, i);
+            int end = lines.lastNonBlank(text, i);
+            if (start >= end) {
+                continue;
+            }
+            if (delimiter < 0 && end - start == 2 && text.charAt(start) == '-' && text.charAt(start + 1) == '-') {
+                delimiter = i;
+            } else if (startsWithAny(text, start, end, signaturePrefixes)) {
+                closing = i;
+                closingIsPrefix = true;
+            } else if (isClosing(text, start, end)) {
+                closing = i;
+                closingIsPrefix = false;
+            }
+        }
+        int signatureStart = delimiter >= 0 ? delimiter : closing;
+        if (signatureStart < 0) {
+            return;
+        }
+        boolean checkLines = delimiter < 0 && !closingIsPrefix;
+        int following = 0;
+        for (int i = signatureStart + 1; i < limit; i++) {
+            int start = lines.firstNonBlank(text, i);
+            if (reasons[i] != KEEP || start >= lines.ends[i]) {
+                continue;
+            }
+            following++;
+            if (checkLines && !isSignatureLine(text, start, lines.lastNonBlank(text, i))) {
+                return;
+            }
+        }
+        if (following > properties.getMaxSignatureLines()) {
+            return;
+        }
+        for (int i = signatureStart; i < limit; i++) {
+            if (reasons[i] == KEEP) {
+                reasons[i] = SIGNATURE;
+            }
+        }
+    }
+
+    private boolean isClosing(String text, int start, int end) {
+        while (end > start && ",.!:;-".indexOf(text.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        // Closings are short; skip the lookup for ordinary lines
+        return end - start <= 24 && closings.contains(text.substring(start, end).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Whether a line below a closing reads like part of a signature: a name, a title, a company or contact details.
+     * Contact details (an address, a URL, a phone number) always do; otherwise the line must be short and must not
+     * read like a sentence, i.e. contain several lower case words, or one and end in sentence punctuation.
+     */
+    private static boolean isSignatureLine(String text, int start, int end) {
+        if (end - start > MAX_SIGNATURE_LINE_LENGTH) {
+            return false;
+        }
+        int words = 0;
+        int lowerCaseWords = 0;
+        int digits = 0;
+        boolean inWord = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '@' || c == ':' && i + 2 < end && text.charAt(i + 1) == '/' && text.charAt(i + 2) == '/') {
+                return true;
+            }
+            if (Character.isDigit(c)) {
+                digits++;
+            }
+            if (Character.isLetter(c)) {
+                if (!inWord) {
+                    words++;
+                    // Short words such as "of" and "and" appear in titles too
+                    if (Character.isLowerCase(c) && wordLength(text, i, end) > 3) {
+                        lowerCaseWords++;
+                    }
+                }
+                inWord = true;
+            } else if (Character.isWhitespace(c)) {
+                inWord = false;
+            }
+        }
+        if (digits >= 5 || startsWithIgnoreCase(text, start, end, "www.")) {
+            return true;
+        }
+        // A company such as "Example Bank N.A." ends in a period too, but has no lower case words
+        char last = text.charAt(end - 1);
+        boolean sentenceEnd = last == '.' || last == '?' || last == '!';
+        return words <= MAX_SIGNATURE_LINE_WORDS && lowerCaseWords < (sentenceEnd ? 1 : 2);
+    }
+
+    private static int wordLength(String text, int start, int end) {
+        int i = start;
+        while (i < end && Character.isLetter(text.charAt(i))) {
+            i++;
+        }
+        return i - start;
+    }
+
+    /**
+     * Marks long lines that repeat an earlier line. Lines are looked up by a 64-bit hash of their trimmed content
+     * and then compared character by character, so a hash collision never drops a line.
+     */
+    private void markRepeated(String text, Lines lines, byte[] reasons) {
+        Map<Long, int[]> seen = new HashMap<>();
+        for (int i = 0; i < lines.count; i++) {
+            if (reasons[i] != KEEP) {
+                continue;
+            }
+            int start = lines.firstNonBlank(text, i);
+            int end = lines.lastNonBlank(text, i);
+            if (end - start < properties.getMinRepeatedLineLength()) {
+                continue;
+            }
+            long hash = hash(text, start, end);
+            int[] earlier = seen.get(hash);
+            if (earlier == null) {
+                seen.put(hash, new int[]{i});
+            } else if (repeatsAny(text, lines, earlier, start, end)) {
+                reasons[i] = REPEATED;
+            } else {
+                // A different line with the same hash
+                int[] grown = Arrays.copyOf(earlier, earlier.length + 1);
+                grown[earlier.length] = i;
+                seen.put(hash, grown);
+            }
+        }
+    }
+
+    private static boolean repeatsAny(String text, Lines lines, int[] earlier, int start, int end) {
+        for (int line : earlier) {
+            int otherStart = lines.firstNonBlank(text, line);
+            int otherEnd = lines.lastNonBlank(text, line);
+            if (otherEnd - otherStart == end - start
+                    && text.regionMatches(true, start, text, otherStart, end - start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies the kept lines into one buffer, collapsing runs of blank lines.
+     */
+    private static CompactionResult write(String text, Lines lines, byte[] reasons) {
+        int[] removed = new int[REPEATED + 1];
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean pendingBlank = false;
+        for (int i = 0; i < lines.count; i++) {
+            int length = lines.ends[i] - lines.starts[i];
+            if (reasons[i] != KEEP) {
+                removed[reasons[i]] += length + 1;
+                continue;
+            }
+            if (lines.firstNonBlank(text, i) >= lines.ends[i]) {
+                pendingBlank = sb.length() > 0;
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(pendingBlank ? "\n\n" : "\n");
+            }
+            pendingBlank = false;
+            sb.append(text, lines.starts[i], lines.lastNonBlank(text, i));
+        }
+        return new CompactionResult(sb.toString(), text.length(), removed[QUOTED], removed[SIGNATURE],
+                removed[DISCLAIMER], removed[REPEATED]);
+    }
+
+    private void record(CompactionResult result) {
+        texts.incrementAndGet();
+        originalChars.addAndGet(result.originalChars());
+        savedChars.addAndGet(result.savedChars());
+        quotedChars.addAndGet(result.quotedChars());
+        signatureChars.addAndGet(result.signatureChars());
+        disclaimerChars.addAndGet(result.disclaimerChars());
+        repeatedChars.addAndGet(result.repeatedChars());
+        LOGGER.debug("Compacted email body from {} to {} chars (quoted {}, signature {}, disclaimer {}, repeated {})",
+                result.originalChars(), result.text().length(), result.quotedChars(), result.signatureChars(),
+                result.disclaimerChars(), result.repeatedChars());
+    }
+
+    private static long hash(String text, int start, int end) {
+        long h = 1125899906842597L;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + Character.toLowerCase(text.charAt(i));
+        }
+        return h;
+    }
+
+    private static boolean startsWithAny(String text, int start, int end, String[] prefixes) {
+        for (String prefix : prefixes) {
+            if (startsWithIgnoreCase(text, start, end, prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWithIgnoreCase(String text, int start, int end, String prefix) {
+        return end - start >= prefix.length() && text.regionMatches(true, start, prefix, 0, prefix.length());
+    }
+
+    private static boolean endsWithIgnoreCase(String text, int start, int end, String suffix) {
+        return end - start >= suffix.length()
+                && text.regionMatches(true, end - suffix.length(), suffix, 0, suffix.length());
+    }
+
+    private static boolean containsIgnoreCase(String text, int start, int end, String needle) {
+        for (int i = start; i + needle.length() <= end; i++) {
+            if (text.regionMatches(true, i, needle, 0, needle.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String[] lowerCase(List<String> values) {
+        return values.stream().map(value -> value.trim().toLowerCase(Locale.ROOT)).toArray(String[]::new);
+    }
+
+    /**
+     * Start and end offsets of every line, without the line terminator.
+     */
+    private static final class Lines {
+
+        private int[] starts = new int[64];
+        private int[] ends = new int[64];
+        private int count;
+
+        static Lines of(String text) {
+            Lines lines = new Lines();
+            int start = 0;
+            int length = text.length();
+            for (int i = 0; i <= length; i++) {
+                if (i == length || text.charAt(i) == '\n') {
+                    int end = i > start && text.charAt(i - 1) == '\r' ? i - 1 : i;
+                    lines.add(start, end);
+                    start = i + 1;
+                }
+            }
+            return lines;
+        }
+
+        private void add(int start, int end) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+        }
+
+        int firstNonBlank(String text, int line) {
+            int i = starts[line];
+            while (i < ends[line] && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        int lastNonBlank(String text, int line) {
+            int i = ends[line];
+            while (i > starts[line] && Character.isWhitespace(text.charAt(i - 1))) {
+                i--;
+            }
+            return i;
+        }
+    }
+}
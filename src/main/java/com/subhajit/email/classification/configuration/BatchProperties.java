@@ -0,0 +1,34 @@
+package com.subhajit.email.classification.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings for batch ingestion of many emails in one request.
+ */
+@Data
+@ConfigurationProperties(prefix = "email.classification.batch")
+public class BatchProperties {
+
+    /**
+     * Number of emails of one batch processed at the same time.
+     */
+    private int parallelism = 4;
+
+    /**
+     * Number of emails waiting for a worker, across all batch requests. The workers are shared by all batches; once
+     * the queue is full a batch stops reading its upload until an email finishes.
+     */
+    private int queueCapacity = 16;
+
+    /**
+     * Maximum number of emails read from one request, across all files, archives and mailboxes.
+     */
+    private int maxItems = 100_000;
+
+    /**
+     * Maximum size of a single email inside an archive or mailbox.
+     */
+    private DataSize maxItemSize = DataSize.ofMegabytes(50);
+}
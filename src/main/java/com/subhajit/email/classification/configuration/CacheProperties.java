@@ -0,0 +1,56 @@
+package com.subhajit.email.classification.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings for the content-addressed cache of extracted attachment text.
+ */
+@Data
+@ConfigurationProperties(prefix = "email.classification.cache")
+public class CacheProperties {
+
+    /**
+     * Whether extracted text is cached at all.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Upper bound for the total number of characters held in the in-heap tier.
+     */
+    private long maxHeapChars = 32L * 1024 * 1024;
+
+    /**
+     * Texts longer than this are not kept in the in-heap tier, only on disk.
+     */
+    private int maxEntryChars = 4 * 1024 * 1024;
+
+    /**
+     * Whether extracted text is also written to {@link #diskDirectory} so it survives restarts.
+     */
+    private boolean diskEnabled = false;
+
+    /**
+     * Directory of the on-disk tier.
+     */
+    private String diskDirectory = System.getProperty("java.io.tmpdir") + "/email-classification-cache";
+
+    /**
+     * Upper bound for the size of the on-disk tier. Least recently used entries are deleted once a sweep finds the
+     * tier over this size.
+     */
+    private DataSize maxDiskSize = DataSize.ofGigabytes(1);
+
+    /**
+     * Entries on disk not used for this long are treated as misses and deleted.
+     */
+    private Duration maxDiskAge = Duration.ofDays(7);
+
+    /**
+     * Time between sweeps of the on-disk tier, which enforce {@link #maxDiskSize} and {@link #maxDiskAge}.
+     */
+    private Duration diskSweepInterval = Duration.ofMinutes(10);
+}
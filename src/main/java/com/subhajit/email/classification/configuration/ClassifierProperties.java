@@ -0,0 +1,167 @@
+package com.subhajit.email.classification.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings for the classifier cascade: keyword rules, the local naive Bayes scorer and the LLM.
+ */
+@Data
+@ConfigurationProperties(prefix = "email.classification.classifier")
+public class ClassifierProperties {
+
+    /**
+     * A local tier answers on its own when its confidence reaches this value; otherwise the next tier is asked.
+     */
+    private double confidenceThreshold = 0.8;
+
+    /**
+     * Request type rules. Their keywords drive the keyword tier and seed the naive Bayes tier, and their types are
+     * the labels the LLM may choose from.
+     */
+    private List<Rule> rules = new ArrayList<>();
+
+    private Keywords keywords = new Keywords();
+
+    private Bayes bayes = new Bayes();
+
+    private Llm llm = new Llm();
+
+    @Data
+    public static class Rule {
+        private String requestType;
+        private String subRequestType;
+        private List<String> keywords = new ArrayList<>();
+    }
+
+    @Data
+    public static class Keywords {
+        private boolean enabled = true;
+
+        /**
+         * Weight of a keyword found in the subject; keywords in the body count once.
+         */
+        private int subjectWeight = 2;
+    }
+
+    @Data
+    public static class Bayes {
+        private boolean enabled = true;
+
+        /**
+         * Optional CSV file with lines of {@code requestType,subRequestType,text} used as training data.
+         */
+        private String trainingFile;
+
+        /**
+         * Whether confident LLM answers are added to the training data at runtime.
+         */
+        private boolean learnFromLlm = true;
+
+        /**
+         * Lowest confidence of an LLM answer that is learned from. Answers of the {@code stub} provider and
+         * request types that are not configured as rules are never learned from.
+         */
+        private double learnConfidence = 0.9;
+
+        /**
+         * Minimum number of training documents before the scorer answers at all. The rule keyword seeds do not
+         * count.
+         */
+        private int minTrainingDocuments = 20;
+
+        /**
+         * Minimum number of training documents of the predicted class, again without the seed.
+         */
+        private int minClassDocuments = 3;
+    }
+
+    @Data
+    public static class Llm {
+        private boolean enabled = true;
+
+        /**
+         * {@code gemini} for the Google GenAI model, {@code http} for a model server speaking the simple JSON
+         * protocol of {@code HttpLlmTransport}, {@code stub} for an offline stand-in that bypasses the gateway.
+         */
+        private String provider = "gemini";
+
+        private String model = "gemini-2.0-flash";
+
+        private String apiKey;
+
+        /**
+         * Endpoint of the {@code http} provider.
+         */
+        private String url = "http://localhost:8089/generate";
+
+        /**
+         * Connect and read timeout of the {@code http} provider.
+         */
+        private Duration httpTimeout = Duration.ofSeconds(30);
+
+        /**
+         * Estimated token budget for one email's subject, body and attachments. Text beyond it is compacted and
+         * trimmed before the email is sent. Tokens are estimated as four characters each.
+         */
+        private int maxInputTokens = 3000;
+
+        /**
+         * Up to this many emails waiting for the model are sent together in one prompt.
+         */
+        private int batchSize = 8;
+
+        /**
+         * Estimated token limit of a batched prompt. A batch is closed early when the next email would exceed it.
+         */
+        private int maxBatchTokens = 16000;
+
+        /**
+         * How long the first email of a batch waits for others to join it.
+         */
+        private Duration batchWindow = Duration.ofMillis(25);
+
+        /**
+         * Whether identical emails in flight at the same time share one model call.
+         */
+        private boolean coalesce = true;
+
+        /**
+         * Starting, lowest and highest number of concurrent model calls. The limit grows by one per round of
+         * successful calls and halves when the model throttles.
+         */
+        private int initialConcurrency = 4;
+
+        private int minConcurrency = 1;
+
+        private int maxConcurrency = 32;
+
+        /**
+         * Attempts per model call, including the first one.
+         */
+        private int maxAttempts = 4;
+
+        /**
+         * Backoff before the first retry; it doubles per attempt up to {@code maxBackoff}, with full jitter.
+         */
+        private Duration initialBackoff = Duration.ofMillis(500);
+
+        private Duration maxBackoff = Duration.ofSeconds(20);
+
+        /**
+         * How long a caller waits for its classification, including queueing, batching and retries.
+         */
+        private Duration requestTimeout = Duration.ofSeconds(90);
+
+        /**
+         * Answer of the stub provider.
+         */
+        private String stubRequestType = "Unclassified";
+
+        private String stubSubRequestType;
+    }
+}
@@ -0,0 +1,64 @@
+package com.subhajit.email.classification.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings for removing quoted history, signatures, disclaimers and repeated boilerplate from email bodies before
+ * classification and field extraction.
+ */
+@Data
+@ConfigurationProperties(prefix = "email.classification.compaction")
+public class CompactionProperties {
+
+    private boolean enabled = true;
+
+    private boolean stripQuotedReplies = true;
+
+    private boolean stripSignatures = true;
+
+    private boolean stripDisclaimers = true;
+
+    private boolean stripRepeatedLines = true;
+
+    /**
+     * Quoted history is only removed when the new text above it has at least this many non-blank characters;
+     * a short "see below" keeps the history it refers to.
+     */
+    private int minReplyChars = 40;
+
+    /**
+     * A closing line or "-- " delimiter starts a signature only when at most this many non-blank lines follow it.
+     * Below a closing line, those lines must also look like a signature rather than sentences.
+     */
+    private int maxSignatureLines = 8;
+
+    /**
+     * Lines at least this long are dropped when they repeat an earlier line.
+     */
+    private int minRepeatedLineLength = 40;
+
+    /**
+     * Lines that end a message and start its signature, matched case-insensitively against the whole line without
+     * trailing punctuation.
+     */
+    private List<String> closings = new ArrayList<>(List.of("regards", "best regards", "kind regards",
+            "warm regards", "best", "thanks", "thank you", "many thanks", "thanks and regards", "sincerely",
+            "yours sincerely", "cheers"));
+
+    /**
+     * Line prefixes that start a signature, e.g. mobile client footers.
+     */
+    private List<String> signaturePrefixes = new ArrayList<>(List.of("sent from my", "get outlook for"));
+
+    /**
+     * Line prefixes that start a disclaimer paragraph, matched case-insensitively.
+     */
+    private List<String> disclaimerPrefixes = new ArrayList<>(List.of("disclaimer", "confidentiality notice",
+            "this email and any attachments", "this e-mail and any attachments", "this message is confidential",
+            "this message and any attachments", "this communication is confidential",
+            "the information contained in this"));
+}
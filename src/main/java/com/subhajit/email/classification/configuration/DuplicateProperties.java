@@ -0,0 +1,76 @@
+package com.subhajit.email.classification.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for exact and near-duplicate email detection.
+ */
+@Data
+@ConfigurationProperties(prefix = "email.classification.duplicate")
+public class DuplicateProperties {
+
+    /**
+     * Whether incoming emails are checked against previously seen ones.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Estimated Jaccard similarity of word shingles at or above which two emails are near-duplicates.
+     */
+    private double similarityThreshold = 0.85;
+
+    /**
+     * Number of words per shingle.
+     */
+    private int shingleSize = 3;
+
+    /**
+     * Number of LSH bands. The MinHash signature has {@code bands * rowsPerBand} values.
+     */
+    private int bands = 16;
+
+    /**
+     * Number of MinHash values per LSH band.
+     */
+    private int rowsPerBand = 4;
+
+    /**
+     * Only emails seen within this window are considered.
+     */
+    private Duration window = Duration.ofDays(30);
+
+    /**
+     * Upper bound on the number of emails kept in the index; the oldest are evicted first. Each entry takes about
+     * 360 bytes of heap with the default 16 bands of 4 rows, so one million entries take about 350 MB.
+     */
+    private int maxEntries = 1_000_000;
+
+    /**
+     * Most entries of one LSH bucket, newest first, that a lookup compares against.
+     */
+    private int maxBucketCandidates = 64;
+
+    /**
+     * Most entries a lookup compares against across all buckets.
+     */
+    private int maxCandidates = 256;
+
+    /**
+     * Only the first characters of the normalized text are fingerprinted.
+     */
+    private int maxFingerprintChars = 200_000;
+
+    /**
+     * Whether fingerprints are stored in the database and reloaded at startup.
+     */
+    private boolean persist = true;
+
+    /**
+     * Fingerprints waiting to be written to the database. When the writer falls this far behind, further
+     * fingerprints are only kept in memory.
+     */
+    private int writeQueueCapacity = 10_000;
+}
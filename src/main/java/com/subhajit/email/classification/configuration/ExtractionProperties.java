@@ -0,0 +1,65 @@
+package com.subhajit.email.classification.configuration;
+
+import com.subhajit.email.classification.extraction.AttachmentCategory;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the concurrent attachment extraction engine.
+ */
+@Data
+@ConfigurationProperties(prefix = "email.classification.extraction")
+public class ExtractionProperties {
+
+    /**
+     * Maximum time a single attachment may spend being parsed once it has started.
+     */
+    private Duration attachmentTimeout = Duration.ofSeconds(60);
+
+    /**
+     * Maximum time a single attachment may wait in its category queue before it is abandoned.
+     */
+    private Duration queueTimeout = Duration.ofSeconds(120);
+
+    /**
+     * Number of attachments each category may hold in its queue. Attachments arriving at a full queue are rejected
+     * with a "busy" error entry rather than run on the request thread.
+     */
+    private int queueCapacity = 64;
+
+    /**
+     * Worker threads per attachment category. The defaults scale with the number of processors; set them only to
+     * pin a size.
+     */
+    private Concurrency concurrency = new Concurrency();
+
+    @Data
+    public static class Concurrency {
+        private int image = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        private int pdf = Runtime.getRuntime().availableProcessors();
+        private int spreadsheet = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        private int document = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        private int text = 2;
+        private int other = 2;
+
+        /**
+         * Returns the configured number of worker threads for a category.
+         *
+         * @param category The attachment category
+         * @return Number of worker threads, at least one
+         */
+        public int forCategory(AttachmentCategory category) {
+            int threads = switch (category) {
+                case IMAGE -> image;
+                case PDF -> pdf;
+                case SPREADSHEET -> spreadsheet;
+                case DOCUMENT -> document;
+                case TEXT -> text;
+                case OTHER -> other;
+            };
+            return Math.max(1, threads);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.subhajit.email.classification.configuration;
+
+import com.subhajit.email.classification.field.FieldSource;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings for extracting key fields such as amounts, dates and deal names from the email text.
+ */
+@Data
+@ConfigurationProperties(prefix = "email.classification.fields")
+public class FieldExtractionProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Where a field value is taken from when several sources contain it, most trusted first.
+     */
+    private List<FieldSource> sourcePriority = new ArrayList<>(List.of(FieldSource.BODY, FieldSource.SUBJECT,
+            FieldSource.ATTACHMENT));
+
+    /**
+     * Maximum number of characters after a label searched for its value.
+     */
+    private int valueWindow = 120;
+
+    private List<Field> definitions = new ArrayList<>();
+
+    @Data
+    public static class Field {
+
+        /**
+         * Key of the extracted value in the response.
+         */
+        private String name;
+
+        /**
+         * Labels announcing the value, matched as whole words, case-insensitively.
+         */
+        private List<String> labels = new ArrayList<>();
+
+        /**
+         * Regular expression of the value, matched right after a label and an optional separator.
+         */
+        private String pattern;
+
+        /**
+         * Whether a separator such as ':' is required between the label and the value. Useful for free-text
+         * values that would otherwise match ordinary prose after the label.
+         */
+        private boolean requireSeparator;
+
+        /**
+         * Whether every distinct value from the chosen source is returned instead of the first one.
+         */
+        private boolean multiple;
+
+        /**
+         * Overrides the global source priority for this field.
+         */
+        private List<FieldSource> sourcePriority = new ArrayList<>();
+    }
+}
@@ -0,0 +1,27 @@
+package com.subhajit.email.classification.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for the per-stage pipeline metrics.
+ */
+@Data
+@ConfigurationProperties(prefix = "email.classification.instrumentation")
+public class InstrumentationProperties {
+
+    /**
+     * Whether a {@code Server-Timing} header with the duration of each stage is added to synchronous responses.
+     */
+    private boolean timingHeaders = false;
+
+    /**
+     * Whether stage and attachment timers publish histogram buckets, for percentiles across instances.
+     */
+    private boolean histograms = true;
+
+    /**
+     * Maximum number of distinct MIME types used as metric tags; further types are counted as {@code other}.
+     */
+    private int maxMimeTypeTags = 64;
+}
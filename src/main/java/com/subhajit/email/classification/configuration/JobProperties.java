@@ -0,0 +1,46 @@
+package com.subhajit.email.classification.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings for asynchronous email processing jobs.
+ */
+@Data
+@ConfigurationProperties(prefix = "email.classification.jobs")
+public class JobProperties {
+
+    /**
+     * Number of jobs processed at the same time.
+     */
+    private int workers = 4;
+
+    /**
+     * Whether workers run on virtual threads.
+     */
+    private boolean virtualThreads = true;
+
+    /**
+     * Maximum number of queued jobs. Submissions beyond it are rejected with 429.
+     */
+    private int queueCapacity = 200;
+
+    /**
+     * Total size of the queued and running emails held in heap. Emails submitted beyond it wait in spill files,
+     * whatever their size, so a full queue of emails just under the spill threshold cannot exhaust the heap.
+     */
+    private DataSize maxQueuedHeap = DataSize.ofMegabytes(64);
+
+    /**
+     * How long finished jobs and their results are kept.
+     */
+    private Duration resultTtl = Duration.ofHours(1);
+
+    /**
+     * Maximum lifetime of a Server-Sent Events subscription.
+     */
+    private Duration sseTimeout = Duration.ofMinutes(10);
+}
@@ -0,0 +1,126 @@
+package com.subhajit.email.classification.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings for ingesting emails by polling IMAP folders.
+ * <p>
+ * To try it against an embedded server such as GreenMail, use {@code protocol: imap}, the server's port and its
+ * test user; for a self-signed IMAPS server set {@code ssl-trust} to its host name.
+ */
+@Data
+@ConfigurationProperties(prefix = "email.classification.mailbox")
+public class MailboxProperties {
+
+    /**
+     * Whether the configured folders are polled.
+     */
+    private boolean enabled = false;
+
+    /**
+     * {@code imap} or {@code imaps}.
+     */
+    private String protocol = "imaps";
+
+    private String host = "localhost";
+
+    /**
+     * Server port, or -1 for the protocol default.
+     */
+    private int port = -1;
+
+    private String username;
+
+    private String password;
+
+    /**
+     * Folders to poll.
+     */
+    private List<String> folders = new ArrayList<>(List.of("INBOX"));
+
+    /**
+     * Delay between the end of one poll and the start of the next.
+     */
+    private Duration pollInterval = Duration.ofSeconds(60);
+
+    /**
+     * Number of server connections fetching and processing messages at the same time. This is also the number of
+     * messages in flight, as each connection processes the message it fetched before fetching the next one.
+     */
+    private int connections = 4;
+
+    /**
+     * Maximum number of new messages taken from a folder per poll. A larger backlog is worked off in further polls
+     * that start immediately, so the work queued at any time stays bounded.
+     */
+    private int maxMessagesPerPoll = 500;
+
+    /**
+     * Number of consecutive UIDs fetched by one connection before it picks the next range.
+     */
+    private int fetchBatchSize = 25;
+
+    /**
+     * Messages larger than this are skipped.
+     */
+    private DataSize maxMessageSize = DataSize.ofMegabytes(100);
+
+    /**
+     * Which messages to process when a folder has no checkpoint, or its UIDVALIDITY changed.
+     */
+    private InitialSync initialSync = InitialSync.ALL;
+
+    /**
+     * Whether processed messages are flagged as seen. When false folders are opened read-only.
+     */
+    private boolean markSeen = false;
+
+    private Duration connectionTimeout = Duration.ofSeconds(30);
+
+    private Duration readTimeout = Duration.ofMinutes(2);
+
+    /**
+     * Size of each partial fetch when streaming message parts from the server.
+     */
+    private DataSize fetchSize = DataSize.ofMegabytes(1);
+
+    /**
+     * Hosts whose certificates are trusted without validation, e.g. {@code localhost} for a test server.
+     */
+    private String sslTrust;
+
+    /**
+     * How long shutdown waits for messages being processed.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Whether polling may start when checkpoints go to an in-memory database. They are lost on restart, so every
+     * restart synchronizes the folders again as configured by {@code initial-sync}.
+     */
+    private boolean allowVolatileCheckpoints = false;
+
+    /**
+     * Further Jakarta Mail session properties, e.g. {@code mail.imaps.ssl.protocols}.
+     */
+    private Map<String, String> sessionProperties = new HashMap<>();
+
+    public enum InitialSync {
+        /**
+         * Process every message already in the folder.
+         */
+        ALL,
+        /**
+         * Only process messages that arrive from now on.
+         */
+        NEW
+    }
+}
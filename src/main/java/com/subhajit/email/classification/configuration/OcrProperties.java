@@ -0,0 +1,110 @@
+package com.subhajit.email.classification.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the pool of Tesseract OCR workers.
+ */
+@Data
+@ConfigurationProperties(prefix = "email.classification.ocr")
+public class OcrProperties {
+
+    /**
+     * Number of Tesseract engines kept loaded. Each engine handles one image at a time.
+     */
+    private int poolSize = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    /**
+     * Maximum number of callers allowed to wait for a free engine. Further callers are rejected immediately.
+     */
+    private int queueCapacity = 32;
+
+    /**
+     * Maximum time a caller waits for a free engine.
+     */
+    private Duration acquireTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Whether all engines are created and loaded with the language data at startup.
+     */
+    private boolean prewarm = true;
+
+    /**
+     * Tesseract language(s), e.g. {@code eng} or {@code eng+deu}.
+     */
+    private String language = "eng";
+
+    /**
+     * Location of the tessdata directory. When empty, {@code TESSDATA_PREFIX} or the OS default is used.
+     */
+    private String dataPath;
+
+    private Preprocessing preprocessing = new Preprocessing();
+
+    /**
+     * Filtering and clean-up of email images before they reach Tesseract.
+     */
+    @Data
+    public static class Preprocessing {
+
+        private boolean enabled = true;
+
+        /**
+         * Images narrower, lower or with fewer pixels than this are skipped, e.g. tracking pixels and icons.
+         */
+        private int minWidth = 32;
+        private int minHeight = 16;
+        private long minPixels = 4096;
+
+        /**
+         * Images whose grey-level entropy in bits is below this are skipped as blank or solid fills.
+         */
+        private double minEntropy = 0.001;
+
+        /**
+         * Larger images are downscaled to about this many pixels, roughly an A4 page at 300 dpi.
+         */
+        private long maxPixels = 8_000_000;
+
+        /**
+         * Whether images are binarized with Otsu's threshold before OCR.
+         */
+        private boolean binarize = true;
+
+        /**
+         * Whether OCR is restricted to the bands of the image that contain ink.
+         */
+        private boolean textRegions = true;
+
+        /**
+         * Above this many regions, or this share of the image covered by them, the whole image is read instead.
+         */
+        private int maxRegions = 32;
+        private double maxRegionCoverage = 0.6;
+
+        /**
+         * Margin in pixels kept around each text region.
+         */
+        private int regionPadding = 8;
+
+        /**
+         * Whether repeated images such as logos and banners are recognised only once. Images are matched by a hash of
+         * their pixels, so only identical images share their text.
+         */
+        private boolean deduplicate = true;
+
+        /**
+         * Images up to this many pixels are also matched by an exact perceptual hash, so that recompressed copies of
+         * a tiny logo are recognised once. Larger images could share a hash but not their text.
+         */
+        private long dedupMaxPixels = 16_384;
+
+        /**
+         * Number of image hashes remembered.
+         */
+        private int dedupCacheSize = 1024;
+    }
+}
@@ -0,0 +1,319 @@
+package com.subhajit.email.classification.configuration;
+
+import lombok.Data;
+import lombok.ToString;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Settings for reading uploaded emails.
+ */
+@Data
+@ConfigurationProperties(prefix = "email.classification.parser")
+public class ParserProperties {
+
+    /**
+     * Attachments up to this size are kept in memory; larger ones are spilled to a temp file.
+     */
+    private DataSize spillThreshold = DataSize.ofMegabytes(1);
+
+    /**
+     * Directory for spilled attachments. When empty, the system temp directory is used.
+     */
+    private String spillDirectory;
+
+    /**
+     * Limits applied to every attachment handler unless overridden in {@code handler-limits}.
+     */
+    private Limits limits = Limits.defaults();
+
+    /**
+     * Per-handler overrides of {@code limits}, keyed by handler name (image, pdf, spreadsheet, csv, office, tika).
+     * Unset values fall back to {@code limits}.
+     */
+    private Map<String, Limits> handlerLimits = new HashMap<>();
+
+    /**
+     * Safeguards of the Tika fallback parser.
+     */
+    private Tika tika = new Tika();
+
+    /**
+     * Limits for spreadsheet extraction. Characters and time are limited by {@code limits} and
+     * {@code handler-limits.spreadsheet}.
+     */
+    private Spreadsheet spreadsheet = new Spreadsheet();
+
+    /**
+     * Limits for PDF extraction. Characters and time are limited by {@code limits} and {@code handler-limits.pdf}.
+     */
+    private Pdf pdf = new Pdf();
+
+    /**
+     * Limits for Word and PowerPoint extraction.
+     */
+    private Office office = new Office();
+
+    /**
+     * Settings for CSV extraction.
+     */
+    private Csv csv = new Csv();
+
+    /**
+     * Limits for walking the structure of .eml and .msg files.
+     */
+    private Mime mime = new Mime();
+
+    @Data
+    public static class Spreadsheet {
+
+        /**
+         * Whether workbooks are read with the streaming (SAX/event) readers instead of being loaded as a whole.
+         */
+        private boolean streaming = true;
+
+        /**
+         * Maximum number of rows read across all sheets.
+         */
+        private long maxRows = 100_000;
+
+        /**
+         * Maximum number of cells read across all sheets.
+         */
+        private long maxCells = 1_000_000;
+    }
+
+    @Data
+    public static class Pdf {
+
+        /**
+         * Threads shared by all documents for extracting page ranges in parallel.
+         */
+        @ToString.Exclude
+        private int pageThreads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Pages per parallel range. Documents up to this length are read on the calling thread.
+         */
+        private int pagesPerChunk = 8;
+
+        /**
+         * Maximum number of pages read per document.
+         */
+        private int maxPages = 500;
+
+        /**
+         * Whether pages without a usable text layer are rendered and sent to OCR.
+         */
+        private boolean ocrFallback = true;
+
+        /**
+         * Pages with fewer extracted characters than this are treated as scanned.
+         */
+        private int minCharsPerPage = 20;
+
+        /**
+         * Resolution used when rendering scanned pages for OCR.
+         */
+        private float ocrDpi = 300;
+
+        /**
+         * Maximum number of pages per document sent to OCR.
+         */
+        private int maxOcrPages = 50;
+    }
+
+    @Data
+    public static class Office {
+
+        /**
+         * Maximum uncompressed size of a single XML part of a .docx or .pptx package, against zip bombs.
+         */
+        private DataSize maxPartSize = DataSize.ofMegabytes(100);
+
+        /**
+         * .doc and .ppt files are loaded as a whole, so larger ones are not read.
+         */
+        private DataSize maxLegacySize = DataSize.ofMegabytes(30);
+
+        /**
+         * Whether embedded objects such as workbooks and images are extracted too.
+         */
+        private boolean embeddedObjects = true;
+
+        /**
+         * Whether embedded images are sent to OCR.
+         */
+        private boolean embeddedImages = true;
+
+        /**
+         * Maximum number of embedded objects extracted per document.
+         */
+        private int maxEmbeddedObjects = 20;
+
+        /**
+         * Embedded objects larger than this are skipped.
+         */
+        private DataSize maxEmbeddedSize = DataSize.ofMegabytes(20);
+
+        /**
+         * Maximum nesting of embedded objects, e.g. 2 allows a workbook inside a document inside a presentation.
+         */
+        private int maxEmbeddingDepth = 2;
+    }
+
+    @Data
+    public static class Csv {
+
+        /**
+         * Whether CSV files are returned as text, summarized, or summarized only when larger than
+         * {@code summary-threshold}.
+         */
+        private Mode mode = Mode.AUTO;
+
+        /**
+         * In {@code auto} mode, files larger than this are summarized.
+         */
+        private DataSize summaryThreshold = DataSize.ofMegabytes(1);
+
+        /**
+         * Threads shared by all files for scanning chunks in parallel.
+         */
+        @ToString.Exclude
+        private int scanThreads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Largest chunk mapped and scanned by one thread.
+         */
+        private DataSize chunkSize = DataSize.ofMegabytes(8);
+
+        /**
+         * Rows after the header included in a summary.
+         */
+        private int sampleRows = 10;
+
+        /**
+         * Maximum number of columns with statistics in a summary.
+         */
+        private int maxColumns = 100;
+
+        /**
+         * Distinct values tracked per column; columns with at most this many list them in the summary.
+         */
+        private int maxDistinct = 20;
+
+        public enum Mode {
+            AUTO, TEXT, SUMMARY
+        }
+    }
+
+    @Data
+    public static class Mime {
+
+        /**
+         * Maximum nesting of multiparts and embedded messages. Deeper parts are skipped.
+         */
+        private int maxDepth = 10;
+
+        /**
+         * Maximum number of MIME parts visited per email.
+         */
+        private int maxParts = 1000;
+
+        /**
+         * Maximum number of characters of body text, including forwarded messages.
+         */
+        private int maxBodyChars = 1_000_000;
+
+        /**
+         * Maximum number of attachments kept per email.
+         */
+        private int maxAttachments = 200;
+
+        /**
+         * Attachments larger than this after decoding are skipped. Handlers also apply their own {@code max-bytes}.
+         */
+        private DataSize maxAttachmentSize = DataSize.ofMegabytes(100);
+
+        /**
+         * Size caps replacing {@code max-attachment-size} for attachments with these file extensions, e.g. a higher
+         * one for CSV files, which are summarized without being read into memory.
+         */
+        private Map<String, DataSize> maxAttachmentSizeByExtension = new HashMap<>();
+
+        /**
+         * @param fileName The file name of the attachment, or null if it has none
+         * @return The largest size in bytes an attachment with this name may have after decoding
+         */
+        public long maxAttachmentBytes(String fileName) {
+            String extension = StringUtils.lowerCase(StringUtils.substringAfterLast(fileName, "."), Locale.ROOT);
+            DataSize size = maxAttachmentSizeByExtension.get(extension);
+            return (size != null ? size : maxAttachmentSize).toBytes();
+        }
+    }
+
+    @Data
+    public static class Limits {
+
+        /**
+         * Maximum number of characters of extracted text.
+         */
+        private Long maxChars;
+
+        /**
+         * Attachments larger than this are not parsed.
+         */
+        private DataSize maxBytes;
+
+        /**
+         * Wall-clock time after which extraction stops and returns what it has.
+         */
+        private Duration timeout;
+
+        static Limits defaults() {
+            Limits limits = new Limits();
+            limits.setMaxChars(2_000_000L);
+            limits.setMaxBytes(DataSize.ofMegabytes(100));
+            limits.setTimeout(Duration.ofSeconds(60));
+            return limits;
+        }
+
+        /**
+         * @param fallback Limits used for values not set here
+         * @return These limits with unset values taken from {@code fallback}
+         */
+        public Limits orElse(Limits fallback) {
+            Limits merged = new Limits();
+            merged.setMaxChars(maxChars != null ? maxChars : fallback.getMaxChars());
+            merged.setMaxBytes(maxBytes != null ? maxBytes : fallback.getMaxBytes());
+            merged.setTimeout(timeout != null ? timeout : fallback.getTimeout());
+            return merged;
+        }
+    }
+
+    @Data
+    public static class Tika {
+
+        /**
+         * Maximum ratio of extracted characters to compressed input bytes before a document is treated as a
+         * decompression bomb.
+         */
+        private long maxCompressionRatio = 100;
+
+        /**
+         * Maximum nesting of XML elements in the extracted content.
+         */
+        private int maxXmlDepth = 100;
+
+        /**
+         * Maximum nesting of archives and embedded documents.
+         */
+        private int maxPackageEntryDepth = 10;
+    }
+}
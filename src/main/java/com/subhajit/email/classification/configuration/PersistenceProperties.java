@@ -0,0 +1,73 @@
+package com.subhajit.email.classification.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the write-behind store of processed email results.
+ * <p>
+ * Results go to the application datasource, a file-backed H2 database by default, so they survive restarts; the
+ * writer deletes results older than {@code retention} so that the file does not grow without bound.
+ */
+@Data
+@ConfigurationProperties(prefix = "email.classification.persistence")
+public class PersistenceProperties {
+
+    /**
+     * Whether results are stored at all.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Maximum number of results waiting to be written.
+     */
+    private int queueCapacity = 10_000;
+
+    /**
+     * What happens to a result when the queue is full.
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+
+    /**
+     * How long {@link OverflowPolicy#BLOCK} waits for room before dropping the result.
+     */
+    private Duration offerTimeout = Duration.ofMillis(50);
+
+    /**
+     * Maximum number of results written in one transaction. Match {@code hibernate.jdbc.batch_size} so that each
+     * flush is a single JDBC batch.
+     */
+    private int batchSize = 50;
+
+    /**
+     * How long the writer waits for results before checking for shutdown.
+     */
+    private Duration flushInterval = Duration.ofMillis(500);
+
+    /**
+     * How long shutdown waits for queued results to be written.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+
+    /**
+     * How long results are kept. Older results are deleted by the writer every few minutes; zero keeps them forever.
+     */
+    private Duration retention = Duration.ofDays(30);
+
+    public enum OverflowPolicy {
+        /**
+         * Drop the result being added; the caller never waits.
+         */
+        DROP_NEWEST,
+        /**
+         * Drop the oldest queued result to make room; the caller never waits.
+         */
+        DROP_OLDEST,
+        /**
+         * Wait up to {@code offerTimeout} for room, then drop the result being added.
+         */
+        BLOCK
+    }
+}
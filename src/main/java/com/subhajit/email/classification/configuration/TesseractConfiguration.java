@@ -1,71 +1,130 @@
 package com.subhajit.email.classification.configuration;
 
-import net.sourceforge.tess4j.Tesseract;
+import com.subhajit.email.classification.ocr.OcrPreprocessingMetrics;
+import com.subhajit.email.classification.ocr.OcrPreprocessor;
+import com.subhajit.email.classification.ocr.OcrWorkerPool;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+@Configuration
 public class TesseractConfiguration {
 
-    private static volatile Tesseract tesseractInstance;
+    /**
+     * Creates the pool of Tesseract workers used for OCR.
+     *
+     * @param properties OCR settings
+     * @return OcrWorkerPool instance
+     */
+    @Bean(destroyMethod = "close")
+    public OcrWorkerPool ocrWorkerPool(OcrProperties properties) {
+        OcrWorkerPool pool = new OcrWorkerPool(resolveDataPath(properties.getDataPath()), properties.getLanguage(),
+                properties.getPoolSize(), properties.getQueueCapacity(), properties.getAcquireTimeout());
+        if (properties.isPrewarm()) {
+            pool.prewarm();
+        }
+        return pool;
+    }
 
-    private TesseractConfiguration() {
-        // Private constructor to prevent instantiation
+    /**
+     * Creates the preprocessing stage that filters and prepares email images before OCR.
+     *
+     * @param ocrWorkerPool The pool that runs the OCR
+     * @param properties    OCR settings
+     * @return OcrPreprocessor instance
+     */
+    @Bean
+    public OcrPreprocessor ocrPreprocessor(OcrWorkerPool ocrWorkerPool, OcrProperties properties) {
+        return new OcrPreprocessor(ocrWorkerPool, properties.getPreprocessing());
     }
 
     /**
-     * Returns a singleton instance of Tesseract.
+     * Publishes the OCR pool and preprocessing counters as meters. They are read from the snapshots only when the
+     * registry is scraped, so OCR itself is not slowed down.
      *
-     * @return Tesseract instance
+     * @param ocrWorkerPool   The pool of Tesseract workers
+     * @param ocrPreprocessor The preprocessing stage
+     * @return MeterBinder instance
      */
-    public static Tesseract tesseract() {
-        if (tesseractInstance == null) {
-            synchronized (TesseractConfiguration.class) {
-                if (tesseractInstance == null) {
-                    tesseractInstance = createTesseract();
-                }
-            }
-        }
-        return tesseractInstance;
+    @Bean
+    public MeterBinder ocrMeterBinder(OcrWorkerPool ocrWorkerPool, OcrPreprocessor ocrPreprocessor) {
+        return registry -> {
+            Map<String, ToDoubleFunction<OcrWorkerPool>> poolGauges = Map.of(
+                    "ocr.pool.workers", pool -> pool.metrics().workers(),
+                    "ocr.pool.in.use", pool -> pool.metrics().inUse(),
+                    "ocr.pool.queue.depth", pool -> pool.metrics().queueDepth());
+            poolGauges.forEach((name, value) -> Gauge.builder(name, ocrWorkerPool, value).register(registry));
+            FunctionTimer.builder("ocr.recognition", ocrWorkerPool, pool -> pool.metrics().ocrCount(),
+                            pool -> pool.metrics().totalOcrMillis(), TimeUnit.MILLISECONDS)
+                    .description("Images recognised by Tesseract")
+                    .register(registry);
+            FunctionCounter.builder("ocr.pool.rejected", ocrWorkerPool, pool -> pool.metrics().rejected())
+                    .description("OCR requests turned away because no worker was free")
+                    .register(registry);
+
+            FunctionCounter.builder("ocr.preprocessing.images", ocrPreprocessor, p -> p.metrics().images())
+                    .register(registry);
+            Map<String, ToDoubleFunction<OcrPreprocessingMetrics>> skipped = Map.of(
+                    "small", OcrPreprocessingMetrics::skippedSmall,
+                    "blank", OcrPreprocessingMetrics::skippedBlank,
+                    "duplicate", OcrPreprocessingMetrics::skippedDuplicate);
+            skipped.forEach((reason, value) -> FunctionCounter.builder("ocr.preprocessing.skipped", ocrPreprocessor,
+                            p -> value.applyAsDouble(p.metrics()))
+                    .tag("reason", reason)
+                    .register(registry));
+            Map<String, ToDoubleFunction<OcrPreprocessingMetrics>> avoided = Map.of(
+                    "small", OcrPreprocessingMetrics::smallAvoidedMillis,
+                    "blank", OcrPreprocessingMetrics::blankAvoidedMillis,
+                    "duplicate", OcrPreprocessingMetrics::duplicateAvoidedMillis,
+                    "downscale", OcrPreprocessingMetrics::downscaleAvoidedMillis,
+                    "regions", OcrPreprocessingMetrics::regionAvoidedMillis);
+            avoided.forEach((stage, value) -> Gauge.builder("ocr.preprocessing.avoided", ocrPreprocessor,
+                            p -> value.applyAsDouble(p.metrics()))
+                    .description("Estimated OCR time avoided by a preprocessing stage")
+                    .baseUnit("milliseconds")
+                    .tag("stage", stage)
+                    .register(registry));
+        };
     }
 
     /**
-     * Creates a new Tesseract instance and sets the data path based on the OS.
+     * Resolves the tessdata path from the configuration, the environment or the OS default.
      *
-     * @return Tesseract instance
+     * @param configuredPath Path from the configuration, may be empty
+     * @return tessdata path
      */
-    private static Tesseract createTesseract() {
-        Tesseract tesseract = new Tesseract();
+    static String resolveDataPath(String configuredPath) {
+        if (StringUtils.isNoneEmpty(configuredPath)) {
+            return configuredPath;
+        }
 
         // Try to use the environment variable first
         String tessDataPath = System.getenv("TESSDATA_PREFIX");
 
         if (StringUtils.isNoneEmpty(tessDataPath)) {
-            tesseract.setDatapath(tessDataPath);
-        } else {
-            String osName = System.getProperty("os.name").toLowerCase();
-
-            if (osName.contains("win")) {
-                // Windows Default path
-                tesseract.setDatapath("C:\\Program Files\\Tesseract-OCR\\tessdata");
-            } else if (osName.contains("mac")) {
-                // Mac Default path
-                tesseract.setDatapath("/usr/local/share/tessdata");
-            } else if (osName.contains("nix") || osName.contains("nux")) {
-                // Linux Default path
-                tesseract.setDatapath("/usr/share/tessdata");
-            } else {
-                throw new UnsupportedOperationException("Unsupported OS: " + osName);
-            }
+            return tessDataPath;
         }
-        tesseract.setLanguage("eng");
-        return tesseract;
-    }
+        String osName = System.getProperty("os.name").toLowerCase();
 
-    /**
-     * Returns the singleton instance of Tesseract.
-     *
-     * @return Tesseract instance
-     */
-    public static Tesseract getTesseractInstance() {
-        return tesseract();
+        if (osName.contains("win")) {
+            // Windows Default path
+            return "C:\\Program Files\\Tesseract-OCR\\tessdata";
+        } else if (osName.contains("mac")) {
+            // Mac Default path
+            return "/usr/local/share/tessdata";
+        } else if (osName.contains("nix") || osName.contains("nux")) {
+            // Linux Default path
+            return "/usr/share/tessdata";
+        } else {
+            throw new UnsupportedOperationException("Unsupported OS: " + osName);
+        }
     }
 }
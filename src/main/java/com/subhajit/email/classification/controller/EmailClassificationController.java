@@ -1,6 +1,8 @@
 package com.subhajit.email.classification.controller;
 
 import com.subhajit.email.classification.model.ParsedEmailResponse;
+import com.subhajit.email.classification.model.BatchItemResult;
+import com.subhajit.email.classification.service.BatchProcessingService;
 import com.subhajit.email.classification.service.EmailProcessingService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -16,7 +18,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.List;
 import java.util.Objects;
 
 @RestController
@@ -25,9 +29,12 @@ import java.util.Objects;
 public class EmailClassificationController {
 
     private EmailProcessingService emailProcessingService;
+    private BatchProcessingService batchProcessingService;
 
-    public EmailClassificationController(EmailProcessingService emailProcessingService) {
+    public EmailClassificationController(EmailProcessingService emailProcessingService,
+                                         BatchProcessingService batchProcessingService) {
         this.emailProcessingService = emailProcessingService;
+        this.batchProcessingService = batchProcessingService;
     }
 
     @PostMapping("/parse-email")
@@ -56,4 +63,26 @@ public class EmailClassificationController {
         }
         return ResponseEntity.ok(emailProcessingService.processEmail(multipartFile));
     }
+
+    @PostMapping(value = "/parse-email/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(
+            summary = "Classify Emails in Batch",
+            description = "Classifies many emails in one request. Accepts .eml and .msg files, .zip archives of them "
+                    + "and .mbox mailboxes, and streams one JSON result per line as each email finishes",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Newline-delimited results, one per email; per-email errors are reported inline",
+                            content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = BatchItemResult.class))
+                    ),
+                    @ApiResponse(responseCode = "400", description = "No files uploaded")
+            }
+    )
+    public ResponseEntity<StreamingResponseBody> classifyEmails(@RequestParam("files") List<MultipartFile> multipartFiles) {
+        if (multipartFiles == null || multipartFiles.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = outputStream -> batchProcessingService.processBatch(multipartFiles, outputStream);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
 }
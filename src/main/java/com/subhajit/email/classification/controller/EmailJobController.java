@@ -0,0 +1,104 @@
+package com.subhajit.email.classification.controller;
+
+import com.subhajit.email.classification.configuration.JobProperties;
+import com.subhajit.email.classification.job.JobPriority;
+import com.subhajit.email.classification.job.JobQueueFullException;
+import com.subhajit.email.classification.model.JobResponse;
+import com.subhajit.email.classification.service.JobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Objects;
+
+@RestController
+@RequestMapping("/api/email/classification/jobs")
+@Tag(name = "Email Classification Jobs API", description = "Endpoints for classifying emails asynchronously")
+public class EmailJobController {
+
+    private JobService jobService;
+    private JobProperties jobProperties;
+
+    public EmailJobController(JobService jobService, JobProperties jobProperties) {
+        this.jobService = jobService;
+        this.jobProperties = jobProperties;
+    }
+
+    @PostMapping
+    @Operation(
+            summary = "Submit Email",
+            description = "Queues an email for classification and returns a job id immediately",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "202",
+                            description = "Job queued",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = JobResponse.class))
+                    ),
+                    @ApiResponse(responseCode = "400", description = "Invalid file format"),
+                    @ApiResponse(responseCode = "429", description = "Queue is full, retry after the Retry-After header")
+            }
+    )
+    public ResponseEntity<JobResponse> submitEmail(@RequestParam("file") MultipartFile multipartFile,
+                                                   @RequestParam(value = "priority", defaultValue = "NORMAL") JobPriority priority) {
+        if (!Objects.requireNonNull(multipartFile.getOriginalFilename()).endsWith(".eml") && !multipartFile.getOriginalFilename().endsWith(".msg")) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        JobResponse job = jobService.submit(multipartFile, priority);
+        return ResponseEntity.accepted().location(URI.create("/api/email/classification/jobs/" + job.getJobId())).body(job);
+    }
+
+    @GetMapping("/{jobId}")
+    @Operation(summary = "Get Job", description = "Returns the status of a job and, once finished, its result")
+    public ResponseEntity<JobResponse> getJob(@PathVariable("jobId") String jobId) {
+        return jobService.getJob(jobId).map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Subscribe to Job", description = "Streams the current status and then the final result of a job as Server-Sent Events")
+    public ResponseEntity<SseEmitter> subscribe(@PathVariable("jobId") String jobId) throws IOException {
+        JobResponse current = jobService.getJob(jobId).orElse(null);
+        if (current == null) {
+            return ResponseEntity.notFound().build();
+        }
+        SseEmitter emitter = new SseEmitter(jobProperties.getSseTimeout().toMillis());
+        emitter.send(SseEmitter.event().name("status").data(current));
+        boolean registered = jobService.onCompletion(jobId, job -> {
+            try {
+                emitter.send(SseEmitter.event().name("result").data(job));
+                emitter.complete();
+            } catch (IOException | IllegalStateException ex) {
+                // The client went away or the emitter timed out
+                emitter.completeWithError(ex);
+            }
+        });
+        if (!registered) {
+            // The job expired after its status was read; no result will follow
+            emitter.complete();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    @ExceptionHandler(JobQueueFullException.class)
+    public ResponseEntity<String> handleQueueFull(JobQueueFullException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ex.getMessage());
+    }
+}
@@ -0,0 +1,75 @@
+package com.subhajit.email.classification.controller;
+
+import com.subhajit.email.classification.entity.EmailResult;
+import com.subhajit.email.classification.model.EmailResultResponse;
+import com.subhajit.email.classification.service.EmailResultService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.data.web.PagedModel;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+
+@RestController
+@RequestMapping("/api/email/classification/results")
+@Tag(name = "Email Classification Results API", description = "Endpoints for querying stored classification results")
+public class EmailResultController {
+
+    private EmailResultService emailResultService;
+
+    public EmailResultController(EmailResultService emailResultService) {
+        this.emailResultService = emailResultService;
+    }
+
+    @GetMapping
+    @Operation(
+            summary = "Search Results",
+            description = "Pages through stored results, newest first by default. Results are written in the "
+                    + "background, so an email may take up to the flush interval to appear",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "A page of results"),
+                    @ApiResponse(responseCode = "400", description = "Invalid filter or page parameters")
+            }
+    )
+    public PagedModel<EmailResultResponse> searchResults(
+            @RequestParam(value = "requestType", required = false) String requestType,
+            @RequestParam(value = "contentHash", required = false) String contentHash,
+            @RequestParam(value = "duplicate", required = false) Boolean duplicate,
+            @RequestParam(value = "status", required = false) EmailResult.Status status,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @ParameterObject @PageableDefault(size = 50, sort = "processedAt", direction = Sort.Direction.DESC) Pageable pageable) {
+        return new PagedModel<>(emailResultService.search(requestType, contentHash, duplicate, status, from, to,
+                pageable));
+    }
+
+    @GetMapping("/{id}")
+    @Operation(
+            summary = "Get Result",
+            description = "Returns one stored result",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "The result",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = EmailResultResponse.class))
+                    ),
+                    @ApiResponse(responseCode = "404", description = "Unknown result id")
+            }
+    )
+    public ResponseEntity<EmailResultResponse> getResult(@PathVariable("id") Long id) {
+        return ResponseEntity.of(emailResultService.getResult(id));
+    }
+}
@@ -0,0 +1,18 @@
+package com.subhajit.email.classification.duplicate;
+
+/**
+ * Outcome of checking an email against the duplicate index.
+ *
+ * @param duplicate   true if an exact or near-duplicate was found
+ * @param exact       true if the normalized content is identical to a previously seen email
+ * @param similarity  Estimated similarity to the closest match, 0 if there is none
+ * @param contentHash Content hash of the checked email
+ * @param matchedHash Content hash of the matching email, or null
+ */
+public record DuplicateCheckResult(boolean duplicate, boolean exact, double similarity, String contentHash,
+                                   String matchedHash) {
+
+    public static DuplicateCheckResult unique(String contentHash) {
+        return new DuplicateCheckResult(false, false, 0, contentHash, null);
+    }
+}
@@ -0,0 +1,222 @@
+package com.subhajit.email.classification.duplicate;
+
+import com.subhajit.email.classification.configuration.DuplicateProperties;
+import com.subhajit.email.classification.entity.EmailFingerprint;
+import com.subhajit.email.classification.model.ParsedEmail;
+import com.subhajit.email.classification.repository.EmailFingerprintRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Flags emails whose normalized subject, body and attachment text match a previously seen email, either exactly
+ * (same content hash) or approximately (MinHash similarity at or above the configured threshold).
+ * <p>
+ * Fingerprints live in a {@link DuplicateIndex} limited to a sliding time window. When persistence is enabled they
+ * are also written through the JPA datasource and reloaded at startup. Writes and purges run on a single background
+ * thread, off the request path; a fingerprint that is already stored, for example of an email evicted from the index
+ * and seen again, is refreshed instead of inserted a second time.
+ */
+@Component
+public class DuplicateDetector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DuplicateDetector.class);
+    private static final long PURGE_INTERVAL_NANOS = Duration.ofMinutes(1).toNanos();
+
+    private final DuplicateProperties properties;
+    private final EmailFingerprintRepository repository;
+    private final MinHasher minHasher;
+    private final DuplicateIndex index;
+    private final AtomicLong lastPurge = new AtomicLong(System.nanoTime());
+    private final AtomicLong droppedWrites = new AtomicLong();
+    private final ThreadPoolExecutor writer;
+
+    public DuplicateDetector(DuplicateProperties properties, EmailFingerprintRepository repository) {
+        this.properties = properties;
+        this.repository = repository;
+        this.minHasher = new MinHasher(properties.getBands() * properties.getRowsPerBand(),
+                properties.getShingleSize());
+        this.index = new DuplicateIndex(properties.getBands(), properties.getRowsPerBand(),
+                properties.getMaxEntries(), properties.getMaxBucketCandidates(), properties.getMaxCandidates());
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("fingerprint-writer-");
+        threadFactory.setDaemon(true);
+        this.writer = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getWriteQueueCapacity())), threadFactory,
+                (task, pool) -> {
+                    if (droppedWrites.incrementAndGet() % 1000 == 1) {
+                        LOGGER.warn("Fingerprint writer is behind; {} fingerprints kept in memory only",
+                                droppedWrites.get());
+                    }
+                });
+        this.writer.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Lets queued fingerprints reach the database before the datasource closes.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        writer.shutdown();
+        if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+            LOGGER.warn("{} fingerprints were not written before shutdown", writer.shutdownNow().size());
+        }
+    }
+
+    /**
+     * Checks an email against the previously seen ones and records it.
+     *
+     * @param email           The parsed email
+     * @param attachmentTexts The extracted text of each attachment
+     * @return The result of the check
+     */
+    public DuplicateCheckResult check(ParsedEmail email, List<String> attachmentTexts) {
+        if (!properties.isEnabled()) {
+            return DuplicateCheckResult.unique(null);
+        }
+        String text = TextNormalizer.normalize(email.getSubject(), email.getBody(), attachmentTexts,
+                properties.getMaxFingerprintChars());
+        String contentHash = sha256(text);
+        int[] signature = minHasher.signature(text);
+
+        Instant now = Instant.now();
+        evictExpired(now);
+        DuplicateCheckResult result = index.find(contentHash, signature, properties.getSimilarityThreshold());
+        if (result.exact()) {
+            return result;
+        }
+        if (!index.add(contentHash, signature, now)) {
+            // An identical email was indexed concurrently
+            return new DuplicateCheckResult(true, true, 1.0, contentHash, contentHash);
+        }
+        persist(contentHash, signature, now);
+        return result;
+    }
+
+    /**
+     * Convenience wrapper around {@link #check(ParsedEmail, List)}.
+     *
+     * @param email           The parsed email
+     * @param attachmentTexts The extracted text of each attachment
+     * @return true if the email is an exact or near-duplicate
+     */
+    public boolean isDuplicate(ParsedEmail email, List<String> attachmentTexts) {
+        return check(email, attachmentTexts).duplicate();
+    }
+
+    /**
+     * Rebuilds the index from the persisted fingerprints that are still within the window.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPersistedFingerprints() {
+        if (!properties.isEnabled() || !properties.isPersist()) {
+            return;
+        }
+        try {
+            Instant cutoff = Instant.now().minus(properties.getWindow());
+            repository.deleteSeenBefore(cutoff);
+
+            int signatureBytes = properties.getBands() * properties.getRowsPerBand() * Integer.BYTES;
+            long lastId = 0;
+            List<EmailFingerprint> page;
+            while (!(page = repository.findTop10000ByIdGreaterThanOrderByIdAsc(lastId)).isEmpty()) {
+                for (EmailFingerprint fingerprint : page) {
+                    lastId = fingerprint.getId();
+                    if (fingerprint.getSignature().length != signatureBytes) {
+                        // Written with a different bands/rows configuration
+                        continue;
+                    }
+                    index.add(fingerprint.getContentHash(), toSignature(fingerprint.getSignature()),
+                            fingerprint.getSeenAt());
+                }
+            }
+            LOGGER.info("Loaded {} email fingerprints for duplicate detection", index.size());
+        } catch (Exception ex) {
+            LOGGER.error("Error loading email fingerprints: {}", ex.getMessage());
+        }
+    }
+
+    private void evictExpired(Instant now) {
+        Instant cutoff = now.minus(properties.getWindow());
+        index.evictOlderThan(cutoff);
+
+        long last = lastPurge.get();
+        if (properties.isPersist() && System.nanoTime() - last > PURGE_INTERVAL_NANOS
+                && lastPurge.compareAndSet(last, System.nanoTime())) {
+            writer.execute(() -> {
+                try {
+                    repository.deleteSeenBefore(cutoff);
+                } catch (Exception ex) {
+                    LOGGER.error("Error purging email fingerprints: {}", ex.getMessage());
+                }
+            });
+        }
+    }
+
+    private void persist(String contentHash, int[] signature, Instant seenAt) {
+        if (!properties.isPersist()) {
+            return;
+        }
+        byte[] bytes = toBytes(signature);
+        writer.execute(() -> {
+            try {
+                upsert(contentHash, bytes, seenAt);
+            } catch (Exception ex) {
+                LOGGER.error("Error saving email fingerprint: {}", ex.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Refreshes the stored fingerprint of the content hash, or inserts it if there is none. The unique index on the
+     * content hash settles a race with another instance inserting it first.
+     */
+    private void upsert(String contentHash, byte[] signature, Instant seenAt) {
+        if (repository.refresh(contentHash, signature, seenAt) > 0) {
+            return;
+        }
+        try {
+            repository.save(new EmailFingerprint(null, contentHash, signature, seenAt));
+        } catch (DataIntegrityViolationException ex) {
+            repository.refresh(contentHash, signature, seenAt);
+        }
+    }
+
+    private static byte[] toBytes(int[] signature) {
+        ByteBuffer buffer = ByteBuffer.allocate(signature.length * Integer.BYTES);
+        buffer.asIntBuffer().put(signature);
+        return buffer.array();
+    }
+
+    private static int[] toSignature(byte[] bytes) {
+        int[] signature = new int[bytes.length / Integer.BYTES];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(signature);
+        return signature;
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+}
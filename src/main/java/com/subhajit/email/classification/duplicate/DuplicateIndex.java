@@ -0,0 +1,447 @@
+package com.subhajit.email.classification.duplicate;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * In-memory index of email fingerprints for exact and near-duplicate lookup.
+ * <p>
+ * Exact duplicates are found through a table keyed by content hash. Near-duplicates are found by locality sensitive
+ * hashing: the MinHash signature is cut into bands and each band is hashed into a bucket, so a lookup only compares
+ * against emails sharing at least one bucket instead of scanning the whole index. A lookup compares each candidate
+ * once, however many buckets it shares, follows at most {@code maxBucketCandidates} entries of a bucket, newest
+ * first, and compares at most {@code maxCandidates} entries in all, so a crowded bucket, e.g. of a newsletter sent
+ * every day, cannot make one lookup scan thousands of entries.
+ * <p>
+ * The index is laid out in primitive arrays so that millions of entries stay affordable, at about 360 bytes each:
+ * entries occupy the slots of a ring of {@code maxEntries}, allocated in pages as the index fills up, and hold the
+ * content hash, the signature cut to 16 bits per value (which raises the estimated similarity by about 2^-16), and
+ * per band a link to the next older entry in the same bucket. The bucket tables only map each bucket to its newest
+ * entry. Entries are kept in arrival order and evicted once they fall out of the time window or the ring is full; a
+ * link into a slot that has since been reused is recognised by its sequence number and ends the chain.
+ */
+public class DuplicateIndex {
+
+    private static final int EMPTY = -1;
+    private static final int PAGE_BITS = 14;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int HASH_LONGS = 4;
+
+    private final int bands;
+    private final int rowsPerBand;
+    private final int signatureLength;
+    private final int capacity;
+    private final int maxBucketCandidates;
+    private final int maxCandidates;
+
+    private final short[][] signatures;
+    private final int[][] links;
+    private final long[][] hashes;
+    private final long[][] sequences;
+    private final long[][] seenAt;
+    private long oldest;
+    private long next;
+
+    private final SlotTable byHash;
+    private final SlotTable[] buckets;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public DuplicateIndex(int bands, int rowsPerBand, int maxEntries, int maxBucketCandidates, int maxCandidates) {
+        this.bands = bands;
+        this.rowsPerBand = rowsPerBand;
+        this.signatureLength = bands * rowsPerBand;
+        this.capacity = Math.max(1, maxEntries);
+        this.maxBucketCandidates = Math.max(1, maxBucketCandidates);
+        this.maxCandidates = Math.max(1, maxCandidates);
+        int pages = (capacity + PAGE_SIZE - 1) >>> PAGE_BITS;
+        this.signatures = new short[pages][];
+        this.links = new int[pages][];
+        this.hashes = new long[pages][];
+        this.sequences = new long[pages][];
+        this.seenAt = new long[pages][];
+        this.byHash = new SlotTable(slot -> spread(hashes[page(slot)][offset(slot) * HASH_LONGS]));
+        this.buckets = new SlotTable[bands];
+        for (int band = 0; band < bands; band++) {
+            int b = band;
+            buckets[band] = new SlotTable(slot -> bandHash(signatures[page(slot)],
+                    offset(slot) * signatureLength, b));
+        }
+    }
+
+    /**
+     * Finds an indexed email with the same content hash, or else the first candidate at or above the similarity
+     * threshold. Without such a candidate the result carries the highest similarity seen.
+     *
+     * @param contentHash Content hash of the normalized text, as 64 hex digits
+     * @param signature   MinHash signature of the normalized text
+     * @param threshold   Minimum similarity for a near-duplicate
+     * @return The lookup result
+     */
+    public DuplicateCheckResult find(String contentHash, int[] signature, double threshold) {
+        long[] hash = parseHash(contentHash);
+        short[] probe = truncate(signature);
+        lock.readLock().lock();
+        try {
+            if (byHash.get(spread(hash[0]), slot -> hashEquals(slot, hash)) != EMPTY) {
+                return new DuplicateCheckResult(true, true, 1.0, contentHash, contentHash);
+            }
+            double bestSimilarity = 0;
+            int compared = 0;
+            VisitedSlots visited = new VisitedSlots(maxCandidates);
+            for (int band = 0; band < bands && compared < maxCandidates; band++) {
+                int b = band;
+                int slot = buckets[band].get(bandHash(probe, 0, band), other -> bandEquals(other, probe, b));
+                for (int walked = 0; slot != EMPTY && walked < maxBucketCandidates && compared < maxCandidates;
+                     slot = older(slot, band), walked++) {
+                    if (!visited.add(slot)) {
+                        continue;
+                    }
+                    compared++;
+                    double similarity = similarity(probe, slot);
+                    if (similarity >= threshold) {
+                        return new DuplicateCheckResult(true, false, similarity, contentHash, formatHash(slot));
+                    }
+                    bestSimilarity = Math.max(bestSimilarity, similarity);
+                }
+            }
+            return new DuplicateCheckResult(false, false, bestSimilarity, contentHash, null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an email to the index, evicting the oldest entry if the index is full. Entries must be added in
+     * non-decreasing order of {@code seenAt}.
+     *
+     * @param contentHash Content hash of the normalized text, as 64 hex digits
+     * @param signature   MinHash signature of the normalized text
+     * @param seenAt      When the email was seen
+     * @return false if the content hash was already indexed
+     */
+    public boolean add(String contentHash, int[] signature, Instant seenAt) {
+        long[] hash = parseHash(contentHash);
+        short[] values = truncate(signature);
+        lock.writeLock().lock();
+        try {
+            if (byHash.get(spread(hash[0]), slot -> hashEquals(slot, hash)) != EMPTY) {
+                return false;
+            }
+            if (next - oldest == capacity) {
+                evictOldest();
+            }
+            int slot = (int) (next % capacity);
+            int page = page(slot);
+            int offset = offset(slot);
+            if (signatures[page] == null) {
+                signatures[page] = new short[PAGE_SIZE * signatureLength];
+                links[page] = new int[PAGE_SIZE * bands];
+                hashes[page] = new long[PAGE_SIZE * HASH_LONGS];
+                sequences[page] = new long[PAGE_SIZE];
+                this.seenAt[page] = new long[PAGE_SIZE];
+            }
+            System.arraycopy(values, 0, signatures[page], offset * signatureLength, signatureLength);
+            System.arraycopy(hash, 0, hashes[page], offset * HASH_LONGS, HASH_LONGS);
+            sequences[page][offset] = next;
+            this.seenAt[page][offset] = seenAt.toEpochMilli();
+            for (int band = 0; band < bands; band++) {
+                int b = band;
+                IntPredicate sameBucket = other -> bandEquals(other, values, b);
+                int bandHash = bandHash(values, 0, band);
+                int head = buckets[band].get(bandHash, sameBucket);
+                links[page][offset * bands + band] = head;
+                buckets[band].put(bandHash, sameBucket, slot);
+            }
+            byHash.put(spread(hash[0]), other -> hashEquals(other, hash), slot);
+            next++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all entries seen before the cutoff. The write lock is only taken when the oldest entry has expired, so
+     * the usual call, with nothing to evict, does not hold up concurrent lookups.
+     *
+     * @param cutoff Oldest instant still kept
+     * @return Number of evicted entries
+     */
+    public int evictOlderThan(Instant cutoff) {
+        long cutoffMillis = cutoff.toEpochMilli();
+        lock.readLock().lock();
+        try {
+            if (oldest == next || seenAtOfOldest() >= cutoffMillis) {
+                return 0;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            int evicted = 0;
+            while (oldest < next) {
+                if (seenAtOfOldest() >= cutoffMillis) {
+                    break;
+                }
+                evictOldest();
+                evicted++;
+            }
+            return evicted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of indexed emails
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return (int) (next - oldest);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long seenAtOfOldest() {
+        int slot = (int) (oldest % capacity);
+        return seenAt[page(slot)][offset(slot)];
+    }
+
+    /**
+     * Removes the oldest entry. It is the last link of each of its bucket chains, so a bucket only needs to go
+     * when the entry is also its newest, that is its only one.
+     */
+    private void evictOldest() {
+        int slot = (int) (oldest % capacity);
+        short[] page = signatures[page(slot)];
+        int signatureOffset = offset(slot) * signatureLength;
+        for (int band = 0; band < bands; band++) {
+            buckets[band].remove(bandHash(page, signatureOffset, band), other -> other == slot);
+        }
+        byHash.remove(spread(hashes[page(slot)][offset(slot) * HASH_LONGS]), other -> other == slot);
+        oldest++;
+    }
+
+    /**
+     * @return The next older entry in the same bucket of a band, or {@link #EMPTY} at the end of the chain
+     */
+    private int older(int slot, int band) {
+        int olderSlot = links[page(slot)][offset(slot) * bands + band];
+        if (olderSlot == EMPTY) {
+            return EMPTY;
+        }
+        long sequence = sequences[page(olderSlot)][offset(olderSlot)];
+        // A reused slot holds a newer entry, and an evicted one an entry older than the oldest
+        return sequence < sequences[page(slot)][offset(slot)] && sequence >= oldest ? olderSlot : EMPTY;
+    }
+
+    private double similarity(short[] probe, int slot) {
+        short[] page = signatures[page(slot)];
+        int offset = offset(slot) * signatureLength;
+        int equal = 0;
+        for (int i = 0; i < signatureLength; i++) {
+            if (probe[i] == page[offset + i]) {
+                equal++;
+            }
+        }
+        return (double) equal / signatureLength;
+    }
+
+    private boolean bandEquals(int slot, short[] probe, int band) {
+        int from = band * rowsPerBand;
+        int offset = offset(slot) * signatureLength + from;
+        return Arrays.equals(signatures[page(slot)], offset, offset + rowsPerBand, probe, from, from + rowsPerBand);
+    }
+
+    private boolean hashEquals(int slot, long[] hash) {
+        int offset = offset(slot) * HASH_LONGS;
+        return Arrays.equals(hashes[page(slot)], offset, offset + HASH_LONGS, hash, 0, HASH_LONGS);
+    }
+
+    private int bandHash(short[] values, int signatureOffset, int band) {
+        long key = 1125899906842597L;
+        int from = signatureOffset + band * rowsPerBand;
+        for (int i = from; i < from + rowsPerBand; i++) {
+            key = 31 * key + values[i];
+        }
+        return spread(key);
+    }
+
+    private String formatHash(int slot) {
+        HexFormat hex = HexFormat.of();
+        int offset = offset(slot) * HASH_LONGS;
+        StringBuilder sb = new StringBuilder(HASH_LONGS * 16);
+        for (int i = 0; i < HASH_LONGS; i++) {
+            sb.append(hex.toHexDigits(hashes[page(slot)][offset + i]));
+        }
+        return sb.toString();
+    }
+
+    private static long[] parseHash(String contentHash) {
+        if (contentHash == null || contentHash.length() != HASH_LONGS * 16) {
+            throw new IllegalArgumentException("Content hash must be 64 hex digits: " + contentHash);
+        }
+        long[] hash = new long[HASH_LONGS];
+        for (int i = 0; i < HASH_LONGS; i++) {
+            hash[i] = HexFormat.fromHexDigitsToLong(contentHash, i * 16, i * 16 + 16);
+        }
+        return hash;
+    }
+
+    private short[] truncate(int[] signature) {
+        if (signature.length != signatureLength) {
+            throw new IllegalArgumentException("Signature must have " + signatureLength + " values");
+        }
+        short[] values = new short[signatureLength];
+        for (int i = 0; i < signatureLength; i++) {
+            values[i] = (short) signature[i];
+        }
+        return values;
+    }
+
+    private static int page(int slot) {
+        return slot >>> PAGE_BITS;
+    }
+
+    private static int offset(int slot) {
+        return slot & (PAGE_SIZE - 1);
+    }
+
+    private static int spread(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * Slots already compared during one lookup, so that an entry sharing several buckets with the probe is compared
+     * only once. Sized for the lookup's candidate limit, so it never fills up.
+     */
+    private static final class VisitedSlots {
+
+        private final int[] slots;
+
+        VisitedSlots(int maxCandidates) {
+            this.slots = SlotTable.emptySlots(Integer.highestOneBit(maxCandidates) << 2);
+        }
+
+        /**
+         * @return false if the slot was already visited
+         */
+        boolean add(int slot) {
+            int mask = slots.length - 1;
+            for (int i = spread(slot) & mask; ; i = (i + 1) & mask) {
+                if (slots[i] == slot) {
+                    return false;
+                }
+                if (slots[i] == EMPTY) {
+                    slots[i] = slot;
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Open-addressing table of slot numbers. Keys are not stored: the caller supplies the hash of the key looked for
+     * and a test of whether a slot holds it, and the table recomputes the hash of a slot when it moves it.
+     */
+    private static final class SlotTable {
+
+        private final IntUnaryOperator hashOfSlot;
+        private int[] slots = emptySlots(16);
+        private int size;
+
+        SlotTable(IntUnaryOperator hashOfSlot) {
+            this.hashOfSlot = hashOfSlot;
+        }
+
+        /**
+         * @return The slot matching the key, or {@link #EMPTY}
+         */
+        int get(int hash, IntPredicate matches) {
+            int mask = slots.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                int slot = slots[i];
+                if (slot == EMPTY || matches.test(slot)) {
+                    return slot;
+                }
+            }
+        }
+
+        /**
+         * Maps the key to a slot, replacing the slot it was mapped to.
+         */
+        void put(int hash, IntPredicate matches, int value) {
+            int mask = slots.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                int slot = slots[i];
+                if (slot == EMPTY) {
+                    slots[i] = value;
+                    if (++size * 4 > slots.length * 3) {
+                        resize();
+                    }
+                    return;
+                }
+                if (matches.test(slot)) {
+                    slots[i] = value;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Removes the slot matching the test, if present, shifting later slots of the probe sequence back into the
+         * gap so that no tombstones are needed.
+         */
+        void remove(int hash, IntPredicate matches) {
+            int mask = slots.length - 1;
+            int gap = hash & mask;
+            while (slots[gap] != EMPTY && !matches.test(slots[gap])) {
+                gap = (gap + 1) & mask;
+            }
+            if (slots[gap] == EMPTY) {
+                return;
+            }
+            for (int i = (gap + 1) & mask; slots[i] != EMPTY; i = (i + 1) & mask) {
+                int home = hashOfSlot.applyAsInt(slots[i]) & mask;
+                // Move the slot back unless its home lies after the gap, up to its position
+                if (((i - home) & mask) >= ((i - gap) & mask)) {
+                    slots[gap] = slots[i];
+                    gap = i;
+                }
+            }
+            slots[gap] = EMPTY;
+            size--;
+        }
+
+        private void resize() {
+            int[] old = slots;
+            slots = emptySlots(old.length * 2);
+            int mask = slots.length - 1;
+            for (int slot : old) {
+                if (slot != EMPTY) {
+                    int i = hashOfSlot.applyAsInt(slot) & mask;
+                    while (slots[i] != EMPTY) {
+                        i = (i + 1) & mask;
+                    }
+                    slots[i] = slot;
+                }
+            }
+        }
+
+        private static int[] emptySlots(int length) {
+            int[] slots = new int[length];
+            Arrays.fill(slots, EMPTY);
+            return slots;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.subhajit.email.classification.duplicate;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Computes MinHash signatures over word shingles of normalized text.
+ * <p>
+ * Words are hashed while scanning the text, so no substring is created per word or shingle. The fraction of equal
+ * positions in two signatures estimates the Jaccard similarity of their shingle sets.
+ */
+public class MinHasher {
+
+    private static final long SEED = 0x5DEECE66DL;
+
+    private final int shingleSize;
+    private final long[] seeds;
+
+    public MinHasher(int signatureSize, int shingleSize) {
+        this.shingleSize = Math.max(1, shingleSize);
+        this.seeds = new long[signatureSize];
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < signatureSize; i++) {
+            seeds[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Computes the signature of a normalized text.
+     *
+     * @param text Text produced by {@link TextNormalizer#normalize}
+     * @return The MinHash signature
+     */
+    public int[] signature(String text) {
+        int[] signature = new int[seeds.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+
+        long[] window = new long[shingleSize];
+        int words = 0;
+        long wordHash = 0xcbf29ce484222325L;
+        boolean inWord = false;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (c != ' ') {
+                wordHash = (wordHash ^ c) * 0x100000001b3L;
+                inWord = true;
+            } else if (inWord) {
+                window[words % shingleSize] = wordHash;
+                words++;
+                if (words >= shingleSize) {
+                    update(signature, shingleHash(window, words));
+                }
+                wordHash = 0xcbf29ce484222325L;
+                inWord = false;
+            }
+        }
+        if (words > 0 && words < shingleSize) {
+            // Very short texts still get a signature from the words they have
+            update(signature, shingleHash(window, words));
+        }
+        return signature;
+    }
+
+    /**
+     * Estimates the Jaccard similarity of the texts behind two signatures.
+     *
+     * @param a First signature
+     * @param b Second signature
+     * @return Fraction of equal signature positions
+     */
+    public static double similarity(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / a.length;
+    }
+
+    private long shingleHash(long[] window, int words) {
+        long hash = 0;
+        int count = Math.min(words, shingleSize);
+        for (int i = 0; i < count; i++) {
+            // Combine the words in order, oldest first
+            hash = mix(hash * 31 + window[(words - count + i) % shingleSize]);
+        }
+        return hash;
+    }
+
+    private void update(int[] signature, long shingle) {
+        for (int i = 0; i < seeds.length; i++) {
+            int value = (int) (mix(shingle ^ seeds[i]) >>> 33);
+            if (value < signature[i]) {
+                signature[i] = value;
+            }
+        }
+    }
+
+    /**
+     * 64-bit finalizer from MurmurHash3.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
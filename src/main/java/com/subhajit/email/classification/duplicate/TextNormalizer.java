@@ -0,0 +1,71 @@
+package com.subhajit.email.classification.duplicate;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes email text before it is fingerprinted, so that forwards and re-sends of the same content compare equal.
+ */
+public class TextNormalizer {
+
+    private static final Pattern SUBJECT_PREFIX = Pattern.compile("^\\s*((re|fw|fwd|aw|wg)\\s*(\\[\\d+])?\\s*:\\s*)+",
+            Pattern.CASE_INSENSITIVE);
+
+    private TextNormalizer() {
+        // Private constructor to prevent instantiation
+    }
+
+    /**
+     * Builds the normalized text of an email from its subject, body and attachment texts.
+     *
+     * @param subject         The subject line
+     * @param body            The body text
+     * @param attachmentTexts The extracted text of each attachment
+     * @param maxChars        Maximum length of the result
+     * @return Lower case words separated by single spaces
+     */
+    public static String normalize(String subject, String body, List<String> attachmentTexts, int maxChars) {
+        StringBuilder sb = new StringBuilder(Math.min(maxChars, 16 * 1024));
+        appendWords(sb, stripSubjectPrefixes(subject), maxChars);
+        appendWords(sb, body, maxChars);
+        if (attachmentTexts != null) {
+            for (String text : attachmentTexts) {
+                appendWords(sb, text, maxChars);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Removes reply and forward markers such as "RE:", "Fwd:" or "AW:" from the start of a subject.
+     *
+     * @param subject The subject line
+     * @return The subject without reply and forward markers
+     */
+    public static String stripSubjectPrefixes(String subject) {
+        return subject == null ? null : SUBJECT_PREFIX.matcher(subject).replaceFirst("");
+    }
+
+    /**
+     * Appends the letters and digits of the text in lower case, with every other run of characters collapsed into
+     * a single space.
+     */
+    private static void appendWords(StringBuilder sb, String text, int maxChars) {
+        if (text == null) {
+            return;
+        }
+        boolean pendingSpace = sb.length() > 0;
+        for (int i = 0; i < text.length() && sb.length() < maxChars; i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace) {
+                    sb.append(' ');
+                    pendingSpace = false;
+                }
+                sb.append(Character.toLowerCase(c));
+            } else if (sb.length() > 0) {
+                pendingSpace = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.subhajit.email.classification.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Persisted fingerprint of a processed email, used to rebuild the duplicate index after a restart.
+ */
+@Entity
+@Table(name = "email_fingerprint", indexes = {
+        @Index(name = "idx_email_fingerprint_hash", columnList = "content_hash", unique = true),
+        @Index(name = "idx_email_fingerprint_seen_at", columnList = "seen_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailFingerprint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Lob
+    @Column(name = "signature", nullable = false)
+    private byte[] signature;
+
+    @Column(name = "seen_at", nullable = false)
+    private Instant seenAt;
+}
@@ -0,0 +1,108 @@
+package com.subhajit.email.classification.entity;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Audit record of one processed email: its headers, content hash, classification, extracted fields and timings.
+ * <p>
+ * Ids come from a pooled sequence rather than an identity column, so Hibernate can send inserts as JDBC batches.
+ */
+@Entity
+@Table(name = "email_result", indexes = {
+        @Index(name = "idx_email_result_processed_at", columnList = "processed_at"),
+        @Index(name = "idx_email_result_hash", columnList = "content_hash"),
+        @Index(name = "idx_email_result_request_type", columnList = "request_type")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class EmailResult {
+
+    public enum Status {
+        SUCCESS, FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "email_result_seq")
+    @SequenceGenerator(name = "email_result_seq", sequenceName = "email_result_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "processed_at", nullable = false)
+    private Instant processedAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private Status status;
+
+    @Column(name = "file_name")
+    private String fileName;
+
+    @Column(name = "from_address", length = 320)
+    private String fromAddress;
+
+    @Column(name = "subject", length = 998)
+    private String subject;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "duplicate_email")
+    private boolean duplicate;
+
+    @Column(name = "duplicate_of", length = 64)
+    private String duplicateOf;
+
+    @Column(name = "similarity")
+    private double similarity;
+
+    @Column(name = "request_type", length = 100)
+    private String requestType;
+
+    @Column(name = "sub_request_type", length = 100)
+    private String subRequestType;
+
+    @Column(name = "reasoning", length = 4000)
+    private String reasoning;
+
+    /**
+     * Extracted fields as a JSON array of key/value objects.
+     */
+    @Lob
+    @JsonRawValue
+    @Column(name = "extracted_fields")
+    private String extractedFields;
+
+    @Column(name = "attachment_count")
+    private int attachmentCount;
+
+    @Column(name = "body_chars")
+    private int bodyChars;
+
+    @Column(name = "total_millis")
+    private long totalMillis;
+
+    /**
+     * Stage durations in the {@code Server-Timing} format, e.g. {@code parse;dur=12.5, extract;dur=340.1}.
+     */
+    @Column(name = "stage_timings", length = 500)
+    private String stageTimings;
+
+    @Column(name = "error", length = 1000)
+    private String error;
+}
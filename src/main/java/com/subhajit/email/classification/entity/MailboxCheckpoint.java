@@ -0,0 +1,41 @@
+package com.subhajit.email.classification.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Sync position of a polled IMAP folder: every message up to {@code lastUid} has been processed. The UIDs are only
+ * meaningful while the folder keeps the same UIDVALIDITY.
+ */
+@Entity
+@Table(name = "mailbox_checkpoint")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MailboxCheckpoint {
+
+    /**
+     * {@code user@host/folder}
+     */
+    @Id
+    @Column(name = "mailbox", length = 500)
+    private String mailbox;
+
+    @Column(name = "uid_validity", nullable = false)
+    private long uidValidity;
+
+    @Column(name = "last_uid", nullable = false)
+    private long lastUid;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
@@ -0,0 +1,49 @@
+package com.subhajit.email.classification.extraction;
+
+/**
+ * Coarse grouping of attachment MIME types. Each category gets its own bounded executor in
+ * {@link AttachmentExtractionEngine} so that slow work of one kind (typically OCR) cannot starve the others.
+ */
+public enum AttachmentCategory {
+    IMAGE,
+    PDF,
+    SPREADSHEET,
+    DOCUMENT,
+    TEXT,
+    OTHER;
+
+    /**
+     * Maps a detected MIME type to its category.
+     *
+     * @param mimeType The detected MIME type
+     * @return The category the attachment belongs to
+     */
+    public static AttachmentCategory fromMimeType(String mimeType) {
+        if (mimeType == null) {
+            return OTHER;
+        }
+        if (mimeType.startsWith("image/")) {
+            return IMAGE;
+        }
+        switch (mimeType) {
+            case "application/pdf":
+                return PDF;
+            case "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet":
+            case "application/vnd.ms-excel":
+                return SPREADSHEET;
+            case "application/vnd.openxmlformats-officedocument.wordprocessingml.document":
+            case "application/vnd.ms-word.document.macroenabled.12":
+            case "application/msword":
+            case "application/vnd.openxmlformats-officedocument.presentationml.presentation":
+            case "application/vnd.ms-powerpoint.presentation.macroenabled.12":
+            case "application/vnd.openxmlformats-officedocument.presentationml.slideshow":
+            case "application/vnd.ms-powerpoint":
+                return DOCUMENT;
+            case "text/csv":
+            case "application/csv":
+                return TEXT;
+            default:
+                return OTHER;
+        }
+    }
+}
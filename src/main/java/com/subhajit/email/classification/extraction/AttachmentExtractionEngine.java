@@ -0,0 +1,254 @@
+package com.subhajit.email.classification.extraction;
+
+import com.subhajit.email.classification.cache.ExtractionCache;
+import com.subhajit.email.classification.configuration.ExtractionProperties;
+import com.subhajit.email.classification.metrics.PipelineMetrics;
+import com.subhajit.email.classification.metrics.PipelineStage;
+import com.subhajit.email.classification.model.EmailAttachment;
+import com.subhajit.email.classification.parser.AttachmentSource;
+import com.subhajit.email.classification.parser.ExtractionResult;
+import com.subhajit.email.classification.util.AttachmentParser;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Extracts text from the attachments of an email concurrently.
+ * <p>
+ * Every {@link AttachmentCategory} has its own bounded executor, so a burst of scanned images cannot occupy the
+ * threads that PDF or spreadsheet extraction needs. When a category queue is full the attachment is rejected at once
+ * with a "busy" error entry, so neither the category's concurrency limit nor the attachment timeout can be bypassed
+ * by running the work on the request thread. Results are returned in the order of the input list and a failed,
+ * rejected or timed out attachment only yields an error entry for that attachment. An attachment abandoned at the
+ * queue timeout is removed from its queue, so it no longer takes up capacity.
+ */
+@Component
+public class AttachmentExtractionEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AttachmentExtractionEngine.class);
+
+    private final AttachmentParser attachmentParser;
+    private final ExtractionCache extractionCache;
+    private final ExtractionProperties properties;
+    private final PipelineMetrics pipelineMetrics;
+    private final Map<AttachmentCategory, ThreadPoolExecutor> executors = new EnumMap<>(AttachmentCategory.class);
+
+    public AttachmentExtractionEngine(AttachmentParser attachmentParser, ExtractionCache extractionCache,
+                                      ExtractionProperties properties, PipelineMetrics pipelineMetrics) {
+        this.attachmentParser = attachmentParser;
+        this.extractionCache = extractionCache;
+        this.properties = properties;
+        this.pipelineMetrics = pipelineMetrics;
+        for (AttachmentCategory category : AttachmentCategory.values()) {
+            executors.put(category, createExecutor(category));
+        }
+    }
+
+    /**
+     * Parses the attachments of an email concurrently and extracts text from them.
+     *
+     * @param attachments List of attachments
+     * @return List of strings containing the extracted text from each attachment, in the order of the input
+     */
+    public List<String> extract(List<EmailAttachment> attachments) {
+        if (attachments == null || attachments.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<PendingExtraction> pending = new ArrayList<>(attachments.size());
+        for (EmailAttachment attachment : attachments) {
+            pending.add(submit(attachment));
+        }
+
+        List<String> results = new ArrayList<>(attachments.size());
+        for (PendingExtraction extraction : pending) {
+            results.add(await(extraction));
+        }
+        return results;
+    }
+
+    /**
+     * Answers an attachment from the extraction cache, or detects its MIME type and hands it to the executor of its
+     * category. Cache hits never enter a queue, and only complete results are cached. Detection and parsing share
+     * one stream of the attachment. The task and the waiting side race to claim it: a task that claims it closes it
+     * when it ends, and a waiting side that claims it at the queue timeout closes it and the task does nothing.
+     *
+     * @param attachment The attachment to parse
+     * @return The pending extraction
+     */
+    private PendingExtraction submit(EmailAttachment attachment) {
+        AtomicLong startedAt = new AtomicLong();
+        AtomicBoolean claimed = new AtomicBoolean();
+        long submittedAt = System.nanoTime();
+        AttachmentSource source = null;
+        try {
+            String contentHash = extractionCache.isEnabled() ? extractionCache.hash(attachment) : null;
+            String cached = extractionCache.get(contentHash);
+            if (cached != null) {
+                startedAt.set(submittedAt);
+                return new PendingExtraction(attachment, null, null, CompletableFuture.completedFuture(
+                        ExtractionResult.of(cached)), submittedAt, startedAt, claimed);
+            }
+
+            source = new AttachmentSource(attachment);
+            AttachmentSource shared = source;
+            String mimeType = attachmentParser.detectMimeType(shared);
+            ThreadPoolExecutor executor = executors.get(AttachmentCategory.fromMimeType(mimeType));
+            Future<ExtractionResult> future = executor.submit(() -> {
+                // Set before claiming, so a waiting side that loses the claim sees the task as started
+                startedAt.set(System.nanoTime());
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    ExtractionResult result = attachmentParser.parseAttachment(shared, mimeType);
+                    if (result.complete()) {
+                        extractionCache.put(contentHash, result.text());
+                    }
+                    return result;
+                } finally {
+                    closeQuietly(shared);
+                }
+            });
+            return new PendingExtraction(attachment, source, executor, future, submittedAt, startedAt, claimed);
+        } catch (RejectedExecutionException ex) {
+            LOGGER.warn("Rejected attachment {}: the {} queue is full", attachment.getName(), ex.getMessage());
+            pipelineMetrics.recordError(PipelineStage.EXTRACT, "busy");
+            closeQuietly(source);
+            startedAt.set(submittedAt);
+            return new PendingExtraction(attachment, null, null, CompletableFuture.completedFuture(
+                    ExtractionResult.failure("Error extracting attachment from " + attachment.getName()
+                            + ": busy, try again later")), submittedAt, startedAt, claimed);
+        } catch (Exception ex) {
+            LOGGER.error("Error parsing attachments: {}", ex.getMessage());
+            pipelineMetrics.recordError(PipelineStage.EXTRACT, ex);
+            closeQuietly(source);
+            return new PendingExtraction(attachment, null, null, null, submittedAt, startedAt, claimed);
+        }
+    }
+
+    /**
+     * Waits for a pending extraction, enforcing the queue and attachment timeouts.
+     *
+     * @param extraction The pending extraction
+     * @return The extracted text, or an error message for this attachment
+     */
+    private String await(PendingExtraction extraction) {
+        EmailAttachment attachment = extraction.attachment();
+        Future<ExtractionResult> future = extraction.future();
+        if (future == null) {
+            return "Error extracting attachment from " + attachment.getName() + ": could not be scheduled";
+        }
+
+        long attachmentTimeout = properties.getAttachmentTimeout().toNanos();
+        long queueTimeout = properties.getQueueTimeout().toNanos();
+        try {
+            while (true) {
+                long started = extraction.startedAt().get();
+                long deadline = started == 0
+                        ? extraction.submittedAt() + queueTimeout
+                        : started + attachmentTimeout;
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    if (started == 0 && !abandon(extraction)) {
+                        // Started just before the queue deadline; switch to the attachment deadline
+                        continue;
+                    }
+                    future.cancel(true);
+                    String stage = started == 0 ? "waiting in queue" : "extracting";
+                    pipelineMetrics.recordError(PipelineStage.EXTRACT, started == 0 ? "queue_timeout" : "timeout");
+                    LOGGER.error("Timed out {} attachment {}", stage, attachment.getName());
+                    return "Error extracting attachment from " + attachment.getName() + ": timed out " + stage;
+                }
+                try {
+                    return future.get(remaining, TimeUnit.NANOSECONDS).text();
+                } catch (TimeoutException ignored) {
+                    // Re-evaluate the deadline: the task may have started while we were waiting
+                }
+            }
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            LOGGER.error("Error parsing attachments: {}", cause.getMessage());
+            return "Error extracting attachment from " + attachment.getName() + ": " + cause.getMessage();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            if (!abandon(extraction)) {
+                future.cancel(true);
+            }
+            return "Error extracting attachment from " + attachment.getName() + ": interrupted";
+        }
+    }
+
+    /**
+     * Claims an extraction whose task has not started, so that the task will not run: it is cancelled, removed from
+     * its queue and its source is closed here.
+     *
+     * @return true if the extraction was abandoned, false if its task has already claimed it
+     */
+    private static boolean abandon(PendingExtraction extraction) {
+        if (!extraction.claimed().compareAndSet(false, true)) {
+            return false;
+        }
+        extraction.future().cancel(false);
+        if (extraction.executor() != null && extraction.future() instanceof Runnable task) {
+            extraction.executor().remove(task);
+        }
+        closeQuietly(extraction.source());
+        return true;
+    }
+
+    private static void closeQuietly(AttachmentSource source) {
+        if (source == null) {
+            return;
+        }
+        try {
+            source.close();
+        } catch (IOException ex) {
+            LOGGER.warn("Could not close attachment {}: {}", source.getName(), ex.getMessage());
+        }
+    }
+
+    private ThreadPoolExecutor createExecutor(AttachmentCategory category) {
+        int threads = properties.getConcurrency().forCategory(category);
+        CustomizableThreadFactory threadFactory =
+                new CustomizableThreadFactory("extract-" + category.name().toLowerCase(Locale.ROOT) + "-");
+        threadFactory.setDaemon(true);
+        String queue = category.name().toLowerCase(Locale.ROOT);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())), threadFactory,
+                (task, pool) -> {
+                    throw new RejectedExecutionException(queue);
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+    private record PendingExtraction(EmailAttachment attachment, AttachmentSource source, ThreadPoolExecutor executor,
+                                     Future<ExtractionResult> future, long submittedAt, AtomicLong startedAt,
+                                     AtomicBoolean claimed) {
+    }
+}
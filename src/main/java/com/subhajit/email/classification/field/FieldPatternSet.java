@@ -0,0 +1,100 @@
+package com.subhajit.email.classification.field;
+
+import com.subhajit.email.classification.classification.AhoCorasickMatcher;
+import com.subhajit.email.classification.configuration.FieldExtractionProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * All field definitions compiled for a single pass over a text.
+ * <p>
+ * The labels of every field form one Aho-Corasick automaton, so finding them costs one scan of the text however
+ * many fields are defined. Value patterns only run where a label was found, anchored right after it and bounded
+ * by the value window, so their cost depends on the number of label hits rather than on the text size or the
+ * number of fields.
+ */
+public class FieldPatternSet {
+
+    private static final String OPTIONAL_SEPARATOR = "[ \\t]*(?:[:=#\\-\\u2013][ \\t]*)?";
+    private static final String REQUIRED_SEPARATOR = "[ \\t]*[:=#\\-\\u2013][ \\t]*";
+
+    private final List<FieldExtractionProperties.Field> fields;
+    private final Pattern[] valuePatterns;
+    private final int[] fieldOfLabel;
+    private final AhoCorasickMatcher labelMatcher;
+    private final int valueWindow;
+
+    /**
+     * Receives the values found by {@link #scan}.
+     */
+    public interface ValueListener {
+
+        /**
+         * Whether a value of the field is still of interest; when false the value pattern is not run.
+         */
+        boolean wants(int field);
+
+        void onValue(int field, CharSequence text, int start, int end);
+    }
+
+    public FieldPatternSet(List<FieldExtractionProperties.Field> fields, int valueWindow) {
+        this.fields = List.copyOf(fields);
+        this.valueWindow = valueWindow;
+        this.valuePatterns = new Pattern[fields.size()];
+        List<String> labels = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        for (int f = 0; f < fields.size(); f++) {
+            FieldExtractionProperties.Field field = fields.get(f);
+            // The value is always group 1, whatever groups the configured pattern has
+            valuePatterns[f] = Pattern.compile((field.isRequireSeparator() ? REQUIRED_SEPARATOR : OPTIONAL_SEPARATOR)
+                    + "(" + field.getPattern() + ")");
+            for (String label : field.getLabels()) {
+                if (label != null && !label.isBlank()) {
+                    labels.add(label.trim());
+                    owners.add(f);
+                }
+            }
+        }
+        this.fieldOfLabel = owners.stream().mapToInt(Integer::intValue).toArray();
+        this.labelMatcher = new AhoCorasickMatcher(labels);
+    }
+
+    public int size() {
+        return fields.size();
+    }
+
+    public FieldExtractionProperties.Field field(int index) {
+        return fields.get(index);
+    }
+
+    /**
+     * Scans the text once and reports the value following each label.
+     *
+     * @param text     The text to scan
+     * @param listener Receives the values in text order
+     */
+    public void scan(CharSequence text, ValueListener listener) {
+        if (text == null || text.isEmpty() || fieldOfLabel.length == 0) {
+            return;
+        }
+        Matcher[] matchers = new Matcher[valuePatterns.length];
+        labelMatcher.match(text, (label, start, end) -> {
+            int field = fieldOfLabel[label];
+            if (!listener.wants(field)) {
+                return;
+            }
+            Matcher matcher = matchers[field];
+            if (matcher == null) {
+                matcher = valuePatterns[field].matcher(text);
+                matchers[field] = matcher;
+            }
+            matcher.region(end, Math.min(text.length(), end + valueWindow));
+            if (matcher.lookingAt() && matcher.end(1) > matcher.start(1)) {
+                listener.onValue(field, text, matcher.start(1), matcher.end(1));
+            }
+        });
+    }
+}
@@ -0,0 +1,10 @@
+package com.subhajit.email.classification.field;
+
+/**
+ * Part of an email a field value was found in.
+ */
+public enum FieldSource {
+    SUBJECT,
+    BODY,
+    ATTACHMENT
+}
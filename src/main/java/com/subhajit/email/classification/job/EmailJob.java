@@ -0,0 +1,129 @@
+package com.subhajit.email.classification.job;
+
+import com.subhajit.email.classification.model.EmailAttachment;
+import com.subhajit.email.classification.model.JobResponse;
+import com.subhajit.email.classification.model.ParsedEmailResponse;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A queued email and, once processed, its result. Ordered by priority and then by submission sequence.
+ */
+public class EmailJob implements Comparable<EmailJob> {
+
+    private final String id;
+    private final JobPriority priority;
+    private final long sequence;
+    private final Instant submittedAt = Instant.now();
+    private final String fileName;
+    private EmailAttachment content;
+
+    private volatile JobStatus status = JobStatus.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant completedAt;
+    private volatile ParsedEmailResponse result;
+    private volatile String error;
+    private final List<Consumer<JobResponse>> listeners = new ArrayList<>();
+
+    public EmailJob(String id, JobPriority priority, long sequence, String fileName, EmailAttachment content) {
+        this.id = id;
+        this.priority = priority;
+        this.sequence = sequence;
+        this.fileName = fileName;
+        this.content = content;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public EmailAttachment getContent() {
+        return content;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    public void markRunning() {
+        startedAt = Instant.now();
+        status = JobStatus.RUNNING;
+    }
+
+    /**
+     * Records the outcome, releases the buffered email and notifies the registered listeners.
+     *
+     * @param result The processing result, or null on failure
+     * @param error  The failure message, or null on success
+     */
+    public void finish(ParsedEmailResponse result, String error) {
+        List<Consumer<JobResponse>> toNotify;
+        synchronized (listeners) {
+            this.result = result;
+            this.error = error;
+            this.completedAt = Instant.now();
+            this.status = error == null ? JobStatus.COMPLETED : JobStatus.FAILED;
+            releaseContent();
+            toNotify = new ArrayList<>(listeners);
+            listeners.clear();
+        }
+        JobResponse response = toResponse();
+        toNotify.forEach(listener -> listener.accept(response));
+    }
+
+    /**
+     * Registers a listener for the completion of the job. If the job has already finished the listener is called
+     * immediately.
+     *
+     * @param listener Receives the final state of the job
+     */
+    public void onCompletion(Consumer<JobResponse> listener) {
+        synchronized (listeners) {
+            if (!status.isFinished()) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.accept(toResponse());
+    }
+
+    private void releaseContent() {
+        if (content != null) {
+            content.close();
+            content = null;
+        }
+    }
+
+    /**
+     * Releases the buffered email of a job that will not run, e.g. on shutdown.
+     */
+    public void releaseContentQuietly() {
+        synchronized (listeners) {
+            releaseContent();
+        }
+    }
+
+    /**
+     * @return The current state of the job as returned by the API
+     */
+    public JobResponse toResponse() {
+        return new JobResponse(id, status, priority, submittedAt, startedAt, completedAt, result, error);
+    }
+
+    @Override
+    public int compareTo(EmailJob other) {
+        int byPriority = priority.compareTo(other.priority);
+        return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+    }
+}
@@ -0,0 +1,11 @@
+package com.subhajit.email.classification.job;
+
+/**
+ * Queue priority of a job. Jobs of a higher priority are always started first; within a priority jobs run in
+ * submission order.
+ */
+public enum JobPriority {
+    HIGH,
+    NORMAL,
+    LOW
+}
@@ -0,0 +1,21 @@
+package com.subhajit.email.classification.job;
+
+/**
+ * Thrown when a job is submitted while the queue is at capacity.
+ */
+public class JobQueueFullException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public JobQueueFullException(int capacity, long retryAfterSeconds) {
+        super("Job queue is full (" + capacity + " jobs)");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return Suggested number of seconds before the client tries again
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,129 @@
+package com.subhajit.email.classification.llm;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit with additive increase and multiplicative decrease. Each successful call made while the
+ * limit was fully used grows the limit by {@code 1/limit}, so it rises by about one per round of calls; a
+ * throttled call halves it. Calls above the limit wait for a permit.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private long throttled;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.clamp(initialLimit, this.minLimit, this.maxLimit);
+    }
+
+    /**
+     * Waits until a call may start.
+     *
+     * @param timeout The maximum wait
+     * @param unit    The unit of {@code timeout}
+     * @return false if no permit became free in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean acquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = permitReleased.awaitNanos(remaining);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a permit after a successful call.
+     */
+    public void onSuccess() {
+        lock.lock();
+        try {
+            if (inFlight >= (int) limit) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            inFlight--;
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Shrinks the limit after the model throttled a call. The caller keeps its permit for the retry.
+     */
+    public void onThrottled() {
+        lock.lock();
+        try {
+            throttled++;
+            limit = Math.max(minLimit, limit / 2);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a permit after a failed call without changing the limit.
+     */
+    public void onFailure() {
+        release();
+    }
+
+    /**
+     * Releases a permit that was not used for a call.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getThrottled() {
+        lock.lock();
+        try {
+            return throttled;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
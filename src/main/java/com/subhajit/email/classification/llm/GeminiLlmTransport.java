@@ -0,0 +1,56 @@
+package com.subhajit.email.classification.llm;
+
+import com.google.genai.Client;
+import com.google.genai.errors.ApiException;
+import com.google.genai.types.GenerateContentResponse;
+import com.subhajit.email.classification.configuration.ClassifierProperties;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sends prompts to a Gemini model through the Google GenAI SDK.
+ */
+@Component
+@ConditionalOnProperty(name = "email.classification.classifier.llm.provider", havingValue = "gemini",
+        matchIfMissing = true)
+public class GeminiLlmTransport implements LlmTransport {
+
+    private final ClassifierProperties.Llm properties;
+    private volatile Client client;
+
+    public GeminiLlmTransport(ClassifierProperties properties) {
+        this.properties = properties.getLlm();
+    }
+
+    @Override
+    public String generate(String prompt) throws LlmTransportException {
+        try {
+            GenerateContentResponse response = client().models.generateContent(properties.getModel(), prompt, null);
+            return response.text();
+        } catch (ApiException ex) {
+            // The SDK raises ApiException with the HTTP status of the failed call, so quota errors (429) and
+            // rejected requests (other 4xx) are told apart the same way as for the http provider
+            throw LlmTransportException.forStatus(ex.code(), "Error calling Gemini: " + ex.getMessage(), null, ex);
+        } catch (Exception ex) {
+            // No status, e.g. a connection failure or an unreadable response; worth another attempt
+            throw new LlmTransportException("Error calling Gemini: " + ex.getMessage(), true, false, null, ex);
+        }
+    }
+
+    /**
+     * Creates the client on first use, so the application starts without an API key when the LLM tier is unused.
+     */
+    private Client client() {
+        if (client == null) {
+            synchronized (this) {
+                if (client == null) {
+                    client = StringUtils.isNoneEmpty(properties.getApiKey())
+                            ? Client.builder().apiKey(properties.getApiKey()).build()
+                            : new Client();
+                }
+            }
+        }
+        return client;
+    }
+}
@@ -0,0 +1,72 @@
+package com.subhajit.email.classification.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.subhajit.email.classification.configuration.ClassifierProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Sends prompts to a model server over plain HTTP: {@code POST {"model": "...", "prompt": "..."}} answered with
+ * {@code {"text": "..."}}. Intended for local or fake model servers standing in for Gemini during tests.
+ */
+@Component
+@ConditionalOnProperty(name = "email.classification.classifier.llm.provider", havingValue = "http")
+public class HttpLlmTransport implements LlmTransport {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final ClassifierProperties.Llm properties;
+    private final HttpClient httpClient;
+
+    public HttpLlmTransport(ClassifierProperties properties) {
+        this.properties = properties.getLlm();
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(this.properties.getHttpTimeout())
+                .build();
+    }
+
+    @Override
+    public String generate(String prompt) throws LlmTransportException {
+        try {
+            byte[] body = OBJECT_MAPPER.writeValueAsBytes(Map.of("model", properties.getModel(), "prompt", prompt));
+            HttpRequest request = HttpRequest.newBuilder(URI.create(properties.getUrl()))
+                    .timeout(properties.getHttpTimeout())
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build();
+            HttpResponse<String> response = httpClient.send(request,
+                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            if (response.statusCode() != 200) {
+                throw LlmTransportException.forStatus(response.statusCode(),
+                        "Model server returned HTTP " + response.statusCode(), retryAfter(response));
+            }
+            JsonNode text = OBJECT_MAPPER.readTree(response.body()).get("text");
+            if (text == null || text.isNull()) {
+                throw new LlmTransportException("Model server answer has no text", false, false, null, null);
+            }
+            return text.asText();
+        } catch (IOException ex) {
+            throw new LlmTransportException("Error calling model server: " + ex.getMessage(), true, false, null, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new LlmTransportException("Interrupted calling model server", false, false, null, ex);
+        }
+    }
+
+    private static Duration retryAfter(HttpResponse<?> response) {
+        return response.headers().firstValue("Retry-After")
+                .filter(value -> !value.isEmpty() && value.chars().allMatch(Character::isDigit))
+                .map(value -> Duration.ofSeconds(Long.parseLong(value)))
+                .orElse(null);
+    }
+}
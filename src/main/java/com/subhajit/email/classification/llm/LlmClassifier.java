@@ -0,0 +1,24 @@
+package com.subhajit.email.classification.llm;
+
+import com.subhajit.email.classification.classification.ClassificationInput;
+import com.subhajit.email.classification.configuration.ClassifierProperties;
+import com.subhajit.email.classification.model.EmailClassification;
+
+import java.util.List;
+
+/**
+ * Classifies an email with a language model. Implementations are selected with
+ * {@code email.classification.classifier.llm.provider}.
+ */
+public interface LlmClassifier {
+
+    /**
+     * Classifies an email.
+     *
+     * @param input   The email text
+     * @param allowed The request types the model may choose from
+     * @return The classification
+     * @throws Exception if the model cannot be reached or its answer cannot be read
+     */
+    EmailClassification classify(ClassificationInput input, List<ClassifierProperties.Rule> allowed) throws Exception;
+}
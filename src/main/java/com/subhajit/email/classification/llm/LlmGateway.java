@@ -0,0 +1,432 @@
+package com.subhajit.email.classification.llm;
+
+import com.subhajit.email.classification.classification.ClassificationInput;
+import com.subhajit.email.classification.configuration.ClassifierProperties;
+import com.subhajit.email.classification.model.EmailClassification;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Classifies emails with the model behind an {@link LlmTransport}, keeping cost and tail latency in check:
+ * <ul>
+ *     <li>each email is fitted to a token budget by {@link TokenBudget};</li>
+ *     <li>identical emails in flight at the same time share one call;</li>
+ *     <li>emails arriving within a short window are sent together in one prompt;</li>
+ *     <li>concurrent calls are bounded by an {@link AdaptiveConcurrencyLimiter} that backs off when the model
+ *     throttles;</li>
+ *     <li>transient failures are retried with exponential backoff and full jitter.</li>
+ * </ul>
+ * Emails the model leaves unanswered in a batch are retried on their own. Batches wait for a permit on their own
+ * call thread, so the batcher keeps forming batches meanwhile, and an email whose callers have all given up is
+ * dropped before it is sent.
+ */
+@Component
+@ConditionalOnExpression("'${email.classification.classifier.llm.provider:gemini}' != 'stub'")
+public class LlmGateway implements LlmClassifier, MeterBinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LlmGateway.class);
+
+    private final ClassifierProperties.Llm properties;
+    private final LlmTransport transport;
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    private final LinkedBlockingQueue<PendingRequest> queue = new LinkedBlockingQueue<>();
+    private final Map<String, PendingRequest> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong batchedEmails = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+    private final AtomicLong tokensSent = new AtomicLong();
+    private final AtomicLong tokensTrimmed = new AtomicLong();
+
+    private Thread batcher;
+    private ExecutorService callExecutor;
+    private PendingRequest carryOver;
+
+    public LlmGateway(ClassifierProperties properties, LlmTransport transport) {
+        this.properties = properties.getLlm();
+        this.transport = transport;
+        this.limiter = new AdaptiveConcurrencyLimiter(this.properties.getInitialConcurrency(),
+                this.properties.getMinConcurrency(), this.properties.getMaxConcurrency());
+    }
+
+    @PostConstruct
+    public void start() {
+        callExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("llm-call-", 0).factory());
+        batcher = Thread.ofPlatform().daemon(true).name("llm-batcher").start(this::runBatcher);
+    }
+
+    @PreDestroy
+    public void stop() {
+        batcher.interrupt();
+        callExecutor.shutdownNow();
+        PendingRequest pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future().completeExceptionally(new IllegalStateException("LLM gateway is shutting down"));
+        }
+    }
+
+    @Override
+    public EmailClassification classify(ClassificationInput input, List<ClassifierProperties.Rule> allowed)
+            throws Exception {
+        CompletableFuture<EmailClassification> future = submit(input, allowed);
+        try {
+            return future.get(properties.getRequestTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception cause ? cause : ex;
+        } catch (TimeoutException ex) {
+            future.cancel(false);
+            throw new TimeoutException("No LLM answer within " + properties.getRequestTimeout());
+        }
+    }
+
+    /**
+     * Queues an email for classification. Cancelling the returned future gives up on the answer; once every caller
+     * sharing the email has done so, it is no longer sent.
+     *
+     * @param input   The email text
+     * @param allowed The request types the model may choose from
+     * @return The classification, completed when the model has answered
+     */
+    public CompletableFuture<EmailClassification> submit(ClassificationInput input,
+                                                         List<ClassifierProperties.Rule> allowed) {
+        requests.incrementAndGet();
+        ClassificationInput fitted = TokenBudget.fit(input, properties.getMaxInputTokens());
+        int tokens = TokenBudget.estimateTokens(fitted);
+        tokensTrimmed.addAndGet(TokenBudget.estimateTokens(input) - tokens);
+
+        PendingRequest pending = new PendingRequest(fitted, allowed, tokens, false, new CompletableFuture<>(),
+                new AtomicInteger());
+        if (properties.isCoalesce()) {
+            String key = key(fitted, allowed);
+            PendingRequest existing;
+            while ((existing = inFlight.putIfAbsent(key, pending)) != null) {
+                if (!existing.future().isCancelled()) {
+                    coalesced.incrementAndGet();
+                    return existing.waiter();
+                }
+                // Abandoned by its callers an instant ago
+                inFlight.remove(key, existing);
+            }
+            pending.future().whenComplete((result, ex) -> inFlight.remove(key, pending));
+        }
+        CompletableFuture<EmailClassification> waiter = pending.waiter();
+        queue.add(pending);
+        return waiter;
+    }
+
+    public LlmGatewayMetrics metrics() {
+        return new LlmGatewayMetrics(requests.get(), coalesced.get(), calls.get(), batchedEmails.get(),
+                retries.get(), limiter.getThrottled(), failed.get(), tokensSent.get(), tokensTrimmed.get(),
+                abandoned.get(), limiter.getLimit(), limiter.getInFlight(), queue.size());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Map<String, ToDoubleFunction<LlmGatewayMetrics>> requestCounters = Map.of(
+                "requested", LlmGatewayMetrics::requests,
+                "coalesced", LlmGatewayMetrics::coalesced,
+                "abandoned", LlmGatewayMetrics::abandoned,
+                "failed", LlmGatewayMetrics::failed);
+        requestCounters.forEach((outcome, value) -> FunctionCounter.builder("email.llm.requests", this,
+                        g -> value.applyAsDouble(g.metrics()))
+                .description("Classifications handed to the LLM gateway")
+                .tag("outcome", outcome)
+                .register(registry));
+        Map<String, ToDoubleFunction<LlmGatewayMetrics>> callCounters = Map.of(
+                "first", LlmGatewayMetrics::calls,
+                "retry", LlmGatewayMetrics::retries,
+                "throttled", LlmGatewayMetrics::throttled);
+        callCounters.forEach((attempt, value) -> FunctionCounter.builder("email.llm.calls", this,
+                        g -> value.applyAsDouble(g.metrics()))
+                .description("Model calls made by the LLM gateway")
+                .tag("attempt", attempt)
+                .register(registry));
+        FunctionCounter.builder("email.llm.batched.emails", this, g -> g.metrics().batchedEmails())
+                .description("Emails sent in calls carrying more than one email")
+                .register(registry);
+        Map<String, ToDoubleFunction<LlmGatewayMetrics>> tokenCounters = Map.of(
+                "sent", LlmGatewayMetrics::tokensSent,
+                "trimmed", LlmGatewayMetrics::tokensTrimmed);
+        tokenCounters.forEach((kind, value) -> FunctionCounter.builder("email.llm.tokens", this,
+                        g -> value.applyAsDouble(g.metrics()))
+                .description("Estimated prompt tokens sent to the model or removed by the token budget")
+                .baseUnit("tokens")
+                .tag("kind", kind)
+                .register(registry));
+        Gauge.builder("email.llm.concurrency.limit", this, g -> g.metrics().concurrencyLimit())
+                .description("Current adaptive limit on concurrent model calls")
+                .register(registry);
+        Gauge.builder("email.llm.in.flight", this, g -> g.metrics().inFlight())
+                .description("Model calls currently running")
+                .register(registry);
+        Gauge.builder("email.llm.queued", this, g -> g.metrics().queued())
+                .description("Classifications waiting to be batched")
+                .register(registry);
+    }
+
+    private void runBatcher() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<PendingRequest> batch = new ArrayList<>(properties.getBatchSize());
+                PendingRequest first = carryOver != null ? carryOver : queue.take();
+                carryOver = null;
+                if (first.future().isDone()) {
+                    abandoned.incrementAndGet();
+                    continue;
+                }
+                batch.add(first);
+                if (!first.alone()) {
+                    fillBatch(batch, properties.getBatchWindow().toNanos());
+                }
+                callExecutor.execute(() -> dispatch(batch));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException ex) {
+                LOGGER.error("Error in LLM batcher: {}", ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * Adds queued requests to the batch until it is full, its token limit is reached, or the wait is over.
+     */
+    private void fillBatch(List<PendingRequest> batch, long waitNanos) throws InterruptedException {
+        int tokens = batch.stream().mapToInt(PendingRequest::tokens).sum();
+        long deadlineNanos = System.nanoTime() + waitNanos;
+        while (carryOver == null && batch.size() < properties.getBatchSize()) {
+            long remaining = deadlineNanos - System.nanoTime();
+            PendingRequest next = remaining <= 0
+                    ? queue.poll()
+                    : queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            if (next.future().isDone()) {
+                abandoned.incrementAndGet();
+                continue;
+            }
+            if (next.alone() || !next.allowed().equals(batch.getFirst().allowed())
+                    || tokens + next.tokens() > properties.getMaxBatchTokens()) {
+                carryOver = next;
+                return;
+            }
+            batch.add(next);
+            tokens += next.tokens();
+        }
+    }
+
+    /**
+     * Waits for a limiter permit on the call thread, then sends what is left of the batch once requests whose
+     * callers gave up in the meantime are removed.
+     */
+    private void dispatch(List<PendingRequest> batch) {
+        try {
+            if (!limiter.acquire(properties.getRequestTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                fail(batch, new TimeoutException("No LLM capacity within " + properties.getRequestTimeout()));
+                return;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            fail(batch, ex);
+            return;
+        }
+        List<PendingRequest> live = new ArrayList<>(batch.size());
+        for (PendingRequest pending : batch) {
+            if (pending.future().isDone()) {
+                abandoned.incrementAndGet();
+            } else {
+                live.add(pending);
+            }
+        }
+        if (live.isEmpty()) {
+            limiter.release();
+            return;
+        }
+        send(live);
+    }
+
+    /**
+     * Sends a batch while holding a limiter permit, and releases the permit.
+     */
+    private void send(List<PendingRequest> batch) {
+        List<ClassificationInput> inputs = batch.stream().map(PendingRequest::input).toList();
+        List<ClassifierProperties.Rule> allowed = batch.getFirst().allowed();
+        String prompt = batch.size() == 1
+                ? LlmPrompts.classificationPrompt(inputs.getFirst(), allowed)
+                : LlmPrompts.batchPrompt(inputs, allowed);
+        calls.incrementAndGet();
+        if (batch.size() > 1) {
+            batchedEmails.addAndGet(batch.size());
+        }
+
+        String answer;
+        try {
+            answer = callWithRetry(prompt);
+            limiter.onSuccess();
+        } catch (LlmTransportException ex) {
+            limiter.onFailure();
+            fail(batch, ex);
+            return;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            limiter.onFailure();
+            fail(batch, ex);
+            return;
+        }
+        deliver(batch, answer);
+    }
+
+    private void deliver(List<PendingRequest> batch, String answer) {
+        List<EmailClassification> results;
+        try {
+            results = LlmPrompts.parseBatch(answer, batch.size());
+        } catch (Exception ex) {
+            LOGGER.warn("Error reading LLM answer for {} email(s): {}", batch.size(), ex.getMessage());
+            if (batch.size() == 1) {
+                fail(batch, ex);
+                return;
+            }
+            results = new ArrayList<>(Collections.nCopies(batch.size(), null));
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            PendingRequest pending = batch.get(i);
+            EmailClassification result = results.get(i);
+            if (result != null) {
+                pending.future().complete(result);
+            } else if (batch.size() > 1) {
+                queue.add(new PendingRequest(pending.input(), pending.allowed(), pending.tokens(), true,
+                        pending.future(), pending.waiters()));
+            } else {
+                fail(List.of(pending), new IllegalStateException("LLM answer has no classification"));
+            }
+        }
+    }
+
+    private String callWithRetry(String prompt) throws LlmTransportException, InterruptedException {
+        int promptTokens = TokenBudget.estimateTokens(prompt);
+        for (int attempt = 1; ; attempt++) {
+            tokensSent.addAndGet(promptTokens);
+            try {
+                return transport.generate(prompt);
+            } catch (LlmTransportException ex) {
+                if (ex.isThrottled()) {
+                    limiter.onThrottled();
+                }
+                if (!ex.isRetryable() || attempt >= properties.getMaxAttempts()) {
+                    throw ex;
+                }
+                retries.incrementAndGet();
+                Duration backoff = backoff(attempt, ex.getRetryAfter());
+                LOGGER.debug("Retrying LLM call in {} ms after attempt {}: {}", backoff.toMillis(), attempt,
+                        ex.getMessage());
+                Thread.sleep(backoff.toMillis());
+            }
+        }
+    }
+
+    /**
+     * Exponential backoff with full jitter, never shorter than the wait the model asked for.
+     */
+    private Duration backoff(int attempt, Duration retryAfter) {
+        long ceiling = Math.min(properties.getMaxBackoff().toMillis(),
+                properties.getInitialBackoff().toMillis() << Math.min(attempt - 1, 20));
+        long jittered = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        return retryAfter != null && retryAfter.toMillis() > jittered ? retryAfter : Duration.ofMillis(jittered);
+    }
+
+    private void fail(List<PendingRequest> batch, Throwable ex) {
+        failed.addAndGet(batch.size());
+        batch.forEach(pending -> pending.future().completeExceptionally(ex));
+    }
+
+    /**
+     * Digest of everything the prompt is built from: the request types offered, as the prompt names them, and the
+     * email. Equal keys mean identical prompts, so the answer can be shared.
+     */
+    private static String key(ClassificationInput input, List<ClassifierProperties.Rule> allowed) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (ClassifierProperties.Rule rule : allowed) {
+                update(digest, rule.getRequestType());
+                digest.update((byte) 0);
+                update(digest, rule.getSubRequestType());
+                digest.update((byte) 1);
+            }
+            digest.update((byte) 0);
+            digest.update(input.subject().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(input.body().getBytes(StandardCharsets.UTF_8));
+            for (String attachmentText : input.attachmentTexts()) {
+                digest.update((byte) 0);
+                digest.update(attachmentText.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * An email waiting for the model. {@code alone} requests are sent in a prompt of their own, after the model
+     * left them unanswered in a batch. {@code waiters} counts the callers still interested in the answer.
+     */
+    private record PendingRequest(ClassificationInput input, List<ClassifierProperties.Rule> allowed, int tokens,
+                                  boolean alone, CompletableFuture<EmailClassification> future,
+                                  AtomicInteger waiters) {
+
+        /**
+         * Registers a caller. Cancelling the returned future withdraws it, and the last caller to withdraw cancels
+         * the request itself.
+         */
+        CompletableFuture<EmailClassification> waiter() {
+            waiters.incrementAndGet();
+            CompletableFuture<EmailClassification> waiter = future.copy();
+            waiter.whenComplete((result, ex) -> {
+                if (waiter.isCancelled() && waiters.decrementAndGet() == 0) {
+                    future.cancel(false);
+                }
+            });
+            return waiter;
+        }
+    }
+}
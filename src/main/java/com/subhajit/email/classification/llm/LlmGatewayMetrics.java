@@ -0,0 +1,23 @@
+package com.subhajit.email.classification.llm;
+
+/**
+ * Point-in-time counters of the {@link LlmGateway}.
+ *
+ * @param requests         Classifications requested since startup
+ * @param coalesced        Requests answered by an identical call already in flight
+ * @param calls            Model calls made, excluding retries
+ * @param batchedEmails    Emails sent in calls carrying more than one email
+ * @param retries          Repeated model calls
+ * @param throttled        Calls the model rejected because of rate or quota limits
+ * @param failed           Requests that failed after all retries
+ * @param tokensSent       Estimated prompt tokens sent
+ * @param tokensTrimmed    Estimated tokens removed by the token budget
+ * @param abandoned        Requests dropped unsent because every caller had given up
+ * @param concurrencyLimit Current adaptive concurrency limit
+ * @param inFlight         Model calls currently running
+ * @param queued           Requests waiting to be batched
+ */
+public record LlmGatewayMetrics(long requests, long coalesced, long calls, long batchedEmails, long retries,
+                                long throttled, long failed, long tokensSent, long tokensTrimmed,
+                                long abandoned, int concurrencyLimit, int inFlight, int queued) {
+}
@@ -0,0 +1,148 @@
+package com.subhajit.email.classification.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.subhajit.email.classification.classification.ClassificationInput;
+import com.subhajit.email.classification.configuration.ClassifierProperties;
+import com.subhajit.email.classification.model.EmailClassification;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds classification prompts and reads the model's JSON answers.
+ */
+public class LlmPrompts {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String ANSWER_FORMAT = "{\"requestType\": \"...\", \"subRequestType\": \"...\", "
+            + "\"confidence\": 0.0-1.0, \"reasoning\": \"one sentence\"}";
+
+    private LlmPrompts() {
+        // Private constructor to prevent instantiation
+    }
+
+    /**
+     * Builds the prompt for one email. The input is expected to be fitted to the token budget already.
+     *
+     * @param input   The email text
+     * @param allowed The request types the model may choose from
+     * @return The prompt
+     */
+    public static String classificationPrompt(ClassificationInput input, List<ClassifierProperties.Rule> allowed) {
+        StringBuilder sb = new StringBuilder(1024);
+        appendInstructions(sb, allowed);
+        sb.append("Answer with JSON only: ").append(ANSWER_FORMAT).append("\n\n");
+        appendEmail(sb, input);
+        return sb.toString();
+    }
+
+    /**
+     * Builds one prompt classifying several emails. The model answers with a JSON array whose elements carry the
+     * number of the email they classify.
+     *
+     * @param inputs  The emails, numbered from 1 in the prompt
+     * @param allowed The request types the model may choose from
+     * @return The prompt
+     */
+    public static String batchPrompt(List<ClassificationInput> inputs, List<ClassifierProperties.Rule> allowed) {
+        StringBuilder sb = new StringBuilder(1024 * inputs.size());
+        appendInstructions(sb, allowed);
+        sb.append("Classify each of the ").append(inputs.size()).append(" emails below independently. ")
+                .append("Answer with a JSON array only, one element per email: [{\"id\": <email number>, ")
+                .append(ANSWER_FORMAT, 1, ANSWER_FORMAT.length()).append(", ...]\n\n");
+        for (int i = 0; i < inputs.size(); i++) {
+            sb.append("### Email ").append(i + 1).append('\n');
+            appendEmail(sb, inputs.get(i));
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void appendInstructions(StringBuilder sb, List<ClassifierProperties.Rule> allowed) {
+        sb.append("You classify commercial banking service request emails.\n")
+                .append("Choose exactly one request type and sub request type from this list:\n");
+        appendAllowedTypes(sb, allowed);
+    }
+
+    static void appendAllowedTypes(StringBuilder sb, List<ClassifierProperties.Rule> allowed) {
+        for (ClassifierProperties.Rule rule : allowed) {
+            sb.append("- ").append(rule.getRequestType());
+            if (StringUtils.isNoneEmpty(rule.getSubRequestType())) {
+                sb.append(" / ").append(rule.getSubRequestType());
+            }
+            sb.append('\n');
+        }
+    }
+
+    static void appendEmail(StringBuilder sb, ClassificationInput input) {
+        sb.append("Subject: ").append(input.subject()).append('\n');
+        sb.append("Body:\n").append(input.body()).append('\n');
+        List<String> attachmentTexts = input.attachmentTexts();
+        for (int i = 0; i < attachmentTexts.size(); i++) {
+            sb.append("Attachment ").append(i + 1).append(":\n").append(attachmentTexts.get(i)).append('\n');
+        }
+    }
+
+    /**
+     * Reads a classification from the model's answer, tolerating Markdown code fences around the JSON.
+     *
+     * @param answer The raw model output
+     * @return The classification
+     * @throws Exception if the answer is not the expected JSON
+     */
+    public static EmailClassification parseClassification(String answer) throws Exception {
+        return toClassification(OBJECT_MAPPER.readTree(stripCodeFence(answer)));
+    }
+
+    /**
+     * Reads the answer to a {@link #batchPrompt batch prompt}.
+     *
+     * @param answer The raw model output
+     * @param size   Number of emails in the batch
+     * @return One classification per email, in prompt order; null where the model gave no usable answer
+     * @throws Exception if the answer is not JSON
+     */
+    public static List<EmailClassification> parseBatch(String answer, int size) throws Exception {
+        JsonNode root = OBJECT_MAPPER.readTree(stripCodeFence(answer));
+        List<EmailClassification> results = new ArrayList<>(Collections.nCopies(size, null));
+        if (root.isObject() && size == 1) {
+            results.set(0, toClassification(root));
+            return results;
+        }
+        for (JsonNode element : root) {
+            int id = element.path("id").asInt(0);
+            if (id >= 1 && id <= size && element.hasNonNull("requestType")) {
+                results.set(id - 1, toClassification(element));
+            }
+        }
+        return results;
+    }
+
+    static EmailClassification toClassification(JsonNode node) {
+        return new EmailClassification(
+                textOrNull(node, "requestType"),
+                textOrNull(node, "subRequestType"),
+                node.path("confidence").asDouble(0.5),
+                textOrNull(node, "reasoning"));
+    }
+
+    static String stripCodeFence(String answer) {
+        String trimmed = StringUtils.trimToEmpty(answer);
+        if (trimmed.startsWith("```")) {
+            int firstNewline = trimmed.indexOf('\n');
+            int lastFence = trimmed.lastIndexOf("```");
+            if (firstNewline > 0 && lastFence > firstNewline) {
+                return trimmed.substring(firstNewline + 1, lastFence).trim();
+            }
+        }
+        return trimmed;
+    }
+
+    private static String textOrNull(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+}
@@ -0,0 +1,18 @@
+package com.subhajit.email.classification.llm;
+
+/**
+ * Sends a prompt to a language model and returns its raw answer. Implementations are selected with
+ * {@code email.classification.classifier.llm.provider}; batching, retries and concurrency are handled by
+ * {@link LlmGateway}.
+ */
+public interface LlmTransport {
+
+    /**
+     * Sends one prompt.
+     *
+     * @param prompt The prompt
+     * @return The model's answer text
+     * @throws LlmTransportException if the call fails; its flags tell the gateway whether to retry and back off
+     */
+    String generate(String prompt) throws LlmTransportException;
+}
@@ -0,0 +1,59 @@
+package com.subhajit.email.classification.llm;
+
+import java.time.Duration;
+
+/**
+ * Failure of an {@link LlmTransport} call.
+ */
+public class LlmTransportException extends Exception {
+
+    private final boolean retryable;
+    private final boolean throttled;
+    private final Duration retryAfter;
+
+    public LlmTransportException(String message, boolean retryable, boolean throttled, Duration retryAfter,
+                                 Throwable cause) {
+        super(message, cause);
+        this.retryable = retryable;
+        this.throttled = throttled;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Maps an HTTP status code to a transport failure: 429 is throttling, 408 and 5xx are retryable.
+     */
+    public static LlmTransportException forStatus(int status, String message, Duration retryAfter) {
+        return forStatus(status, message, retryAfter, null);
+    }
+
+    /**
+     * Maps an HTTP status code to a transport failure, keeping the exception that reported it.
+     */
+    public static LlmTransportException forStatus(int status, String message, Duration retryAfter,
+                                                  Throwable cause) {
+        boolean throttled = status == 429;
+        boolean retryable = throttled || status == 408 || status >= 500;
+        return new LlmTransportException(message, retryable, throttled, retryAfter, cause);
+    }
+
+    /**
+     * Whether the same call may succeed when repeated.
+     */
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    /**
+     * Whether the model rejected the call because of rate or quota limits.
+     */
+    public boolean isThrottled() {
+        return throttled;
+    }
+
+    /**
+     * Wait requested by the model before the next call, or null.
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
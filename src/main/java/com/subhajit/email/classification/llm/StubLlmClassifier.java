@@ -0,0 +1,29 @@
+package com.subhajit.email.classification.llm;
+
+import com.subhajit.email.classification.classification.ClassificationInput;
+import com.subhajit.email.classification.configuration.ClassifierProperties;
+import com.subhajit.email.classification.model.EmailClassification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Offline stand-in for the language model that always returns the configured answer.
+ */
+@Component
+@ConditionalOnProperty(name = "email.classification.classifier.llm.provider", havingValue = "stub")
+public class StubLlmClassifier implements LlmClassifier {
+
+    private final ClassifierProperties.Llm properties;
+
+    public StubLlmClassifier(ClassifierProperties properties) {
+        this.properties = properties.getLlm();
+    }
+
+    @Override
+    public EmailClassification classify(ClassificationInput input, List<ClassifierProperties.Rule> allowed) {
+        return new EmailClassification(properties.getStubRequestType(), properties.getStubSubRequestType(), 1.0,
+                "Answered by the offline LLM stub");
+    }
+}
@@ -0,0 +1,131 @@
+package com.subhajit.email.classification.llm;
+
+import com.subhajit.email.classification.classification.ClassificationInput;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fits an email into a token budget before it is sent to the model. Text is first compacted (whitespace runs,
+ * repeated lines and duplicate attachments are dropped), then the remaining budget is shared fairly between the
+ * body and the attachments: short parts are kept whole and long parts give up their middle, keeping the head and
+ * the tail where greetings, references and totals usually are.
+ */
+public class TokenBudget {
+
+    /**
+     * Rough characters per token for English business text.
+     */
+    public static final int CHARS_PER_TOKEN = 4;
+
+    private static final int MAX_SUBJECT_CHARS = 500;
+    private static final String OMITTED_MARKER = "\n[... %d characters omitted ...]\n";
+
+    private TokenBudget() {
+        // Private constructor to prevent instantiation
+    }
+
+    public static int estimateTokens(CharSequence text) {
+        return text == null ? 0 : (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    public static int estimateTokens(ClassificationInput input) {
+        int tokens = estimateTokens(input.subject()) + estimateTokens(input.body());
+        for (String attachmentText : input.attachmentTexts()) {
+            tokens += estimateTokens(attachmentText);
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the email compacted and trimmed to at most {@code maxTokens} estimated tokens.
+     *
+     * @param input     The email text
+     * @param maxTokens The token budget
+     * @return The input itself when it already fits, otherwise a trimmed copy
+     */
+    public static ClassificationInput fit(ClassificationInput input, int maxTokens) {
+        List<String> parts = new ArrayList<>();
+        parts.add(compact(input.body()));
+        Set<String> seen = new LinkedHashSet<>();
+        for (String attachmentText : input.attachmentTexts()) {
+            String compacted = compact(attachmentText);
+            if (!compacted.isEmpty() && seen.add(compacted)) {
+                parts.add(compacted);
+            }
+        }
+        String subject = StringUtils.truncate(input.subject(), MAX_SUBJECT_CHARS);
+        int budget = Math.max(0, maxTokens * CHARS_PER_TOKEN - subject.length());
+
+        int[] shares = fairShares(parts, budget);
+        List<String> trimmed = new ArrayList<>(parts.size());
+        for (int i = 0; i < parts.size(); i++) {
+            trimmed.add(trimMiddle(parts.get(i), shares[i]));
+        }
+        ClassificationInput result = new ClassificationInput(subject, trimmed.getFirst(),
+                List.copyOf(trimmed.subList(1, trimmed.size())));
+        return estimateTokens(result) < estimateTokens(input) ? result : input;
+    }
+
+    /**
+     * Max-min fair split of {@code budget} characters: parts shorter than an equal share keep their full length
+     * and hand the rest to longer parts.
+     */
+    static int[] fairShares(List<String> parts, int budget) {
+        int[] shares = new int[parts.size()];
+        Integer[] bySize = new Integer[parts.size()];
+        Arrays.setAll(bySize, i -> i);
+        Arrays.sort(bySize, Comparator.comparingInt(i -> parts.get(i).length()));
+        int remaining = budget;
+        for (int k = 0; k < bySize.length; k++) {
+            int index = bySize[k];
+            int equalShare = remaining / (bySize.length - k);
+            shares[index] = Math.min(parts.get(index).length(), equalShare);
+            remaining -= shares[index];
+        }
+        return shares;
+    }
+
+    /**
+     * Collapses whitespace runs and drops lines already seen in the same text, such as repeated table headers
+     * and page footers.
+     */
+    static String compact(String text) {
+        if (StringUtils.isBlank(text)) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        Set<String> seenLines = new LinkedHashSet<>();
+        for (String line : text.split("\\R")) {
+            String normalized = StringUtils.normalizeSpace(line);
+            if (normalized.isEmpty()) {
+                continue;
+            }
+            // Short lines such as "Total" or "1" repeat legitimately in tables
+            if (normalized.length() > 20 && !seenLines.add(normalized)) {
+                continue;
+            }
+            sb.append(normalized).append('\n');
+        }
+        return sb.toString().trim();
+    }
+
+    static String trimMiddle(String text, int maxChars) {
+        if (text.length() <= maxChars) {
+            return text;
+        }
+        int keep = maxChars - String.format(OMITTED_MARKER, text.length()).length();
+        if (keep <= 0) {
+            return text.substring(0, Math.max(0, maxChars));
+        }
+        int head = keep * 2 / 3;
+        int tail = keep - head;
+        return text.substring(0, head) + String.format(OMITTED_MARKER, text.length() - keep)
+                + text.substring(text.length() - tail);
+    }
+}
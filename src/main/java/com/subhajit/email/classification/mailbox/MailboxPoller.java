@@ -0,0 +1,440 @@
+package com.subhajit.email.classification.mailbox;
+
+import com.subhajit.email.classification.configuration.MailboxProperties;
+import com.subhajit.email.classification.entity.MailboxCheckpoint;
+import com.subhajit.email.classification.repository.MailboxCheckpointRepository;
+import com.subhajit.email.classification.service.EmailProcessingService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.FetchProfile;
+import jakarta.mail.Flags;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Store;
+import jakarta.mail.UIDFolder;
+import jakarta.mail.internet.MimeMessage;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingests emails by polling IMAP folders.
+ * <p>
+ * Each poll opens the folder, compares its UIDVALIDITY with the stored {@link MailboxCheckpoint} and lists the UIDs
+ * above the checkpoint, up to {@code max-messages-per-poll}. The UIDs are split into ranges that are fetched by a
+ * fixed number of connections, each processing one message at a time, so connections and messages in flight are
+ * both bounded. Messages are handed to the pipeline as open {@link MimeMessage}s: their parts are streamed from the
+ * server as the parser reaches them, and nothing is serialized back to .eml.
+ * <p>
+ * The checkpoint only advances past UIDs that are done, in order, and is stored through the JPA datasource, so a
+ * restart resumes where processing stopped; messages that were in flight are processed again, which the duplicate
+ * detector reports. Polling refuses to start against an in-memory datasource, the default outside the
+ * {@code persistent} profile, unless {@code allow-volatile-checkpoints} is set. A message that fails in the pipeline
+ * is not retried, so it cannot block the folder. If the UIDVALIDITY changes, the old UIDs are void and the folder is
+ * synchronized again as configured by {@code initial-sync}.
+ */
+@Component
+public class MailboxPoller {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MailboxPoller.class);
+    private static final String FORMAT = "imap";
+    private static final List<String> IN_MEMORY_URLS = List.of("jdbc:h2:mem:", "jdbc:hsqldb:mem:",
+            "jdbc:derby:memory:");
+
+    private final MailboxProperties properties;
+    private final EmailProcessingService emailProcessingService;
+    private final MailboxCheckpointRepository checkpointRepository;
+    private final MeterRegistry meterRegistry;
+    private final Environment environment;
+
+    private final BlockingQueue<Store> idleStores = new LinkedBlockingQueue<>();
+    private final Set<Store> openStores = ConcurrentHashMap.newKeySet();
+    private Session session;
+    private ScheduledExecutorService poller;
+    private ExecutorService fetchers;
+    private volatile boolean running;
+    private Counter processed;
+    private Counter failed;
+    private Counter skipped;
+    private Counter errors;
+
+    public MailboxPoller(MailboxProperties properties, EmailProcessingService emailProcessingService,
+                         MailboxCheckpointRepository checkpointRepository, MeterRegistry meterRegistry,
+                         Environment environment) {
+        this.properties = properties;
+        this.emailProcessingService = emailProcessingService;
+        this.checkpointRepository = checkpointRepository;
+        this.meterRegistry = meterRegistry;
+        this.environment = environment;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        checkCheckpointStore();
+        processed = messageCounter("processed");
+        failed = messageCounter("failed");
+        skipped = messageCounter("skipped");
+        errors = Counter.builder("email.mailbox.errors")
+                .description("Polls or message ranges aborted by connection or server errors")
+                .register(meterRegistry);
+
+        session = Session.getInstance(sessionProperties());
+        running = true;
+        CustomizableThreadFactory fetcherFactory = new CustomizableThreadFactory("mailbox-fetch-");
+        fetcherFactory.setDaemon(true);
+        fetchers = Executors.newFixedThreadPool(Math.max(1, properties.getConnections()), fetcherFactory);
+        CustomizableThreadFactory pollerFactory = new CustomizableThreadFactory("mailbox-poller-");
+        pollerFactory.setDaemon(true);
+        poller = Executors.newSingleThreadScheduledExecutor(pollerFactory);
+        poller.scheduleWithFixedDelay(this::pollAll, 0, properties.getPollInterval().toMillis(),
+                TimeUnit.MILLISECONDS);
+        LOGGER.info("Polling {} on {} every {}", properties.getFolders(), properties.getHost(),
+                properties.getPollInterval());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        poller.shutdownNow();
+        fetchers.shutdown();
+        try {
+            if (!fetchers.awaitTermination(properties.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                fetchers.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            fetchers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        openStores.forEach(MailboxPoller::closeQuietly);
+    }
+
+    /**
+     * Fails fast when checkpoints would be lost on restart, unless that is explicitly allowed.
+     */
+    private void checkCheckpointStore() {
+        String url = environment.getProperty("spring.datasource.url");
+        if (!isInMemory(url)) {
+            return;
+        }
+        String message = "Mailbox checkpoints are stored in an in-memory database ("
+                + StringUtils.defaultIfEmpty(url, "embedded default")
+                + ") and are lost on restart, which synchronizes every folder again";
+        if (!properties.isAllowVolatileCheckpoints()) {
+            throw new IllegalStateException(message + "; activate the persistent profile, configure a persistent "
+                    + "spring.datasource.url or set email.classification.mailbox.allow-volatile-checkpoints");
+        }
+        LOGGER.warn(message);
+    }
+
+    static boolean isInMemory(String url) {
+        // Without a URL Spring Boot starts an embedded in-memory database
+        return StringUtils.isBlank(url)
+                || IN_MEMORY_URLS.stream().anyMatch(prefix -> StringUtils.startsWithIgnoreCase(url, prefix));
+    }
+
+    private void pollAll() {
+        for (String folderName : properties.getFolders()) {
+            try {
+                // Keep going while the folder has more new messages than one poll takes
+                while (running && poll(folderName)) {
+                    LOGGER.debug("Continuing with the backlog of {}", folderName);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ex) {
+                // Must not escape, or the scheduler stops polling
+                errors.increment();
+                LOGGER.error("Error polling mailbox folder {}: {}", folderName, ex.getMessage());
+            }
+            if (!running) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Processes the new messages of a folder.
+     *
+     * @return true if more new messages are left than this poll took
+     */
+    private boolean poll(String folderName) throws MessagingException, InterruptedException {
+        String mailbox = properties.getUsername() + "@" + properties.getHost() + "/" + folderName;
+        long uidValidity;
+        long lastUid;
+        long[] uids;
+        boolean backlog;
+
+        Store store = acquireStore();
+        Folder folder = null;
+        try {
+            folder = store.getFolder(folderName);
+            folder.open(Folder.READ_ONLY);
+            UIDFolder uidFolder = (UIDFolder) folder;
+            uidValidity = uidFolder.getUIDValidity();
+            MailboxCheckpoint checkpoint = checkpointRepository.findById(mailbox).orElse(null);
+            if (checkpoint != null && checkpoint.getUidValidity() == uidValidity) {
+                lastUid = checkpoint.getLastUid();
+            } else {
+                if (checkpoint != null) {
+                    LOGGER.warn("UIDVALIDITY of {} changed from {} to {}; synchronizing again", mailbox,
+                            checkpoint.getUidValidity(), uidValidity);
+                }
+                lastUid = properties.getInitialSync() == MailboxProperties.InitialSync.NEW
+                        ? nextUid(folder, uidFolder) - 1 : 0;
+                saveCheckpoint(mailbox, uidValidity, lastUid);
+            }
+
+            // "UID n:*" always matches the last message, even when its UID is below n
+            Message[] messages = uidFolder.getMessagesByUID(lastUid + 1, UIDFolder.MAXUID);
+            FetchProfile profile = new FetchProfile();
+            profile.add(UIDFolder.FetchProfileItem.UID);
+            folder.fetch(messages, profile);
+            long from = lastUid;
+            uids = Arrays.stream(messages)
+                    .mapToLong(message -> uid(uidFolder, message))
+                    .filter(uid -> uid > from)
+                    .sorted()
+                    .toArray();
+            backlog = uids.length > properties.getMaxMessagesPerPoll();
+            if (backlog) {
+                uids = Arrays.copyOf(uids, Math.max(1, properties.getMaxMessagesPerPoll()));
+            }
+        } finally {
+            closeQuietly(folder);
+            releaseStore(store);
+        }
+        if (uids.length == 0) {
+            return false;
+        }
+        LOGGER.info("Fetching {} new messages from {}", uids.length, mailbox);
+
+        long[] polled = uids;
+        UidWatermark watermark = new UidWatermark(lastUid, polled);
+        int batchSize = Math.max(1, properties.getFetchBatchSize());
+        List<Future<?>> ranges = new ArrayList<>();
+        for (int start = 0; start < uids.length; start += batchSize) {
+            int first = start;
+            int end = Math.min(uids.length, start + batchSize);
+            ranges.add(fetchers.submit(() -> fetchRange(folderName, uidValidity, polled, first, end, watermark)));
+        }
+        // Ranges are waited for in UID order, which is roughly the order in which the watermark can advance
+        long saved = lastUid;
+        for (Future<?> range : ranges) {
+            try {
+                range.get();
+            } catch (ExecutionException ex) {
+                errors.increment();
+                LOGGER.error("Error fetching messages from {}: {}", mailbox, ex.getCause().getMessage());
+            }
+            long value = watermark.value();
+            if (value > saved) {
+                saveCheckpoint(mailbox, uidValidity, value);
+                saved = value;
+            }
+        }
+        // Retry whatever stopped the watermark in the next poll rather than spinning on it now
+        return backlog && saved == uids[uids.length - 1];
+    }
+
+    private void fetchRange(String folderName, long uidValidity, long[] uids, int start, int end,
+                            UidWatermark watermark) {
+        if (!running) {
+            return;
+        }
+        Store store = null;
+        Folder folder = null;
+        try {
+            store = acquireStore();
+            folder = store.getFolder(folderName);
+            folder.open(properties.isMarkSeen() ? Folder.READ_WRITE : Folder.READ_ONLY);
+            UIDFolder uidFolder = (UIDFolder) folder;
+            if (uidFolder.getUIDValidity() != uidValidity) {
+                LOGGER.warn("UIDVALIDITY of {} changed while fetching; leaving the range for the next poll",
+                        folderName);
+                return;
+            }
+            Message[] messages = uidFolder.getMessagesByUID(Arrays.copyOfRange(uids, start, end));
+            // One round trip for the headers and structure of the whole range; bodies are streamed per part
+            FetchProfile profile = new FetchProfile();
+            profile.add(FetchProfile.Item.ENVELOPE);
+            profile.add(FetchProfile.Item.CONTENT_INFO);
+            profile.add(FetchProfile.Item.SIZE);
+            folder.fetch(Arrays.stream(messages).filter(Objects::nonNull).toArray(Message[]::new), profile);
+
+            for (int i = start; i < end && running; i++) {
+                Message message = messages[i - start];
+                if (message == null) {
+                    // Expunged since the UIDs were listed
+                    skipped.increment();
+                } else if (!process(folder, uids[i], (MimeMessage) message)) {
+                    // The connection was lost; the rest of the range is left for the next poll
+                    errors.increment();
+                    return;
+                }
+                watermark.complete(i);
+            }
+        } catch (MessagingException ex) {
+            errors.increment();
+            LOGGER.error("Error fetching messages from {}: {}", folderName, ex.getMessage());
+        } finally {
+            closeQuietly(folder);
+            if (store != null) {
+                releaseStore(store);
+            }
+        }
+    }
+
+    /**
+     * Runs one message through the pipeline.
+     *
+     * @return false if the message could not be read because the connection was lost
+     */
+    private boolean process(Folder folder, long uid, MimeMessage message) {
+        String name = folder.getFullName() + "/" + uid + ".eml";
+        try {
+            long size = message.getSize();
+            if (size > properties.getMaxMessageSize().toBytes()) {
+                LOGGER.warn("Skipping message {} of {} bytes, over the limit of {}", name, size,
+                        properties.getMaxMessageSize());
+                skipped.increment();
+                return true;
+            }
+            emailProcessingService.processMessage(name, message, FORMAT);
+            if (properties.isMarkSeen()) {
+                message.setFlag(Flags.Flag.SEEN, true);
+            }
+            processed.increment();
+            return true;
+        } catch (MessagingException | RuntimeException ex) {
+            if (!folder.isOpen()) {
+                LOGGER.error("Connection lost while processing message {}: {}", name, ex.getMessage());
+                return false;
+            }
+            // Already stored as a failed result by the pipeline
+            failed.increment();
+            LOGGER.error("Error processing message {}: {}", name, ex.getMessage());
+            return true;
+        }
+    }
+
+    private void saveCheckpoint(String mailbox, long uidValidity, long lastUid) {
+        checkpointRepository.save(new MailboxCheckpoint(mailbox, uidValidity, lastUid, Instant.now()));
+    }
+
+    private static long nextUid(Folder folder, UIDFolder uidFolder) throws MessagingException {
+        long next = uidFolder.getUIDNext();
+        if (next > 0) {
+            return next;
+        }
+        // UIDNEXT is optional; fall back to the UID of the last message
+        int count = folder.getMessageCount();
+        return count > 0 ? uidFolder.getUID(folder.getMessage(count)) + 1 : 1;
+    }
+
+    private static long uid(UIDFolder folder, Message message) {
+        try {
+            return folder.getUID(message);
+        } catch (MessagingException ex) {
+            return -1;
+        }
+    }
+
+    private Store acquireStore() throws MessagingException {
+        Store store = idleStores.poll();
+        if (store != null && store.isConnected()) {
+            return store;
+        }
+        if (store != null) {
+            openStores.remove(store);
+            closeQuietly(store);
+        }
+        store = session.getStore(properties.getProtocol());
+        store.connect(properties.getHost(), properties.getPort(), properties.getUsername(),
+                properties.getPassword());
+        openStores.add(store);
+        return store;
+    }
+
+    private void releaseStore(Store store) {
+        if (running && store.isConnected()) {
+            idleStores.offer(store);
+        } else {
+            openStores.remove(store);
+            closeQuietly(store);
+        }
+    }
+
+    private Properties sessionProperties() {
+        String protocol = properties.getProtocol();
+        Properties sessionProperties = new Properties();
+        sessionProperties.put("mail.store.protocol", protocol);
+        sessionProperties.put("mail." + protocol + ".connectiontimeout",
+                String.valueOf(properties.getConnectionTimeout().toMillis()));
+        sessionProperties.put("mail." + protocol + ".timeout", String.valueOf(properties.getReadTimeout().toMillis()));
+        sessionProperties.put("mail." + protocol + ".partialfetch", "true");
+        sessionProperties.put("mail." + protocol + ".fetchsize", String.valueOf(properties.getFetchSize().toBytes()));
+        // Reading a message must not flag it as seen; mark-seen sets the flag explicitly once it is processed
+        sessionProperties.put("mail." + protocol + ".peek", "true");
+        if (StringUtils.isNoneEmpty(properties.getSslTrust())) {
+            sessionProperties.put("mail." + protocol + ".ssl.trust", properties.getSslTrust());
+        }
+        sessionProperties.putAll(properties.getSessionProperties());
+        return sessionProperties;
+    }
+
+    private Counter messageCounter(String outcome) {
+        return Counter.builder("email.mailbox.messages")
+                .description("Messages taken from polled mailbox folders")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static void closeQuietly(Folder folder) {
+        if (folder != null && folder.isOpen()) {
+            try {
+                folder.close(false);
+            } catch (MessagingException ex) {
+                LOGGER.debug("Error closing folder {}: {}", folder.getFullName(), ex.getMessage());
+            }
+        }
+    }
+
+    private static void closeQuietly(Store store) {
+        try {
+            store.close();
+        } catch (MessagingException ex) {
+            LOGGER.debug("Error closing mailbox connection: {}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.subhajit.email.classification.mailbox;
+
+/**
+ * Tracks which UIDs of one poll are done and the highest UID below which all of them are.
+ * <p>
+ * Connections finish their UID ranges in any order, so the checkpoint may only move up to the first UID that is not
+ * yet done; otherwise a restart could skip a message that was still being processed.
+ */
+final class UidWatermark {
+
+    private final long[] uids;
+    private final boolean[] done;
+    private int next;
+    private long value;
+
+    /**
+     * @param start The checkpoint before the poll
+     * @param uids  The UIDs of the poll, in ascending order
+     */
+    UidWatermark(long start, long[] uids) {
+        this.uids = uids;
+        this.done = new boolean[uids.length];
+        this.value = start;
+    }
+
+    synchronized void complete(int index) {
+        done[index] = true;
+        while (next < uids.length && done[next]) {
+            value = uids[next++];
+        }
+    }
+
+    synchronized long value() {
+        return value;
+    }
+}
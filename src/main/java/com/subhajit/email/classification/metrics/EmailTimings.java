@@ -0,0 +1,106 @@
+package com.subhajit.email.classification.metrics;
+
+import java.util.Locale;
+
+/**
+ * Stage timings of one email, recorded by the thread processing it.
+ * <p>
+ * {@link #begin(PipelineStage)} ends the running stage and starts the next one, so the stages of the pipeline are
+ * timed back to back without a timer per step. Closing records the running stage and the total.
+ */
+public class EmailTimings implements AutoCloseable {
+
+    private final PipelineMetrics metrics;
+    private final long startNanos = System.nanoTime();
+    private final long[] stageNanos = new long[PipelineStage.values().length];
+    private PipelineStage current;
+    private long currentStart;
+    private long totalNanos = -1;
+    private boolean succeeded;
+
+    EmailTimings(PipelineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Ends the running stage, if any, and starts the given one.
+     *
+     * @param stage The stage that starts now
+     */
+    public void begin(PipelineStage stage) {
+        long now = System.nanoTime();
+        endCurrent(now);
+        current = stage;
+        currentStart = now;
+    }
+
+    /**
+     * Marks the email as processed successfully.
+     */
+    public void succeeded() {
+        succeeded = true;
+    }
+
+    /**
+     * Counts an error against the stage that was running when it occurred.
+     *
+     * @param error The exception
+     */
+    public void failed(Throwable error) {
+        metrics.recordError(current != null ? current : PipelineStage.PARSE, error);
+    }
+
+    @Override
+    public void close() {
+        if (totalNanos >= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        PipelineStage last = current;
+        endCurrent(now);
+        current = last;
+        totalNanos = now - startNanos;
+        metrics.finishEmail(this, totalNanos, succeeded);
+    }
+
+    private void endCurrent(long now) {
+        if (current != null) {
+            long nanos = now - currentStart;
+            stageNanos[current.ordinal()] += nanos;
+            metrics.recordStage(current, nanos);
+            current = null;
+        }
+    }
+
+    /**
+     * @return The total duration in milliseconds, or -1 while the timings are still open
+     */
+    public long totalMillis() {
+        return totalNanos >= 0 ? totalNanos / 1_000_000 : -1;
+    }
+
+    /**
+     * @return The stage durations in the {@code Server-Timing} header format, e.g.
+     * {@code parse;dur=12.5, extract;dur=340.1, total;dur=352.6}
+     */
+    public String toServerTiming() {
+        StringBuilder header = new StringBuilder();
+        for (PipelineStage stage : PipelineStage.values()) {
+            long nanos = stageNanos[stage.ordinal()];
+            if (nanos > 0) {
+                appendMetric(header, stage.tag(), nanos);
+            }
+        }
+        if (totalNanos >= 0) {
+            appendMetric(header, "total", totalNanos);
+        }
+        return header.toString();
+    }
+
+    private static void appendMetric(StringBuilder header, String name, long nanos) {
+        if (!header.isEmpty()) {
+            header.append(", ");
+        }
+        header.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0));
+    }
+}
@@ -0,0 +1,242 @@
+package com.subhajit.email.classification.metrics;
+
+import com.subhajit.email.classification.configuration.InstrumentationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micrometer meters for the email pipeline, exposed through the Actuator {@code metrics} endpoint.
+ * <p>
+ * Meters are created once and looked up from maps keyed by stage, format or MIME type, so recording costs a
+ * {@link System#nanoTime()} pair and a few atomic adds. MIME type tags are capped so that unusual types cannot grow
+ * the number of time series without bound.
+ * <ul>
+ *     <li>{@code email.pipeline.stage} (timer, tag {@code stage}): duration of each stage of an email</li>
+ *     <li>{@code email.pipeline.emails} (timer, tag {@code outcome}): end-to-end duration per email</li>
+ *     <li>{@code email.parse} (timer), {@code email.parse.bytes}, {@code email.body.chars} and
+ *     {@code email.attachments} (summaries), all tagged {@code format}</li>
+ *     <li>{@code email.attachment.extraction} (timer), {@code email.attachment.bytes} and
+ *     {@code email.attachment.chars} (summaries), all tagged {@code mime.type}</li>
+ *     <li>{@code email.errors} (counter, tags {@code stage} and {@code cause})</li>
+ *     <li>{@code email.pipeline.in.flight} and {@code email.attachment.in.flight} (gauges)</li>
+ * </ul>
+ */
+@Component
+public class PipelineMetrics {
+
+    /**
+     * Request attribute holding the {@link EmailTimings} of the email processed for the current request.
+     */
+    public static final String TIMINGS_ATTRIBUTE = PipelineMetrics.class.getName() + ".timings";
+
+    private static final String OTHER = "other";
+
+    private final MeterRegistry registry;
+    private final InstrumentationProperties properties;
+    private final Map<PipelineStage, Timer> stageTimers = new EnumMap<>(PipelineStage.class);
+    private final Timer succeeded;
+    private final Timer failed;
+    private final Map<String, ParseMeters> parseMeters = new ConcurrentHashMap<>();
+    private final Map<String, AttachmentMeters> attachmentMeters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> errorCounters = new ConcurrentHashMap<>();
+    private final AtomicInteger emailsInFlight = new AtomicInteger();
+    private final AtomicInteger attachmentsInFlight = new AtomicInteger();
+
+    public PipelineMetrics(MeterRegistry registry, InstrumentationProperties properties) {
+        this.registry = registry;
+        this.properties = properties;
+        for (PipelineStage stage : PipelineStage.values()) {
+            stageTimers.put(stage, timer("email.pipeline.stage", "Duration of one stage of processing an email")
+                    .tag("stage", stage.tag())
+                    .register(registry));
+        }
+        this.succeeded = timer("email.pipeline.emails", "End-to-end duration of processing an email")
+                .tag("outcome", "success")
+                .register(registry);
+        this.failed = timer("email.pipeline.emails", "End-to-end duration of processing an email")
+                .tag("outcome", "error")
+                .register(registry);
+        Gauge.builder("email.pipeline.in.flight", emailsInFlight, AtomicInteger::get)
+                .description("Emails being processed")
+                .register(registry);
+        Gauge.builder("email.attachment.in.flight", attachmentsInFlight, AtomicInteger::get)
+                .description("Attachments being extracted")
+                .register(registry);
+    }
+
+    /**
+     * Starts timing an email. The returned timings must be closed when the email is done.
+     *
+     * @return The timings of the email
+     */
+    public EmailTimings startEmail() {
+        emailsInFlight.incrementAndGet();
+        return new EmailTimings(this);
+    }
+
+    void recordStage(PipelineStage stage, long nanos) {
+        stageTimers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void finishEmail(EmailTimings timings, long nanos, boolean success) {
+        emailsInFlight.decrementAndGet();
+        (success ? succeeded : failed).record(nanos, TimeUnit.NANOSECONDS);
+        if (properties.isTimingHeaders()) {
+            // Only set on request threads; jobs and batch items have no response to annotate
+            RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+            if (attributes != null) {
+                attributes.setAttribute(TIMINGS_ATTRIBUTE, timings, RequestAttributes.SCOPE_REQUEST);
+            }
+        }
+    }
+
+    /**
+     * Records a parsed email.
+     *
+     * @param format      The email format, e.g. {@code eml}
+     * @param nanos       Time taken to parse
+     * @param bytes       Size of the email
+     * @param bodyChars   Length of the body text
+     * @param attachments Number of attachments found
+     */
+    public void recordParse(String format, long nanos, long bytes, long bodyChars, int attachments) {
+        ParseMeters meters = parseMeters.computeIfAbsent(format, this::createParseMeters);
+        meters.timer.record(nanos, TimeUnit.NANOSECONDS);
+        meters.bytes.record(bytes);
+        meters.bodyChars.record(bodyChars);
+        meters.attachments.record(attachments);
+    }
+
+    /**
+     * Marks the start of an attachment extraction, for the in-flight gauge.
+     */
+    public void attachmentStarted() {
+        attachmentsInFlight.incrementAndGet();
+    }
+
+    /**
+     * Records a finished attachment extraction.
+     *
+     * @param mimeType The detected MIME type
+     * @param nanos    Time taken to extract
+     * @param bytes    Size of the attachment
+     * @param chars    Length of the extracted text
+     */
+    public void attachmentFinished(String mimeType, long nanos, long bytes, long chars) {
+        attachmentsInFlight.decrementAndGet();
+        AttachmentMeters meters = attachmentMeters(mimeType);
+        meters.timer.record(nanos, TimeUnit.NANOSECONDS);
+        meters.bytes.record(bytes);
+        meters.chars.record(chars);
+    }
+
+    /**
+     * Counts an error.
+     *
+     * @param stage The stage that failed
+     * @param cause A short, low-cardinality cause, e.g. an exception class name or {@code timeout}
+     */
+    public void recordError(PipelineStage stage, String cause) {
+        String key = stage.tag() + '/' + cause;
+        Counter counter = errorCounters.get(key);
+        if (counter == null) {
+            counter = errorCounters.computeIfAbsent(key, k -> Counter.builder("email.errors")
+                    .description("Errors while processing emails")
+                    .tag("stage", stage.tag())
+                    .tag("cause", cause)
+                    .register(registry));
+        }
+        counter.increment();
+    }
+
+    /**
+     * Counts an error caused by an exception, tagged with the class of its root cause.
+     *
+     * @param stage The stage that failed
+     * @param error The exception
+     */
+    public void recordError(PipelineStage stage, Throwable error) {
+        Throwable root = error;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        recordError(stage, root.getClass().getSimpleName());
+    }
+
+    private AttachmentMeters attachmentMeters(String mimeType) {
+        String tag = mimeTag(mimeType);
+        AttachmentMeters meters = attachmentMeters.get(tag);
+        if (meters != null) {
+            return meters;
+        }
+        if (attachmentMeters.size() >= properties.getMaxMimeTypeTags()) {
+            tag = OTHER;
+        }
+        return attachmentMeters.computeIfAbsent(tag, this::createAttachmentMeters);
+    }
+
+    private static String mimeTag(String mimeType) {
+        if (mimeType == null) {
+            return "unknown";
+        }
+        int parameters = mimeType.indexOf(';');
+        String type = parameters >= 0 ? mimeType.substring(0, parameters).trim() : mimeType;
+        return type.toLowerCase(Locale.ROOT);
+    }
+
+    private ParseMeters createParseMeters(String format) {
+        return new ParseMeters(
+                timer("email.parse", "Time taken to parse an email").tag("format", format).register(registry),
+                summary("email.parse.bytes", "Size of parsed emails", "bytes").tag("format", format)
+                        .register(registry),
+                summary("email.body.chars", "Length of email bodies", "characters").tag("format", format)
+                        .register(registry),
+                summary("email.attachments", "Attachments per email", "attachments").tag("format", format)
+                        .register(registry));
+    }
+
+    private AttachmentMeters createAttachmentMeters(String mimeType) {
+        return new AttachmentMeters(
+                timer("email.attachment.extraction", "Time taken to extract the text of an attachment")
+                        .tag("mime.type", mimeType).register(registry),
+                summary("email.attachment.bytes", "Size of extracted attachments", "bytes")
+                        .tag("mime.type", mimeType).register(registry),
+                summary("email.attachment.chars", "Length of text extracted from attachments", "characters")
+                        .tag("mime.type", mimeType).register(registry));
+    }
+
+    private Timer.Builder timer(String name, String description) {
+        Timer.Builder builder = Timer.builder(name).description(description);
+        if (properties.isHistograms()) {
+            builder.publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofMinutes(5));
+        }
+        return builder;
+    }
+
+    private static DistributionSummary.Builder summary(String name, String description, String unit) {
+        return DistributionSummary.builder(name).description(description).baseUnit(unit);
+    }
+
+    private record ParseMeters(Timer timer, DistributionSummary bytes, DistributionSummary bodyChars,
+                               DistributionSummary attachments) {
+    }
+
+    private record AttachmentMeters(Timer timer, DistributionSummary bytes, DistributionSummary chars) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.subhajit.email.classification.metrics;
+
+import java.util.Locale;
+
+/**
+ * The stages of processing one email, in order.
+ */
+public enum PipelineStage {
+    PARSE, EXTRACT, COMPACT, CLASSIFY, FIELDS, DUPLICATE;
+
+    private final String tag = name().toLowerCase(Locale.ROOT);
+
+    /**
+     * @return The stage name used in metric tags and timing headers
+     */
+    public String tag() {
+        return tag;
+    }
+}
@@ -0,0 +1,20 @@
+package com.subhajit.email.classification.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of a batch response: the result for a single email, or the error that prevented processing it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+    private int index;
+    private String source;
+    private ParsedEmailResponse result;
+    private String error;
+}
@@ -0,0 +1,166 @@
+package com.subhajit.email.classification.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Content of a single email attachment.
+ * <p>
+ * Parts up to the spill threshold are held in memory. Larger parts are written once to a temp file, which is deleted
+ * by {@link #close()}. The content can be read any number of times through {@link #openStream()}.
+ */
+public class EmailAttachment implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmailAttachment.class);
+
+    private final String name;
+    private final byte[] bytes;
+    private final Path file;
+    private final long size;
+
+    private EmailAttachment(String name, byte[] bytes, Path file, long size) {
+        this.name = name;
+        this.bytes = bytes;
+        this.file = file;
+        this.size = size;
+    }
+
+    /**
+     * Wraps content that is already in memory.
+     *
+     * @param name  File name of the attachment
+     * @param bytes Content of the attachment
+     * @return In-memory attachment
+     */
+    public static EmailAttachment ofBytes(String name, byte[] bytes) {
+        return new EmailAttachment(name, bytes, null, bytes.length);
+    }
+
+    /**
+     * Takes ownership of a spill file that has already been written. The file is deleted by {@link #close()}.
+     *
+     * @param name File name of the attachment
+     * @param file Content of the attachment
+     * @return File-backed attachment
+     * @throws IOException if the size of the file cannot be read
+     */
+    public static EmailAttachment ofFile(String name, Path file) throws IOException {
+        return new EmailAttachment(name, null, file, Files.size(file));
+    }
+
+    /**
+     * Reads an attachment from a stream, keeping it in memory unless it exceeds the spill threshold.
+     * The stream is read to the end but not closed.
+     *
+     * @param name           File name of the attachment
+     * @param inputStream    Content of the attachment
+     * @param spillThreshold Largest size in bytes kept in memory
+     * @param spillDirectory Directory for spill files, or null for the system temp directory
+     * @return The attachment
+     * @throws IOException if the stream cannot be read or the spill file cannot be written
+     */
+    public static EmailAttachment read(String name, InputStream inputStream, long spillThreshold, Path spillDirectory)
+            throws IOException {
+        int limit = (int) Math.min(spillThreshold, Integer.MAX_VALUE - 8);
+        byte[] head = inputStream.readNBytes(limit);
+        int next = head.length < limit ? -1 : inputStream.read();
+        if (next == -1) {
+            return ofBytes(name, head);
+        }
+
+        Path file = spillDirectory == null
+                ? Files.createTempFile("att-", ".tmp")
+                : Files.createTempFile(spillDirectory, "att-", ".tmp");
+        try (OutputStream outputStream = Files.newOutputStream(file)) {
+            outputStream.write(head);
+            outputStream.write(next);
+            long size = head.length + 1L + inputStream.transferTo(outputStream);
+            return new EmailAttachment(name, null, file, size);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(file);
+            throw ex;
+        }
+    }
+
+    /**
+     * @return File name of the attachment as given in the email
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Size of the attachment in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return true if the content is held in memory rather than in a spill file
+     */
+    public boolean isInMemory() {
+        return bytes != null;
+    }
+
+    /**
+     * @return The spill file, or null if the content is held in memory
+     */
+    public File getFile() {
+        return file == null ? null : file.toFile();
+    }
+
+    /**
+     * Opens a new stream over the content. The caller must close it.
+     *
+     * @return Stream positioned at the start of the content
+     * @throws IOException if the spill file cannot be opened
+     */
+    public InputStream openStream() throws IOException {
+        return bytes != null ? new ByteArrayInputStream(bytes) : Files.newInputStream(file);
+    }
+
+    /**
+     * Copies the content into a byte array, reading the spill file if necessary.
+     *
+     * @return The content of the attachment
+     * @throws IOException if the spill file cannot be read
+     */
+    public byte[] toByteArray() throws IOException {
+        if (bytes != null) {
+            return bytes;
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream((int) Math.min(size, Integer.MAX_VALUE - 8));
+        Files.copy(file, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Deletes the spill file, if any.
+     */
+    @Override
+    public void close() {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            LOGGER.warn("Could not delete attachment spill file {}: {}", file, ex.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "EmailAttachment{name='" + name + "', size=" + size + ", inMemory=" + isInMemory() + "}";
+    }
+}
@@ -0,0 +1,15 @@
+package com.subhajit.email.classification.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailClassification {
+    private String requestType;
+    private String subRequestType;
+    private double confidence;
+    private String reasoning;
+}
@@ -0,0 +1,43 @@
+package com.subhajit.email.classification.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.subhajit.email.classification.entity.EmailResult;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A stored {@link EmailResult} as returned by the results API, detached from the persistence context.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class EmailResultResponse {
+    private Long id;
+    private Instant processedAt;
+    private EmailResult.Status status;
+    private String fileName;
+    private String fromAddress;
+    private String subject;
+    private String contentHash;
+    private boolean duplicate;
+    private String duplicateOf;
+    private double similarity;
+    private String requestType;
+    private String subRequestType;
+    private String reasoning;
+    /**
+     * Extracted fields as a JSON array of key/value objects.
+     */
+    @JsonRawValue
+    private String extractedFields;
+    private int attachmentCount;
+    private int bodyChars;
+    private long totalMillis;
+    private String stageTimings;
+    private String error;
+}
@@ -0,0 +1,25 @@
+package com.subhajit.email.classification.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.subhajit.email.classification.job.JobPriority;
+import com.subhajit.email.classification.job.JobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JobResponse {
+    private String jobId;
+    private JobStatus status;
+    private JobPriority priority;
+    private Instant submittedAt;
+    private Instant startedAt;
+    private Instant completedAt;
+    private ParsedEmailResponse result;
+    private String error;
+}
@@ -4,16 +4,25 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.io.File;
 import java.util.List;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class ParsedEmail {
+public class ParsedEmail implements AutoCloseable {
 
     private String from;
     private String subject;
     private String body;
-    private List<File> attachments;
+    private List<EmailAttachment> attachments;
+
+    /**
+     * Releases the attachments, deleting any spill files they created.
+     */
+    @Override
+    public void close() {
+        if (attachments != null) {
+            attachments.forEach(EmailAttachment::close);
+        }
+    }
 }
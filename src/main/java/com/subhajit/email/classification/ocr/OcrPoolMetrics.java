@@ -0,0 +1,17 @@
+package com.subhajit.email.classification.ocr;
+
+/**
+ * Point-in-time counters of an {@link OcrWorkerPool}.
+ *
+ * @param poolSize       Configured number of workers
+ * @param workers        Workers currently created
+ * @param inUse          Workers currently checked out
+ * @param queueDepth     Callers currently waiting for a worker
+ * @param ocrCount       Images recognised since startup
+ * @param totalOcrMillis Total time spent recognising images
+ * @param maxOcrMillis   Longest single recognition
+ * @param rejected       Callers turned away because the queue was full or the wait timed out
+ */
+public record OcrPoolMetrics(int poolSize, int workers, int inUse, int queueDepth, long ocrCount,
+                             long totalOcrMillis, long maxOcrMillis, long rejected) {
+}
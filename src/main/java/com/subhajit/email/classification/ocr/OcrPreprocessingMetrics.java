@@ -0,0 +1,38 @@
+package com.subhajit.email.classification.ocr;
+
+/**
+ * Cumulative counters of the {@link OcrPreprocessor}.
+ * <p>
+ * The avoided times are estimates: the pixels a stage kept away from Tesseract multiplied by the average OCR time per
+ * pixel measured so far.
+ *
+ * @param images                 Images received
+ * @param skippedSmall           Images skipped for their size
+ * @param skippedBlank           Images skipped for low entropy or no ink
+ * @param skippedDuplicate       Images answered from the logo cache
+ * @param downscaled             Images downscaled before OCR
+ * @param cropped                Images of which only text regions were read
+ * @param regions                OCR calls made on text regions
+ * @param inputPixels            Pixels received
+ * @param ocrPixels              Pixels passed to Tesseract
+ * @param ocrMillis              Time spent in OCR, including waiting for a worker
+ * @param smallAvoidedMillis     Estimated OCR time avoided by the size check
+ * @param blankAvoidedMillis     Estimated OCR time avoided by the entropy and ink checks
+ * @param duplicateAvoidedMillis Estimated OCR time avoided by the logo cache
+ * @param downscaleAvoidedMillis Estimated OCR time avoided by downscaling
+ * @param regionAvoidedMillis    Estimated OCR time avoided by reading text regions only
+ */
+public record OcrPreprocessingMetrics(long images, long skippedSmall, long skippedBlank, long skippedDuplicate,
+                                      long downscaled, long cropped, long regions, long inputPixels, long ocrPixels,
+                                      long ocrMillis, long smallAvoidedMillis, long blankAvoidedMillis,
+                                      long duplicateAvoidedMillis, long downscaleAvoidedMillis,
+                                      long regionAvoidedMillis) {
+
+    /**
+     * @return Estimated OCR time avoided by all stages
+     */
+    public long totalAvoidedMillis() {
+        return smallAvoidedMillis + blankAvoidedMillis + duplicateAvoidedMillis + downscaleAvoidedMillis
+                + regionAvoidedMillis;
+    }
+}
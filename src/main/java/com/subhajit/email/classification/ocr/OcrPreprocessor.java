@@ -0,0 +1,446 @@
+package com.subhajit.email.classification.ocr;
+
+import com.subhajit.email.classification.configuration.OcrProperties;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Prepares email images for OCR and runs them on the {@link OcrWorkerPool}.
+ * <p>
+ * Most inline images in email are tracking pixels, logos and signature banners, and Tesseract time grows with the
+ * pixel count. Images are therefore put through these stages, cheapest first:
+ * <ol>
+ *     <li>Images below the minimum size are skipped.</li>
+ *     <li>The image is converted to greyscale, downscaled to at most {@code maxPixels} on the way.</li>
+ *     <li>Images with a near-uniform grey-level histogram are skipped as blank.</li>
+ *     <li>Images are looked up by a hash of their greyscale pixels, and tiny ones also by an exact perceptual hash
+ *     (dHash); a logo seen before is answered with the text recognised the first time. Near matches are never
+ *     reused, as two images a few hash bits apart can carry different text.</li>
+ *     <li>The image is binarized with Otsu's threshold.</li>
+ *     <li>Bands of rows containing ink are found from the projection profile, and only those are recognised, unless
+ *     they cover most of the image anyway.</li>
+ * </ol>
+ * Every stage counts the pixels it kept away from Tesseract; see {@link #metrics()}.
+ */
+public class OcrPreprocessor {
+
+    private static final int HASH_WIDTH = 9;
+    private static final int HASH_HEIGHT = 8;
+
+    private final OcrWorkerPool ocrWorkerPool;
+    private final OcrProperties.Preprocessing properties;
+    private final Map<Object, String> recognizedLogos;
+
+    private final AtomicLong images = new AtomicLong();
+    private final AtomicLong skippedSmall = new AtomicLong();
+    private final AtomicLong skippedBlank = new AtomicLong();
+    private final AtomicLong skippedDuplicate = new AtomicLong();
+    private final AtomicLong downscaled = new AtomicLong();
+    private final AtomicLong cropped = new AtomicLong();
+    private final AtomicLong regions = new AtomicLong();
+    private final AtomicLong inputPixels = new AtomicLong();
+    private final AtomicLong ocrPixels = new AtomicLong();
+    private final AtomicLong ocrNanos = new AtomicLong();
+    private final Map<Stage, AtomicLong> avoidedPixels = new EnumMap<>(Stage.class);
+
+    public OcrPreprocessor(OcrWorkerPool ocrWorkerPool, OcrProperties.Preprocessing properties) {
+        this.ocrWorkerPool = ocrWorkerPool;
+        this.properties = properties;
+        int cacheSize = Math.max(1, properties.getDedupCacheSize());
+        this.recognizedLogos = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        for (Stage stage : Stage.values()) {
+            avoidedPixels.put(stage, new AtomicLong());
+        }
+    }
+
+    /**
+     * Recognises the text in an image, skipping or reducing it where that does not lose text.
+     *
+     * @param image   The image to read
+     * @param expired Tells whether the caller's deadline has passed; text regions are not started after it
+     * @return The recognised text, or an empty string if the image was skipped
+     * @throws InterruptedException if interrupted while waiting for a worker
+     */
+    public String recognize(BufferedImage image, BooleanSupplier expired) throws InterruptedException {
+        if (!properties.isEnabled()) {
+            return ocr(image, (long) image.getWidth() * image.getHeight());
+        }
+        long pixels = (long) image.getWidth() * image.getHeight();
+        images.incrementAndGet();
+        inputPixels.addAndGet(pixels);
+
+        if (image.getWidth() < properties.getMinWidth() || image.getHeight() < properties.getMinHeight()
+                || pixels < properties.getMinPixels()) {
+            skip(skippedSmall, Stage.SMALL, pixels);
+            return "";
+        }
+
+        BufferedImage gray = toGray(image, pixels);
+        long grayPixels = (long) gray.getWidth() * gray.getHeight();
+        if (grayPixels < pixels) {
+            downscaled.incrementAndGet();
+            avoidedPixels.get(Stage.DOWNSCALE).addAndGet(pixels - grayPixels);
+        }
+        byte[] data = ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+        int[] histogram = histogram(data);
+        if (entropy(histogram, data.length) < properties.getMinEntropy()) {
+            skip(skippedBlank, Stage.BLANK, grayPixels);
+            return "";
+        }
+
+        ContentHash contentHash = null;
+        Long perceptualHash = null;
+        if (properties.isDeduplicate()) {
+            contentHash = ContentHash.of(gray, data);
+            if (pixels <= properties.getDedupMaxPixels()) {
+                perceptualHash = differenceHash(gray);
+            }
+            String known = findLogo(contentHash, perceptualHash);
+            if (known != null) {
+                skip(skippedDuplicate, Stage.DUPLICATE, grayPixels);
+                return known;
+            }
+        }
+
+        int threshold = otsuThreshold(histogram, data.length);
+        if (properties.isBinarize()) {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (data[i] & 0xFF) > threshold ? (byte) 0xFF : 0;
+            }
+        }
+
+        String text;
+        if (properties.isTextRegions()) {
+            List<Rectangle> found = findTextRegions(gray, data, threshold);
+            if (found.isEmpty()) {
+                skip(skippedBlank, Stage.BLANK, grayPixels);
+                return "";
+            }
+            text = recognizeRegions(gray, found, grayPixels, expired);
+        } else {
+            text = ocr(gray, grayPixels);
+        }
+
+        // Text cut short by the deadline is not remembered for later copies of the image
+        if (contentHash != null && !expired.getAsBoolean()) {
+            synchronized (recognizedLogos) {
+                recognizedLogos.put(contentHash, text);
+                if (perceptualHash != null) {
+                    recognizedLogos.put(perceptualHash, text);
+                }
+            }
+        }
+        return text;
+    }
+
+    private String recognizeRegions(BufferedImage gray, List<Rectangle> found, long grayPixels,
+                                    BooleanSupplier expired) throws InterruptedException {
+        long regionPixels = 0;
+        for (Rectangle region : found) {
+            regionPixels += (long) region.width * region.height;
+        }
+        if (found.size() > properties.getMaxRegions()
+                || regionPixels > grayPixels * properties.getMaxRegionCoverage()) {
+            // Cropping would save little and split the layout Tesseract sees
+            return ocr(gray, grayPixels);
+        }
+        cropped.incrementAndGet();
+        avoidedPixels.get(Stage.REGIONS).addAndGet(grayPixels - regionPixels);
+        StringBuilder text = new StringBuilder();
+        for (Rectangle region : found) {
+            if (expired.getAsBoolean()) {
+                break;
+            }
+            regions.incrementAndGet();
+            String regionText = ocr(crop(gray, region), (long) region.width * region.height);
+            if (!regionText.isBlank()) {
+                text.append(regionText.strip()).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    private String ocr(BufferedImage image, long pixels) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            return ocrWorkerPool.doOCR(image);
+        } finally {
+            ocrNanos.addAndGet(System.nanoTime() - start);
+            ocrPixels.addAndGet(pixels);
+        }
+    }
+
+    private void skip(AtomicLong counter, Stage stage, long pixels) {
+        counter.incrementAndGet();
+        avoidedPixels.get(stage).addAndGet(pixels);
+    }
+
+    /**
+     * Draws the image onto a white greyscale canvas, so transparent logos do not turn black, halving the size in
+     * steps while it is above the pixel limit to keep thin strokes.
+     */
+    private BufferedImage toGray(BufferedImage image, long pixels) {
+        double scale = pixels > properties.getMaxPixels()
+                ? Math.sqrt((double) properties.getMaxPixels() / pixels)
+                : 1.0;
+        int targetWidth = Math.max(1, (int) (image.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) (image.getHeight() * scale));
+
+        BufferedImage current = image;
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        if (current == image || current.getWidth() != targetWidth || current.getHeight() != targetHeight) {
+            current = draw(current, targetWidth, targetHeight);
+        }
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = gray.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return gray;
+    }
+
+    private static int[] histogram(byte[] data) {
+        int[] histogram = new int[256];
+        for (byte value : data) {
+            histogram[value & 0xFF]++;
+        }
+        return histogram;
+    }
+
+    /**
+     * @return Shannon entropy of the grey levels in bits, 0 for a single colour and 8 at most
+     */
+    private static double entropy(int[] histogram, int total) {
+        double entropy = 0;
+        for (int count : histogram) {
+            if (count > 0) {
+                double p = (double) count / total;
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy / Math.log(2);
+    }
+
+    /**
+     * @return The grey level that best separates ink from background, by maximising the between-class variance
+     */
+    private static int otsuThreshold(int[] histogram, int total) {
+        double sum = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            sum += (double) i * histogram[i];
+        }
+        double sumBackground = 0;
+        long weightBackground = 0;
+        double bestVariance = -1;
+        int threshold = 127;
+        for (int i = 0; i < histogram.length; i++) {
+            weightBackground += histogram[i];
+            if (weightBackground == 0) {
+                continue;
+            }
+            long weightForeground = total - weightBackground;
+            if (weightForeground == 0) {
+                break;
+            }
+            sumBackground += (double) i * histogram[i];
+            double meanBackground = sumBackground / weightBackground;
+            double meanForeground = (sum - sumBackground) / weightForeground;
+            double variance = (double) weightBackground * weightForeground
+                    * (meanBackground - meanForeground) * (meanBackground - meanForeground);
+            if (variance > bestVariance) {
+                bestVariance = variance;
+                threshold = i;
+            }
+        }
+        return threshold;
+    }
+
+    /**
+     * 64-bit difference hash: the image is shrunk to 9x8 and each bit records whether a pixel is brighter than its
+     * right neighbour. Only used for tiny images, where recompression changes the pixels but not the text.
+     */
+    private static long differenceHash(BufferedImage gray) {
+        BufferedImage small = draw(gray, HASH_WIDTH, HASH_HEIGHT);
+        byte[] pixels = ((DataBufferByte) small.getRaster().getDataBuffer()).getData();
+        long hash = 0;
+        for (int y = 0; y < HASH_HEIGHT; y++) {
+            for (int x = 0; x < HASH_WIDTH - 1; x++) {
+                int left = pixels[y * HASH_WIDTH + x] & 0xFF;
+                int right = pixels[y * HASH_WIDTH + x + 1] & 0xFF;
+                hash = (hash << 1) | (left > right ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    private String findLogo(ContentHash contentHash, Long perceptualHash) {
+        synchronized (recognizedLogos) {
+            String known = recognizedLogos.get(contentHash);
+            return known != null || perceptualHash == null ? known : recognizedLogos.get(perceptualHash);
+        }
+    }
+
+    /**
+     * Finds bands of rows that contain ink and trims each to the columns with ink. Ink is the minority side of the
+     * threshold, so light text on a dark banner is found too. Lines separated by less than a line height, or the
+     * padding, are merged into one band.
+     */
+    private List<Rectangle> findTextRegions(BufferedImage gray, byte[] data, int threshold) {
+        int width = gray.getWidth();
+        int height = gray.getHeight();
+        long dark = 0;
+        for (byte value : data) {
+            if ((value & 0xFF) <= threshold) {
+                dark++;
+            }
+        }
+        boolean inkIsDark = dark * 2 <= data.length;
+        // Ignore specks: a row needs a little ink across its width to count
+        int minInk = Math.max(1, width / 200);
+        int padding = Math.max(0, properties.getRegionPadding());
+
+        List<Rectangle> found = new ArrayList<>();
+        int bandStart = -1;
+        int lineStart = -1;
+        int lastInkRow = -1;
+        for (int y = 0; y <= height; y++) {
+            boolean ink = y < height && countInk(data, y * width, width, threshold, inkIsDark) >= minInk;
+            if (ink) {
+                if (bandStart < 0) {
+                    bandStart = y;
+                }
+                if (lastInkRow != y - 1) {
+                    lineStart = y;
+                }
+                lastInkRow = y;
+            } else if (bandStart >= 0
+                    && (y == height || y - lastInkRow > Math.max(padding, lastInkRow - lineStart + 1))) {
+                // Lines closer than a line height apart belong to the same paragraph
+                found.add(bounds(data, width, height, bandStart, lastInkRow, threshold, inkIsDark, padding));
+                bandStart = -1;
+            }
+        }
+        return found;
+    }
+
+    private static int countInk(byte[] data, int offset, int length, int threshold, boolean inkIsDark) {
+        int ink = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (((data[i] & 0xFF) <= threshold) == inkIsDark) {
+                ink++;
+            }
+        }
+        return ink;
+    }
+
+    private static Rectangle bounds(byte[] data, int width, int height, int top, int bottom, int threshold,
+                                    boolean inkIsDark, int padding) {
+        int left = width;
+        int right = -1;
+        for (int y = top; y <= bottom; y++) {
+            int row = y * width;
+            for (int x = 0; x < left; x++) {
+                if (((data[row + x] & 0xFF) <= threshold) == inkIsDark) {
+                    left = x;
+                    break;
+                }
+            }
+            for (int x = width - 1; x > right; x--) {
+                if (((data[row + x] & 0xFF) <= threshold) == inkIsDark) {
+                    right = x;
+                    break;
+                }
+            }
+        }
+        int x0 = Math.max(0, left - padding);
+        int y0 = Math.max(0, top - padding);
+        int x1 = Math.min(width - 1, right + padding);
+        int y1 = Math.min(height - 1, bottom + padding);
+        return new Rectangle(x0, y0, x1 - x0 + 1, y1 - y0 + 1);
+    }
+
+    /**
+     * Copies a region into an image of its own; Tesseract reads the whole data buffer, so a sub-image view would
+     * not do.
+     */
+    private static BufferedImage crop(BufferedImage gray, Rectangle region) {
+        BufferedImage copy = new BufferedImage(region.width, region.height, BufferedImage.TYPE_BYTE_GRAY);
+        copy.getRaster().setRect(gray.getRaster().createChild(region.x, region.y, region.width, region.height, 0, 0,
+                null));
+        return copy;
+    }
+
+    /**
+     * @return A snapshot of the preprocessing counters
+     */
+    public OcrPreprocessingMetrics metrics() {
+        long pixels = ocrPixels.get();
+        double nanosPerPixel = pixels == 0 ? 0 : (double) ocrNanos.get() / pixels;
+        return new OcrPreprocessingMetrics(images.get(), skippedSmall.get(), skippedBlank.get(),
+                skippedDuplicate.get(), downscaled.get(), cropped.get(), regions.get(), inputPixels.get(), pixels,
+                TimeUnit.NANOSECONDS.toMillis(ocrNanos.get()), avoidedMillis(Stage.SMALL, nanosPerPixel),
+                avoidedMillis(Stage.BLANK, nanosPerPixel), avoidedMillis(Stage.DUPLICATE, nanosPerPixel),
+                avoidedMillis(Stage.DOWNSCALE, nanosPerPixel), avoidedMillis(Stage.REGIONS, nanosPerPixel));
+    }
+
+    private long avoidedMillis(Stage stage, double nanosPerPixel) {
+        return (long) (avoidedPixels.get(stage).get() * nanosPerPixel / 1_000_000);
+    }
+
+    /**
+     * 128 bits of the SHA-256 of a greyscale image and its size, identifying images whose OCR input is the same.
+     */
+    private record ContentHash(long high, long low) {
+
+        static ContentHash of(BufferedImage gray, byte[] data) {
+            MessageDigest digest = newDigest();
+            digest.update(ByteBuffer.allocate(8).putInt(gray.getWidth()).putInt(gray.getHeight()).array());
+            ByteBuffer hash = ByteBuffer.wrap(digest.digest(data));
+            return new ContentHash(hash.getLong(), hash.getLong());
+        }
+
+        private static MessageDigest newDigest() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IllegalStateException("SHA-256 is not available", ex);
+            }
+        }
+    }
+
+    private enum Stage {
+        SMALL, BLANK, DUPLICATE, DOWNSCALE, REGIONS
+    }
+}
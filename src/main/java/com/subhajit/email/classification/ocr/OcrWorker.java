@@ -0,0 +1,96 @@
+package com.subhajit.email.classification.ocr;
+
+import com.sun.jna.Pointer;
+import net.sourceforge.tess4j.ITessAPI.TessPageSegMode;
+import net.sourceforge.tess4j.TessAPI;
+import net.sourceforge.tess4j.util.ImageIOHelper;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A single Tesseract engine with its language data loaded once.
+ * <p>
+ * {@code net.sourceforge.tess4j.Tesseract} initialises and disposes the native engine on every {@code doOCR} call,
+ * which reloads the traineddata each time and is not safe to share between threads. A worker keeps one native
+ * handle alive for its whole life and must only be used by the thread that checked it out of the
+ * {@link OcrWorkerPool}.
+ */
+public class OcrWorker implements AutoCloseable {
+
+    private static final TessAPI API = TessAPI.INSTANCE;
+
+    private final TessAPI.TessBaseAPI handle;
+
+    /**
+     * Creates the native engine and loads the language data.
+     *
+     * @param dataPath Location of the tessdata directory
+     * @param language Tesseract language(s) to load
+     */
+    OcrWorker(String dataPath, String language) {
+        handle = API.TessBaseAPICreate();
+        if (API.TessBaseAPIInit3(handle, dataPath, language) != 0) {
+            API.TessBaseAPIDelete(handle);
+            throw new IllegalStateException("Could not initialise Tesseract with language '" + language
+                    + "' from " + dataPath);
+        }
+        API.TessBaseAPISetPageSegMode(handle, TessPageSegMode.PSM_AUTO);
+    }
+
+    /**
+     * Recognises the text in an image.
+     *
+     * @param image The image to read
+     * @return The recognised text
+     */
+    public String recognize(BufferedImage image) {
+        // The buffer layout passed to Tesseract must match the declared depth and stride, so both are fixed here
+        BufferedImage gray = toGray(image);
+        ByteBuffer imageData = ImageIOHelper.convertImageData(gray);
+
+        API.TessBaseAPISetImage(handle, imageData, gray.getWidth(), gray.getHeight(), 1, gray.getWidth());
+        Pointer text = API.TessBaseAPIGetUTF8Text(handle);
+        try {
+            return text == null ? "" : text.getString(0, StandardCharsets.UTF_8.name());
+        } finally {
+            if (text != null) {
+                API.TessDeleteText(text);
+            }
+            API.TessBaseAPIClear(handle);
+        }
+    }
+
+    /**
+     * Returns the image as 8-bit grayscale with one byte per pixel and no row padding. Images of any other type, and
+     * sub-images that are views into a larger raster, are redrawn onto white.
+     */
+    private static BufferedImage toGray(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY && raster.getParent() == null
+                && raster.getDataBuffer().getSize() == image.getWidth() * image.getHeight()) {
+            return image;
+        }
+        BufferedImage gray = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = gray.createGraphics();
+        try {
+            // Transparent pixels would otherwise turn black
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return gray;
+    }
+
+    @Override
+    public void close() {
+        API.TessBaseAPIEnd(handle);
+        API.TessBaseAPIDelete(handle);
+    }
+}
@@ -0,0 +1,233 @@
+package com.subhajit.email.classification.ocr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-size pool of {@link OcrWorker}s.
+ * <p>
+ * Callers check a worker out, use it exclusively and return it. At most {@code size} images are recognised at
+ * once, at most {@code queueCapacity} callers wait for a worker, and any further caller is rejected straight away
+ * so that a flood of images applies backpressure instead of piling up threads.
+ */
+public class OcrWorkerPool implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OcrWorkerPool.class);
+
+    private final String dataPath;
+    private final String language;
+    private final int size;
+    private final Duration acquireTimeout;
+
+    private final LinkedBlockingDeque<OcrWorker> idle = new LinkedBlockingDeque<>();
+    private final Semaphore admission;
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicLong ocrCount = new AtomicLong();
+    private final AtomicLong ocrNanos = new AtomicLong();
+    private final LongAccumulator maxOcrNanos = new LongAccumulator(Math::max, 0);
+    private final AtomicLong rejected = new AtomicLong();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition capacityChanged = lock.newCondition();
+    private volatile boolean closed;
+
+    public OcrWorkerPool(String dataPath, String language, int size, int queueCapacity, Duration acquireTimeout) {
+        this.dataPath = dataPath;
+        this.language = language;
+        this.size = Math.max(1, size);
+        this.acquireTimeout = acquireTimeout;
+        this.admission = new Semaphore(this.size + Math.max(0, queueCapacity));
+    }
+
+    /**
+     * Creates and loads all workers up front so the first images do not pay the language data load.
+     * Failures are logged and the missing workers are created on demand instead.
+     */
+    public void prewarm() {
+        while (created.get() < size) {
+            try {
+                OcrWorker worker = createWorker();
+                if (worker == null) {
+                    break;
+                }
+                idle.offerLast(worker);
+            } catch (RuntimeException ex) {
+                LOGGER.error("Error pre-warming OCR worker: {}", ex.getMessage());
+                break;
+            }
+        }
+        LOGGER.info("OCR worker pool ready with {} of {} workers", created.get(), size);
+    }
+
+    /**
+     * Recognises the text in an image on a pooled worker.
+     *
+     * @param image The image to read
+     * @return The recognised text
+     * @throws InterruptedException if interrupted while waiting for a worker
+     */
+    public String doOCR(BufferedImage image) throws InterruptedException {
+        OcrWorker worker = checkout();
+        boolean healthy = false;
+        long start = System.nanoTime();
+        try {
+            String text = worker.recognize(image);
+            healthy = true;
+            return text;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            ocrCount.incrementAndGet();
+            ocrNanos.addAndGet(elapsed);
+            maxOcrNanos.accumulate(elapsed);
+            release(worker, healthy);
+        }
+    }
+
+    /**
+     * Checks a worker out of the pool, waiting up to the acquire timeout for one to become free.
+     * The worker must be handed back with {@link #release(OcrWorker, boolean)}.
+     *
+     * @return A worker for exclusive use by the calling thread
+     * @throws InterruptedException       if interrupted while waiting
+     * @throws RejectedExecutionException if the wait queue is full or no worker became free in time
+     */
+    public OcrWorker checkout() throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("OCR worker pool is closed");
+        }
+        if (!admission.tryAcquire()) {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("OCR queue is full");
+        }
+        waiting.incrementAndGet();
+        try {
+            OcrWorker worker = awaitWorker();
+            if (worker == null) {
+                rejected.incrementAndGet();
+                throw new RejectedExecutionException("No OCR worker available within " + acquireTimeout);
+            }
+            inUse.incrementAndGet();
+            return worker;
+        } catch (InterruptedException | RuntimeException ex) {
+            admission.release();
+            throw ex;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Takes an idle worker or creates one, waiting up to the acquire timeout while neither is possible. Waiters are
+     * woken whenever a worker is returned or a slot is freed, including by a failed creation, so a free slot is
+     * retried at once rather than after the timeout.
+     *
+     * @return A worker, or null if none became available in time
+     */
+    private OcrWorker awaitWorker() throws InterruptedException {
+        long deadline = System.nanoTime() + acquireTimeout.toNanos();
+        while (true) {
+            OcrWorker worker = idle.pollFirst();
+            if (worker == null) {
+                worker = createWorker();
+            }
+            if (worker != null) {
+                return worker;
+            }
+            lock.lockInterruptibly();
+            try {
+                // Checked under the lock, so a worker returned or a slot freed after this cannot be missed
+                if (!idle.isEmpty() || created.get() < size) {
+                    continue;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                capacityChanged.awaitNanos(remaining);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void signalCapacity() {
+        lock.lock();
+        try {
+            capacityChanged.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a worker to the pool.
+     *
+     * @param worker  The worker obtained from {@link #checkout()}
+     * @param healthy false if the worker failed and should be replaced by a fresh one
+     */
+    public void release(OcrWorker worker, boolean healthy) {
+        inUse.decrementAndGet();
+        try {
+            if (healthy && !closed) {
+                idle.offerFirst(worker);
+            } else {
+                created.decrementAndGet();
+                worker.close();
+            }
+        } finally {
+            admission.release();
+            signalCapacity();
+        }
+    }
+
+    /**
+     * Creates a new worker if the pool has not reached its size yet.
+     *
+     * @return The new worker, or null if the pool is already full
+     */
+    private OcrWorker createWorker() {
+        if (created.incrementAndGet() > size) {
+            created.decrementAndGet();
+            return null;
+        }
+        try {
+            return new OcrWorker(dataPath, language);
+        } catch (RuntimeException | Error ex) {
+            created.decrementAndGet();
+            // The slot is free again; let a waiting caller retry
+            signalCapacity();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return A snapshot of the pool counters
+     */
+    public OcrPoolMetrics metrics() {
+        return new OcrPoolMetrics(size, created.get(), inUse.get(), waiting.get(), ocrCount.get(),
+                TimeUnit.NANOSECONDS.toMillis(ocrNanos.get()), TimeUnit.NANOSECONDS.toMillis(maxOcrNanos.get()),
+                rejected.get());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        OcrWorker worker;
+        while ((worker = idle.pollFirst()) != null) {
+            worker.close();
+        }
+    }
+}
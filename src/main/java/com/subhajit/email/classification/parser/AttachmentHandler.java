@@ -0,0 +1,32 @@
+package com.subhajit.email.classification.parser;
+
+import java.util.List;
+
+/**
+ * Extracts text from attachments of particular MIME types. Handlers are Spring beans collected by the
+ * {@link ParserRegistry}.
+ */
+public interface AttachmentHandler {
+
+    /**
+     * @return Short name of the handler, used to configure its limits
+     */
+    String name();
+
+    /**
+     * @return The MIME types handled, either exact ({@code application/pdf}) or by top-level type
+     * ({@code image/*}); empty for the fallback handler
+     */
+    List<String> mimeTypes();
+
+    /**
+     * Extracts the text of an attachment.
+     *
+     * @param source   The attachment and its shared stream
+     * @param mimeType The detected MIME type
+     * @param limits   Character and time limits to respect
+     * @return The extracted text, or a failure with a message starting with "Error reading "
+     * @throws Exception if extraction fails in a way the handler does not report itself
+     */
+    ExtractionResult extract(AttachmentSource source, String mimeType, ParseLimits limits) throws Exception;
+}
@@ -0,0 +1,70 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.model.EmailAttachment;
+import org.apache.tika.io.TikaInputStream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An attachment with one buffered stream shared by MIME type detection and parsing.
+ * <p>
+ * The stream is opened on first use, from memory or straight from the spill file. Detection peeks at the leading
+ * bytes and rewinds, so the handler then reads from the start without the file being reopened.
+ */
+public class AttachmentSource implements Closeable {
+
+    private final EmailAttachment attachment;
+    private TikaInputStream stream;
+
+    public AttachmentSource(EmailAttachment attachment) {
+        this.attachment = attachment;
+    }
+
+    public EmailAttachment getAttachment() {
+        return attachment;
+    }
+
+    public String getName() {
+        return attachment.getName();
+    }
+
+    /**
+     * Returns the shared stream, positioned at the start of the content. Detectors restore the position themselves
+     * with mark/reset; a stream that has been consumed is reopened. Callers must not close it.
+     *
+     * @return The stream
+     * @throws IOException if the content cannot be opened
+     */
+    public synchronized TikaInputStream stream() throws IOException {
+        if (stream != null && stream.getPosition() != 0) {
+            stream.close();
+            stream = null;
+        }
+        if (stream == null) {
+            stream = attachment.isInMemory()
+                    ? TikaInputStream.get(attachment.toByteArray())
+                    : TikaInputStream.get(attachment.getFile().toPath());
+        }
+        return stream;
+    }
+
+    /**
+     * Opens the content as a stream of its own, for handlers that must close what they read.
+     *
+     * @return A new stream over the content; the caller must close it
+     * @throws IOException if the content cannot be opened
+     */
+    public InputStream openStream() throws IOException {
+        return attachment.openStream();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+    }
+}
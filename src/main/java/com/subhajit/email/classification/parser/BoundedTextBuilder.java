@@ -0,0 +1,100 @@
+package com.subhajit.email.classification.parser;
+
+/**
+ * {@link StringBuilder} wrapper that stops accepting text once a character limit is reached.
+ * <p>
+ * Extractors append into it and stop reading their input when {@link LimitReachedException} is thrown, so the
+ * memory used for the result is bounded by the limit rather than by the size of the attachment.
+ */
+public class BoundedTextBuilder {
+
+    private final StringBuilder sb = new StringBuilder();
+    private final long maxChars;
+    private String truncationReason;
+
+    public BoundedTextBuilder(long maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Appends text, cutting it at the character limit.
+     *
+     * @param text The text to append
+     * @return this builder
+     * @throws LimitReachedException if the limit was reached while appending
+     */
+    public BoundedTextBuilder append(CharSequence text) {
+        if (text == null) {
+            return this;
+        }
+        long room = maxChars - sb.length();
+        if (text.length() > room) {
+            sb.append(text, 0, (int) Math.max(room, 0));
+            throw limitReached("character limit of " + maxChars + " reached");
+        }
+        sb.append(text);
+        return this;
+    }
+
+    /**
+     * Appends a single character, respecting the character limit.
+     *
+     * @param c The character to append
+     * @return this builder
+     * @throws LimitReachedException if the limit is already reached
+     */
+    public BoundedTextBuilder append(char c) {
+        if (sb.length() >= maxChars) {
+            throw limitReached("character limit of " + maxChars + " reached");
+        }
+        sb.append(c);
+        return this;
+    }
+
+    /**
+     * Records that extraction stopped early and returns the exception the caller should throw to unwind its parser.
+     *
+     * @param reason Human readable reason, e.g. "row limit of 1000 reached"
+     * @return The exception to throw
+     */
+    public LimitReachedException limitReached(String reason) {
+        if (truncationReason == null) {
+            truncationReason = reason;
+        }
+        return new LimitReachedException(reason);
+    }
+
+    /**
+     * @return The number of characters collected so far
+     */
+    public int length() {
+        return sb.length();
+    }
+
+    /**
+     * @return true if extraction stopped at a limit
+     */
+    public boolean isTruncated() {
+        return truncationReason != null;
+    }
+
+    /**
+     * @return The collected text, followed by a truncation marker if a limit was reached
+     */
+    @Override
+    public String toString() {
+        if (truncationReason == null) {
+            return sb.toString();
+        }
+        return sb + "\n[Truncated: " + truncationReason + "]";
+    }
+
+    /**
+     * Thrown to unwind a streaming parser once a limit is reached. Carries no stack trace.
+     */
+    public static class LimitReachedException extends RuntimeException {
+        public LimitReachedException(String reason) {
+            super(reason, null, false, false);
+        }
+    }
+}
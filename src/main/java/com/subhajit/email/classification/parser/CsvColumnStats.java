@@ -0,0 +1,189 @@
+package com.subhajit.email.classification.parser;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Running statistics of one CSV column: how many values it has, whether they are numbers or dates, their numeric
+ * range and, for columns with few distinct values, the values themselves. Memory is bounded by the number of
+ * distinct values tracked, not by the number of rows. Statistics of chunks scanned in parallel are combined with
+ * {@link #merge(CsvColumnStats)}.
+ */
+class CsvColumnStats {
+
+    private static final Pattern DATE = Pattern.compile("\\d{4}-\\d{1,2}-\\d{1,2}(?:[T ].*)?"
+            + "|\\d{1,2}[/.-]\\d{1,2}[/.-]\\d{2,4}"
+            + "|\\d{1,2}[ -][A-Za-z]{3}[ -]\\d{2,4}");
+
+    private final int maxDistinct;
+    private final Set<String> distinct = new LinkedHashSet<>();
+    private boolean distinctOverflow;
+    private long values;
+    private long empty;
+    private long numbers;
+    private long dates;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+    private int maxLength;
+
+    CsvColumnStats(int maxDistinct) {
+        this.maxDistinct = maxDistinct;
+    }
+
+    void add(String value) {
+        String trimmed = value.strip();
+        if (trimmed.isEmpty()) {
+            empty++;
+            return;
+        }
+        values++;
+        maxLength = Math.max(maxLength, trimmed.length());
+        double number = parseNumber(trimmed);
+        if (!Double.isNaN(number)) {
+            numbers++;
+            min = Math.min(min, number);
+            max = Math.max(max, number);
+            sum += number;
+        } else if (trimmed.length() <= 30 && Character.isDigit(trimmed.charAt(0))
+                && DATE.matcher(trimmed).matches()) {
+            dates++;
+        }
+        if (!distinctOverflow && !distinct.contains(trimmed)) {
+            if (distinct.size() < maxDistinct) {
+                distinct.add(trimmed);
+            } else {
+                distinctOverflow = true;
+            }
+        }
+    }
+
+    void merge(CsvColumnStats other) {
+        values += other.values;
+        empty += other.empty;
+        numbers += other.numbers;
+        dates += other.dates;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sum += other.sum;
+        maxLength = Math.max(maxLength, other.maxLength);
+        if (other.distinctOverflow) {
+            distinctOverflow = true;
+        }
+        for (String value : other.distinct) {
+            if (distinctOverflow) {
+                break;
+            }
+            if (!distinct.contains(value)) {
+                if (distinct.size() < maxDistinct) {
+                    distinct.add(value);
+                } else {
+                    distinctOverflow = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param name The column name
+     * @return One line describing the column, e.g. {@code amount: number, 1000 values, min 1.5, max 99.25}
+     */
+    String describe(String name) {
+        StringBuilder line = new StringBuilder(name).append(": ");
+        boolean numeric = values > 0 && numbers >= values * 0.95;
+        boolean date = values > 0 && !numeric && dates >= values * 0.95;
+        line.append(numeric ? "number" : date ? "date" : "text")
+                .append(", ").append(values).append(" values");
+        if (empty > 0) {
+            line.append(", ").append(empty).append(" empty");
+        }
+        if (numeric) {
+            line.append(", min ").append(format(min))
+                    .append(", max ").append(format(max))
+                    .append(", sum ").append(format(sum));
+        }
+        if (distinctOverflow) {
+            line.append(", more than ").append(maxDistinct).append(" distinct");
+        } else if (!distinct.isEmpty()) {
+            line.append(", ").append(distinct.size()).append(" distinct: ").append(String.join(", ", distinct));
+        }
+        if (!numeric && !date && distinctOverflow) {
+            line.append(", up to ").append(maxLength).append(" characters");
+        }
+        return line.toString();
+    }
+
+    /**
+     * Parses plain decimal numbers such as {@code -1,234.50}, {@code 12.5%} or {@code $100} without throwing, as
+     * most values of a text column are not numbers.
+     *
+     * @return The number, or NaN if the value is not one
+     */
+    static double parseNumber(String value) {
+        int start = 0;
+        int end = value.length();
+        char first = value.charAt(0);
+        if (first == '$' || first == '€' || first == '£') {
+            start++;
+        }
+        if (end > start && value.charAt(end - 1) == '%') {
+            end--;
+        }
+        boolean negative = false;
+        if (start < end && (value.charAt(start) == '-' || value.charAt(start) == '+')) {
+            negative = value.charAt(start) == '-';
+            start++;
+        }
+        if (start >= end) {
+            return Double.NaN;
+        }
+        long digits = 0;
+        int digitCount = 0;
+        int scale = -1;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digitCount++ > 17) {
+                    // Too long for a long; let the JDK parse it
+                    return parseSlowly(value.substring(start, end).replace(",", ""), negative);
+                }
+                digits = digits * 10 + (c - '0');
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else if (c == ',' && scale < 0 && i > start) {
+                // Thousands separator
+                continue;
+            } else if (c == 'e' || c == 'E') {
+                return parseSlowly(value.substring(start, end).replace(",", ""), negative);
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (digitCount == 0) {
+            return Double.NaN;
+        }
+        double number = scale > 0 ? digits / Math.pow(10, scale) : digits;
+        return negative ? -number : number;
+    }
+
+    private static double parseSlowly(String value, boolean negative) {
+        try {
+            double number = Double.parseDouble(value);
+            return negative ? -number : number;
+        } catch (NumberFormatException ex) {
+            return Double.NaN;
+        }
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
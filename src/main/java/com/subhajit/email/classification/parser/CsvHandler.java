@@ -0,0 +1,56 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.configuration.ParserProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Reads CSV files. Small files are read as text; large ones are summarized by a {@link CsvTextExtractor} with their
+ * header, sample rows and column statistics, see {@code email.classification.parser.csv}.
+ */
+@Component
+public class CsvHandler implements AttachmentHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvHandler.class);
+
+    private final CsvTextExtractor extractor;
+
+    public CsvHandler(ParserProperties properties) {
+        this.extractor = new CsvTextExtractor(properties.getCsv());
+    }
+
+    @Override
+    public String name() {
+        return "csv";
+    }
+
+    @Override
+    public List<String> mimeTypes() {
+        return List.of("text/csv", "application/csv");
+    }
+
+    /**
+     * Parses a CSV file and extracts its content.
+     *
+     * @param source The CSV file to parse
+     * @return The extracted content from the CSV file
+     */
+    @Override
+    public ExtractionResult extract(AttachmentSource source, String mimeType, ParseLimits limits) {
+        try {
+            return ExtractionResult.of(extractor.extract(source.getAttachment(), limits));
+        } catch (Exception ex) {
+            LOGGER.error("Error reading CSV file: {}", ex.getMessage());
+            return ExtractionResult.failure("Error reading CSV file: " + ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        extractor.close();
+    }
+}
@@ -0,0 +1,654 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.model.EmailAttachment;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts CSV files either as capped text or, for large files, as a compact summary: the header, sample rows and
+ * statistics per column, which tell a classifier more than the first megabytes of rows would.
+ * <p>
+ * The charset is taken from a byte order mark, or is UTF-8 if the leading bytes decode as such and windows-1252
+ * otherwise; the delimiter is the candidate that splits the leading records most consistently. Summaries of files
+ * in ASCII-compatible charsets are built by memory-mapping the file in chunks that are scanned in parallel: a first
+ * pass counts the quotes of each chunk, from which the state at every chunk start is known, so each chunk can begin
+ * at the first line break that is not inside a quoted field. A second pass parses the chunks into per-column
+ * statistics that are merged at the end. Memory use depends on the number of columns and threads, not on the size
+ * of the file. UTF-16 files, and files whose lines end in a bare carriage return, are summarized on one thread with
+ * Commons CSV.
+ */
+public class CsvTextExtractor implements Closeable {
+
+    private static final int SAMPLE_BYTES = 64 * 1024;
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_FIELD_BYTES = 1024;
+    private static final Pattern LINE_BREAKS = Pattern.compile("[\\r\\n\\t]+");
+    private static final char[] DELIMITERS = {',', ';', '\t', '|'};
+    private static final Charset WINDOWS_1252 = Charset.isSupported("windows-1252")
+            ? Charset.forName("windows-1252") : StandardCharsets.ISO_8859_1;
+
+    private final ParserProperties.Csv properties;
+    private final ThreadPoolExecutor executor;
+
+    public CsvTextExtractor(ParserProperties.Csv properties) {
+        this.properties = properties;
+        int threads = Math.max(1, properties.getScanThreads());
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("csv-scan-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                threadFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Extracts the text or the summary of a CSV file.
+     *
+     * @param attachment The CSV file
+     * @param limits     Character and time limits to respect
+     * @return The extracted text
+     * @throws Exception if the file cannot be read
+     */
+    public String extract(EmailAttachment attachment, ParseLimits limits) throws Exception {
+        BoundedTextBuilder sb = limits.newTextBuilder();
+        try (Content content = Content.open(attachment)) {
+            byte[] sample = content.read(0, (int) Math.min(SAMPLE_BYTES, content.size()));
+            Encoding encoding = detectEncoding(sample);
+            String sampleText = decodeSample(sample, encoding);
+            char delimiter = detectDelimiter(sampleText);
+
+            boolean summarize = switch (properties.getMode()) {
+                case TEXT -> false;
+                case SUMMARY -> true;
+                case AUTO -> content.size() > properties.getSummaryThreshold().toBytes();
+            };
+            try {
+                if (!summarize) {
+                    appendText(attachment, encoding, limits, sb);
+                } else if (encoding.asciiCompatible() && !crLineEndings(sampleText)) {
+                    summarizeParallel(content, encoding, delimiter, sampleText, limits, sb);
+                } else {
+                    summarizeSequential(attachment, encoding, delimiter, sampleText, limits, sb);
+                }
+            } catch (BoundedTextBuilder.LimitReachedException ex) {
+                // Keep what was written before the limit
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static void appendText(EmailAttachment attachment, Encoding encoding, ParseLimits limits,
+                                   BoundedTextBuilder sb) throws IOException {
+        try (InputStream in = attachment.openStream()) {
+            in.skipNBytes(encoding.bomLength());
+            BufferedReader reader = new BufferedReader(new InputStreamReader(limits.guard(in, sb),
+                    encoding.charset()));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sb.append(line).append('\n');
+            }
+        }
+    }
+
+    private void summarizeParallel(Content content, Encoding encoding, char delimiter, String sampleText,
+                                   ParseLimits limits, BoundedTextBuilder sb) throws Exception {
+        long start = encoding.bomLength();
+        long length = content.size() - start;
+        int threads = Math.max(1, properties.getScanThreads());
+        // At least one chunk per thread, but no chunk larger than what one mapping should cover
+        long chunkSize = Math.max(1 << 20, Math.min(properties.getChunkSize().toBytes(),
+                (length + threads - 1) / threads));
+        int chunks = (int) Math.max(1, (length + chunkSize - 1) / chunkSize);
+
+        // Pass 1: quote parity and candidate record starts of every chunk
+        List<Callable<QuoteScan>> scans = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            long from = start + i * chunkSize;
+            long to = Math.min(content.size(), from + chunkSize);
+            scans.add(() -> scanQuotes(content, from, to, limits));
+        }
+        List<QuoteScan> quoteScans = runAll(scans, limits);
+        if (quoteScans == null) {
+            throw limits.timeLimitReached(sb);
+        }
+
+        // The quote state at each chunk start follows from the parities of the chunks before it
+        List<Long> recordStarts = new ArrayList<>();
+        recordStarts.add(start);
+        boolean inQuotes = false;
+        for (int i = 0; i < chunks; i++) {
+            QuoteScan scan = quoteScans.get(i);
+            if (i > 0) {
+                long recordStart = inQuotes ? scan.firstRecordIfQuoted() : scan.firstRecord();
+                if (recordStart > recordStarts.get(recordStarts.size() - 1)) {
+                    recordStarts.add(recordStart);
+                }
+            }
+            inQuotes ^= scan.oddQuotes();
+        }
+        recordStarts.add(content.size());
+
+        // Pass 2: parse the records of each chunk into column statistics
+        List<Callable<ChunkStats>> parses = new ArrayList<>(recordStarts.size() - 1);
+        for (int i = 0; i + 1 < recordStarts.size(); i++) {
+            long from = recordStarts.get(i);
+            long to = recordStarts.get(i + 1);
+            boolean first = i == 0;
+            parses.add(() -> parseChunk(content, from, to, delimiter, encoding.charset(), first, limits));
+        }
+        List<ChunkStats> chunkStats = runAll(parses, limits);
+        if (chunkStats == null) {
+            throw limits.timeLimitReached(sb);
+        }
+
+        ChunkStats total = new ChunkStats(properties.getMaxColumns(), properties.getMaxDistinct());
+        List<List<String>> spreadRows = new ArrayList<>();
+        for (int i = 0; i < chunkStats.size(); i++) {
+            ChunkStats stats = chunkStats.get(i);
+            total.merge(stats);
+            // The first row of the first chunk is already among the leading sample rows
+            if (i > 0 && stats.firstRow != null && spreadRows.size() < properties.getSampleRows()) {
+                spreadRows.add(stats.firstRow);
+            }
+        }
+        writeSummary(content.size(), encoding, delimiter, sampleText, total, spreadRows, sb);
+    }
+
+    private void summarizeSequential(EmailAttachment attachment, Encoding encoding, char delimiter,
+                                     String sampleText, ParseLimits limits, BoundedTextBuilder sb)
+            throws IOException {
+        ChunkStats total = new ChunkStats(properties.getMaxColumns(), properties.getMaxDistinct());
+        try (InputStream in = attachment.openStream()) {
+            in.skipNBytes(encoding.bomLength());
+            Reader reader = new BufferedReader(new InputStreamReader(in, encoding.charset()));
+            try (CSVParser parser = format(delimiter).parse(reader)) {
+                boolean header = true;
+                for (CSVRecord record : parser) {
+                    if (header) {
+                        header = false;
+                        continue;
+                    }
+                    if (total.rows % 4096 == 0 && limits.isExpired()) {
+                        limits.markDegraded();
+                        total.complete = false;
+                        break;
+                    }
+                    total.add(record.toList());
+                }
+            }
+        }
+        writeSummary(attachment.getSize(), encoding, delimiter, sampleText, total, List.of(), sb);
+    }
+
+    private void writeSummary(long size, Encoding encoding, char delimiter, String sampleText, ChunkStats total,
+                              List<List<String>> spreadRows, BoundedTextBuilder sb) {
+        List<List<String>> head = sampleRecords(sampleText, delimiter, properties.getSampleRows() + 1);
+        List<String> header = head.isEmpty() ? List.of() : head.get(0);
+
+        sb.append("CSV summary: ").append(String.valueOf(total.rows)).append(" rows, ")
+                .append(String.valueOf(Math.max(header.size(), total.columns))).append(" columns, delimiter ")
+                .append(delimiter == '\t' ? "tab" : "'" + delimiter + "'").append(", ")
+                .append(encoding.charset().name()).append(", ").append(String.valueOf(size)).append(" bytes\n");
+        if (!total.complete) {
+            sb.append("[Statistics cover the rows scanned before the time limit]\n");
+        }
+        if (total.raggedRows > 0) {
+            sb.append(String.valueOf(total.raggedRows))
+                    .append(" rows have a different number of fields than the header\n");
+        }
+        sb.append("Columns: ").append(joinRow(header)).append('\n');
+        sb.append("Sample rows:\n");
+        for (List<String> row : head.subList(Math.min(1, head.size()), head.size())) {
+            sb.append(joinRow(row)).append('\n');
+        }
+        // First rows of later chunks, spread across the file
+        for (List<String> row : spreadRows) {
+            sb.append(joinRow(row)).append('\n');
+        }
+        sb.append("Column statistics:\n");
+        for (int i = 0; i < total.stats.length && i < total.columns; i++) {
+            String name = i < header.size() && !header.get(i).isBlank() ? header.get(i).strip() : "column " + (i + 1);
+            sb.append("- ").append(total.stats[i].describe(name)).append('\n');
+        }
+        if (total.columns > total.stats.length) {
+            sb.append("[Statistics of ").append(String.valueOf(total.columns - total.stats.length))
+                    .append(" more columns omitted]\n");
+        }
+    }
+
+    /**
+     * Joins the fields of a row with tabs, keeping the row on one line.
+     */
+    private static String joinRow(List<String> row) {
+        StringBuilder line = new StringBuilder();
+        for (String field : row) {
+            if (!line.isEmpty()) {
+                line.append('\t');
+            }
+            line.append(LINE_BREAKS.matcher(field).replaceAll(" "));
+        }
+        return line.toString();
+    }
+
+    /**
+     * Counts the quotes of a chunk and finds its first record start for either quote state at the chunk start.
+     */
+    private static QuoteScan scanQuotes(Content content, long from, long to, ParseLimits limits) throws IOException {
+        ByteBuffer buffer = content.map(from, to - from);
+        byte[] block = new byte[BLOCK_SIZE];
+        boolean odd = false;
+        long firstRecord = -1;
+        long firstRecordIfQuoted = -1;
+        for (int offset = 0; offset < buffer.limit(); offset += BLOCK_SIZE) {
+            if (limits.isExpired()) {
+                return null;
+            }
+            int n = Math.min(BLOCK_SIZE, buffer.limit() - offset);
+            buffer.get(offset, block, 0, n);
+            for (int i = 0; i < n; i++) {
+                byte b = block[i];
+                if (b == '"') {
+                    odd = !odd;
+                } else if (b == '\n') {
+                    // With an even count so far, the state here equals the state at the chunk start
+                    if (!odd && firstRecord < 0) {
+                        firstRecord = from + offset + i + 1;
+                    } else if (odd && firstRecordIfQuoted < 0) {
+                        firstRecordIfQuoted = from + offset + i + 1;
+                    }
+                }
+            }
+        }
+        return new QuoteScan(odd, firstRecord < 0 ? to : firstRecord,
+                firstRecordIfQuoted < 0 ? to : firstRecordIfQuoted);
+    }
+
+    /**
+     * Parses the records between two record starts. Fields longer than {@link #MAX_FIELD_BYTES} are cut, as their
+     * statistics need no more.
+     */
+    private ChunkStats parseChunk(Content content, long from, long to, char delimiter, Charset charset,
+                                  boolean first, ParseLimits limits) throws IOException {
+        ChunkStats stats = new ChunkStats(properties.getMaxColumns(), properties.getMaxDistinct());
+        if (to <= from) {
+            return stats;
+        }
+        ByteBuffer buffer = content.map(from, to - from);
+        byte[] block = new byte[BLOCK_SIZE];
+        byte[] field = new byte[MAX_FIELD_BYTES];
+        int fieldLength = 0;
+        boolean quoted = false;
+        boolean quoteInQuoted = false;
+        boolean fieldStart = true;
+        List<String> record = new ArrayList<>();
+        boolean header = first;
+        byte delimiterByte = (byte) delimiter;
+
+        for (int offset = 0; offset < buffer.limit(); offset += BLOCK_SIZE) {
+            int n = Math.min(BLOCK_SIZE, buffer.limit() - offset);
+            buffer.get(offset, block, 0, n);
+            for (int i = 0; i < n; i++) {
+                byte b = block[i];
+                if (quoted) {
+                    if (b == '"') {
+                        if (quoteInQuoted) {
+                            // An escaped quote
+                            quoteInQuoted = false;
+                            if (fieldLength < MAX_FIELD_BYTES) {
+                                field[fieldLength++] = b;
+                            }
+                        } else {
+                            quoteInQuoted = true;
+                        }
+                        continue;
+                    }
+                    if (!quoteInQuoted) {
+                        if (fieldLength < MAX_FIELD_BYTES) {
+                            field[fieldLength++] = b;
+                        }
+                        continue;
+                    }
+                    // The quote before this byte closed the field
+                    quoted = false;
+                    quoteInQuoted = false;
+                }
+                if (b == delimiterByte) {
+                    record.add(new String(field, 0, fieldLength, charset));
+                    fieldLength = 0;
+                    fieldStart = true;
+                } else if (b == '\n') {
+                    if (fieldLength > 0 && field[fieldLength - 1] == '\r') {
+                        fieldLength--;
+                    }
+                    record.add(new String(field, 0, fieldLength, charset));
+                    fieldLength = 0;
+                    fieldStart = true;
+                    if (header) {
+                        header = false;
+                    } else {
+                        stats.addRecord(record);
+                        if (stats.rows % 4096 == 0 && limits.isExpired()) {
+                            limits.markDegraded();
+                            stats.complete = false;
+                            return stats;
+                        }
+                    }
+                    record = new ArrayList<>(record.size());
+                } else if (b == '"' && fieldStart) {
+                    quoted = true;
+                    fieldStart = false;
+                } else {
+                    fieldStart = false;
+                    if (fieldLength < MAX_FIELD_BYTES) {
+                        field[fieldLength++] = b;
+                    }
+                }
+            }
+        }
+        if (fieldLength > 0 || !record.isEmpty()) {
+            // The last record of the file has no line break
+            if (fieldLength > 0 && field[fieldLength - 1] == '\r') {
+                fieldLength--;
+            }
+            record.add(new String(field, 0, fieldLength, charset));
+            if (!header) {
+                stats.addRecord(record);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Runs tasks on the scan threads and waits for all of them within the time limit.
+     *
+     * @return The results in task order, or null if the time limit passed or a task gave up
+     */
+    private <T> List<T> runAll(List<Callable<T>> tasks, ParseLimits limits) throws Exception {
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        try {
+            List<T> results = new ArrayList<>(futures.size());
+            for (Future<T> future : futures) {
+                long remaining = limits.deadlineNanos() - System.nanoTime();
+                T result = future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+                if (result == null) {
+                    return null;
+                }
+                results.add(result);
+            }
+            return results;
+        } catch (TimeoutException ex) {
+            return null;
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw ex;
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    static Encoding detectEncoding(byte[] sample) {
+        if (sample.length >= 3 && (sample[0] & 0xFF) == 0xEF && (sample[1] & 0xFF) == 0xBB
+                && (sample[2] & 0xFF) == 0xBF) {
+            return new Encoding(StandardCharsets.UTF_8, 3);
+        }
+        if (sample.length >= 2 && (sample[0] & 0xFF) == 0xFF && (sample[1] & 0xFF) == 0xFE) {
+            return new Encoding(StandardCharsets.UTF_16LE, 2);
+        }
+        if (sample.length >= 2 && (sample[0] & 0xFF) == 0xFE && (sample[1] & 0xFF) == 0xFF) {
+            return new Encoding(StandardCharsets.UTF_16BE, 2);
+        }
+        return new Encoding(isUtf8(sample) ? StandardCharsets.UTF_8 : WINDOWS_1252, 0);
+    }
+
+    private static boolean isUtf8(byte[] sample) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer in = ByteBuffer.wrap(sample);
+        CharBuffer out = CharBuffer.allocate(sample.length);
+        // Not the end of input: a character cut at the end of the sample is not an error
+        CoderResult result = decoder.decode(in, out, false);
+        return !result.isError();
+    }
+
+    private static String decodeSample(byte[] sample, Encoding encoding) {
+        String text = new String(sample, encoding.bomLength(), sample.length - encoding.bomLength(),
+                encoding.charset());
+        // Drop the last, possibly incomplete line unless the sample is the whole file
+        int lastBreak = Math.max(text.lastIndexOf('\n'), text.lastIndexOf('\r'));
+        return sample.length == SAMPLE_BYTES && lastBreak > 0 ? text.substring(0, lastBreak + 1) : text;
+    }
+
+    /**
+     * @return true if the lines of the sample end in a bare carriage return, as in files from classic Mac OS. The
+     * parallel scan splits records at line feeds only and would read such a file as a single record.
+     */
+    static boolean crLineEndings(String sampleText) {
+        return sampleText.indexOf('\r') >= 0 && sampleText.indexOf('\n') < 0;
+    }
+
+    /**
+     * Picks the delimiter that occurs the same, non-zero number of times outside quotes in the most records.
+     */
+    static char detectDelimiter(String sampleText) {
+        char best = ',';
+        int bestScore = 0;
+        for (char candidate : DELIMITERS) {
+            List<Integer> counts = new ArrayList<>();
+            int count = 0;
+            boolean quoted = false;
+            for (int i = 0; i < sampleText.length() && counts.size() < 100; i++) {
+                char c = sampleText.charAt(i);
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (!quoted && c == candidate) {
+                    count++;
+                } else if (!quoted && (c == '\n' || c == '\r' && !sampleText.startsWith("\n", i + 1))) {
+                    counts.add(count);
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                counts.add(count);
+            }
+            int[] frequencies = new int[counts.stream().mapToInt(Integer::intValue).max().orElse(0) + 1];
+            counts.forEach(value -> frequencies[value]++);
+            int score = 0;
+            for (int value = 1; value < frequencies.length; value++) {
+                score = Math.max(score, frequencies[value]);
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private static List<List<String>> sampleRecords(String sampleText, char delimiter, int max) {
+        List<List<String>> records = new ArrayList<>();
+        try (CSVParser parser = format(delimiter).parse(new StringReader(sampleText))) {
+            for (CSVRecord record : parser) {
+                if (records.size() >= max) {
+                    break;
+                }
+                records.add(record.toList());
+            }
+        } catch (IOException | RuntimeException ex) {
+            // The sample may end inside a quoted field; keep the records before it
+        }
+        return records;
+    }
+
+    private static CSVFormat format(char delimiter) {
+        return CSVFormat.RFC4180.builder()
+                .setDelimiter(delimiter)
+                .setIgnoreEmptyLines(true)
+                .build();
+    }
+
+    /**
+     * The charset of a file and the length of its byte order mark.
+     */
+    record Encoding(Charset charset, int bomLength) {
+
+        /**
+         * @return true if delimiters, quotes and line breaks are single ASCII bytes, so the bytes can be scanned
+         * without decoding
+         */
+        boolean asciiCompatible() {
+            return !charset.name().startsWith("UTF-16");
+        }
+    }
+
+    private record QuoteScan(boolean oddQuotes, long firstRecord, long firstRecordIfQuoted) {
+    }
+
+    /**
+     * Row count and column statistics of one chunk, or of the whole file once merged.
+     */
+    private static class ChunkStats {
+
+        private final CsvColumnStats[] stats;
+        private long rows;
+        private long raggedRows;
+        private int columns;
+        private List<String> firstRow;
+        private boolean complete = true;
+
+        ChunkStats(int maxColumns, int maxDistinct) {
+            this.stats = new CsvColumnStats[Math.max(0, maxColumns)];
+            for (int i = 0; i < stats.length; i++) {
+                stats[i] = new CsvColumnStats(maxDistinct);
+            }
+        }
+
+        void addRecord(List<String> record) {
+            if (firstRow == null) {
+                firstRow = record;
+            }
+            add(record);
+        }
+
+        void add(List<String> record) {
+            rows++;
+            if (columns == 0) {
+                columns = record.size();
+            } else if (record.size() != columns) {
+                raggedRows++;
+                columns = Math.max(columns, record.size());
+            }
+            for (int i = 0; i < record.size() && i < stats.length; i++) {
+                stats[i].add(record.get(i));
+            }
+        }
+
+        void merge(ChunkStats other) {
+            rows += other.rows;
+            raggedRows += other.raggedRows;
+            columns = Math.max(columns, other.columns);
+            complete &= other.complete;
+            for (int i = 0; i < stats.length; i++) {
+                stats[i].merge(other.stats[i]);
+            }
+        }
+    }
+
+    /**
+     * The bytes of an attachment: mapped from its spill file, or wrapped when it is in memory.
+     */
+    private static final class Content implements Closeable {
+
+        private final FileChannel channel;
+        private final byte[] bytes;
+        private final long size;
+
+        private Content(FileChannel channel, byte[] bytes, long size) {
+            this.channel = channel;
+            this.bytes = bytes;
+            this.size = size;
+        }
+
+        static Content open(EmailAttachment attachment) throws IOException {
+            if (attachment.isInMemory()) {
+                byte[] bytes = attachment.toByteArray();
+                return new Content(null, bytes, bytes.length);
+            }
+            FileChannel channel = FileChannel.open(attachment.getFile().toPath(), StandardOpenOption.READ);
+            return new Content(channel, null, channel.size());
+        }
+
+        long size() {
+            return size;
+        }
+
+        /**
+         * Maps a range of at most 2 GB. Mappings are released by the garbage collector, and only the pages being
+         * scanned are resident.
+         */
+        ByteBuffer map(long from, long length) throws IOException {
+            if (channel == null) {
+                return ByteBuffer.wrap(bytes, (int) from, (int) length).slice();
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+        }
+
+        byte[] read(long from, int length) throws IOException {
+            if (channel == null) {
+                return Arrays.copyOfRange(bytes, (int) from, (int) from + length);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) > 0) {
+                // Keep reading until the range is filled or the file ends
+            }
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+}
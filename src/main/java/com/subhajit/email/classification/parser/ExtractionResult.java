@@ -0,0 +1,44 @@
+package com.subhajit.email.classification.parser;
+
+/**
+ * The outcome of extracting an attachment: its text, or a message saying why there is none. The message takes the
+ * place of the text in what the caller returns, and {@link #failed()} tells the two apart without inspecting it.
+ * Text cut short by load, e.g. by the time limit or by a busy OCR pool, is {@link #degraded()}: it is returned but
+ * not cached, so the next attempt can extract the whole attachment.
+ *
+ * @param text     The extracted text, or the error message
+ * @param failed   true if {@code text} is an error message
+ * @param degraded true if {@code text} is incomplete for a reason other than the attachment itself
+ */
+public record ExtractionResult(String text, boolean failed, boolean degraded) {
+
+    /**
+     * @param text The extracted text
+     * @return A successful result
+     */
+    public static ExtractionResult of(String text) {
+        return new ExtractionResult(text, false, false);
+    }
+
+    /**
+     * @param message Why no text could be extracted, e.g. {@code "Error reading PDF file: ..."}
+     * @return A failed result
+     */
+    public static ExtractionResult failure(String message) {
+        return new ExtractionResult(message, true, false);
+    }
+
+    /**
+     * @return This result marked as degraded, or this failure unchanged
+     */
+    public ExtractionResult asDegraded() {
+        return failed ? this : new ExtractionResult(text, false, true);
+    }
+
+    /**
+     * @return true if the result holds the whole text of the attachment, and so may be cached
+     */
+    public boolean complete() {
+        return !failed && !degraded;
+    }
+}
@@ -0,0 +1,246 @@
+package com.subhajit.email.classification.parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Converts HTML to plain text in one streaming pass, without building a DOM.
+ * <p>
+ * Tags and comments are dropped, the content of {@code script}, {@code style} and {@code head} is skipped, block
+ * elements become line breaks, table cells are separated by tabs, common entities are decoded and whitespace runs
+ * collapse to a single space. Malformed markup degrades to text rather than failing.
+ */
+public class HtmlTextExtractor {
+
+    private static final Set<String> BLOCK_TAGS = Set.of("p", "div", "br", "tr", "li", "ul", "ol", "table",
+            "h1", "h2", "h3", "h4", "h5", "h6", "hr", "blockquote", "pre", "section", "article", "header",
+            "footer", "dt", "dd");
+    private static final Set<String> CELL_TAGS = Set.of("td", "th");
+    private static final Set<String> SKIPPED_TAGS = Set.of("script", "style", "head", "title");
+    private static final Map<String, Character> ENTITIES = Map.of("amp", '&', "lt", '<', "gt", '>', "quot", '"',
+            "apos", '\'', "nbsp", ' ', "ndash", '–', "mdash", '—', "euro", '€', "pound", '£');
+    private static final int MAX_TAG_NAME = 16;
+    private static final int MAX_ENTITY = 10;
+
+    private final Reader in;
+    private final BoundedTextBuilder out;
+    private final StringBuilder tagName = new StringBuilder(MAX_TAG_NAME);
+    private final StringBuilder entity = new StringBuilder(MAX_ENTITY);
+    private String skipUntil;
+    private char pendingSpace;
+    private boolean atLineStart = true;
+
+    private HtmlTextExtractor(Reader in, BoundedTextBuilder out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    /**
+     * Appends the text of an HTML document.
+     *
+     * @param in  The HTML; not closed
+     * @param out Receives the text
+     * @throws IOException                              if reading fails
+     * @throws BoundedTextBuilder.LimitReachedException if {@code out} is full
+     */
+    public static void extract(Reader in, BoundedTextBuilder out) throws IOException {
+        // Characters are read one at a time, so make sure they come from a buffer
+        Reader buffered = in instanceof BufferedReader ? in : new BufferedReader(in);
+        new HtmlTextExtractor(buffered, out).run();
+    }
+
+    private void run() throws IOException {
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '<') {
+                readMarkup();
+            } else if (skipUntil != null) {
+                // Inside script, style or head
+            } else if (c == '&') {
+                readEntity();
+            } else if (Character.isWhitespace(c)) {
+                space(' ');
+            } else {
+                text((char) c);
+            }
+        }
+    }
+
+    /**
+     * Reads from after '<' up to the end of the tag, comment or declaration.
+     */
+    private void readMarkup() throws IOException {
+        int c = in.read();
+        if (c == '!') {
+            skipDeclarationOrComment();
+            return;
+        }
+        if (c == '?') {
+            skipPast('>');
+            return;
+        }
+        boolean closing = c == '/';
+        if (closing) {
+            c = in.read();
+        }
+        if (c == -1 || !Character.isLetter(c)) {
+            // Not a tag, e.g. "a < b"
+            if (skipUntil == null) {
+                text('<');
+                if (closing) {
+                    text('/');
+                }
+                if (c != -1 && !Character.isWhitespace(c)) {
+                    text((char) c);
+                } else if (c != -1) {
+                    space(' ');
+                }
+            }
+            return;
+        }
+        tagName.setLength(0);
+        while (c != -1 && c != '>' && !Character.isWhitespace(c) && c != '/') {
+            if (tagName.length() < MAX_TAG_NAME) {
+                tagName.append(Character.toLowerCase((char) c));
+            }
+            c = in.read();
+        }
+        if (c != '>') {
+            skipAttributes();
+        }
+        onTag(tagName.toString(), closing);
+    }
+
+    private void onTag(String name, boolean closing) {
+        if (skipUntil != null) {
+            if (closing && name.equals(skipUntil)) {
+                skipUntil = null;
+            }
+            return;
+        }
+        if (!closing && SKIPPED_TAGS.contains(name)) {
+            skipUntil = name;
+        } else if (BLOCK_TAGS.contains(name)) {
+            space('\n');
+        } else if (CELL_TAGS.contains(name) && !closing) {
+            space('\t');
+        }
+    }
+
+    /**
+     * Skips attributes up to the closing '>', honouring quoted values that may contain '>'.
+     */
+    private void skipAttributes() throws IOException {
+        int quote = 0;
+        int c;
+        while ((c = in.read()) != -1) {
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return;
+            }
+        }
+    }
+
+    private void skipDeclarationOrComment() throws IOException {
+        int c = in.read();
+        if (c == '-') {
+            in.read();
+            // Comment: skip to "-->"
+            int dashes = 0;
+            while ((c = in.read()) != -1) {
+                if (c == '>' && dashes >= 2) {
+                    return;
+                }
+                dashes = c == '-' ? dashes + 1 : 0;
+            }
+        } else if (c != '>' && c != -1) {
+            skipPast('>');
+        }
+    }
+
+    private void skipPast(char end) throws IOException {
+        int c;
+        while ((c = in.read()) != -1 && c != end) {
+            // skip
+        }
+    }
+
+    /**
+     * Reads from after '&' and emits the decoded character, or the raw text if it is not a known entity.
+     */
+    private void readEntity() throws IOException {
+        entity.setLength(0);
+        int c;
+        while ((c = in.read()) != -1 && c != ';' && entity.length() < MAX_ENTITY
+                && (Character.isLetterOrDigit(c) || c == '#')) {
+            entity.append((char) c);
+        }
+        Character decoded = decodeEntity(entity);
+        if (decoded != null && c == ';') {
+            if (decoded == ' ') {
+                space(' ');
+            } else {
+                text(decoded);
+            }
+            return;
+        }
+        text('&');
+        for (int i = 0; i < entity.length(); i++) {
+            text(entity.charAt(i));
+        }
+        if (c == '<') {
+            readMarkup();
+        } else if (c != -1) {
+            if (Character.isWhitespace(c)) {
+                space(' ');
+            } else {
+                text((char) c);
+            }
+        }
+    }
+
+    private static Character decodeEntity(CharSequence name) {
+        if (name.length() > 1 && name.charAt(0) == '#') {
+            try {
+                boolean hex = name.charAt(1) == 'x' || name.charAt(1) == 'X';
+                int codePoint = Integer.parseInt(name, hex ? 2 : 1, name.length(), hex ? 16 : 10);
+                return codePoint > 0 && codePoint <= Character.MAX_VALUE ? (char) codePoint : null;
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+        return ENTITIES.get(name.toString());
+    }
+
+    /**
+     * Records whitespace; it is written lazily so runs collapse and none is emitted at the start of a line. A line
+     * break wins over a space or tab in the same run.
+     */
+    private void space(char c) {
+        if (c == '\n') {
+            if (!atLineStart) {
+                pendingSpace = '\n';
+            }
+        } else if (pendingSpace == 0 && !atLineStart) {
+            pendingSpace = c;
+        }
+    }
+
+    private void text(char c) {
+        if (pendingSpace != 0) {
+            out.append(pendingSpace);
+            atLineStart = pendingSpace == '\n';
+            pendingSpace = 0;
+        }
+        out.append(c);
+        atLineStart = false;
+    }
+}
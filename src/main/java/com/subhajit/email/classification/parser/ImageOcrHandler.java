@@ -0,0 +1,71 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.ocr.OcrPreprocessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * Recognises the text of images with the shared OCR worker pool, after the {@link OcrPreprocessor} has dropped
+ * tracking pixels, blank images and known logos and reduced the rest to their text regions.
+ */
+@Component
+public class ImageOcrHandler implements AttachmentHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImageOcrHandler.class);
+
+    private final OcrPreprocessor ocrPreprocessor;
+
+    public ImageOcrHandler(OcrPreprocessor ocrPreprocessor) {
+        this.ocrPreprocessor = ocrPreprocessor;
+    }
+
+    @Override
+    public String name() {
+        return "image";
+    }
+
+    @Override
+    public List<String> mimeTypes() {
+        return List.of("image/*");
+    }
+
+    /**
+     * Parses an image file using OCR to extract text.
+     *
+     * @param source The image file to parse
+     * @param limits Character and time limits to respect
+     * @return The extracted text from the image, marked as truncated if the deadline passed during OCR
+     */
+    @Override
+    public ExtractionResult extract(AttachmentSource source, String mimeType, ParseLimits limits) {
+        try {
+            BufferedImage bufferedImage = ImageIO.read(source.stream());
+            if (bufferedImage == null) {
+                return ExtractionResult.failure("Error reading image file: unsupported image format " + mimeType);
+            }
+            if (limits.isExpired()) {
+                return ExtractionResult.failure("Error reading image file: time limit of "
+                        + limits.timeout().toSeconds() + "s reached");
+            }
+            BoundedTextBuilder sb = limits.newTextBuilder();
+            try {
+                sb.append(ocrPreprocessor.recognize(bufferedImage, limits::isExpired));
+                limits.checkDeadline(sb);
+            } catch (BoundedTextBuilder.LimitReachedException ex) {
+                // Keep what was recognised before the limit
+            }
+            return ExtractionResult.of(sb.toString());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return ExtractionResult.failure("Error reading image file: interrupted");
+        } catch (Exception ex) {
+            LOGGER.error("Error reading image file: {}", ex.getMessage());
+            return ExtractionResult.failure("Error reading image file: " + ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.model.EmailAttachment;
+import com.subhajit.email.classification.model.ParsedEmail;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Multipart;
+import jakarta.mail.Part;
+import jakarta.mail.Session;
+import jakarta.mail.internet.ContentType;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeUtility;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.tika.mime.MimeType;
+import org.apache.tika.mime.MimeTypes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Walks the MIME tree of an email once, collecting the body text and every attachment.
+ * <p>
+ * Each leaf part is decoded at most once, straight from its transfer-encoded stream: text parts are read through a
+ * character-limited buffer, HTML parts through {@link HtmlTextExtractor}, and attachments are copied into
+ * {@link EmailAttachment}s, which spill to disk when large. Nested multiparts and forwarded {@code message/rfc822}
+ * parts are followed, so attachments of forwarded emails are found too. Of a {@code multipart/alternative} only
+ * the plain text alternative is read, or the richest one when there is none.
+ * <p>
+ * Nesting depth, part count, body length, attachment count and attachment size are all bounded; parts beyond a
+ * limit are skipped and logged.
+ */
+public class MimeWalker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MimeWalker.class);
+
+    private final ParserProperties.Mime limits;
+    private final long spillThreshold;
+    private final Path spillDirectory;
+
+    private final BoundedTextBuilder body;
+    private final List<EmailAttachment> attachments = new ArrayList<>();
+    private int parts;
+    private boolean bodyFull;
+    private boolean partLimitLogged;
+
+    private MimeWalker(ParserProperties.Mime limits, long spillThreshold, Path spillDirectory) {
+        this.limits = limits;
+        this.spillThreshold = spillThreshold;
+        this.spillDirectory = spillDirectory;
+        this.body = new BoundedTextBuilder(limits.getMaxBodyChars());
+    }
+
+    /**
+     * Parses an email.
+     *
+     * @param message        The message
+     * @param limits         Depth, count and size limits
+     * @param spillThreshold Attachments larger than this many bytes are spilled to disk
+     * @param spillDirectory Directory for spilled attachments, or null for the temp directory
+     * @return The email; it must be closed to release its attachments
+     * @throws MessagingException if the MIME structure cannot be read
+     * @throws IOException        if a part cannot be decoded
+     */
+    public static ParsedEmail walk(MimeMessage message, ParserProperties.Mime limits, long spillThreshold,
+                                   Path spillDirectory) throws MessagingException, IOException {
+        MimeWalker walker = new MimeWalker(limits, spillThreshold, spillDirectory);
+        try {
+            walker.walkPart(message, 0);
+        } catch (MessagingException | IOException | RuntimeException ex) {
+            walker.attachments.forEach(EmailAttachment::close);
+            throw ex;
+        }
+        return new ParsedEmail(firstAddress(message.getFrom()), message.getSubject(), walker.body.toString(),
+                walker.attachments);
+    }
+
+    private void walkPart(Part part, int depth) throws MessagingException, IOException {
+        if (++parts > limits.getMaxParts()) {
+            if (!partLimitLogged) {
+                LOGGER.warn("Skipping MIME parts beyond the limit of {}", limits.getMaxParts());
+                partLimitLogged = true;
+            }
+            return;
+        }
+        if (depth > limits.getMaxDepth()) {
+            LOGGER.warn("Skipping {} part nested deeper than {}", part.getContentType(), limits.getMaxDepth());
+            return;
+        }
+
+        if (part.isMimeType("multipart/*")) {
+            walkMultipart(part, depth);
+        } else if (part.isMimeType("message/rfc822")) {
+            walkEmbeddedMessage(part, depth);
+        } else if (isAttachment(part)) {
+            addAttachment(part);
+        } else if (part.isMimeType("text/html")) {
+            appendText(part, true);
+        } else if (part.isMimeType("text/*")) {
+            appendText(part, false);
+        } else {
+            // Inline non-text content without a file name, e.g. an embedded image
+            addAttachment(part);
+        }
+    }
+
+    private void walkMultipart(Part part, int depth) throws MessagingException, IOException {
+        if (!(part.getContent() instanceof Multipart multipart)) {
+            LOGGER.warn("Skipping malformed {} part", part.getContentType());
+            return;
+        }
+        int count = multipart.getCount();
+        if (part.isMimeType("multipart/alternative") && count > 0) {
+            walkPart(multipart.getBodyPart(preferredAlternative(multipart)), depth + 1);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            walkPart(multipart.getBodyPart(i), depth + 1);
+        }
+    }
+
+    /**
+     * Picks the plain text alternative if there is one, otherwise the last one, which is the richest by convention.
+     */
+    private static int preferredAlternative(Multipart multipart) throws MessagingException {
+        for (int i = 0; i < multipart.getCount(); i++) {
+            if (multipart.getBodyPart(i).isMimeType("text/plain")) {
+                return i;
+            }
+        }
+        return multipart.getCount() - 1;
+    }
+
+    private void walkEmbeddedMessage(Part part, int depth) throws MessagingException, IOException {
+        MimeMessage embedded = part.getContent() instanceof MimeMessage message
+                ? message
+                : new MimeMessage(Session.getDefaultInstance(new Properties()), part.getInputStream());
+        if (!bodyFull) {
+            appendSafely("\n\n---------- Forwarded message ----------\nFrom: "
+                    + StringUtils.defaultString(firstAddress(embedded.getFrom()))
+                    + "\nSubject: " + StringUtils.defaultString(embedded.getSubject()) + "\n\n");
+        }
+        walkPart(embedded, depth + 1);
+    }
+
+    private void appendText(Part part, boolean html) throws MessagingException, IOException {
+        if (bodyFull) {
+            return;
+        }
+        if (body.length() > 0) {
+            appendSafely("\n");
+        }
+        try (Reader reader = new InputStreamReader(part.getInputStream(), charsetOf(part))) {
+            if (html) {
+                HtmlTextExtractor.extract(reader, body);
+            } else {
+                char[] buffer = new char[8192];
+                int read;
+                while ((read = reader.read(buffer)) != -1) {
+                    body.append(CharBuffer.wrap(buffer, 0, read));
+                }
+            }
+        } catch (BoundedTextBuilder.LimitReachedException ex) {
+            bodyFull = true;
+        }
+    }
+
+    private void appendSafely(String text) {
+        try {
+            body.append(text);
+        } catch (BoundedTextBuilder.LimitReachedException ex) {
+            bodyFull = true;
+        }
+    }
+
+    private void addAttachment(Part part) throws MessagingException, IOException {
+        String fileName = fileNameOf(part);
+        if (attachments.size() >= limits.getMaxAttachments()) {
+            LOGGER.warn("Skipping attachment {} beyond the limit of {}", fileName, limits.getMaxAttachments());
+            return;
+        }
+        long maxSize = limits.maxAttachmentBytes(fileName);
+        try (InputStream inputStream = new SizeLimitedInputStream(part.getInputStream(), maxSize)) {
+            attachments.add(EmailAttachment.read(fileName, inputStream, spillThreshold, spillDirectory));
+        } catch (AttachmentTooLargeException ex) {
+            LOGGER.warn("Skipping attachment {} larger than {} bytes", fileName, maxSize);
+        }
+    }
+
+    private static boolean isAttachment(Part part) throws MessagingException {
+        return Part.ATTACHMENT.equalsIgnoreCase(part.getDisposition()) || part.getFileName() != null;
+    }
+
+    private String fileNameOf(Part part) throws MessagingException {
+        String fileName = part.getFileName();
+        if (fileName == null) {
+            return "part-" + parts + extensionOf(part);
+        }
+        try {
+            return MimeUtility.decodeText(fileName);
+        } catch (IOException ex) {
+            return fileName;
+        }
+    }
+
+    /**
+     * Extension registered for the content type of the part, e.g. {@code .png}, so that handlers and detection that
+     * go by file name still recognise unnamed inline parts. Empty for unknown types.
+     */
+    private static String extensionOf(Part part) {
+        try {
+            String baseType = new ContentType(part.getContentType()).getBaseType().toLowerCase(Locale.ROOT);
+            MimeType type = MimeTypes.getDefaultMimeTypes().getRegisteredMimeType(baseType);
+            return type == null ? "" : type.getExtension();
+        } catch (Exception ex) {
+            return "";
+        }
+    }
+
+    private static Charset charsetOf(Part part) {
+        try {
+            String charset = new ContentType(part.getContentType()).getParameter("charset");
+            return charset == null ? StandardCharsets.UTF_8 : Charset.forName(MimeUtility.javaCharset(charset));
+        } catch (Exception ex) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    private static String firstAddress(Address[] addresses) {
+        return addresses == null || addresses.length == 0 ? null : addresses[0].toString();
+    }
+
+    /**
+     * Fails once more than {@code maxBytes} have been read, so oversized attachments are abandoned mid-stream.
+     */
+    private static class SizeLimitedInputStream extends FilterInputStream {
+
+        private final long maxBytes;
+        private long count;
+
+        SizeLimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        private void count(int read) throws AttachmentTooLargeException {
+            count += read;
+            if (count > maxBytes) {
+                throw new AttachmentTooLargeException();
+            }
+        }
+    }
+
+    private static class AttachmentTooLargeException extends IOException {
+    }
+}
@@ -0,0 +1,360 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.model.EmailAttachment;
+import com.subhajit.email.classification.model.ParsedEmail;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.poifs.filesystem.DirectoryEntry;
+import org.apache.poi.poifs.filesystem.DocumentEntry;
+import org.apache.poi.poifs.filesystem.DocumentInputStream;
+import org.apache.poi.poifs.filesystem.Entry;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads Outlook .msg files straight from their POIFS (OLE2) container instead of through {@code MAPIMessage}.
+ * <p>
+ * {@code MAPIMessage} loads every property stream into a {@code byte[]} up front, so a message with large
+ * attachments is held in memory once by the container and once more by its chunks. This reader opens only the
+ * streams it needs: the subject, sender and body properties are read up to the body limit, and attachment data is
+ * streamed from the container into {@link EmailAttachment}s, which spill to disk when large. Messages above the
+ * spill threshold are themselves spilled first and opened read-only from the file, so the container is paged in
+ * from disk on demand rather than copied to the heap; smaller ones are read from their bytes in place.
+ * <p>
+ * Embedded messages (attachments of method {@code ATTACH_EMBEDDED_MSG}) are read recursively: their body is
+ * appended as a forwarded message and their attachments are collected.
+ */
+public class MsgReader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MsgReader.class);
+
+    private static final String PROPERTY_PREFIX = "__substg1.0_";
+    private static final String ATTACHMENT_PREFIX = "__attach_version1.0_#";
+    private static final String UNICODE = "001F";
+    private static final String STRING8 = "001E";
+    private static final String BINARY = "0102";
+
+    private static final String SUBJECT = "0037";
+    private static final String SENDER_NAME = "0C1A";
+    private static final String SENDER_EMAIL = "0C1F";
+    private static final String BODY = "1000";
+    private static final String BODY_HTML = "1013";
+    private static final String ATTACH_DATA = "3701";
+    private static final String ATTACH_FILENAME = "3704";
+    private static final String ATTACH_LONG_FILENAME = "3707";
+    private static final String EMBEDDED_MESSAGE = PROPERTY_PREFIX + ATTACH_DATA + "000D";
+
+    // Fixed-size properties such as the code pages live in one stream of 16-byte entries after a header of 32
+    // bytes in a message file, or 24 bytes in an embedded message
+    private static final String PROPERTIES_STREAM = "__properties_version1.0";
+    private static final int TOP_LEVEL_HEADER = 32;
+    private static final int EMBEDDED_HEADER = 24;
+    private static final int PR_INTERNET_CPID = 0x3FDE0003;
+    private static final int PR_MESSAGE_CODEPAGE = 0x3FFD0003;
+
+    // Without a code page property, 8-bit strings are assumed Western European, by far the most common, and the
+    // HTML body UTF-8
+    private static final Charset STRING8_CHARSET = Charset.forName("windows-1252");
+
+    private final ParserProperties.Mime limits;
+    private final long spillThreshold;
+    private final Path spillDirectory;
+
+    private final BoundedTextBuilder body;
+    private final List<EmailAttachment> attachments = new ArrayList<>();
+    private boolean bodyFull;
+    private CodePages codePages = new CodePages(STRING8_CHARSET, StandardCharsets.UTF_8);
+
+    private MsgReader(ParserProperties.Mime limits, long spillThreshold, Path spillDirectory) {
+        this.limits = limits;
+        this.spillThreshold = spillThreshold;
+        this.spillDirectory = spillDirectory;
+        this.body = new BoundedTextBuilder(limits.getMaxBodyChars());
+    }
+
+    /**
+     * Parses a .msg email.
+     *
+     * @param inputStream    The content of the .msg file; not closed
+     * @param limits         Depth, count and size limits
+     * @param spillThreshold Messages and attachments larger than this many bytes are spilled to disk
+     * @param spillDirectory Directory for spilled content, or null for the temp directory
+     * @return The email; it must be closed to release its attachments
+     * @throws IOException if the container cannot be read
+     */
+    public static ParsedEmail read(InputStream inputStream, ParserProperties.Mime limits, long spillThreshold,
+                                   Path spillDirectory) throws IOException {
+        try (EmailAttachment container = EmailAttachment.read("message.msg", inputStream, spillThreshold,
+                spillDirectory);
+             POIFSFileSystem fileSystem = container.isInMemory()
+                     ? new POIFSFileSystem(new ByteArrayChannel(container.toByteArray()), true)
+                     : new POIFSFileSystem(container.getFile(), true)) {
+            return read(fileSystem.getRoot(), limits, spillThreshold, spillDirectory);
+        }
+    }
+
+    /**
+     * Parses a .msg email from an open container, e.g. one embedded in another file.
+     *
+     * @param root           The root directory of the message
+     * @param limits         Depth, count and size limits
+     * @param spillThreshold Attachments larger than this many bytes are spilled to disk
+     * @param spillDirectory Directory for spilled attachments, or null for the temp directory
+     * @return The email; it must be closed to release its attachments
+     * @throws IOException if the container cannot be read
+     */
+    public static ParsedEmail read(DirectoryEntry root, ParserProperties.Mime limits, long spillThreshold,
+                                   Path spillDirectory) throws IOException {
+        MsgReader reader = new MsgReader(limits, spillThreshold, spillDirectory);
+        reader.codePages = readCodePages(root, TOP_LEVEL_HEADER, reader.codePages);
+        try {
+            reader.readMessage(root, 0);
+        } catch (IOException | RuntimeException ex) {
+            reader.attachments.forEach(EmailAttachment::close);
+            throw ex;
+        }
+        String from = StringUtils.defaultIfEmpty(reader.readString(root, SENDER_NAME, 1024),
+                reader.readString(root, SENDER_EMAIL, 1024));
+        return new ParsedEmail(from, reader.readString(root, SUBJECT, 4096), reader.body.toString(),
+                reader.attachments);
+    }
+
+    /**
+     * Reads the body and then the attachments in the order they were attached. The directory iterates its entries in
+     * the order of its property tree, so the attachment directories are sorted by their fixed-width hex numbers.
+     */
+    private void readMessage(DirectoryEntry message, int depth) throws IOException {
+        appendBody(message);
+        List<DirectoryEntry> attachmentDirectories = new ArrayList<>();
+        for (Entry entry : message) {
+            if (entry instanceof DirectoryEntry directory && entry.getName().startsWith(ATTACHMENT_PREFIX)) {
+                attachmentDirectories.add(directory);
+            }
+        }
+        attachmentDirectories.sort(Comparator.comparing(Entry::getName));
+        for (DirectoryEntry directory : attachmentDirectories) {
+            readAttachment(directory, depth);
+        }
+    }
+
+    private void appendBody(DirectoryEntry message) throws IOException {
+        if (bodyFull) {
+            return;
+        }
+        try {
+            if (body.length() > 0) {
+                body.append('\n');
+            }
+            if (!appendProperty(message, BODY)) {
+                appendHtmlBody(message);
+            }
+        } catch (BoundedTextBuilder.LimitReachedException ex) {
+            bodyFull = true;
+        }
+    }
+
+    /**
+     * Appends a string property, streaming it into the body buffer.
+     *
+     * @return false if the message does not have the property
+     */
+    private boolean appendProperty(DirectoryEntry message, String property) throws IOException {
+        for (String type : new String[]{UNICODE, STRING8}) {
+            String name = PROPERTY_PREFIX + property + type;
+            if (message.hasEntry(name)) {
+                Charset charset = UNICODE.equals(type) ? StandardCharsets.UTF_16LE : codePages.string8();
+                try (InputStreamReader reader = new InputStreamReader(message.createDocumentInputStream(name),
+                        charset)) {
+                    char[] buffer = new char[8192];
+                    int read;
+                    while ((read = reader.read(buffer)) != -1) {
+                        // String properties may be NUL-terminated
+                        int end = read;
+                        while (end > 0 && buffer[end - 1] == '\0') {
+                            end--;
+                        }
+                        body.append(CharBuffer.wrap(buffer, 0, end));
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void appendHtmlBody(DirectoryEntry message) throws IOException {
+        String name = PROPERTY_PREFIX + BODY_HTML + BINARY;
+        if (message.hasEntry(name)) {
+            // The HTML body is stored as bytes in the internet code page of the message
+            try (InputStreamReader reader = new InputStreamReader(message.createDocumentInputStream(name),
+                    codePages.html())) {
+                HtmlTextExtractor.extract(reader, body);
+            }
+        } else {
+            appendProperty(message, BODY_HTML);
+        }
+    }
+
+    private void readAttachment(DirectoryEntry attachment, int depth) throws IOException {
+        if (attachment.hasEntry(EMBEDDED_MESSAGE)
+                && attachment.getEntry(EMBEDDED_MESSAGE) instanceof DirectoryEntry embedded) {
+            if (depth >= limits.getMaxDepth()) {
+                LOGGER.warn("Skipping embedded message nested deeper than {}", limits.getMaxDepth());
+                return;
+            }
+            CodePages outer = codePages;
+            codePages = readCodePages(embedded, EMBEDDED_HEADER, outer);
+            try {
+                readEmbeddedMessage(embedded, depth);
+            } finally {
+                codePages = outer;
+            }
+            return;
+        }
+
+        String dataName = PROPERTY_PREFIX + ATTACH_DATA + BINARY;
+        if (!attachment.hasEntry(dataName) || !(attachment.getEntry(dataName) instanceof DocumentEntry data)) {
+            // Attached by reference or as an OLE object; nothing to extract
+            return;
+        }
+        String fileName = StringUtils.defaultIfEmpty(readString(attachment, ATTACH_LONG_FILENAME, 1024),
+                readString(attachment, ATTACH_FILENAME, 1024));
+        if (attachments.size() >= limits.getMaxAttachments()) {
+            LOGGER.warn("Skipping attachment {} beyond the limit of {}", fileName, limits.getMaxAttachments());
+            return;
+        }
+        long maxSize = limits.maxAttachmentBytes(fileName);
+        if (data.getSize() > maxSize) {
+            LOGGER.warn("Skipping attachment {} of {} bytes, larger than {}", fileName, data.getSize(), maxSize);
+            return;
+        }
+        try (DocumentInputStream inputStream = new DocumentInputStream(data)) {
+            attachments.add(EmailAttachment.read(fileName, inputStream, spillThreshold, spillDirectory));
+        }
+    }
+
+    private void readEmbeddedMessage(DirectoryEntry embedded, int depth) throws IOException {
+        if (!bodyFull) {
+            try {
+                body.append("\n\n---------- Forwarded message ----------\nFrom: ")
+                        .append(StringUtils.defaultIfEmpty(readString(embedded, SENDER_NAME, 1024),
+                                readString(embedded, SENDER_EMAIL, 1024)))
+                        .append("\nSubject: ").append(readString(embedded, SUBJECT, 4096)).append("\n\n");
+            } catch (BoundedTextBuilder.LimitReachedException ex) {
+                bodyFull = true;
+            }
+        }
+        readMessage(embedded, depth + 1);
+    }
+
+    /**
+     * Reads a short string property, e.g. the subject or a file name.
+     *
+     * @return The value, or null if the property is missing
+     */
+    private String readString(DirectoryEntry directory, String property, int maxChars) throws IOException {
+        for (String type : new String[]{UNICODE, STRING8}) {
+            String name = PROPERTY_PREFIX + property + type;
+            if (directory.hasEntry(name)) {
+                boolean unicode = UNICODE.equals(type);
+                try (DocumentInputStream inputStream = directory.createDocumentInputStream(name)) {
+                    byte[] bytes = inputStream.readNBytes(unicode ? maxChars * 2 : maxChars);
+                    String value = new String(bytes, unicode ? StandardCharsets.UTF_16LE : codePages.string8());
+                    return StringUtils.stripEnd(value, "\0");
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the code pages of a message. 8-bit strings are in {@code PR_MESSAGE_CODEPAGE} and the HTML body in
+     * {@code PR_INTERNET_CPID}; each falls back to the other when only one is set, and to the code pages of the
+     * enclosing message when neither is.
+     *
+     * @param header   Size of the header of the properties stream
+     * @param fallback Code pages used when the message declares none
+     */
+    private static CodePages readCodePages(DirectoryEntry message, int header, CodePages fallback)
+            throws IOException {
+        int internetCodePage = 0;
+        int messageCodePage = 0;
+        if (message.hasEntry(PROPERTIES_STREAM)
+                && message.getEntry(PROPERTIES_STREAM) instanceof DocumentEntry properties) {
+            try (DocumentInputStream inputStream = new DocumentInputStream(properties)) {
+                byte[] bytes = inputStream.readNBytes(Math.min(properties.getSize(), 1 << 16));
+                ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+                for (int offset = header; offset + 16 <= bytes.length; offset += 16) {
+                    int tag = buffer.getInt(offset);
+                    if (tag == PR_INTERNET_CPID) {
+                        internetCodePage = buffer.getInt(offset + 8);
+                    } else if (tag == PR_MESSAGE_CODEPAGE) {
+                        messageCodePage = buffer.getInt(offset + 8);
+                    }
+                }
+            }
+        }
+        Charset string8 = charsetOf(messageCodePage != 0 ? messageCodePage : internetCodePage, fallback.string8());
+        Charset html = charsetOf(internetCodePage != 0 ? internetCodePage : messageCodePage, fallback.html());
+        return new CodePages(string8, html);
+    }
+
+    /**
+     * Maps a Windows code page identifier to a charset.
+     */
+    static Charset charsetOf(int codePage, Charset fallback) {
+        String name = switch (codePage) {
+            case 0 -> null;
+            case 65001 -> "UTF-8";
+            case 1200 -> "UTF-16LE";
+            case 1201 -> "UTF-16BE";
+            case 20127 -> "US-ASCII";
+            case 932 -> "windows-31j";
+            case 936 -> "GBK";
+            case 949 -> "x-windows-949";
+            case 950 -> "x-windows-950";
+            case 874 -> "x-windows-874";
+            case 20866 -> "KOI8-R";
+            case 21866 -> "KOI8-U";
+            case 50220, 50221, 50222 -> "ISO-2022-JP";
+            case 51932 -> "EUC-JP";
+            case 51949 -> "EUC-KR";
+            case 54936 -> "GB18030";
+            case 10000 -> "x-MacRoman";
+            case 28603 -> "ISO-8859-13";
+            case 28605 -> "ISO-8859-15";
+            default -> codePage >= 1250 && codePage <= 1258 ? "windows-" + codePage
+                    : codePage >= 28591 && codePage <= 28599 ? "ISO-8859-" + (codePage - 28590)
+                    : "cp" + codePage;
+        };
+        if (name == null) {
+            return fallback;
+        }
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException ex) {
+            LOGGER.debug("Unsupported code page {}, reading as {}", codePage, fallback);
+            return fallback;
+        }
+    }
+
+    /**
+     * Charsets of the 8-bit string properties and of the HTML body of the message being read.
+     */
+    private record CodePages(Charset string8, Charset html) {
+    }
+}
@@ -0,0 +1,603 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.model.EmailAttachment;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.hslf.usermodel.HSLFObjectData;
+import org.apache.poi.hslf.usermodel.HSLFPictureData;
+import org.apache.poi.hslf.usermodel.HSLFShape;
+import org.apache.poi.hslf.usermodel.HSLFSlide;
+import org.apache.poi.hslf.usermodel.HSLFSlideShow;
+import org.apache.poi.hslf.usermodel.HSLFTextParagraph;
+import org.apache.poi.hwpf.HWPFDocument;
+import org.apache.poi.hwpf.extractor.WordExtractor;
+import org.apache.poi.hwpf.usermodel.Picture;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
+import org.apache.poi.openxml4j.opc.TargetMode;
+import org.apache.poi.poifs.filesystem.DirectoryEntry;
+import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.poifs.filesystem.Entry;
+import org.apache.poi.poifs.filesystem.EntryUtils;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.poifs.filesystem.Ole10Native;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.sl.extractor.SlideShowExtractor;
+import org.apache.poi.util.XMLHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.stereotype.Component;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Extracts the text of Word and PowerPoint documents, including tables, headers, footers, notes, text boxes and
+ * embedded objects.
+ * <p>
+ * .docx and .pptx packages are opened without building a DOM: each XML part is streamed through an
+ * {@link OoxmlTextHandler}, so memory stays flat however large the document is. Word documents are read as headers,
+ * body, footnotes, endnotes and footers; presentations slide by slide, each followed by its notes. Legacy .doc and
+ * .ppt files have no streaming reader and are loaded whole with HWPF and HSLF, up to {@code max-legacy-size}.
+ * <p>
+ * Embedded workbooks, documents and PDFs are unwrapped from their OLE containers and extracted through the
+ * {@link ParserRegistry}, so they get the same handler they would get as attachments; embedded images go to OCR the
+ * same way. Their text is inserted where they are anchored, within the container's character and time limits.
+ */
+@Component
+public class OfficeHandler implements AttachmentHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OfficeHandler.class);
+
+    static final String DOCX_MIME_TYPE = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+    static final String DOCM_MIME_TYPE = "application/vnd.ms-word.document.macroenabled.12";
+    static final String DOC_MIME_TYPE = "application/msword";
+    static final String PPTX_MIME_TYPE = "application/vnd.openxmlformats-officedocument.presentationml.presentation";
+    static final String PPTM_MIME_TYPE = "application/vnd.ms-powerpoint.presentation.macroenabled.12";
+    static final String PPSX_MIME_TYPE = "application/vnd.openxmlformats-officedocument.presentationml.slideshow";
+    static final String PPT_MIME_TYPE = "application/vnd.ms-powerpoint";
+
+    private static final String RELATIONSHIPS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String PRESENTATION = "http://schemas.openxmlformats.org/presentationml/2006/main";
+
+    private final ParserProperties.Office properties;
+    private final ObjectFactory<ParserRegistry> parserRegistry;
+    private final long spillThreshold;
+    private final Path spillDirectory;
+
+    /**
+     * @param parserProperties Parser settings
+     * @param parserRegistry   The registry, for extracting embedded objects; looked up lazily as it depends on the
+     *                         handlers
+     */
+    public OfficeHandler(ParserProperties parserProperties, ObjectFactory<ParserRegistry> parserRegistry) {
+        this.properties = parserProperties.getOffice();
+        this.parserRegistry = parserRegistry;
+        this.spillThreshold = parserProperties.getSpillThreshold().toBytes();
+        this.spillDirectory = StringUtils.isNoneEmpty(parserProperties.getSpillDirectory())
+                ? Paths.get(parserProperties.getSpillDirectory()) : null;
+    }
+
+    @Override
+    public String name() {
+        return "office";
+    }
+
+    @Override
+    public List<String> mimeTypes() {
+        return List.of(DOCX_MIME_TYPE, DOCM_MIME_TYPE, DOC_MIME_TYPE, PPTX_MIME_TYPE, PPTM_MIME_TYPE, PPSX_MIME_TYPE,
+                PPT_MIME_TYPE);
+    }
+
+    /**
+     * Parses a Word or PowerPoint file and extracts its content.
+     *
+     * @param source   The document to parse
+     * @param mimeType The detected MIME type, which selects the reader
+     * @param limits   Character and time limits to respect
+     * @return The extracted content of the document
+     */
+    @Override
+    public ExtractionResult extract(AttachmentSource source, String mimeType, ParseLimits limits) {
+        String format = formatOf(mimeType);
+        BoundedTextBuilder sb = limits.newTextBuilder();
+        Embedded embedded = new Embedded(source.getName(), sb, limits);
+        try {
+            switch (format) {
+                case "DOCX" -> extractDocx(source.getAttachment(), sb, limits, embedded);
+                case "PPTX" -> extractPptx(source.getAttachment(), sb, limits, embedded);
+                default -> {
+                    long size = source.getAttachment().getSize();
+                    if (size > properties.getMaxLegacySize().toBytes()) {
+                        LOGGER.warn("Skipping {} file {} of {} bytes, over the limit of {}", format,
+                                source.getName(), size, properties.getMaxLegacySize());
+                        return ExtractionResult.failure("Error reading " + format + " file: larger than "
+                                + properties.getMaxLegacySize());
+                    }
+                    if ("DOC".equals(format)) {
+                        extractDoc(source.getAttachment(), sb, limits, embedded);
+                    } else {
+                        extractPpt(source.getAttachment(), sb, limits, embedded);
+                    }
+                }
+            }
+        } catch (BoundedTextBuilder.LimitReachedException ex) {
+            // Keep what was read before the limit
+        } catch (Exception ex) {
+            if (sb.isTruncated()) {
+                // A limit was hit inside the parser, which wrapped the exception
+                return ExtractionResult.of(sb.toString());
+            }
+            LOGGER.error("Error reading {} file: {}", format, ex.getMessage());
+            return ExtractionResult.failure("Error reading " + format + " file: " + ex.getMessage());
+        }
+        return ExtractionResult.of(sb.toString());
+    }
+
+    private static String formatOf(String mimeType) {
+        String type = StringUtils.substringBefore(StringUtils.defaultString(mimeType), ';').trim()
+                .toLowerCase(Locale.ROOT);
+        return switch (type) {
+            case DOC_MIME_TYPE -> "DOC";
+            case PPT_MIME_TYPE -> "PPT";
+            case PPTX_MIME_TYPE, PPTM_MIME_TYPE, PPSX_MIME_TYPE -> "PPTX";
+            default -> "DOCX";
+        };
+    }
+
+    private void extractDocx(EmailAttachment attachment, BoundedTextBuilder sb, ParseLimits limits,
+                             Embedded embedded) throws Exception {
+        try (EmailAttachment copy = onDisk(attachment); OPCPackage pkg = open(copy != null ? copy : attachment)) {
+            PackagePart document = mainPart(pkg);
+            // Each section may repeat the same header; write every distinct one once
+            appendDistinct(document, "header", sb, limits, embedded);
+            parsePart(document, sb, limits, embedded);
+            appendRelated(document, "footnotes", sb, limits, embedded);
+            appendRelated(document, "endnotes", sb, limits, embedded);
+            appendDistinct(document, "footer", sb, limits, embedded);
+        }
+    }
+
+    private void extractPptx(EmailAttachment attachment, BoundedTextBuilder sb, ParseLimits limits,
+                             Embedded embedded) throws Exception {
+        try (EmailAttachment copy = onDisk(attachment); OPCPackage pkg = open(copy != null ? copy : attachment)) {
+            PackagePart presentation = mainPart(pkg);
+            int number = 0;
+            for (String slideId : slideIds(presentation, sb, limits)) {
+                PackageRelationship relationship = presentation.getRelationship(slideId);
+                if (relationship == null || relationship.getTargetMode() == TargetMode.EXTERNAL) {
+                    continue;
+                }
+                PackagePart slide = presentation.getRelatedPart(relationship);
+                sb.append("Slide ").append(String.valueOf(++number)).append(":\n");
+                parsePart(slide, sb, limits, embedded);
+                for (PackageRelationship notes : slide.getRelationshipsByType(RELATIONSHIPS + "/notesSlide")) {
+                    sb.append("Notes:\n");
+                    parsePart(slide.getRelatedPart(notes), sb, limits, null);
+                }
+            }
+        }
+    }
+
+    private void extractDoc(EmailAttachment attachment, BoundedTextBuilder sb, ParseLimits limits,
+                            Embedded embedded) throws Exception {
+        try (POIFSFileSystem fs = openPoifs(attachment); HWPFDocument document = new HWPFDocument(fs.getRoot())) {
+            WordExtractor extractor = new WordExtractor(document);
+            appendLegacy(sb, extractor.getHeaderText());
+            for (String paragraph : extractor.getParagraphText()) {
+                limits.checkDeadline(sb);
+                appendLegacy(sb, paragraph);
+            }
+            for (String textBox : extractor.getMainTextboxText()) {
+                appendLegacy(sb, textBox);
+            }
+            appendLegacy(sb, String.join("\n", extractor.getFootnoteText()));
+            appendLegacy(sb, String.join("\n", extractor.getEndnoteText()));
+            appendLegacy(sb, extractor.getFooterText());
+
+            if (properties.isEmbeddedObjects() && fs.getRoot().hasEntry("ObjectPool")) {
+                for (Entry entry : (DirectoryEntry) fs.getRoot().getEntry("ObjectPool")) {
+                    if (entry instanceof DirectoryNode object) {
+                        embedded.extract(() -> unwrapOle(object, entry.getName()));
+                    }
+                }
+            }
+            if (properties.isEmbeddedObjects() && properties.isEmbeddedImages()) {
+                for (Picture picture : document.getPicturesTable().getAllPictures()) {
+                    embedded.extract(() -> EmailAttachment.ofBytes(picture.suggestFullFileName(),
+                            picture.getContent()));
+                }
+            }
+        }
+    }
+
+    private void extractPpt(EmailAttachment attachment, BoundedTextBuilder sb, ParseLimits limits,
+                            Embedded embedded) throws Exception {
+        try (POIFSFileSystem fs = openPoifs(attachment); HSLFSlideShow slideShow = new HSLFSlideShow(fs)) {
+            SlideShowExtractor<HSLFShape, HSLFTextParagraph> extractor = new SlideShowExtractor<>(slideShow);
+            extractor.setSlidesByDefault(true);
+            extractor.setNotesByDefault(true);
+            extractor.setMasterByDefault(false);
+            int number = 0;
+            for (HSLFSlide slide : slideShow.getSlides()) {
+                limits.checkDeadline(sb);
+                sb.append("Slide ").append(String.valueOf(++number)).append(":\n");
+                appendLegacy(sb, extractor.getText(slide));
+            }
+
+            if (properties.isEmbeddedObjects()) {
+                HSLFObjectData[] objects = slideShow.getEmbeddedObjects();
+                for (int i = 0; i < objects.length; i++) {
+                    HSLFObjectData object = objects[i];
+                    String name = "object-" + (i + 1);
+                    embedded.extract(() -> {
+                        try (InputStream in = object.getInputStream()) {
+                            return unwrapOle(readCapped(name, in));
+                        }
+                    });
+                }
+            }
+            if (properties.isEmbeddedObjects() && properties.isEmbeddedImages()) {
+                for (HSLFPictureData picture : slideShow.getPictureData()) {
+                    embedded.extract(() -> EmailAttachment.ofBytes(
+                            "picture-" + picture.getIndex() + picture.getType().extension, picture.getData()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes an in-memory package to a spill file, so that it too is read through its zip directory, entry by entry
+     * and within the ZipSecureFile limits, instead of being inflated into memory from a stream.
+     *
+     * @return The copy on disk, deleted when closed, or null if the attachment is already a file
+     */
+    private EmailAttachment onDisk(EmailAttachment attachment) throws IOException {
+        if (!attachment.isInMemory()) {
+            return null;
+        }
+        if (attachment.getSize() == 0) {
+            throw new IOException("empty package");
+        }
+        try (InputStream in = attachment.openStream()) {
+            return EmailAttachment.read(attachment.getName(), in, 0, spillDirectory);
+        }
+    }
+
+    private static OPCPackage open(EmailAttachment attachment) throws Exception {
+        return OPCPackage.open(attachment.getFile(), PackageAccess.READ);
+    }
+
+    private static POIFSFileSystem openPoifs(EmailAttachment attachment) throws IOException {
+        return attachment.isInMemory()
+                ? new POIFSFileSystem(new ByteArrayChannel(attachment.toByteArray()), true)
+                : new POIFSFileSystem(attachment.getFile(), true);
+    }
+
+    private static PackagePart mainPart(OPCPackage pkg) throws Exception {
+        List<PackagePart> parts = pkg.getPartsByRelationshipType(PackageRelationshipTypes.CORE_DOCUMENT);
+        if (parts.isEmpty()) {
+            parts = pkg.getPartsByRelationshipType(PackageRelationshipTypes.STRICT_CORE_DOCUMENT);
+        }
+        if (parts.isEmpty()) {
+            throw new IOException("no main document part");
+        }
+        return parts.get(0);
+    }
+
+    /**
+     * Reads the slide relationship ids of a presentation in slide order.
+     */
+    private List<String> slideIds(PackagePart presentation, BoundedTextBuilder sb, ParseLimits limits)
+            throws Exception {
+        List<String> ids = new ArrayList<>();
+        parse(presentation, sb, limits, new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                if (PRESENTATION.equals(uri) && "sldId".equals(localName)) {
+                    String id = attributes.getValue(RELATIONSHIPS, "id");
+                    if (id != null) {
+                        ids.add(id);
+                    }
+                }
+            }
+        });
+        return ids;
+    }
+
+    private void appendRelated(PackagePart part, String type, BoundedTextBuilder sb, ParseLimits limits,
+                               Embedded embedded) throws Exception {
+        for (PackageRelationship relationship : part.getRelationshipsByType(RELATIONSHIPS + "/" + type)) {
+            if (relationship.getTargetMode() != TargetMode.EXTERNAL) {
+                parsePart(part.getRelatedPart(relationship), sb, limits, embedded);
+            }
+        }
+    }
+
+    private void appendDistinct(PackagePart part, String type, BoundedTextBuilder sb, ParseLimits limits,
+                                Embedded embedded) throws Exception {
+        Set<String> seen = new LinkedHashSet<>();
+        for (PackageRelationship relationship : part.getRelationshipsByType(RELATIONSHIPS + "/" + type)) {
+            if (relationship.getTargetMode() == TargetMode.EXTERNAL) {
+                continue;
+            }
+            // Headers and footers are small; buffer each to drop repeats
+            BoundedTextBuilder text = new BoundedTextBuilder(limits.maxChars());
+            try {
+                parsePart(part.getRelatedPart(relationship), text, limits, null);
+            } catch (BoundedTextBuilder.LimitReachedException ex) {
+                sb.append(text.toString().strip()).append('\n');
+                throw sb.limitReached(ex.getMessage());
+            }
+            String value = text.toString().strip();
+            if (!value.isEmpty() && seen.add(value)) {
+                sb.append(value).append('\n');
+            }
+        }
+    }
+
+    private void parsePart(PackagePart part, BoundedTextBuilder sb, ParseLimits limits, Embedded embedded)
+            throws Exception {
+        OoxmlTextHandler handler = new OoxmlTextHandler(sb, limits,
+                embedded == null || !properties.isEmbeddedObjects() ? null : id -> embedded.extract(part, id));
+        parse(part, sb, limits, handler);
+        handler.endLine();
+    }
+
+    private void parse(PackagePart part, BoundedTextBuilder sb, ParseLimits limits, DefaultHandler handler)
+            throws Exception {
+        try (InputStream in = limits.guard(new PartSizeLimitInputStream(part.getInputStream(),
+                properties.getMaxPartSize().toBytes(), sb), sb)) {
+            XMLReader reader = XMLHelper.newXMLReader();
+            reader.setContentHandler(handler);
+            reader.parse(new InputSource(in));
+        }
+    }
+
+    /**
+     * Reads an embedded object, spilling it to disk if it is large.
+     *
+     * @throws EmbeddedObjectTooLargeException if it is larger than {@code max-embedded-size}
+     */
+    private EmailAttachment readCapped(String name, InputStream in) throws IOException {
+        long max = properties.getMaxEmbeddedSize().toBytes();
+        return EmailAttachment.read(name, new FilterInputStream(in) {
+            private long count;
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1 && ++count > max) {
+                    throw new EmbeddedObjectTooLargeException();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0 && (count += read) > max) {
+                    throw new EmbeddedObjectTooLargeException();
+                }
+                return read;
+            }
+        }, spillThreshold, spillDirectory);
+    }
+
+    /**
+     * Takes the payload out of an OLE container: the file of an OLE 1.0 package, the nested OOXML package or the
+     * contents stream. Storages such as embedded .xls workbooks are returned as they are, as the MIME type detector
+     * recognises them.
+     */
+    private EmailAttachment unwrapOle(EmailAttachment object) throws IOException {
+        FileMagic magic;
+        try (InputStream in = FileMagic.prepareToCheckMagic(object.openStream())) {
+            magic = FileMagic.valueOf(in);
+        }
+        if (magic != FileMagic.OLE2) {
+            return object;
+        }
+        try (POIFSFileSystem fs = new POIFSFileSystem(object.openStream())) {
+            return unwrapOle(fs.getRoot(), object.getName());
+        } finally {
+            // The payload is a copy; the container is no longer needed
+            object.close();
+        }
+    }
+
+    private EmailAttachment unwrapOle(DirectoryNode storage, String name) throws IOException {
+        try {
+            if (storage.hasEntry(Ole10Native.OLE10_NATIVE)) {
+                Ole10Native nativeObject = Ole10Native.createFromEmbeddedOleObject(storage);
+                String fileName = StringUtils.defaultIfEmpty(nativeObject.getFileName(), name);
+                return EmailAttachment.ofBytes(fileName, nativeObject.getDataBuffer());
+            }
+        } catch (Exception ex) {
+            LOGGER.debug("Error reading OLE package {}: {}", name, ex.getMessage());
+        }
+        for (String stream : new String[]{"Package", "CONTENTS"}) {
+            if (storage.hasEntry(stream)) {
+                try (InputStream in = storage.createDocumentInputStream(stream)) {
+                    return readCapped(name, in);
+                }
+            }
+        }
+        // Copy the storage into a file system of its own, e.g. the Workbook of an embedded .xls
+        try (POIFSFileSystem copy = new POIFSFileSystem()) {
+            EntryUtils.copyNodes(storage, copy.getRoot());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            copy.writeFilesystem(out);
+            return EmailAttachment.ofBytes(name, out.toByteArray());
+        }
+    }
+
+    private static void appendLegacy(BoundedTextBuilder sb, String text) {
+        if (StringUtils.isBlank(text)) {
+            return;
+        }
+        // Word marks the end of table cells with BEL and paragraphs with CR
+        String normalized = WordExtractor.stripFields(text)
+                .replace("\r\n", "\n")
+                .replace('\r', '\n')
+                .replace('\u0007', '\t');
+        sb.append(normalized);
+        if (!normalized.endsWith("\n")) {
+            sb.append('\n');
+        }
+    }
+
+    /**
+     * Supplies an embedded object as an attachment, or null to skip it.
+     */
+    @FunctionalInterface
+    private interface ObjectReader {
+        EmailAttachment read() throws Exception;
+    }
+
+    /**
+     * Extracts the embedded objects of one document into its text, counting them against the per-document limit.
+     */
+    private class Embedded {
+
+        private final String container;
+        private final BoundedTextBuilder sb;
+        private final ParseLimits limits;
+        private final Set<String> seenParts = new HashSet<>();
+        private int count;
+        private boolean limitLogged;
+
+        Embedded(String container, BoundedTextBuilder sb, ParseLimits limits) {
+            this.container = container;
+            this.sb = sb;
+            this.limits = limits;
+        }
+
+        /**
+         * Extracts the part a relationship of an OOXML part points to.
+         */
+        void extract(PackagePart part, String relationshipId) {
+            try {
+                PackageRelationship relationship = part.getRelationship(relationshipId);
+                if (relationship == null || relationship.getTargetMode() == TargetMode.EXTERNAL) {
+                    return;
+                }
+                PackagePart target = part.getRelatedPart(relationship);
+                boolean image = relationship.getRelationshipType().endsWith("/image");
+                if (image && !properties.isEmbeddedImages()
+                        || !seenParts.add(target.getPartName().getName())) {
+                    // Images such as logos are often referenced many times
+                    return;
+                }
+                String name = StringUtils.substringAfterLast(target.getPartName().getName(), "/");
+                extract(() -> {
+                    try (InputStream in = target.getInputStream()) {
+                        EmailAttachment object = readCapped(name, in);
+                        return image ? object : unwrapOle(object);
+                    }
+                });
+            } catch (BoundedTextBuilder.LimitReachedException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                LOGGER.warn("Error reading embedded object {} of {}: {}", relationshipId, container,
+                        ex.getMessage());
+            }
+        }
+
+        void extract(ObjectReader reader) {
+            if (count >= properties.getMaxEmbeddedObjects()) {
+                if (!limitLogged) {
+                    LOGGER.warn("Skipping embedded objects of {} beyond the limit of {}", container,
+                            properties.getMaxEmbeddedObjects());
+                    limitLogged = true;
+                }
+                return;
+            }
+            limits.checkDeadline(sb);
+            EmailAttachment object = null;
+            try {
+                object = reader.read();
+                if (object == null || object.getSize() == 0) {
+                    return;
+                }
+                count++;
+                String text;
+                try (AttachmentSource source = new AttachmentSource(object)) {
+                    text = parserRegistry.getObject().extractEmbedded(source, limits);
+                }
+                if (StringUtils.isNotBlank(text)) {
+                    sb.append("[Embedded: ").append(object.getName()).append("]\n").append(text.strip())
+                            .append('\n');
+                }
+            } catch (BoundedTextBuilder.LimitReachedException ex) {
+                throw ex;
+            } catch (EmbeddedObjectTooLargeException ex) {
+                LOGGER.debug("Skipping embedded object of {} larger than {}", container,
+                        properties.getMaxEmbeddedSize());
+            } catch (Exception ex) {
+                LOGGER.warn("Error extracting embedded object of {}: {}", container, ex.getMessage());
+            } finally {
+                if (object != null) {
+                    object.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops reading an XML part once more bytes than allowed have been inflated.
+     */
+    private static class PartSizeLimitInputStream extends FilterInputStream {
+
+        private final long max;
+        private final BoundedTextBuilder sb;
+        private long count;
+
+        PartSizeLimitInputStream(InputStream in, long max, BoundedTextBuilder sb) {
+            super(in);
+            this.max = max;
+            this.sb = sb;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1 && ++count > max) {
+                throw sb.limitReached("part size limit of " + max + " bytes reached");
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0 && (count += read) > max) {
+                throw sb.limitReached("part size limit of " + max + " bytes reached");
+            }
+            return read;
+        }
+    }
+
+    private static class EmbeddedObjectTooLargeException extends IOException {
+        EmbeddedObjectTooLargeException() {
+            super("embedded object too large", null);
+        }
+    }
+}
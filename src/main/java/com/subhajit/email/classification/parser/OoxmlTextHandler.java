@@ -0,0 +1,163 @@
+package com.subhajit.email.classification.parser;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.nio.CharBuffer;
+import java.util.function.Consumer;
+
+/**
+ * SAX handler writing the text of a WordprocessingML or DrawingML part (a document body, header, footer, note or
+ * slide) in reading order, without building a DOM.
+ * <p>
+ * Paragraphs end in a line break, table cells in a tab and table rows in a line break; paragraphs inside a cell are
+ * joined with spaces so a row stays on one line. Text boxes are written where they are anchored. Only
+ * {@code mc:Choice} content of alternate content is read, as {@code mc:Fallback} repeats it for older readers.
+ * Embedded images and OLE objects are reported to a callback by relationship id, at their position in the text.
+ */
+class OoxmlTextHandler extends DefaultHandler {
+
+    private static final String W = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    private static final String A = "http://schemas.openxmlformats.org/drawingml/2006/main";
+    private static final String P = "http://schemas.openxmlformats.org/presentationml/2006/main";
+    private static final String R = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String MC = "http://schemas.openxmlformats.org/markup-compatibility/2006";
+    private static final String O = "urn:schemas-microsoft-com:office:office";
+
+    private final BoundedTextBuilder sb;
+    private final ParseLimits limits;
+    private final Consumer<String> embedded;
+    private int fallbackDepth;
+    private int oleDepth;
+    private int cellDepth;
+    private int runDepth;
+    private boolean inText;
+    private boolean lineStarted;
+    private boolean pendingSpace;
+
+    /**
+     * @param sb       The builder receiving the text
+     * @param limits   The limits to check while parsing
+     * @param embedded Receives the relationship id of each embedded object, or null to ignore them
+     */
+    OoxmlTextHandler(BoundedTextBuilder sb, ParseLimits limits, Consumer<String> embedded) {
+        this.sb = sb;
+        this.limits = limits;
+        this.embedded = embedded;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        if (fallbackDepth > 0 || MC.equals(uri) && "Fallback".equals(localName)) {
+            fallbackDepth++;
+            return;
+        }
+        limits.checkDeadline(sb);
+        if (W.equals(uri)) {
+            switch (localName) {
+                case "t" -> inText = true;
+                case "r" -> runDepth++;
+                case "tab" -> {
+                    // w:tab also defines tab stops in paragraph properties; only a tab inside a run is text
+                    if (runDepth > 0) {
+                        text("\t");
+                    }
+                }
+                case "br", "cr" -> newLine();
+                case "tc" -> cellDepth++;
+                case "txbxContent" -> endLine();
+                default -> {
+                }
+            }
+        } else if (A.equals(uri)) {
+            switch (localName) {
+                case "t" -> inText = true;
+                case "br" -> newLine();
+                case "tc" -> cellDepth++;
+                case "blip" -> {
+                    // The preview image of an OLE object is not worth reading
+                    if (oleDepth == 0) {
+                        report(attributes.getValue(R, "embed"));
+                    }
+                }
+                default -> {
+                }
+            }
+        } else if (P.equals(uri) && "oleObj".equals(localName)) {
+            oleDepth++;
+            report(attributes.getValue(R, "id"));
+        } else if (O.equals(uri) && "OLEObject".equals(localName)) {
+            report(attributes.getValue(R, "id"));
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        if (fallbackDepth > 0) {
+            fallbackDepth--;
+            return;
+        }
+        if (W.equals(uri) || A.equals(uri)) {
+            switch (localName) {
+                case "t" -> inText = false;
+                case "r" -> runDepth = Math.max(0, runDepth - 1);
+                case "p" -> {
+                    if (cellDepth > 0) {
+                        // Written before the next paragraph of the cell, if there is one
+                        pendingSpace = lineStarted;
+                    } else {
+                        endLine();
+                    }
+                }
+                case "tc" -> {
+                    cellDepth = Math.max(0, cellDepth - 1);
+                    pendingSpace = false;
+                    text("\t");
+                }
+                case "tr" -> newLine();
+                default -> {
+                }
+            }
+        } else if (P.equals(uri) && "oleObj".equals(localName)) {
+            oleDepth = Math.max(0, oleDepth - 1);
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        if (inText && fallbackDepth == 0) {
+            text(CharBuffer.wrap(ch, start, length));
+        }
+    }
+
+    /**
+     * Ends the current line, if anything was written to it, so that the next text starts on a line of its own.
+     */
+    void endLine() {
+        if (lineStarted) {
+            newLine();
+        }
+    }
+
+    private void text(CharSequence text) {
+        if (pendingSpace) {
+            pendingSpace = false;
+            sb.append(' ');
+        }
+        sb.append(text);
+        lineStarted = true;
+    }
+
+    private void newLine() {
+        pendingSpace = false;
+        sb.append('\n');
+        lineStarted = false;
+    }
+
+    private void report(String relationshipId) {
+        if (embedded != null && relationshipId != null) {
+            endLine();
+            embedded.accept(relationshipId);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.subhajit.email.classification.parser;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+
+/**
+ * Resolved limits for one attachment: a character budget and a wall-clock deadline. Handlers check them through the
+ * {@link BoundedTextBuilder} they fill and through {@link #guard guarded} input streams, so a handler stops on its
+ * own and returns the text it has so far instead of occupying its worker until the engine gives up on it.
+ * <p>
+ * Handlers {@link #markDegraded() mark} the limits when the text they return depends on load rather than on the
+ * attachment alone, e.g. when the deadline cut extraction short or OCR was skipped because its pool was busy. Such
+ * text is returned but not cached.
+ */
+public final class ParseLimits {
+
+    private final long maxChars;
+    private final long maxBytes;
+    private final Duration timeout;
+    private final long deadlineNanos;
+    private volatile boolean degraded;
+
+    /**
+     * @param maxChars      Maximum number of characters of extracted text
+     * @param maxBytes      Maximum size of the attachment
+     * @param timeout       Wall-clock budget
+     * @param deadlineNanos {@link System#nanoTime()} at which the budget runs out
+     */
+    public ParseLimits(long maxChars, long maxBytes, Duration timeout, long deadlineNanos) {
+        this.maxChars = maxChars;
+        this.maxBytes = maxBytes;
+        this.timeout = timeout;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static ParseLimits startingNow(long maxChars, long maxBytes, Duration timeout) {
+        return new ParseLimits(maxChars, maxBytes, timeout, System.nanoTime() + timeout.toNanos());
+    }
+
+    public long maxChars() {
+        return maxChars;
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    public Duration timeout() {
+        return timeout;
+    }
+
+    public long deadlineNanos() {
+        return deadlineNanos;
+    }
+
+    /**
+     * @return A text builder bounded by the character limit
+     */
+    public BoundedTextBuilder newTextBuilder() {
+        return new BoundedTextBuilder(maxChars);
+    }
+
+    public boolean isExpired() {
+        return System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * Stops extraction if the deadline has passed.
+     *
+     * @param text The builder receiving the text, which records why extraction stopped
+     * @throws BoundedTextBuilder.LimitReachedException if the deadline has passed
+     */
+    public void checkDeadline(BoundedTextBuilder text) {
+        if (isExpired()) {
+            throw timeLimitReached(text);
+        }
+    }
+
+    /**
+     * Records that the deadline cut extraction short.
+     *
+     * @param text The builder receiving the text
+     * @return The exception to throw
+     */
+    public BoundedTextBuilder.LimitReachedException timeLimitReached(BoundedTextBuilder text) {
+        markDegraded();
+        return text.limitReached("time limit of " + timeout.toSeconds() + "s reached");
+    }
+
+    /**
+     * Records that the extracted text is incomplete for a reason other than the attachment itself, so that it is
+     * not cached.
+     */
+    public void markDegraded() {
+        degraded = true;
+    }
+
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    /**
+     * Wraps a stream so that every read checks the deadline.
+     *
+     * @param in   The stream to read
+     * @param text The builder receiving the text
+     * @return The guarded stream; closing it closes {@code in}
+     */
+    public InputStream guard(InputStream in, BoundedTextBuilder text) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                checkDeadline(text);
+                return super.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                checkDeadline(text);
+                return super.read(b, off, len);
+            }
+        };
+    }
+}
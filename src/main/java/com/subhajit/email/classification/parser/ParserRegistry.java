@@ -0,0 +1,172 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.configuration.ParserProperties;
+import org.apache.tika.config.TikaConfig;
+import org.apache.tika.detect.Detector;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Selects the {@link AttachmentHandler} for a MIME type and runs it within its limits.
+ * <p>
+ * Exact MIME types win over top-level wildcards such as {@code image/*}; anything else goes to the handler that
+ * declares no MIME types, the Tika fallback. Each handler gets the limits configured under its name, with unset
+ * values taken from the defaults. Attachments over the byte limit are rejected before any parsing, and text over the
+ * character limit is cut even if the handler ignored it.
+ */
+@Component
+public class ParserRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParserRegistry.class);
+    private static final Detector DETECTOR = TikaConfig.getDefaultConfig().getDetector();
+    private static final ThreadLocal<int[]> EMBEDDING_DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final ParserProperties properties;
+    private final Map<String, AttachmentHandler> byMimeType = new HashMap<>();
+    private final Map<String, AttachmentHandler> byTopLevelType = new HashMap<>();
+    private final AttachmentHandler fallback;
+
+    public ParserRegistry(List<AttachmentHandler> handlers, ParserProperties properties) {
+        this.properties = properties;
+        AttachmentHandler fallbackHandler = null;
+        for (AttachmentHandler handler : handlers) {
+            if (handler.mimeTypes().isEmpty()) {
+                fallbackHandler = handler;
+            }
+            for (String mimeType : handler.mimeTypes()) {
+                String key = mimeType.toLowerCase(Locale.ROOT);
+                AttachmentHandler previous = key.endsWith("/*")
+                        ? byTopLevelType.putIfAbsent(key.substring(0, key.length() - 2), handler)
+                        : byMimeType.putIfAbsent(key, handler);
+                if (previous != null) {
+                    LOGGER.warn("MIME type {} is claimed by both {} and {}; using {}", mimeType, previous.name(),
+                            handler.name(), previous.name());
+                }
+            }
+        }
+        if (fallbackHandler == null) {
+            throw new IllegalStateException("No fallback attachment handler registered");
+        }
+        this.fallback = fallbackHandler;
+    }
+
+    /**
+     * @param mimeType The detected MIME type
+     * @return The handler for the type
+     */
+    public AttachmentHandler handlerFor(String mimeType) {
+        if (mimeType == null) {
+            return fallback;
+        }
+        // Drop parameters such as "; charset=UTF-8"
+        String type = mimeType.toLowerCase(Locale.ROOT);
+        int parameters = type.indexOf(';');
+        if (parameters >= 0) {
+            type = type.substring(0, parameters).trim();
+        }
+        AttachmentHandler handler = byMimeType.get(type);
+        if (handler == null) {
+            int slash = type.indexOf('/');
+            handler = slash > 0 ? byTopLevelType.get(type.substring(0, slash)) : null;
+        }
+        return handler != null ? handler : fallback;
+    }
+
+    /**
+     * Extracts the text of an attachment with the handler for its MIME type.
+     *
+     * @param source   The attachment and its shared stream
+     * @param mimeType The detected MIME type
+     * @return The extracted text, degraded if the handler marked its limits, or a failure with an error message for
+     * this attachment
+     * @throws Exception if the handler fails
+     */
+    public ExtractionResult extract(AttachmentSource source, String mimeType) throws Exception {
+        AttachmentHandler handler = handlerFor(mimeType);
+        ParseLimits limits = limitsFor(handler);
+        long size = source.getAttachment().getSize();
+        if (size > limits.maxBytes()) {
+            LOGGER.warn("Skipping attachment {} of {} bytes, over the {} limit of {} bytes", source.getName(), size,
+                    handler.name(), limits.maxBytes());
+            return ExtractionResult.failure("Error extracting attachment from " + source.getName() + ": larger than "
+                    + limits.maxBytes() + " bytes");
+        }
+        long started = System.nanoTime();
+        ExtractionResult result = handler.extract(source, mimeType, limits);
+        if (limits.isExpired()) {
+            LOGGER.warn("Handler {} hit its time limit on {} after {} ms", handler.name(), source.getName(),
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+        if (limits.isDegraded()) {
+            result = result.asDegraded();
+        }
+        String text = result.text();
+        if (!result.failed() && text != null && text.length() > limits.maxChars()) {
+            ExtractionResult truncated = ExtractionResult.of(text.substring(0, (int) limits.maxChars())
+                    + "\n[Truncated: character limit of " + limits.maxChars() + " reached]");
+            return result.degraded() ? truncated.asDegraded() : truncated;
+        }
+        return result;
+    }
+
+    /**
+     * Extracts the text of an object embedded in another attachment, e.g. a workbook inside a document, with the
+     * handler for its detected MIME type. The object shares what is left of its container's time budget and is
+     * held to the smaller of the two character limits. Nesting is bounded by {@code office.max-embedding-depth}.
+     *
+     * @param source          The embedded object
+     * @param containerLimits The limits of the attachment containing it
+     * @return The extracted text, or null if the object was skipped or could not be read
+     * @throws Exception if the handler fails
+     */
+    public String extractEmbedded(AttachmentSource source, ParseLimits containerLimits) throws Exception {
+        int[] depth = EMBEDDING_DEPTH.get();
+        if (depth[0] >= properties.getOffice().getMaxEmbeddingDepth()) {
+            LOGGER.debug("Skipping embedded object {} nested deeper than {}", source.getName(),
+                    properties.getOffice().getMaxEmbeddingDepth());
+            return null;
+        }
+        Metadata metadata = new Metadata();
+        metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, source.getName());
+        String mimeType = DETECTOR.detect(source.stream(), metadata).toString();
+        AttachmentHandler handler = handlerFor(mimeType);
+        ParseLimits own = limitsFor(handler);
+        if (source.getAttachment().getSize() > own.maxBytes()) {
+            LOGGER.debug("Skipping embedded object {} over the {} limit of {} bytes", source.getName(),
+                    handler.name(), own.maxBytes());
+            return null;
+        }
+        ParseLimits limits = new ParseLimits(Math.min(own.maxChars(), containerLimits.maxChars()), own.maxBytes(),
+                containerLimits.timeout(), containerLimits.deadlineNanos());
+        depth[0]++;
+        try {
+            ExtractionResult result = handler.extract(source, mimeType, limits);
+            if (limits.isDegraded() || result.degraded()) {
+                containerLimits.markDegraded();
+            }
+            if (result.failed()) {
+                LOGGER.debug("Skipping embedded object {}: {}", source.getName(), result.text());
+                return null;
+            }
+            return result.text();
+        } finally {
+            depth[0]--;
+        }
+    }
+
+    private ParseLimits limitsFor(AttachmentHandler handler) {
+        ParserProperties.Limits override = properties.getHandlerLimits().get(handler.name());
+        ParserProperties.Limits limits = override != null
+                ? override.orElse(properties.getLimits())
+                : properties.getLimits();
+        return ParseLimits.startingNow(limits.getMaxChars(), limits.getMaxBytes().toBytes(), limits.getTimeout());
+    }
+}
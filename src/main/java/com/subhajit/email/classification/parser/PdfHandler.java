@@ -0,0 +1,60 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.ocr.OcrWorkerPool;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Extracts PDF text with the parallel {@link PdfTextExtractor}, using OCR for scanned pages.
+ */
+@Component
+public class PdfHandler implements AttachmentHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PdfHandler.class);
+
+    private final PdfTextExtractor pdfTextExtractor;
+
+    public PdfHandler(ParserProperties parserProperties, OcrWorkerPool ocrWorkerPool) {
+        this.pdfTextExtractor = new PdfTextExtractor(parserProperties.getPdf(), ocrWorkerPool);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pdfTextExtractor.close();
+    }
+
+    @Override
+    public String name() {
+        return "pdf";
+    }
+
+    @Override
+    public List<String> mimeTypes() {
+        return List.of("application/pdf");
+    }
+
+    /**
+     * Parses a PDF file and extracts its content, using OCR for scanned pages.
+     *
+     * @param source The PDF file to parse
+     * @param limits Character and time limits to respect
+     * @return The extracted content from the PDF file
+     */
+    @Override
+    public ExtractionResult extract(AttachmentSource source, String mimeType, ParseLimits limits) {
+        try {
+            return ExtractionResult.of(pdfTextExtractor.extract(source.getAttachment(), limits));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return ExtractionResult.failure("Error reading PDF file: interrupted");
+        } catch (Exception ex) {
+            LOGGER.error("Error reading PDF file: {}", ex.getMessage());
+            return ExtractionResult.failure("Error reading PDF file: " + ex.getMessage());
+        }
+    }
+}
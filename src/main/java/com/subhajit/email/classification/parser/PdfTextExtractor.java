@@ -0,0 +1,252 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.model.EmailAttachment;
+import com.subhajit.email.classification.ocr.OcrWorkerPool;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Extracts text from PDF documents, page range by page range, with OCR for scanned pages.
+ * <p>
+ * Documents longer than one chunk are split into page ranges that workers take in turn, each worker on its own
+ * {@link PDDocument} because PDFBox documents are not thread safe. The calling thread is one of the workers and
+ * reuses the document it opened to count the pages; helpers on the shared page pool load the document once each,
+ * not once per range. Helpers that the pool's bounded queue cannot take are simply not started, leaving their ranges
+ * to the others. Pages that yield less than the configured number of characters are treated as scanned: only those
+ * pages are rendered to a grayscale image and sent to the {@link OcrWorkerPool}, within one OCR page budget shared by
+ * all workers. A page the OCR pool rejects keeps its text layer. Page count and OCR page count are capped here; the
+ * character and time limits come from the handler's {@link ParseLimits}, and are checked after and before every page.
+ */
+public class PdfTextExtractor implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PdfTextExtractor.class);
+
+    private final ParserProperties.Pdf limits;
+    private final OcrWorkerPool ocrWorkerPool;
+    private final ThreadPoolExecutor executor;
+
+    public PdfTextExtractor(ParserProperties.Pdf limits, OcrWorkerPool ocrWorkerPool) {
+        this.limits = limits;
+        this.ocrWorkerPool = ocrWorkerPool;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pdf-pages-");
+        threadFactory.setDaemon(true);
+        int threads = Math.max(1, limits.getPageThreads());
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 4), threadFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Extracts the text of a PDF document.
+     *
+     * @param attachment  The PDF document
+     * @param parseLimits Character and time limits to respect
+     * @return The extracted text, page by page
+     * @throws Exception if the document cannot be opened
+     */
+    public String extract(EmailAttachment attachment, ParseLimits parseLimits) throws Exception {
+        AtomicInteger ocrBudget = new AtomicInteger(limits.getMaxOcrPages());
+        // Read once and shared by every worker that loads the document
+        byte[] bytes = attachment.isInMemory() ? attachment.toByteArray() : null;
+        try (PDDocument document = load(attachment, bytes)) {
+            int pageCount = document.getNumberOfPages();
+            int lastPage = Math.min(pageCount, limits.getMaxPages());
+            Ranges ranges = new Ranges(lastPage, Math.max(1, limits.getPagesPerChunk()), ocrBudget, parseLimits);
+            int helpers = Math.min(Math.max(1, limits.getPageThreads()), ranges.count()) - 1;
+            List<Future<?>> futures = new ArrayList<>(Math.max(0, helpers));
+            try {
+                for (int i = 0; i < helpers; i++) {
+                    futures.add(executor.submit(() -> {
+                        try (PDDocument own = load(attachment, bytes)) {
+                            ranges.work(own);
+                        }
+                        return null;
+                    }));
+                }
+            } catch (RejectedExecutionException ex) {
+                LOGGER.debug("PDF page pool is busy; extracting {} with {} helpers", attachment.getName(),
+                        futures.size());
+            }
+            try {
+                ranges.work(document);
+                for (Future<?> future : futures) {
+                    future.get(Math.max(0, parseLimits.deadlineNanos() - System.nanoTime()), TimeUnit.NANOSECONDS);
+                }
+            } catch (TimeoutException ex) {
+                ranges.stop();
+            } catch (ExecutionException ex) {
+                throw ex.getCause() instanceof Exception cause ? cause : ex;
+            } finally {
+                futures.forEach(future -> future.cancel(true));
+            }
+            return ranges.join(pageCount, parseLimits.newTextBuilder());
+        }
+    }
+
+    /**
+     * Extracts pages {@code from} to {@code to} (1-based, inclusive) into {@code pages}, running OCR on pages that
+     * carry no text layer while the shared budget lasts.
+     *
+     * @return false if the deadline passed, or the document's text reached the character limit, before the last page
+     */
+    private boolean extractRange(PDDocument document, int from, int to, Ranges ranges, List<String> pages)
+            throws IOException, InterruptedException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        PDFRenderer renderer = null;
+        for (int page = from; page <= to; page++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("PDF extraction cancelled at page " + page);
+            }
+            if (ranges.parseLimits.isExpired() || ranges.stopped) {
+                return false;
+            }
+            stripper.setStartPage(page);
+            stripper.setEndPage(page);
+            String text = stripper.getText(document);
+
+            if (limits.isOcrFallback() && text.trim().length() < limits.getMinCharsPerPage()
+                    && ranges.ocrBudget.getAndDecrement() > 0) {
+                if (renderer == null) {
+                    renderer = new PDFRenderer(document);
+                }
+                BufferedImage image = renderer.renderImageWithDPI(page - 1, limits.getOcrDpi(), ImageType.GRAY);
+                try {
+                    text = ocrWorkerPool.doOCR(image);
+                } catch (RejectedExecutionException ex) {
+                    LOGGER.debug("OCR pool busy, keeping the text layer of page {}: {}", page, ex.getMessage());
+                    ranges.parseLimits.markDegraded();
+                    ranges.ocrBudget.incrementAndGet();
+                }
+            }
+            pages.add(text);
+            ranges.collected(text.length());
+        }
+        return true;
+    }
+
+    private static PDDocument load(EmailAttachment attachment, byte[] bytes) throws IOException {
+        return bytes != null
+                ? PDDocument.load(bytes)
+                : PDDocument.load(attachment.getFile(), MemoryUsageSetting.setupTempFileOnly());
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The page ranges of one document, taken in turn by its workers, and their text.
+     */
+    private class Ranges {
+
+        private final int lastPage;
+        private final int pagesPerRange;
+        private final AtomicInteger ocrBudget;
+        private final ParseLimits parseLimits;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicLong chars = new AtomicLong();
+        private final AtomicReferenceArray<List<String>> texts;
+        private volatile boolean stopped;
+        private volatile String stopReason;
+
+        Ranges(int lastPage, int pagesPerRange, AtomicInteger ocrBudget, ParseLimits parseLimits) {
+            this.lastPage = lastPage;
+            this.pagesPerRange = pagesPerRange;
+            this.ocrBudget = ocrBudget;
+            this.parseLimits = parseLimits;
+            this.texts = new AtomicReferenceArray<>((lastPage + pagesPerRange - 1) / pagesPerRange);
+        }
+
+        int count() {
+            return texts.length();
+        }
+
+        /**
+         * Extracts ranges with the given document until none are left, the deadline passes or enough text has been
+         * collected.
+         */
+        void work(PDDocument document) throws IOException, InterruptedException {
+            int range;
+            while (!stopped && (range = next.getAndIncrement()) < count()) {
+                int from = range * pagesPerRange + 1;
+                int to = Math.min(lastPage, from + pagesPerRange - 1);
+                List<String> pages = new ArrayList<>(to - from + 1);
+                boolean complete = extractRange(document, from, to, this, pages);
+                texts.set(range, pages);
+                if (!complete) {
+                    stop();
+                }
+            }
+        }
+
+        /**
+         * Counts the characters of an extracted page and stops all workers once the character limit is reached.
+         */
+        void collected(int pageChars) {
+            if (chars.addAndGet(pageChars) >= parseLimits.maxChars()) {
+                stopReason = "character limit of " + parseLimits.maxChars() + " reached";
+                stop();
+            }
+        }
+
+        void stop() {
+            stopped = true;
+        }
+
+        /**
+         * Joins the pages extracted in order, up to the first range that was not finished.
+         */
+        String join(int pageCount, BoundedTextBuilder sb) {
+            int pagesRead = 0;
+            try {
+                for (int range = 0; range < count(); range++) {
+                    List<String> pages = texts.get(range);
+                    if (pages != null) {
+                        for (String page : pages) {
+                            sb.append(page);
+                            pagesRead++;
+                        }
+                    }
+                    int expected = Math.min(lastPage, (range + 1) * pagesPerRange) - range * pagesPerRange;
+                    if (pages == null || pages.size() < expected) {
+                        if (stopReason == null) {
+                            parseLimits.markDegraded();
+                        }
+                        throw sb.limitReached(stopReason != null ? stopReason : "time limit of "
+                                + parseLimits.timeout().toSeconds() + "s reached after page " + pagesRead);
+                    }
+                }
+                if (lastPage < pageCount) {
+                    throw sb.limitReached("page limit of " + limits.getMaxPages() + " reached, document has "
+                            + pageCount + " pages");
+                }
+            } catch (BoundedTextBuilder.LimitReachedException ex) {
+                LOGGER.warn("PDF extraction truncated: {}", ex.getMessage());
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.configuration.ParserProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Extracts the cell text of .xlsx and .xls workbooks with the streaming {@link SpreadsheetTextExtractor}.
+ */
+@Component
+public class SpreadsheetHandler implements AttachmentHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpreadsheetHandler.class);
+
+    private final SpreadsheetTextExtractor spreadsheetTextExtractor;
+
+    public SpreadsheetHandler(ParserProperties parserProperties) {
+        this.spreadsheetTextExtractor = new SpreadsheetTextExtractor(parserProperties.getSpreadsheet());
+    }
+
+    @Override
+    public String name() {
+        return "spreadsheet";
+    }
+
+    @Override
+    public List<String> mimeTypes() {
+        return List.of(SpreadsheetTextExtractor.XLSX_MIME_TYPE, SpreadsheetTextExtractor.XLS_MIME_TYPE);
+    }
+
+    /**
+     * Parses an Excel file (both .xls and .xlsx formats) and extracts its content.
+     *
+     * @param source   The Excel file to parse
+     * @param mimeType The detected MIME type, which selects the .xls or .xlsx reader
+     * @param limits   Character and time limits to respect
+     * @return The extracted content from the Excel file
+     */
+    @Override
+    public ExtractionResult extract(AttachmentSource source, String mimeType, ParseLimits limits) {
+        try {
+            return ExtractionResult.of(spreadsheetTextExtractor.extract(source.getAttachment(), mimeType, limits));
+        } catch (Exception ex) {
+            LOGGER.error("Error reading Excel file: {}", ex.getMessage());
+            return ExtractionResult.failure("Error reading Excel file: " + ex.getMessage());
+        }
+    }
+}
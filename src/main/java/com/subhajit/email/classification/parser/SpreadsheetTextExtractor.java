@@ -0,0 +1,277 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.model.EmailAttachment;
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Extracts text from .xlsx and .xls workbooks.
+ * <p>
+ * In streaming mode .xlsx sheets are read with the SAX based {@link XSSFSheetXMLHandler} and .xls workbooks with the
+ * HSSF record event API, so only the current row and the shared string table are held in memory. Row, cell and
+ * character limits and the deadline, checked at every row, stop reading early. The output has the same layout as the
+ * workbook based extraction: a {@code Sheet: <name>} line per sheet followed by tab separated cell values.
+ */
+public class SpreadsheetTextExtractor {
+
+    public static final String XLSX_MIME_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    public static final String XLS_MIME_TYPE = "application/vnd.ms-excel";
+
+    private final ParserProperties.Spreadsheet limits;
+
+    public SpreadsheetTextExtractor(ParserProperties.Spreadsheet limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * Extracts the text of a workbook, choosing the reader from the detected MIME type.
+     *
+     * @param attachment  The workbook
+     * @param mimeType    The detected MIME type
+     * @param parseLimits Character and time limits to respect
+     * @return The extracted text
+     * @throws Exception if the workbook cannot be read
+     */
+    public String extract(EmailAttachment attachment, String mimeType, ParseLimits parseLimits) throws Exception {
+        BoundedTextBuilder sb = parseLimits.newTextBuilder();
+        boolean xlsx = XLSX_MIME_TYPE.equals(mimeType);
+        try {
+            if (!limits.isStreaming()) {
+                extractWorkbook(attachment, xlsx, sb, parseLimits);
+            } else if (xlsx) {
+                extractXlsx(attachment, sb, parseLimits);
+            } else {
+                extractXls(attachment, sb, parseLimits);
+            }
+        } catch (Exception ex) {
+            if (!sb.isTruncated()) {
+                throw ex;
+            }
+        }
+        return sb.toString();
+    }
+
+    private void extractXlsx(EmailAttachment attachment, BoundedTextBuilder sb, ParseLimits parseLimits)
+            throws Exception {
+        try (OPCPackage pkg = attachment.isInMemory()
+                ? OPCPackage.open(attachment.openStream())
+                : OPCPackage.open(attachment.getFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            CellCounter counter = new CellCounter(sb, parseLimits);
+
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    counter.startSheet(sheets.getSheetName());
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings, counter,
+                            new DataFormatter(), false));
+                    parser.parse(new InputSource(sheet));
+                }
+            }
+        }
+    }
+
+    private void extractXls(EmailAttachment attachment, BoundedTextBuilder sb, ParseLimits parseLimits)
+            throws Exception {
+        try (POIFSFileSystem fs = attachment.isInMemory()
+                ? new POIFSFileSystem(new ByteArrayChannel(attachment.toByteArray()), true)
+                : new POIFSFileSystem(attachment.getFile(), true)) {
+            HSSFRequest request = new HSSFRequest();
+            request.addListenerForAllRecords(new XlsRecordListener(new CellCounter(sb, parseLimits)));
+            new HSSFEventFactory().abortableProcessWorkbookEvents(request, fs);
+        }
+    }
+
+    /**
+     * Workbook based extraction, used when streaming is disabled. Memory grows with the size of the workbook.
+     */
+    private void extractWorkbook(EmailAttachment attachment, boolean xlsx, BoundedTextBuilder sb,
+                                 ParseLimits parseLimits) throws Exception {
+        DataFormatter formatter = new DataFormatter();
+        try (InputStream fis = attachment.openStream();
+             Workbook workbook = xlsx ? new XSSFWorkbook(fis) : new HSSFWorkbook(fis)) {
+            CellCounter counter = new CellCounter(sb, parseLimits);
+            for (Sheet sheet : workbook) {
+                counter.startSheet(sheet.getSheetName());
+                for (Row row : sheet) {
+                    counter.startRow(row.getRowNum());
+                    for (Cell cell : row) {
+                        counter.cell(formatter.formatCellValue(cell));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes sheets and cells to the output and enforces the row and cell limits and the deadline.
+     */
+    private class CellCounter implements SheetContentsHandler {
+
+        private final BoundedTextBuilder sb;
+        private final ParseLimits parseLimits;
+        private long rows;
+        private long cells;
+
+        CellCounter(BoundedTextBuilder sb, ParseLimits parseLimits) {
+            this.sb = sb;
+            this.parseLimits = parseLimits;
+        }
+
+        void startSheet(String name) {
+            parseLimits.checkDeadline(sb);
+            sb.append("Sheet: ").append(name).append('\n');
+        }
+
+        void cell(String value) {
+            if (++cells > limits.getMaxCells()) {
+                throw sb.limitReached("cell limit of " + limits.getMaxCells() + " reached");
+            }
+            sb.append(value).append('\t');
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            if (++rows > limits.getMaxRows()) {
+                throw sb.limitReached("row limit of " + limits.getMaxRows() + " reached");
+            }
+            parseLimits.checkDeadline(sb);
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            // Cells of consecutive rows are separated by tabs only, as in the workbook based layout
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            cell(formattedValue);
+        }
+    }
+
+    /**
+     * Turns the HSSF record stream into sheet and cell events.
+     */
+    private class XlsRecordListener extends AbortableHSSFListener {
+
+        private final CellCounter counter;
+        private final FormatTrackingHSSFListener formats = new FormatTrackingHSSFListener(record -> {
+        });
+        private final List<String> sheetNames = new ArrayList<>();
+        private Iterator<String> nextSheetName;
+        private SSTRecord sharedStrings;
+        private int currentRow = -1;
+        private boolean awaitingFormulaString;
+
+        XlsRecordListener(CellCounter counter) {
+            this.counter = counter;
+        }
+
+        @Override
+        public short abortableProcessRecord(Record record) {
+            formats.processRecord(record);
+            switch (record.getSid()) {
+                case BoundSheetRecord.sid:
+                    sheetNames.add(((BoundSheetRecord) record).getSheetname());
+                    break;
+                case BOFRecord.sid:
+                    if (((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET) {
+                        if (nextSheetName == null) {
+                            nextSheetName = sheetNames.iterator();
+                        }
+                        counter.startSheet(nextSheetName.hasNext() ? nextSheetName.next() : "");
+                        currentRow = -1;
+                    }
+                    break;
+                case SSTRecord.sid:
+                    sharedStrings = (SSTRecord) record;
+                    break;
+                case LabelSSTRecord.sid:
+                    LabelSSTRecord label = (LabelSSTRecord) record;
+                    row(label.getRow());
+                    counter.cell(sharedStrings == null ? "" : sharedStrings.getString(label.getSSTIndex()).getString());
+                    break;
+                case LabelRecord.sid:
+                    LabelRecord legacyLabel = (LabelRecord) record;
+                    row(legacyLabel.getRow());
+                    counter.cell(legacyLabel.getValue());
+                    break;
+                case NumberRecord.sid:
+                    NumberRecord number = (NumberRecord) record;
+                    row(number.getRow());
+                    counter.cell(formats.formatNumberDateCell(number));
+                    break;
+                case BoolErrRecord.sid:
+                    BoolErrRecord boolErr = (BoolErrRecord) record;
+                    row(boolErr.getRow());
+                    counter.cell(boolErr.isBoolean() ? String.valueOf(boolErr.getBooleanValue()) : "");
+                    break;
+                case FormulaRecord.sid:
+                    FormulaRecord formula = (FormulaRecord) record;
+                    row(formula.getRow());
+                    if (formula.hasCachedResultString()) {
+                        awaitingFormulaString = true;
+                    } else {
+                        counter.cell(formats.formatNumberDateCell(formula));
+                    }
+                    break;
+                case StringRecord.sid:
+                    if (awaitingFormulaString) {
+                        counter.cell(((StringRecord) record).getString());
+                        awaitingFormulaString = false;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return 0;
+        }
+
+        private void row(int row) {
+            if (row != currentRow) {
+                currentRow = row;
+                counter.startRow(row);
+            }
+        }
+    }
+}
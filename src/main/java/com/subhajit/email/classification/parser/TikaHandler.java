@@ -0,0 +1,136 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.configuration.ParserProperties;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.exception.WriteLimitReachedException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.ContentHandlerDecorator;
+import org.apache.tika.sax.SecureContentHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+import java.util.List;
+
+/**
+ * Fallback handler for every type without a dedicated handler, backed by Tika's {@link AutoDetectParser}.
+ * <p>
+ * The parser is created once and shared, as it is thread-safe. Its output goes through a {@link BodyContentHandler}
+ * with the character limit as write limit, a deadline check on every SAX event, and a {@link SecureContentHandler}
+ * that aborts documents whose output is out of proportion to their input or too deeply nested, which catches zip
+ * and XML bombs. Hitting the character or time limit keeps the text read so far.
+ */
+@Component
+public class TikaHandler implements AttachmentHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TikaHandler.class);
+
+    private final Parser parser = new AutoDetectParser();
+    private final ParserProperties.Tika properties;
+
+    public TikaHandler(ParserProperties parserProperties) {
+        this.properties = parserProperties.getTika();
+    }
+
+    @Override
+    public String name() {
+        return "tika";
+    }
+
+    @Override
+    public List<String> mimeTypes() {
+        return List.of();
+    }
+
+    @Override
+    public ExtractionResult extract(AttachmentSource source, String mimeType, ParseLimits limits) throws Exception {
+        BodyContentHandler body = new BodyContentHandler((int) Math.min(limits.maxChars(), Integer.MAX_VALUE));
+        DeadlineContentHandler deadline = new DeadlineContentHandler(body, limits);
+        TikaInputStream stream = source.stream();
+        SecureContentHandler secure = new SecureContentHandler(deadline, stream);
+        secure.setMaximumCompressionRatio(properties.getMaxCompressionRatio());
+        secure.setMaximumDepth(properties.getMaxXmlDepth());
+        secure.setMaximumPackageEntryDepth(properties.getMaxPackageEntryDepth());
+
+        Metadata metadata = new Metadata();
+        metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, source.getName());
+        if (mimeType != null) {
+            metadata.set(Metadata.CONTENT_TYPE, mimeType);
+        }
+        ParseContext context = new ParseContext();
+        // Parse embedded documents with the same parser, and so within the same limits
+        context.set(Parser.class, parser);
+
+        try {
+            parser.parse(stream, secure, metadata, context);
+        } catch (SAXException | TikaException ex) {
+            if (WriteLimitReachedException.isWriteLimitReached(ex)) {
+                return ExtractionResult.of(body + "\n[Truncated: character limit of " + limits.maxChars()
+                        + " reached]");
+            }
+            if (deadline.expired) {
+                limits.markDegraded();
+                return ExtractionResult.of(body + "\n[Truncated: time limit of " + limits.timeout().toSeconds()
+                        + "s reached]");
+            }
+            try {
+                secure.throwIfCauseOf(ex);
+            } catch (TikaException bomb) {
+                LOGGER.warn("Rejected attachment {}: {}", source.getName(), bomb.getMessage());
+                return ExtractionResult.failure("Error extracting attachment from " + source.getName() + ": "
+                        + bomb.getMessage());
+            }
+            throw ex;
+        }
+        return ExtractionResult.of(body.toString());
+    }
+
+    /**
+     * Aborts parsing once the deadline has passed. Parsers emit events as they go, so this bounds the time spent on
+     * a document without interrupting the thread.
+     */
+    private static class DeadlineContentHandler extends ContentHandlerDecorator {
+
+        private final ParseLimits limits;
+        private boolean expired;
+
+        DeadlineContentHandler(ContentHandler handler, ParseLimits limits) {
+            super(handler);
+            this.limits = limits;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String name, Attributes atts) throws SAXException {
+            checkDeadline();
+            super.startElement(uri, localName, name, atts);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            checkDeadline();
+            super.characters(ch, start, length);
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            checkDeadline();
+            super.ignorableWhitespace(ch, start, length);
+        }
+
+        private void checkDeadline() throws SAXException {
+            if (limits.isExpired()) {
+                expired = true;
+                throw new SAXException("time limit of " + limits.timeout().toSeconds() + "s reached");
+            }
+        }
+    }
+}
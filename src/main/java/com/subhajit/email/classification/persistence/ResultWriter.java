@@ -0,0 +1,293 @@
+package com.subhajit.email.classification.persistence;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.subhajit.email.classification.configuration.PersistenceProperties;
+import com.subhajit.email.classification.duplicate.DuplicateCheckResult;
+import com.subhajit.email.classification.entity.EmailResult;
+import com.subhajit.email.classification.metrics.EmailTimings;
+import com.subhajit.email.classification.model.KeyValue;
+import com.subhajit.email.classification.model.ParsedEmailResponse;
+import com.subhajit.email.classification.repository.EmailResultRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Stores {@link EmailResult}s behind the request path.
+ * <p>
+ * Callers only build the entity and put it on a bounded queue; a single writer thread drains the queue and saves up
+ * to {@code batchSize} results per transaction, which Hibernate sends as one JDBC batch. A slow or unavailable
+ * database therefore never adds to request latency. When the queue is full the configured
+ * {@link PersistenceProperties.OverflowPolicy} decides which result is dropped; drops are counted, not thrown.
+ * If a batch cannot be saved, its results are saved one by one so that one bad row does not lose the others. The
+ * writer also deletes results older than the retention period. On shutdown the writer keeps draining until the queue
+ * is empty or the shutdown timeout passes.
+ */
+@Component
+public class ResultWriter implements MeterBinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResultWriter.class);
+    private static final long PRUNE_INTERVAL_NANOS = Duration.ofMinutes(10).toNanos();
+
+    private final PersistenceProperties properties;
+    private final EmailResultRepository repository;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<PendingResult> queue;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile boolean running;
+    private Thread writer;
+    private long lastPrune = System.nanoTime() - PRUNE_INTERVAL_NANOS;
+
+    public ResultWriter(PersistenceProperties properties, EmailResultRepository repository,
+                        ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        running = true;
+        writer = Thread.ofPlatform().daemon(true).name("result-writer").start(this::run);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(properties.getShutdownTimeout().toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            writer.interrupt();
+            LOGGER.warn("Result writer stopped with {} results not written", queue.size());
+        }
+    }
+
+    /**
+     * Queues the result of a successfully processed email.
+     *
+     * @param fileName        The file name of the email
+     * @param response        The response returned to the caller
+     * @param duplicateCheck  The outcome of the duplicate check
+     * @param attachmentCount Number of attachments in the email
+     * @param timings         The closed timings of the email
+     */
+    public void recordSuccess(String fileName, ParsedEmailResponse response, DuplicateCheckResult duplicateCheck,
+                              int attachmentCount, EmailTimings timings) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        EmailResult result = newResult(fileName, EmailResult.Status.SUCCESS, timings);
+        result.setFromAddress(StringUtils.truncate(response.getFrom(), 320));
+        result.setSubject(StringUtils.truncate(response.getSubject(), 998));
+        result.setRequestType(StringUtils.truncate(response.getRequestType(), 100));
+        result.setSubRequestType(StringUtils.truncate(response.getSubRequestType(), 100));
+        result.setReasoning(StringUtils.truncate(response.getReasoning(), 4000));
+        result.setBodyChars(StringUtils.length(response.getBody()));
+        result.setAttachmentCount(attachmentCount);
+        if (duplicateCheck != null) {
+            result.setContentHash(duplicateCheck.contentHash());
+            result.setDuplicate(duplicateCheck.duplicate());
+            result.setDuplicateOf(duplicateCheck.matchedHash());
+            result.setSimilarity(duplicateCheck.similarity());
+        }
+        // Serialised on the writer thread
+        submit(new PendingResult(result, response.getExtractedFields()));
+    }
+
+    /**
+     * Queues the result of an email that could not be processed.
+     *
+     * @param fileName The file name of the email
+     * @param error    A description of the failure
+     * @param timings  The closed timings of the email
+     */
+    public void recordFailure(String fileName, String error, EmailTimings timings) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        EmailResult result = newResult(fileName, EmailResult.Status.FAILED, timings);
+        result.setError(StringUtils.truncate(error, 1000));
+        submit(new PendingResult(result, null));
+    }
+
+    /**
+     * @return A snapshot of the writer counters
+     */
+    public ResultWriterMetrics metrics() {
+        return new ResultWriterMetrics(submitted.get(), written.get(), dropped.get(), failed.get(), batches.get(),
+                queue.size());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Map<String, ToDoubleFunction<ResultWriterMetrics>> counters = Map.of(
+                "submitted", ResultWriterMetrics::submitted,
+                "written", ResultWriterMetrics::written,
+                "dropped", ResultWriterMetrics::dropped,
+                "failed", ResultWriterMetrics::failed);
+        counters.forEach((outcome, value) -> FunctionCounter.builder("email.results", this,
+                        w -> value.applyAsDouble(w.metrics()))
+                .description("Email results handed to the write-behind store")
+                .tag("outcome", outcome)
+                .register(registry));
+        FunctionCounter.builder("email.results.batches", this, w -> w.metrics().batches())
+                .description("Batches of email results committed")
+                .register(registry);
+        Gauge.builder("email.results.queued", this, w -> w.metrics().queued())
+                .description("Email results waiting to be written")
+                .register(registry);
+    }
+
+    private static EmailResult newResult(String fileName, EmailResult.Status status, EmailTimings timings) {
+        EmailResult result = new EmailResult();
+        result.setProcessedAt(Instant.now());
+        result.setStatus(status);
+        result.setFileName(StringUtils.truncate(fileName, 255));
+        result.setTotalMillis(timings.totalMillis());
+        result.setStageTimings(StringUtils.truncate(timings.toServerTiming(), 500));
+        return result;
+    }
+
+    private void submit(PendingResult pending) {
+        submitted.incrementAndGet();
+        boolean queued = switch (properties.getOverflowPolicy()) {
+            case DROP_NEWEST -> queue.offer(pending);
+            case DROP_OLDEST -> {
+                while (!queue.offer(pending)) {
+                    if (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                yield true;
+            }
+            case BLOCK -> {
+                try {
+                    yield queue.offer(pending, properties.getOfferTimeout().toNanos(), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    yield false;
+                }
+            }
+        };
+        if (!queued) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void run() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        long flushNanos = properties.getFlushInterval().toNanos();
+        List<PendingResult> drained = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            pruneIfDue();
+            try {
+                PendingResult first = queue.poll(flushNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                drained.add(first);
+                queue.drainTo(drained, batchSize - 1);
+                write(drained);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                drained.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingResult> drained) {
+        List<EmailResult> batch = new ArrayList<>(drained.size());
+        for (PendingResult pending : drained) {
+            pending.result().setExtractedFields(toJson(pending.fields()));
+            batch.add(pending.result());
+        }
+        try {
+            // saveAll runs in one transaction; new entities are flushed as a single JDBC batch on commit
+            repository.saveAll(batch);
+            written.addAndGet(batch.size());
+            batches.incrementAndGet();
+        } catch (Exception ex) {
+            LOGGER.warn("Error saving {} email results, saving them one by one: {}", batch.size(), ex.getMessage());
+            for (EmailResult result : batch) {
+                writeOne(result);
+            }
+        }
+    }
+
+    private void writeOne(EmailResult result) {
+        // The id assigned during the failed batch was rolled back with it
+        result.setId(null);
+        try {
+            repository.save(result);
+            written.incrementAndGet();
+        } catch (Exception ex) {
+            failed.incrementAndGet();
+            LOGGER.error("Error saving email result for {}: {}", result.getFileName(), ex.getMessage());
+        }
+    }
+
+    private void pruneIfDue() {
+        if (properties.getRetention().isZero() || System.nanoTime() - lastPrune < PRUNE_INTERVAL_NANOS) {
+            return;
+        }
+        lastPrune = System.nanoTime();
+        try {
+            int deleted = repository.deleteProcessedBefore(Instant.now().minus(properties.getRetention()));
+            if (deleted > 0) {
+                LOGGER.info("Deleted {} email results older than {}", deleted, properties.getRetention());
+            }
+        } catch (Exception ex) {
+            LOGGER.error("Error deleting old email results: {}", ex.getMessage());
+        }
+    }
+
+    private String toJson(List<KeyValue> fields) {
+        if (fields == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(fields);
+        } catch (JsonProcessingException ex) {
+            LOGGER.warn("Error serialising extracted fields: {}", ex.getMessage());
+            return null;
+        }
+    }
+
+    private record PendingResult(EmailResult result, List<KeyValue> fields) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.subhajit.email.classification.persistence;
+
+/**
+ * Point-in-time counters of the {@link ResultWriter}.
+ *
+ * @param submitted Results handed to the writer
+ * @param written   Results committed to the database
+ * @param dropped   Results discarded because the queue was full
+ * @param failed    Results lost because they could not be written, even one by one
+ * @param batches   Batches committed
+ * @param queued    Results currently waiting to be written
+ */
+public record ResultWriterMetrics(long submitted, long written, long dropped, long failed, long batches,
+                                  int queued) {
+}
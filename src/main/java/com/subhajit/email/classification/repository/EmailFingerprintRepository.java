@@ -0,0 +1,36 @@
+package com.subhajit.email.classification.repository;
+
+import com.subhajit.email.classification.entity.EmailFingerprint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface EmailFingerprintRepository extends JpaRepository<EmailFingerprint, Long> {
+
+    /**
+     * Reads the next page of fingerprints in insertion order, for keyset paging over the whole table.
+     */
+    List<EmailFingerprint> findTop10000ByIdGreaterThanOrderByIdAsc(Long id);
+
+    /**
+     * Refreshes the fingerprint stored for a content hash, e.g. of an email evicted from the index and seen again.
+     *
+     * @return Number of rows updated, 0 if the content hash is not stored yet
+     */
+    @Modifying
+    @Transactional
+    @Query("update EmailFingerprint f set f.signature = :signature, f.seenAt = :seenAt "
+            + "where f.contentHash = :contentHash")
+    int refresh(@Param("contentHash") String contentHash, @Param("signature") byte[] signature,
+                @Param("seenAt") Instant seenAt);
+
+    @Modifying
+    @Transactional
+    @Query("delete from EmailFingerprint f where f.seenAt < :cutoff")
+    int deleteSeenBefore(@Param("cutoff") Instant cutoff);
+}
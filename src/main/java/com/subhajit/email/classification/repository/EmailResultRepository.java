@@ -0,0 +1,19 @@
+package com.subhajit.email.classification.repository;
+
+import com.subhajit.email.classification.entity.EmailResult;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface EmailResultRepository extends JpaRepository<EmailResult, Long>, JpaSpecificationExecutor<EmailResult> {
+
+    @Modifying
+    @Transactional
+    @Query("delete from EmailResult r where r.processedAt < :cutoff")
+    int deleteProcessedBefore(@Param("cutoff") Instant cutoff);
+}
@@ -0,0 +1,7 @@
+package com.subhajit.email.classification.repository;
+
+import com.subhajit.email.classification.entity.MailboxCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface MailboxCheckpointRepository extends JpaRepository<MailboxCheckpoint, String> {
+}
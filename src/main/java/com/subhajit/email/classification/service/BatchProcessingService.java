@@ -0,0 +1,11 @@
+package com.subhajit.email.classification.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+public interface BatchProcessingService {
+    void processBatch(List<MultipartFile> files, OutputStream outputStream) throws IOException;
+}
@@ -1,8 +1,15 @@
 package com.subhajit.email.classification.service;
 
 import com.subhajit.email.classification.model.ParsedEmailResponse;
+import jakarta.mail.internet.MimeMessage;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
+
 public interface EmailProcessingService {
     ParsedEmailResponse processEmail(MultipartFile file);
+
+    ParsedEmailResponse processEmail(String fileName, InputStream inputStream);
+
+    ParsedEmailResponse processMessage(String name, MimeMessage message, String format);
 }
@@ -0,0 +1,16 @@
+package com.subhajit.email.classification.service;
+
+import com.subhajit.email.classification.entity.EmailResult;
+import com.subhajit.email.classification.model.EmailResultResponse;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface EmailResultService {
+    Page<EmailResultResponse> search(String requestType, String contentHash, Boolean duplicate,
+                                     EmailResult.Status status, Instant from, Instant to, Pageable pageable);
+
+    Optional<EmailResultResponse> getResult(Long id);
+}
@@ -0,0 +1,16 @@
+package com.subhajit.email.classification.service;
+
+import com.subhajit.email.classification.job.JobPriority;
+import com.subhajit.email.classification.model.JobResponse;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public interface JobService {
+    JobResponse submit(MultipartFile file, JobPriority priority);
+
+    Optional<JobResponse> getJob(String jobId);
+
+    boolean onCompletion(String jobId, Consumer<JobResponse> listener);
+}
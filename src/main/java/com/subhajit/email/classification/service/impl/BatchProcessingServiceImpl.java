@@ -0,0 +1,209 @@
+package com.subhajit.email.classification.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.subhajit.email.classification.batch.BatchItem;
+import com.subhajit.email.classification.batch.BatchItemReader;
+import com.subhajit.email.classification.configuration.BatchProperties;
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.model.BatchItemResult;
+import com.subhajit.email.classification.service.BatchProcessingService;
+import com.subhajit.email.classification.service.EmailProcessingService;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class BatchProcessingServiceImpl implements BatchProcessingService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchProcessingServiceImpl.class);
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final EmailProcessingService emailProcessingService;
+    private final BatchProperties batchProperties;
+    private final ParserProperties parserProperties;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore slots;
+
+    public BatchProcessingServiceImpl(EmailProcessingService emailProcessingService, BatchProperties batchProperties,
+                                      ParserProperties parserProperties, ObjectMapper objectMapper) {
+        this.emailProcessingService = emailProcessingService;
+        this.batchProperties = batchProperties;
+        this.parserProperties = parserProperties;
+        this.objectMapper = objectMapper;
+        int parallelism = Math.max(1, batchProperties.getParallelism());
+        int queueCapacity = Math.max(1, batchProperties.getQueueCapacity());
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("batch-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+        // A slot is held from submission until the email is processed, so the queue never overflows and a batch
+        // waits for a free slot instead of failing while other batches keep the workers busy
+        this.slots = new Semaphore(parallelism + queueCapacity, true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Processes every email contained in the uploaded files concurrently and writes one JSON result per line to the
+     * output stream as soon as each email finishes, so results arrive in completion order rather than input order.
+     * All batches share one bounded pool of workers.
+     *
+     * @param files        uploaded .eml, .msg, .zip or .mbox files
+     * @param outputStream the response stream receiving newline-delimited JSON
+     * @throws IOException if writing to the response fails
+     */
+    @Override
+    public void processBatch(List<MultipartFile> files, OutputStream outputStream) throws IOException {
+        BatchItemReader reader = new BatchItemReader(batchProperties.getMaxItems(),
+                batchProperties.getMaxItemSize().toBytes(), parserProperties.getSpillThreshold().toBytes(),
+                StringUtils.isNoneEmpty(parserProperties.getSpillDirectory())
+                        ? Paths.get(parserProperties.getSpillDirectory()) : null);
+
+        // Allow one queued email per worker so the next one is ready when a worker frees up
+        int maxInFlight = Math.max(1, batchProperties.getParallelism()) * 2;
+        BlockingQueue<BatchTask> completed = new LinkedBlockingQueue<>();
+        Set<BatchTask> inFlight = new HashSet<>();
+        try {
+            reader.read(files, item -> {
+                while (inFlight.size() >= maxInFlight) {
+                    write(completed.take(), inFlight, outputStream);
+                }
+                submit(new BatchTask(item, completed), inFlight);
+
+                BatchTask done;
+                while ((done = completed.poll()) != null) {
+                    write(done, inFlight, outputStream);
+                }
+            });
+            while (!inFlight.isEmpty()) {
+                write(completed.take(), inFlight, outputStream);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Batch processing interrupted");
+        } finally {
+            // Only left over if the client went away or the request failed
+            inFlight.forEach(this::cancel);
+        }
+    }
+
+    private void submit(BatchTask task, Set<BatchTask> inFlight) throws InterruptedException {
+        try {
+            slots.acquire();
+        } catch (InterruptedException ex) {
+            task.item.close();
+            throw ex;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            // Only after shutdown, the slots keep the queue from overflowing
+            slots.release();
+            task.item.close();
+            throw ex;
+        }
+        inFlight.add(task);
+    }
+
+    /**
+     * Stops an email that is no longer wanted. One still waiting in the queue never runs, so its item is closed and
+     * its slot returned here; a running one is interrupted and cleans up after itself.
+     */
+    private void cancel(BatchTask task) {
+        if (executor.remove(task)) {
+            slots.release();
+            task.item.close();
+        } else {
+            task.cancel(true);
+        }
+    }
+
+    private BatchItemResult process(BatchItem item) {
+        try (item) {
+            if (item.content() == null) {
+                return new BatchItemResult(item.index(), item.name(), null, item.error());
+            }
+            try (InputStream inputStream = item.content().openStream()) {
+                return new BatchItemResult(item.index(), item.name(),
+                        emailProcessingService.processEmail(item.name(), inputStream), null);
+            }
+        } catch (Exception ex) {
+            LOGGER.error("Error processing batch item {}: {}", item.name(), ex.getMessage());
+            return new BatchItemResult(item.index(), item.name(), null, ExceptionUtils.getRootCauseMessage(ex));
+        }
+    }
+
+    private void write(BatchTask done, Set<BatchTask> inFlight, OutputStream outputStream)
+            throws IOException, InterruptedException {
+        inFlight.remove(done);
+        BatchItemResult result;
+        try {
+            result = done.get();
+        } catch (ExecutionException ex) {
+            // process() handles its own failures, so this only happens on errors such as OutOfMemoryError
+            result = new BatchItemResult(done.item.index(), done.item.name(), null,
+                    ExceptionUtils.getRootCauseMessage(ex));
+        }
+        outputStream.write(objectMapper.writeValueAsBytes(result));
+        outputStream.write(NEWLINE);
+        outputStream.flush();
+    }
+
+    /**
+     * One email of a batch. It is added to the batch's completion queue when done and frees its slot in the shared
+     * pool once it has run.
+     */
+    private final class BatchTask extends FutureTask<BatchItemResult> {
+
+        private final BatchItem item;
+        private final BlockingQueue<BatchTask> completed;
+
+        BatchTask(BatchItem item, BlockingQueue<BatchTask> completed) {
+            super(() -> process(item));
+            this.item = item;
+            this.completed = completed;
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                slots.release();
+            }
+        }
+
+        @Override
+        protected void done() {
+            completed.add(this);
+        }
+    }
+}
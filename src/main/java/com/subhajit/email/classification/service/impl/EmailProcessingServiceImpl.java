@@ -1,20 +1,57 @@
 package com.subhajit.email.classification.service.impl;
 
+import com.subhajit.email.classification.compaction.TextCompactor;
+import com.subhajit.email.classification.duplicate.DuplicateCheckResult;
+import com.subhajit.email.classification.duplicate.DuplicateDetector;
+import com.subhajit.email.classification.extraction.AttachmentExtractionEngine;
+import com.subhajit.email.classification.metrics.EmailTimings;
+import com.subhajit.email.classification.metrics.PipelineMetrics;
+import com.subhajit.email.classification.metrics.PipelineStage;
+import com.subhajit.email.classification.model.EmailClassification;
 import com.subhajit.email.classification.model.KeyValue;
 import com.subhajit.email.classification.model.ParsedEmail;
 import com.subhajit.email.classification.model.ParsedEmailResponse;
+import com.subhajit.email.classification.persistence.ResultWriter;
 import com.subhajit.email.classification.service.EmailProcessingService;
+import com.subhajit.email.classification.util.EmailClassifier;
+import com.subhajit.email.classification.util.EmailParser;
+import com.subhajit.email.classification.util.FieldExtractor;
+import jakarta.mail.internet.MimeMessage;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
-
-import static com.subhajit.email.classification.util.EmailParser.parseEmail;
-import static com.subhajit.email.classification.util.AttachmentParser.parseAttachments;
+import java.util.function.Supplier;
 
 @Service
 public class EmailProcessingServiceImpl implements EmailProcessingService {
 
+    private final EmailParser emailParser;
+    private final AttachmentExtractionEngine attachmentExtractionEngine;
+    private final TextCompactor textCompactor;
+    private final EmailClassifier emailClassifier;
+    private final FieldExtractor fieldExtractor;
+    private final DuplicateDetector duplicateDetector;
+    private final PipelineMetrics pipelineMetrics;
+    private final ResultWriter resultWriter;
+
+    public EmailProcessingServiceImpl(EmailParser emailParser, AttachmentExtractionEngine attachmentExtractionEngine,
+                                      TextCompactor textCompactor, EmailClassifier emailClassifier,
+                                      FieldExtractor fieldExtractor, DuplicateDetector duplicateDetector,
+                                      PipelineMetrics pipelineMetrics, ResultWriter resultWriter) {
+        this.emailParser = emailParser;
+        this.attachmentExtractionEngine = attachmentExtractionEngine;
+        this.textCompactor = textCompactor;
+        this.emailClassifier = emailClassifier;
+        this.fieldExtractor = fieldExtractor;
+        this.duplicateDetector = duplicateDetector;
+        this.pipelineMetrics = pipelineMetrics;
+        this.resultWriter = resultWriter;
+    }
+
     /**
      * Processes the email file, extracts its content, classifies it, and checks for duplicates.
      *
@@ -23,33 +60,95 @@ public class EmailProcessingServiceImpl implements EmailProcessingService {
      */
     @Override
     public ParsedEmailResponse processEmail(MultipartFile file) {
+        try (InputStream inputStream = file.getInputStream()) {
+            return processEmail(file.getOriginalFilename(), inputStream);
+        } catch (IOException ex) {
+            throw new RuntimeException("Error parsing email", ex);
+        }
+    }
+
+    /**
+     * Processes an email read from a stream, e.g. an entry of a batch upload. Each step is timed as a
+     * {@link PipelineStage}, and a failure is counted against the step it happened in. The outcome is queued for the
+     * write-behind result store once the timings are closed.
+     *
+     * @param fileName    the file name of the email, ending in .eml or .msg
+     * @param inputStream the content of the email; not closed by this method
+     * @return ParsedEmailResponse containing the parsed email details
+     */
+    @Override
+    public ParsedEmailResponse processEmail(String fileName, InputStream inputStream) {
+        return process(fileName, () -> emailParser.parseEmail(fileName, inputStream));
+    }
+
+    /**
+     * Processes a message that is already open, e.g. one being read from an IMAP folder, without serializing it to
+     * .eml first.
+     *
+     * @param name    a name for the message in logs and stored results
+     * @param message the message
+     * @param format  the source of the message, e.g. imap
+     * @return ParsedEmailResponse containing the parsed email details
+     */
+    @Override
+    public ParsedEmailResponse processMessage(String name, MimeMessage message, String format) {
+        return process(name, () -> emailParser.parseMessage(message, format));
+    }
+
+    private ParsedEmailResponse process(String fileName, Supplier<ParsedEmail> parser) {
+        EmailTimings timings = pipelineMetrics.startEmail();
+        ParsedEmailResponse response;
+        DuplicateCheckResult duplicateCheck;
+        int attachmentCount;
+        try (timings) {
+
+            // Step 1: Parse the email; closing it releases any attachments spilled to disk
+            timings.begin(PipelineStage.PARSE);
+            try (ParsedEmail email = parser.get()) {
+                attachmentCount = email.getAttachments() != null ? email.getAttachments().size() : 0;
+
+                // Step 2: Extract attachments and parse them
+                timings.begin(PipelineStage.EXTRACT);
+                List<String> attachmentTexts = attachmentExtractionEngine.extract(email.getAttachments());
 
-        // Step 1: Parse the email
-        ParsedEmail email = parseEmail(file);
+                // Step 3: Drop quoted history, signatures and disclaimers before classifying and extracting fields
+                timings.begin(PipelineStage.COMPACT);
+                String compactBody = textCompactor.compact(email.getBody()).text();
 
-        // Step 2: Extract attachments and parse them
-        List<String> attachmentTexts = parseAttachments(email.getAttachments());
+                // Step 4: Classify email type
+                timings.begin(PipelineStage.CLASSIFY);
+                EmailClassification classification = emailClassifier.classify(email.getSubject(), compactBody,
+                        attachmentTexts);
 
-/*        // Step 3: Classify email type
-        EmailClassification classification = EmailClassifier.classify(email.getBody(), attachmentTexts);
+                // Step 5: Extract key fields
+                timings.begin(PipelineStage.FIELDS);
+                List<KeyValue> fields = fieldExtractor.extract(email.getSubject(), compactBody, attachmentTexts);
 
-        // Step 4: Extract key fields
-        List<KeyValue> fields = FieldExtractor.extract(email.getBody(), attachmentTexts);
+                // Step 6: Check for duplication
+                timings.begin(PipelineStage.DUPLICATE);
+                duplicateCheck = duplicateDetector.check(email, attachmentTexts);
 
-        // Step 5: Check for duplication
-        boolean isDuplicate = DuplicateDetector.isDuplicate(email);
+                // Step 7: Build response
+                response = new ParsedEmailResponse();
+                response.setFrom(email.getFrom());
+                response.setSubject(email.getSubject());
+                response.setBody(email.getBody());
+                response.setRequestType(classification.getRequestType());
+                response.setSubRequestType(classification.getSubRequestType());
+                response.setExtractedFields(fields);
+                response.setReasoning(classification.getReasoning());
+                response.setDuplicate(duplicateCheck.duplicate());
 
-        // Step 6: Build response
-        ParsedEmailResponse response = new ParsedEmailResponse();
-        response.setFrom(email.getFrom());
-        response.setSubject(email.getSubject());
-        response.setBody(email.getBody());
-        response.setRequestType(classification.getRequestType());
-        response.setSubRequestType(classification.getSubRequestType());
-        response.setExtractedFields(fields);
-        response.setDuplicate(isDuplicate);
-        response.setReasoning(classification.getReasoning());*/
+                timings.succeeded();
+            }
+        } catch (RuntimeException ex) {
+            timings.failed(ex);
+            resultWriter.recordFailure(fileName, ExceptionUtils.getRootCauseMessage(ex), timings);
+            throw ex;
+        }
 
-        return null;
+        // Step 8: Store the result without waiting for the database
+        resultWriter.recordSuccess(fileName, response, duplicateCheck, attachmentCount, timings);
+        return response;
     }
 }
@@ -0,0 +1,82 @@
+package com.subhajit.email.classification.service.impl;
+
+import com.subhajit.email.classification.entity.EmailResult;
+import com.subhajit.email.classification.model.EmailResultResponse;
+import com.subhajit.email.classification.repository.EmailResultRepository;
+import com.subhajit.email.classification.service.EmailResultService;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+@Transactional(readOnly = true)
+public class EmailResultServiceImpl implements EmailResultService {
+
+    private final EmailResultRepository emailResultRepository;
+
+    public EmailResultServiceImpl(EmailResultRepository emailResultRepository) {
+        this.emailResultRepository = emailResultRepository;
+    }
+
+    /**
+     * Finds stored results matching all given filters; null filters are ignored. The content hash and processing
+     * time filters are served by indexes.
+     *
+     * @param requestType the classified request type
+     * @param contentHash the content hash of the email
+     * @param duplicate   whether the email was flagged as a duplicate
+     * @param status      whether processing succeeded
+     * @param from        earliest processing time, inclusive
+     * @param to          latest processing time, exclusive
+     * @param pageable    the page to return and its sort order
+     * @return the matching results, detached from the entities
+     */
+    @Override
+    public Page<EmailResultResponse> search(String requestType, String contentHash, Boolean duplicate,
+                                            EmailResult.Status status, Instant from, Instant to,
+                                            Pageable pageable) {
+        List<Specification<EmailResult>> filters = new ArrayList<>();
+        if (StringUtils.isNoneEmpty(requestType)) {
+            filters.add((root, query, cb) -> cb.equal(root.get("requestType"), requestType));
+        }
+        if (StringUtils.isNoneEmpty(contentHash)) {
+            filters.add((root, query, cb) -> cb.equal(root.get("contentHash"), contentHash));
+        }
+        if (duplicate != null) {
+            filters.add((root, query, cb) -> cb.equal(root.get("duplicate"), duplicate));
+        }
+        if (status != null) {
+            filters.add((root, query, cb) -> cb.equal(root.get("status"), status));
+        }
+        if (from != null) {
+            filters.add((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("processedAt"), from));
+        }
+        if (to != null) {
+            filters.add((root, query, cb) -> cb.lessThan(root.get("processedAt"), to));
+        }
+        return emailResultRepository.findAll(Specification.allOf(filters), pageable)
+                .map(EmailResultServiceImpl::toResponse);
+    }
+
+    @Override
+    public Optional<EmailResultResponse> getResult(Long id) {
+        return emailResultRepository.findById(id).map(EmailResultServiceImpl::toResponse);
+    }
+
+    private static EmailResultResponse toResponse(EmailResult result) {
+        return new EmailResultResponse(result.getId(), result.getProcessedAt(), result.getStatus(),
+                result.getFileName(), result.getFromAddress(), result.getSubject(), result.getContentHash(),
+                result.isDuplicate(), result.getDuplicateOf(), result.getSimilarity(), result.getRequestType(),
+                result.getSubRequestType(), result.getReasoning(), result.getExtractedFields(),
+                result.getAttachmentCount(), result.getBodyChars(), result.getTotalMillis(),
+                result.getStageTimings(), result.getError());
+    }
+}
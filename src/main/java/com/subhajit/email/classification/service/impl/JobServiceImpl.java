@@ -0,0 +1,209 @@
+package com.subhajit.email.classification.service.impl;
+
+import com.subhajit.email.classification.configuration.JobProperties;
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.job.EmailJob;
+import com.subhajit.email.classification.job.JobPriority;
+import com.subhajit.email.classification.job.JobQueueFullException;
+import com.subhajit.email.classification.model.EmailAttachment;
+import com.subhajit.email.classification.model.JobResponse;
+import com.subhajit.email.classification.service.EmailProcessingService;
+import com.subhajit.email.classification.service.JobService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+@Service
+public class JobServiceImpl implements JobService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobServiceImpl.class);
+
+    private final EmailProcessingService emailProcessingService;
+    private final JobProperties jobProperties;
+    private final ParserProperties parserProperties;
+
+    private final PriorityBlockingQueue<EmailJob> queue = new PriorityBlockingQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong heapBytes = new AtomicLong();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong averageJobMillis = new AtomicLong(1000);
+    private final Map<String, EmailJob> jobs = new ConcurrentHashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private ScheduledExecutorService sweeper;
+
+    public JobServiceImpl(EmailProcessingService emailProcessingService, JobProperties jobProperties,
+                          ParserProperties parserProperties) {
+        this.emailProcessingService = emailProcessingService;
+        this.jobProperties = jobProperties;
+        this.parserProperties = parserProperties;
+    }
+
+    @PostConstruct
+    public void start() {
+        Thread.Builder builder = jobProperties.isVirtualThreads()
+                ? Thread.ofVirtual().name("job-worker-", 0)
+                : Thread.ofPlatform().daemon(true).name("job-worker-", 0);
+        for (int i = 0; i < Math.max(1, jobProperties.getWorkers()); i++) {
+            workers.add(builder.start(this::runWorker));
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("job-sweeper-");
+        threadFactory.setDaemon(true);
+        sweeper = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        sweeper.scheduleWithFixedDelay(this::evictExpiredJobs, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.forEach(Thread::interrupt);
+        sweeper.shutdownNow();
+        EmailJob job;
+        while ((job = queue.poll()) != null) {
+            heapBytes.addAndGet(-heapBytes(job.getContent()));
+            job.releaseContentQuietly();
+        }
+    }
+
+    /**
+     * Buffers the uploaded email and queues it for processing. The email is held in heap if it is under the spill
+     * threshold and the emails already held stay within {@code jobs.max-queued-heap}, and in a spill file otherwise.
+     *
+     * @param file     the uploaded .eml or .msg file
+     * @param priority the queue priority
+     * @return the queued job
+     * @throws JobQueueFullException if the queue is at capacity
+     */
+    @Override
+    public JobResponse submit(MultipartFile file, JobPriority priority) {
+        if (queued.incrementAndGet() > jobProperties.getQueueCapacity()) {
+            queued.decrementAndGet();
+            throw new JobQueueFullException(jobProperties.getQueueCapacity(), estimateRetryAfterSeconds());
+        }
+        long spillThreshold = parserProperties.getSpillThreshold().toBytes();
+        long reserved = file.getSize() <= spillThreshold ? file.getSize() : 0;
+        if (reserved > 0 && heapBytes.addAndGet(reserved) > jobProperties.getMaxQueuedHeap().toBytes()) {
+            heapBytes.addAndGet(-reserved);
+            reserved = 0;
+            spillThreshold = 0;
+        }
+        try {
+            EmailAttachment content;
+            try (InputStream inputStream = file.getInputStream()) {
+                content = EmailAttachment.read(file.getOriginalFilename(), inputStream, spillThreshold,
+                        StringUtils.isNoneEmpty(parserProperties.getSpillDirectory())
+                                ? Paths.get(parserProperties.getSpillDirectory()) : null);
+            }
+            // The reservation was made from the declared size; account for what is actually held
+            heapBytes.addAndGet(heapBytes(content) - reserved);
+            reserved = heapBytes(content);
+            EmailJob job = new EmailJob(UUID.randomUUID().toString(), priority, sequence.incrementAndGet(),
+                    file.getOriginalFilename(), content);
+            jobs.put(job.getId(), job);
+            queue.put(job);
+            return job.toResponse();
+        } catch (IOException ex) {
+            queued.decrementAndGet();
+            heapBytes.addAndGet(-reserved);
+            throw new UncheckedIOException("Error reading uploaded email", ex);
+        } catch (RuntimeException ex) {
+            queued.decrementAndGet();
+            heapBytes.addAndGet(-reserved);
+            throw ex;
+        }
+    }
+
+    @Override
+    public Optional<JobResponse> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(EmailJob::toResponse);
+    }
+
+    /**
+     * Registers a listener for the completion of a job.
+     *
+     * @param jobId    the job id
+     * @param listener receives the final state of the job, immediately if it has already finished
+     * @return false if the job is unknown or has expired
+     */
+    @Override
+    public boolean onCompletion(String jobId, Consumer<JobResponse> listener) {
+        EmailJob job = jobs.get(jobId);
+        if (job == null) {
+            return false;
+        }
+        job.onCompletion(listener);
+        return true;
+    }
+
+    private void runWorker() {
+        while (!Thread.currentThread().isInterrupted()) {
+            EmailJob job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queued.decrementAndGet();
+            run(job);
+        }
+    }
+
+    private void run(EmailJob job) {
+        long start = System.nanoTime();
+        long held = heapBytes(job.getContent());
+        job.markRunning();
+        try (InputStream inputStream = job.getContent().openStream()) {
+            job.finish(emailProcessingService.processEmail(job.getFileName(), inputStream), null);
+        } catch (Exception ex) {
+            LOGGER.error("Error processing job {}: {}", job.getId(), ex.getMessage());
+            job.finish(null, ExceptionUtils.getRootCauseMessage(ex));
+        } finally {
+            // finish() has released the buffered email
+            heapBytes.addAndGet(-held);
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // Exponentially weighted moving average, used to estimate Retry-After
+        averageJobMillis.updateAndGet(average -> (average * 7 + elapsed) / 8);
+    }
+
+    private static long heapBytes(EmailAttachment content) {
+        return content != null && content.isInMemory() ? content.getSize() : 0;
+    }
+
+    /**
+     * Estimates when a queue slot frees up: on average one job finishes every {@code average / workers}.
+     */
+    private long estimateRetryAfterSeconds() {
+        long slotMillis = averageJobMillis.get() / Math.max(1, jobProperties.getWorkers());
+        return Math.max(1, Math.min((slotMillis + 999) / 1000, 300));
+    }
+
+    private void evictExpiredJobs() {
+        Instant cutoff = Instant.now().minus(jobProperties.getResultTtl());
+        jobs.values().removeIf(job -> job.getStatus().isFinished() && job.getCompletedAt().isBefore(cutoff));
+    }
+}
@@ -1,10 +1,76 @@
 package com.subhajit.email.classification.util;
 
+import com.subhajit.email.classification.classification.ClassificationInput;
+import com.subhajit.email.classification.classification.ClassifierStage;
+import com.subhajit.email.classification.configuration.ClassifierProperties;
+import com.subhajit.email.classification.model.EmailClassification;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Classifies emails with a cascade of {@link ClassifierStage}s: cheap local tiers first, the LLM last.
+ * <p>
+ * The first tier whose confidence reaches the threshold answers. The last tier answers whenever it has an opinion.
+ * If no tier answers, the most confident local guess is used. The reasoning of the result names the answering tier.
+ */
+@Component
 public class EmailClassifier {
 
-    private EmailClassifier() {
-        // Private constructor to prevent instantiation
+    private static final String UNCLASSIFIED = "Unclassified";
+
+    private final List<ClassifierStage> stages;
+    private final ClassifierProperties properties;
+
+    public EmailClassifier(List<ClassifierStage> stages, ClassifierProperties properties) {
+        this.stages = stages;
+        this.properties = properties;
     }
 
+    /**
+     * Classifies an email.
+     *
+     * @param subject         The subject line
+     * @param body            The body text
+     * @param attachmentTexts The extracted text of each attachment
+     * @return The classification, with the answering tier recorded in the reasoning
+     */
+    public EmailClassification classify(String subject, String body, List<String> attachmentTexts) {
+        ClassificationInput input = new ClassificationInput(subject, body, attachmentTexts);
+        EmailClassification bestGuess = null;
+        String bestGuessTier = null;
 
+        for (int i = 0; i < stages.size(); i++) {
+            ClassifierStage stage = stages.get(i);
+            Optional<EmailClassification> answer = stage.classify(input);
+            if (answer.isEmpty()) {
+                continue;
+            }
+            EmailClassification classification = answer.get();
+            boolean lastStage = i == stages.size() - 1;
+            if (lastStage || classification.getConfidence() >= properties.getConfidenceThreshold()) {
+                return accept(input, classification, stage.name());
+            }
+            if (bestGuess == null || classification.getConfidence() > bestGuess.getConfidence()) {
+                bestGuess = classification;
+                bestGuessTier = stage.name();
+            }
+        }
+
+        if (bestGuess != null) {
+            bestGuess.setReasoning("[tier: " + bestGuessTier + ", below confidence threshold] "
+                    + bestGuess.getReasoning());
+            return bestGuess;
+        }
+        return new EmailClassification(UNCLASSIFIED, null, 0, "[tier: none] No classifier tier produced an answer");
+    }
+
+    private EmailClassification accept(ClassificationInput input, EmailClassification classification, String tier) {
+        for (ClassifierStage stage : stages) {
+            stage.learn(input, classification, tier);
+        }
+        classification.setReasoning("[tier: " + tier + "] " + classification.getReasoning());
+        return classification;
+    }
 }
@@ -1,42 +1,80 @@
 package com.subhajit.email.classification.util;
 
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.metrics.PipelineMetrics;
+import com.subhajit.email.classification.model.EmailAttachment;
 import com.subhajit.email.classification.model.ParsedEmail;
-import jakarta.mail.BodyPart;
-import jakarta.mail.Multipart;
-import jakarta.mail.Part;
+import com.subhajit.email.classification.parser.MimeWalker;
+import com.subhajit.email.classification.parser.MsgReader;
 import jakarta.mail.Session;
 import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.util.SharedByteArrayInputStream;
+import jakarta.mail.util.SharedFileInputStream;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.poi.hsmf.MAPIMessage;
-import org.apache.poi.hsmf.datatypes.AttachmentChunks;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Properties;
 
-import static jakarta.mail.Part.ATTACHMENT;
-
+@Component
 public class EmailParser {
 
-    private EmailParser() {
-        // Private constructor to prevent instantiation
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmailParser.class);
+
+    private final long spillThreshold;
+    private final Path spillDirectory;
+    private final ParserProperties.Mime mimeLimits;
+    private final PipelineMetrics pipelineMetrics;
+
+    public EmailParser(ParserProperties properties, PipelineMetrics pipelineMetrics) {
+        this.mimeLimits = properties.getMime();
+        this.pipelineMetrics = pipelineMetrics;
+        this.spillThreshold = properties.getSpillThreshold().toBytes();
+        this.spillDirectory = StringUtils.isNoneEmpty(properties.getSpillDirectory())
+                ? Paths.get(properties.getSpillDirectory()) : null;
     }
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(EmailParser.class);
+    /**
+     * Parses an uploaded .eml or .msg file. The returned email must be closed to release its attachments.
+     *
+     * @param multipartFile The uploaded email
+     * @return The parsed email
+     */
+    public ParsedEmail parseEmail(MultipartFile multipartFile) {
+        try (InputStream inputStream = multipartFile.getInputStream()) {
+            return parseEmail(multipartFile.getOriginalFilename(), inputStream);
+        } catch (IOException ex) {
+            throw new RuntimeException("Error parsing email", ex);
+        }
+    }
 
-    public static ParsedEmail parseEmail(MultipartFile multipartFile) {
+    /**
+     * Parses a .eml or .msg email read from a stream. The stream is not closed. The returned email must be closed to
+     * release its attachments.
+     *
+     * @param fileName    File name of the email, which selects the format
+     * @param inputStream Content of the email
+     * @return The parsed email
+     */
+    public ParsedEmail parseEmail(String fileName, InputStream inputStream) {
+        long start = System.nanoTime();
+        CountingInputStream counted = new CountingInputStream(inputStream);
+        String format;
+        ParsedEmail email;
         try {
-            String fileName = multipartFile.getOriginalFilename();
             if (StringUtils.isNoneEmpty(fileName) && fileName.endsWith(".eml")) {
-                return parseEml(multipartFile);
+                format = "eml";
+                email = parseEml(counted);
             } else if (StringUtils.isNoneEmpty(fileName) && fileName.endsWith(".msg")) {
-                return parseMsg(multipartFile);
+                format = "msg";
+                email = parseMsg(counted);
             } else {
                 LOGGER.error("Unsupported file type: {}", fileName);
                 throw new IllegalArgumentException("Unsupported file type: " + fileName);
@@ -44,75 +82,90 @@ public class EmailParser {
         } catch (Exception ex) {
             throw new RuntimeException("Error parsing email", ex);
         }
+        pipelineMetrics.recordParse(format, System.nanoTime() - start, counted.count,
+                email.getBody() == null ? 0 : email.getBody().length(), email.getAttachments().size());
+        return email;
+    }
+
+    /**
+     * Parses a message that is already open, e.g. one fetched from an IMAP folder. Its parts are read straight from
+     * the message, so a message backed by a server is streamed part by part rather than downloaded as a whole. The
+     * returned email must be closed to release its attachments.
+     *
+     * @param message The message
+     * @param format  Name of the source, for the parse metrics, e.g. {@code imap}
+     * @return The parsed email
+     */
+    public ParsedEmail parseMessage(MimeMessage message, String format) {
+        long start = System.nanoTime();
+        ParsedEmail email;
+        long size;
+        try {
+            email = MimeWalker.walk(message, mimeLimits, spillThreshold, spillDirectory);
+            size = Math.max(0, message.getSize());
+        } catch (Exception ex) {
+            throw new RuntimeException("Error parsing email", ex);
+        }
+        pipelineMetrics.recordParse(format, System.nanoTime() - start, size,
+                email.getBody() == null ? 0 : email.getBody().length(), email.getAttachments().size());
+        return email;
     }
 
-    private static ParsedEmail parseEml(MultipartFile multipartFile) throws Exception {
+    /**
+     * Parses a .eml file. Given a plain stream, {@link MimeMessage} copies the whole message into a byte array, so
+     * the email is first buffered like an attachment, spilling to disk above the spill threshold, and the message is
+     * built on a shared stream over that buffer. Its parts are then read from the buffer or file on demand instead
+     * of being held in memory again.
+     */
+    private ParsedEmail parseEml(InputStream inputStream) throws Exception {
         Session session = Session.getDefaultInstance(new Properties());
-        MimeMessage message = new MimeMessage(session, multipartFile.getInputStream());
+        try (EmailAttachment content = EmailAttachment.read("email.eml", inputStream, spillThreshold, spillDirectory);
+             InputStream shared = content.isInMemory()
+                     ? new SharedByteArrayInputStream(content.toByteArray())
+                     : new SharedFileInputStream(content.getFile())) {
+            MimeMessage message = new MimeMessage(session, shared);
+            return MimeWalker.walk(message, mimeLimits, spillThreshold, spillDirectory);
+        }
+    }
 
-        String from = message.getFrom()[0].toString();
-        String subject = message.getSubject();
-        String body = extractTextFromMime(message);
-        List<File> attachments = extractAttachmentsFromMime(message);
-        return new ParsedEmail(from, subject, body, attachments);
+    private ParsedEmail parseMsg(InputStream inputStream) throws Exception {
+        return MsgReader.read(inputStream, mimeLimits, spillThreshold, spillDirectory);
     }
 
+    /**
+     * Counts the bytes read, so the email size is known without buffering it.
+     */
+    private static class CountingInputStream extends FilterInputStream {
 
-    private static String extractTextFromMime(Part part) throws Exception {
-        if (part.isMimeType("text/*")) {
-            return part.getContent().toString();
-        } else if (part.isMimeType("multipart/*")) {
-            Multipart multipart = (Multipart) part.getContent();
-            StringBuilder result = new StringBuilder();
-            for (int i = 0; i < multipart.getCount(); i++) {
-                result.append(extractTextFromMime(multipart.getBodyPart(i)));
-            }
-            return result.toString();
-        } else {
-            return "";
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
         }
-    }
 
-    private static List<File> extractAttachmentsFromMime(Part part) throws Exception {
-        List<File> attachments = new ArrayList<>();
-        if (part.isMimeType("multipart/*")) {
-            Multipart multipart = (Multipart) part.getContent();
-            for (int i = 0; i < multipart.getCount(); i++) {
-                BodyPart bodyPart = multipart.getBodyPart(i);
-                if (ATTACHMENT.equalsIgnoreCase(bodyPart.getDisposition()) || bodyPart.getFileName() != null) {
-                    File file = File.createTempFile("att-", bodyPart.getFileName());
-                    try (FileOutputStream fos = new FileOutputStream(file)) {
-                        InputStream inputStream = bodyPart.getInputStream();
-                        byte[] buffer = new byte[4096];
-                        int bytesRead;
-                        while ((bytesRead = inputStream.read(buffer)) != -1) {
-                            fos.write(buffer, 0, bytesRead);
-                        }
-                    }
-                    attachments.add(file);
-                }
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
             }
+            return b;
         }
-        return attachments;
-    }
-
-    private static ParsedEmail parseMsg(MultipartFile multipartFile) throws Exception {
-        File file = File.createTempFile("email", ".msg");
-        multipartFile.transferTo(file);
 
-        MAPIMessage mapiMessage = new MAPIMessage(file.getAbsolutePath());
-        String from = mapiMessage.getDisplayFrom();
-        String subject = mapiMessage.getSubject();
-        String body = mapiMessage.getTextBody();
-
-        List<File> attachments = new ArrayList<>();
-        for (AttachmentChunks attachment : mapiMessage.getAttachmentFiles()) {
-            File attachmentFile = File.createTempFile("att-", attachment.getAttachFileName().getValue());
-            try (FileOutputStream fos = new FileOutputStream(attachmentFile)) {
-                fos.write(attachment.getAttachData().getValue());
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
             }
-            attachments.add(attachmentFile);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
         }
-        return new ParsedEmail(from, subject, body, attachments);
     }
 }
@@ -0,0 +1,145 @@
+package com.subhajit.email.classification.util;
+
+import com.subhajit.email.classification.configuration.FieldExtractionProperties;
+import com.subhajit.email.classification.field.FieldPatternSet;
+import com.subhajit.email.classification.field.FieldSource;
+import com.subhajit.email.classification.model.KeyValue;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Extracts key fields such as amounts, dates, account numbers and deal names from an email.
+ * <p>
+ * Each source (subject, body, every attachment) is scanned once by a {@link FieldPatternSet}. When a field occurs
+ * in several sources, the value from the source ranked highest in the configured priority wins; sources that
+ * cannot improve any field are not scanned at all.
+ */
+@Component
+public class FieldExtractor {
+
+    private static final int EXCLUDED = Integer.MAX_VALUE;
+
+    private final FieldExtractionProperties properties;
+    private final FieldPatternSet patterns;
+    private final int[][] rankBySource;
+
+    public FieldExtractor(FieldExtractionProperties properties) {
+        this.properties = properties;
+        this.patterns = new FieldPatternSet(properties.getDefinitions(), properties.getValueWindow());
+        this.rankBySource = new int[patterns.size()][];
+        for (int f = 0; f < patterns.size(); f++) {
+            List<FieldSource> priority = patterns.field(f).getSourcePriority().isEmpty()
+                    ? properties.getSourcePriority()
+                    : patterns.field(f).getSourcePriority();
+            int[] ranks = new int[FieldSource.values().length];
+            Arrays.fill(ranks, EXCLUDED);
+            for (int r = priority.size() - 1; r >= 0; r--) {
+                ranks[priority.get(r).ordinal()] = r;
+            }
+            rankBySource[f] = ranks;
+        }
+    }
+
+    /**
+     * Extracts the configured fields.
+     *
+     * @param subject         The email subject
+     * @param body            The email body
+     * @param attachmentTexts The extracted text of each attachment
+     * @return One entry per value found, in the order the fields are defined
+     */
+    public List<KeyValue> extract(String subject, String body, List<String> attachmentTexts) {
+        if (!properties.isEnabled() || patterns.size() == 0) {
+            return new ArrayList<>();
+        }
+        Collector collector = new Collector();
+        collector.scan(subject, FieldSource.SUBJECT);
+        collector.scan(body, FieldSource.BODY);
+        if (attachmentTexts != null) {
+            for (String attachmentText : attachmentTexts) {
+                collector.scan(attachmentText, FieldSource.ATTACHMENT);
+            }
+        }
+        return collector.toKeyValues();
+    }
+
+    /**
+     * Best values found so far for one extraction.
+     */
+    private class Collector implements FieldPatternSet.ValueListener {
+
+        private final int[] bestRank = new int[patterns.size()];
+        private final List<Set<String>> values = new ArrayList<>(patterns.size());
+        private FieldSource source;
+
+        Collector() {
+            Arrays.fill(bestRank, EXCLUDED);
+            for (int f = 0; f < patterns.size(); f++) {
+                values.add(new LinkedHashSet<>(2));
+            }
+        }
+
+        void scan(String text, FieldSource source) {
+            this.source = source;
+            if (StringUtils.isNotEmpty(text) && canImprove()) {
+                patterns.scan(text, this);
+            }
+        }
+
+        private boolean canImprove() {
+            for (int f = 0; f < bestRank.length; f++) {
+                if (wants(f)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean wants(int field) {
+            int rank = rankBySource[field][source.ordinal()];
+            return rank < bestRank[field]
+                    || rank == bestRank[field] && rank != EXCLUDED && patterns.field(field).isMultiple();
+        }
+
+        @Override
+        public void onValue(int field, CharSequence text, int start, int end) {
+            String value = cleanValue(text, start, end);
+            if (value.isEmpty()) {
+                return;
+            }
+            int rank = rankBySource[field][source.ordinal()];
+            if (rank < bestRank[field]) {
+                bestRank[field] = rank;
+                values.get(field).clear();
+            }
+            values.get(field).add(value);
+        }
+
+        List<KeyValue> toKeyValues() {
+            List<KeyValue> result = new ArrayList<>();
+            for (int f = 0; f < patterns.size(); f++) {
+                for (String value : values.get(f)) {
+                    result.add(new KeyValue(patterns.field(f).getName(), value));
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Copies the matched value, dropping trailing sentence punctuation and collapsing whitespace.
+     */
+    private static String cleanValue(CharSequence text, int start, int end) {
+        while (end > start && ".,;".indexOf(text.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        return StringUtils.normalizeSpace(text.subSequence(start, end).toString());
+    }
+}
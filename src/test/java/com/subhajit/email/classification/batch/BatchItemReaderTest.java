@@ -0,0 +1,120 @@
+package com.subhajit.email.classification.batch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BatchItemReaderTest {
+
+    private static final String MBOX = "From a@example.com Mon Jan  1 00:00:00 2024\n"
+            + "Subject: first\n\nHello\n>From the start\n\n"
+            + "From b@example.com Mon Jan  1 00:01:00 2024\n"
+            + "Subject: second\n\nBye\n\n"
+            + "From c@example.com Mon Jan  1 00:02:00 2024\n"
+            + "Subject: third\n\nAgain\n";
+
+    private final List<BatchItem> items = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        items.forEach(BatchItem::close);
+    }
+
+    @Test
+    void splitsMboxFilesIntoMessages() throws Exception {
+        read(100, 1024, file("inbox.mbox", MBOX));
+
+        assertEquals(List.of("inbox.mbox#1.eml", "inbox.mbox#2.eml", "inbox.mbox#3.eml"), names());
+        assertEquals("Subject: first\n\nHello\nFrom the start\n\n", content(0));
+        assertEquals("Subject: third\n\nAgain\n", content(2));
+    }
+
+    @Test
+    void reportsAMessageWithALineOverTheItemSizeWithoutBufferingIt() throws Exception {
+        String mbox = "From a@example.com\nSubject: long\n\n" + "x".repeat(5_000) + "\n\n"
+                + "From b@example.com\nSubject: short\n\nok\n";
+
+        read(100, 1024, file("inbox.mbox", mbox));
+
+        assertEquals(2, items.size());
+        assertNull(items.get(0).content());
+        assertEquals("Email exceeds the maximum size of 1024 bytes", items.get(0).error());
+        assertEquals("Subject: short\n\nok\n", content(1));
+    }
+
+    @Test
+    void endsWithATruncationItemAtTheItemLimitOfAnMbox() throws Exception {
+        read(2, 1024, file("inbox.mbox", MBOX));
+
+        assertEquals(List.of("inbox.mbox#1.eml", "inbox.mbox#2.eml", "inbox.mbox#3.eml"), names());
+        assertNull(items.get(2).content());
+        assertEquals("Batch truncated: only the first 2 emails are processed", items.get(2).error());
+    }
+
+    @Test
+    void endsWithATruncationItemAtTheItemLimitOfAnArchive() throws Exception {
+        MultipartFile zip = zip("export.zip", "a.eml", "b.eml", "notes.txt", "c.eml", "d.eml");
+
+        read(2, 1024, zip, file("late.eml", "Subject: late\n\n"));
+
+        assertEquals(List.of("export.zip!/a.eml", "export.zip!/b.eml", "export.zip!/c.eml"), names());
+        assertEquals("Batch truncated: only the first 2 emails are processed", items.get(2).error());
+    }
+
+    @Test
+    void endsWithATruncationItemForTheFirstFileOverTheItemLimit() throws Exception {
+        read(1, 1024, file("a.eml", "Subject: a\n\n"), file("b.eml", "Subject: b\n\n"), file("c.eml", "c"));
+
+        assertEquals(List.of("a.eml", "b.eml"), names());
+        assertEquals("Subject: a\n\n", content(0));
+        assertEquals("Batch truncated: only the first 1 emails are processed", items.get(1).error());
+    }
+
+    @Test
+    void doesNotReportTruncationWhenTheLimitIsReachedExactly() throws Exception {
+        read(3, 1024, file("inbox.mbox", MBOX));
+
+        assertEquals(3, items.size());
+        assertNull(items.get(2).error());
+    }
+
+    private void read(int maxItems, long maxItemSize, MultipartFile... files) throws Exception {
+        new BatchItemReader(maxItems, maxItemSize, 1024 * 1024, null).read(List.of(files), items::add);
+    }
+
+    private List<String> names() {
+        return items.stream().map(BatchItem::name).toList();
+    }
+
+    private String content(int item) throws IOException {
+        return new String(items.get(item).content().toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static MultipartFile file(String name, String content) {
+        return new MockMultipartFile("files", name, null, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MultipartFile zip(String name, String... entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (String entry : entries) {
+                zip.putNextEntry(new ZipEntry(entry));
+                zip.write(("Subject: " + entry + "\n\n").getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return new MockMultipartFile("files", name, null, out.toByteArray());
+    }
+}
@@ -0,0 +1,107 @@
+package com.subhajit.email.classification.benchmark;
+
+import com.subhajit.email.classification.benchmark.EmailCorpus.AttachmentType;
+import com.subhajit.email.classification.benchmark.EmailCorpus.Size;
+import com.subhajit.email.classification.benchmark.EmailCorpus.Spec;
+import com.subhajit.email.classification.configuration.InstrumentationProperties;
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.metrics.PipelineMetrics;
+import com.subhajit.email.classification.model.EmailAttachment;
+import com.subhajit.email.classification.model.ParsedEmail;
+import com.subhajit.email.classification.util.EmailParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmailCorpusTest {
+
+    // One attachment in the email and in each of its two nested forwarded messages, outermost first
+    private static final Spec NESTED = new Spec(Size.SMALL, 2, List.of(AttachmentType.CSV, AttachmentType.PDF), 7);
+    private static final List<String> NESTED_ATTACHMENTS =
+            List.of("attachment-2-0.csv", "attachment-1-0.pdf", "attachment-0-0.csv");
+
+    // Set up the way EmailParserBenchmark parses the corpus
+    private final EmailParser emailParser = new EmailParser(new ParserProperties(),
+            new PipelineMetrics(new SimpleMeterRegistry(), new InstrumentationProperties()));
+
+    @Test
+    void generatesTheSameBytesForTheSameSpec() {
+        assertArrayEquals(EmailCorpus.eml(NESTED), EmailCorpus.eml(NESTED));
+        assertArrayEquals(EmailCorpus.msg(NESTED), EmailCorpus.msg(NESTED));
+
+        Spec otherSeed = new Spec(NESTED.size(), NESTED.depth(), NESTED.mix(), 8);
+        assertFalse(Arrays.equals(EmailCorpus.eml(NESTED), EmailCorpus.eml(otherSeed)));
+    }
+
+    @Test
+    void generatesEmlWithTheAttachmentsAndForwardedMessagesOfTheSpec() {
+        try (ParsedEmail parsed = parse("corpus.eml", EmailCorpus.eml(NESTED))) {
+            assertEquals("Agent Bank 2 <agent2@example.com>", parsed.getFrom());
+            assertTrue(parsed.getSubject().startsWith("Payment notice - Deal Name: Facility "), parsed.getSubject());
+            assertEquals(NESTED_ATTACHMENTS, names(parsed));
+            assertEquals(2, forwardedMessages(parsed.getBody()));
+            assertTrue(parsed.getBody().length() >= 3 * Size.SMALL.bodyKb() * 1024, "body too short");
+        }
+    }
+
+    @Test
+    void generatesMsgWithTheAttachmentsAndForwardedMessagesOfTheSpec() {
+        try (ParsedEmail parsed = parse("corpus.msg", EmailCorpus.msg(NESTED))) {
+            assertEquals("Agent Bank 2", parsed.getFrom());
+            assertEquals(NESTED_ATTACHMENTS, names(parsed));
+            assertEquals(2, forwardedMessages(parsed.getBody()));
+        }
+    }
+
+    @Test
+    void cyclesThroughTheMixForEachProfile() {
+        Spec spec = new Spec(Size.MEDIUM, 0, List.of(AttachmentType.values()), 1);
+
+        try (ParsedEmail parsed = parse("corpus.eml", EmailCorpus.eml(spec))) {
+            assertEquals(List.of("attachment-0-0.pdf", "attachment-0-1.xlsx", "attachment-0-2.xls"), names(parsed));
+        }
+        Spec none = new Spec(Size.MEDIUM, 0, List.of(), 1);
+        try (ParsedEmail parsed = parse("corpus.eml", EmailCorpus.eml(none))) {
+            assertTrue(parsed.getAttachments().isEmpty());
+        }
+    }
+
+    @Test
+    void generatesCsvOfTheRequestedSize() {
+        String csv = new String(EmailCorpus.attachment(AttachmentType.CSV, 4, new Random(1)),
+                StandardCharsets.UTF_8);
+
+        assertTrue(csv.startsWith("loan_number,deal_name,value_date,currency,amount,comment\n"), csv);
+        assertTrue(csv.length() >= 4 * 1024 && csv.length() < 4 * 1024 + 200, "length " + csv.length());
+    }
+
+    @Test
+    void parsesAttachmentMixes() {
+        assertEquals(List.of(AttachmentType.values()), AttachmentType.parseMix("all"));
+        assertEquals(List.of(), AttachmentType.parseMix("none"));
+        assertEquals(List.of(), AttachmentType.parseMix(null));
+        assertEquals(List.of(AttachmentType.PDF, AttachmentType.CSV), AttachmentType.parseMix("pdf, CSV"));
+    }
+
+    private ParsedEmail parse(String fileName, byte[] email) {
+        return emailParser.parseEmail(fileName, new ByteArrayInputStream(email));
+    }
+
+    private static List<String> names(ParsedEmail parsed) {
+        return parsed.getAttachments().stream().map(EmailAttachment::getName).toList();
+    }
+
+    private static int forwardedMessages(String body) {
+        return body.split("---------- Forwarded message ----------", -1).length - 1;
+    }
+}
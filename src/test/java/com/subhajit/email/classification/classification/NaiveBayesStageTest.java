@@ -0,0 +1,115 @@
+package com.subhajit.email.classification.classification;
+
+import com.subhajit.email.classification.configuration.ClassifierProperties;
+import com.subhajit.email.classification.model.EmailClassification;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NaiveBayesStageTest {
+
+    private static final ClassificationInput FEE_EMAIL = new ClassificationInput("Amendment fee due",
+            "Please find the amendment fee for the facility attached.", null);
+    private static final ClassificationInput TRANSFER_EMAIL = new ClassificationInput("Assignment notice",
+            "The assignee takes over the transfer of commitment from the assignor.", null);
+
+    @Test
+    void seedKeywordsDoNotActivateTheScorer() {
+        NaiveBayesStage stage = new NaiveBayesStage(properties(1, 1));
+
+        assertTrue(stage.classify(FEE_EMAIL).isEmpty());
+    }
+
+    @Test
+    void untestedGuessesStayBelowTheThreshold() {
+        NaiveBayesStage stage = new NaiveBayesStage(properties(2, 1));
+        stage.learn(FEE_EMAIL, llmAnswer("Closing Notice", "Amendment Fees", 0.95), "llm");
+        stage.learn(TRANSFER_EMAIL, llmAnswer("AU Transfer", null, 0.95), "llm");
+
+        Optional<EmailClassification> answer = stage.classify(FEE_EMAIL);
+
+        assertTrue(answer.isPresent());
+        assertEquals("Closing Notice", answer.get().getRequestType());
+        assertTrue(answer.get().getConfidence() < 0.8, "confidence " + answer.get().getConfidence());
+    }
+
+    @Test
+    void confidenceGrowsAsTheLlmConfirmsGuesses() {
+        NaiveBayesStage stage = new NaiveBayesStage(properties(2, 1));
+        for (int i = 0; i < 20; i++) {
+            stage.learn(FEE_EMAIL, llmAnswer("Closing Notice", "Amendment Fees", 0.95), "llm");
+            stage.learn(TRANSFER_EMAIL, llmAnswer("AU Transfer", null, 0.95), "llm");
+        }
+
+        Optional<EmailClassification> answer = stage.classify(TRANSFER_EMAIL);
+
+        assertTrue(answer.isPresent());
+        assertEquals("AU Transfer", answer.get().getRequestType());
+        assertTrue(answer.get().getConfidence() >= 0.8, "confidence " + answer.get().getConfidence());
+    }
+
+    @Test
+    void wrongGuessesKeepConfidenceLow() {
+        NaiveBayesStage stage = new NaiveBayesStage(properties(2, 1));
+        // The words of the fee email keep being labelled as a transfer, against what the seeds suggest
+        for (int i = 0; i < 3; i++) {
+            stage.learn(FEE_EMAIL, llmAnswer("AU Transfer", null, 0.95), "llm");
+        }
+
+        Optional<EmailClassification> answer = stage.classify(FEE_EMAIL);
+
+        assertTrue(answer.isPresent());
+        assertTrue(answer.get().getConfidence() < 0.8, "confidence " + answer.get().getConfidence());
+    }
+
+    @Test
+    void ignoresUnconfidentUnknownAndStubAnswers() {
+        ClassifierProperties properties = properties(1, 1);
+        NaiveBayesStage stage = new NaiveBayesStage(properties);
+
+        stage.learn(FEE_EMAIL, llmAnswer("Closing Notice", "Amendment Fees", 0.6), "llm");
+        stage.learn(FEE_EMAIL, llmAnswer("Unclassified", null, 1.0), "llm");
+        stage.learn(FEE_EMAIL, llmAnswer("Closing Notice", "Amendment Fees", 1.0), "keywords");
+        properties.getLlm().setProvider("stub");
+        stage.learn(FEE_EMAIL, llmAnswer("Closing Notice", "Amendment Fees", 1.0), "llm");
+
+        assertTrue(stage.classify(FEE_EMAIL).isEmpty());
+    }
+
+    @Test
+    void requiresDocumentsOfThePredictedClass() {
+        NaiveBayesStage stage = new NaiveBayesStage(properties(1, 2));
+        stage.learn(TRANSFER_EMAIL, llmAnswer("AU Transfer", null, 0.95), "llm");
+        stage.learn(TRANSFER_EMAIL, llmAnswer("AU Transfer", null, 0.95), "llm");
+
+        assertFalse(stage.classify(FEE_EMAIL).isPresent());
+        assertTrue(stage.classify(TRANSFER_EMAIL).isPresent());
+    }
+
+    private static ClassifierProperties properties(int minTrainingDocuments, int minClassDocuments) {
+        ClassifierProperties properties = new ClassifierProperties();
+        properties.getRules().add(rule("AU Transfer", null, "au transfer", "assignment", "assignee"));
+        properties.getRules().add(rule("Closing Notice", "Amendment Fees", "amendment fee", "amendment"));
+        properties.getRules().add(rule("Adjustment", null, "adjustment", "correction"));
+        properties.getBayes().setMinTrainingDocuments(minTrainingDocuments);
+        properties.getBayes().setMinClassDocuments(minClassDocuments);
+        return properties;
+    }
+
+    private static ClassifierProperties.Rule rule(String requestType, String subRequestType, String... keywords) {
+        ClassifierProperties.Rule rule = new ClassifierProperties.Rule();
+        rule.setRequestType(requestType);
+        rule.setSubRequestType(subRequestType);
+        rule.setKeywords(List.of(keywords));
+        return rule;
+    }
+
+    private static EmailClassification llmAnswer(String requestType, String subRequestType, double confidence) {
+        return new EmailClassification(requestType, subRequestType, confidence, "model answer");
+    }
+}
@@ -0,0 +1,129 @@
+package com.subhajit.email.classification.compaction;
+
+import com.subhajit.email.classification.configuration.CompactionProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextCompactorTest {
+
+    private final TextCompactor compactor = new TextCompactor(new CompactionProperties());
+
+    @Test
+    void stripsQuotedHistoryAfterTheReplyHeader() {
+        String text = """
+                Please book the principal repayment for Friday as discussed.
+
+                On Mon, 3 Mar 2025 at 10:00, Jane Doe <jane@example.com> wrote:
+                > Can you confirm the repayment date?
+                > Thanks""";
+
+        CompactionResult result = compactor.compact(text);
+
+        assertEquals("Please book the principal repayment for Friday as discussed.", result.text());
+        assertTrue(result.quotedChars() > 0);
+    }
+
+    @Test
+    void stripsSignatureBelowAClosing() {
+        String text = """
+                Please book the principal repayment for Friday.
+
+                Kind regards,
+                Jane Doe
+                Vice President, Loan Operations
+                Example Bank N.A.
+                +1 212 555 0100
+                jane.doe@example.com""";
+
+        CompactionResult result = compactor.compact(text);
+
+        assertEquals("Please book the principal repayment for Friday.", result.text());
+        assertTrue(result.signatureChars() > 0);
+    }
+
+    @Test
+    void keepsSentencesBelowAClosing() {
+        String text = """
+                Please book the principal repayment for Friday.
+
+                Thanks!
+                Could you also confirm the value date of the second tranche?
+                The borrower needs it before the end of the week.""";
+
+        CompactionResult result = compactor.compact(text);
+
+        assertEquals(text, result.text());
+        assertEquals(0, result.signatureChars());
+    }
+
+    @Test
+    void stripsEverythingBelowTheSignatureDelimiter() {
+        String text = "Please book the repayment.\n-- \nJane\nsent with care from the operations desk today";
+
+        assertEquals("Please book the repayment.", compactor.compact(text).text());
+    }
+
+    @Test
+    void keepsLongSignatureBlocks() {
+        StringBuilder text = new StringBuilder("Please book the repayment.\nBest,\nJane");
+        for (int i = 0; i < 10; i++) {
+            text.append("\nDesk ").append(i);
+        }
+
+        assertEquals(text.toString(), compactor.compact(text.toString()).text());
+    }
+
+    @Test
+    void stripsDisclaimerParagraphs() {
+        String text = """
+                Please book the repayment.
+
+                This email and any attachments are confidential and intended solely for the addressee.
+                If you received it in error, delete it.
+
+                Jane""";
+
+        CompactionResult result = compactor.compact(text);
+
+        assertEquals("Please book the repayment.\n\nJane", result.text());
+        assertTrue(result.disclaimerChars() > 0);
+    }
+
+    @Test
+    void dropsRepeatedLongLines() {
+        String boilerplate = "Example Bank loan operations, 200 Park Avenue, New York";
+        String text = boilerplate + "\nPlease book the repayment.\n" + boilerplate.toUpperCase();
+
+        CompactionResult result = compactor.compact(text);
+
+        assertEquals(boilerplate + "\nPlease book the repayment.", result.text());
+        assertTrue(result.repeatedChars() > 0);
+    }
+
+    @Test
+    void keepsDistinctLinesWithTheSameHash() {
+        // "a~" and "b_" have the same polynomial hash, so the lines only differ in content
+        String prefix = "Reference for the second tranche of the facility ";
+        String text = prefix + "a~\n" + prefix + "b_";
+
+        assertEquals(text, compactor.compact(text).text());
+    }
+
+    @Test
+    void publishesCharactersSaved() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        compactor.bindTo(registry);
+
+        compactor.compact("Please book the repayment for Friday as discussed with the desk.\n\n"
+                + "On Mon, 3 Mar 2025 at 10:00, Jane <jane@example.com> wrote:\n> Earlier message");
+
+        assertEquals(1, registry.get("email.compaction.texts").functionCounter().count(), 0);
+        assertTrue(registry.get("email.compaction.chars.saved").tag("rule", "quoted").functionCounter().count() > 0);
+        assertEquals(0, registry.get("email.compaction.chars.saved").tag("rule", "signature").functionCounter()
+                .count(), 0);
+    }
+}
@@ -0,0 +1,162 @@
+package com.subhajit.email.classification.duplicate;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DuplicateIndexTest {
+
+    private static final int BANDS = 16;
+    private static final int ROWS = 4;
+    private static final double THRESHOLD = 0.85;
+
+    private final Random random = new Random(7);
+
+    @Test
+    void findsExactDuplicateByContentHash() {
+        DuplicateIndex index = index(100);
+        String hash = hash(1);
+        int[] signature = randomSignature();
+        assertTrue(index.add(hash, signature, Instant.now()));
+
+        DuplicateCheckResult result = index.find(hash, randomSignature(), THRESHOLD);
+
+        assertTrue(result.exact());
+        assertEquals(hash, result.matchedHash());
+        assertFalse(index.add(hash, signature, Instant.now()));
+    }
+
+    @Test
+    void findsNearDuplicateSharingABand() {
+        DuplicateIndex index = index(100);
+        int[] original = randomSignature();
+        index.add(hash(1), original, Instant.now());
+        index.add(hash(2), randomSignature(), Instant.now());
+
+        int[] edited = original.clone();
+        for (int i = 0; i < 6; i++) {
+            edited[i * 10] = random.nextInt();
+        }
+        DuplicateCheckResult result = index.find(hash(3), edited, THRESHOLD);
+
+        assertTrue(result.duplicate());
+        assertFalse(result.exact());
+        assertEquals(hash(1), result.matchedHash());
+        assertEquals(58.0 / 64, result.similarity(), 1e-9);
+    }
+
+    @Test
+    void ignoresDissimilarEmails() {
+        DuplicateIndex index = index(100);
+        for (int i = 0; i < 50; i++) {
+            index.add(hash(i), randomSignature(), Instant.now());
+        }
+
+        DuplicateCheckResult result = index.find(hash(99), randomSignature(), THRESHOLD);
+
+        assertFalse(result.duplicate());
+    }
+
+    @Test
+    void evictsOldestWhenFullAndReusesTheirSlots() {
+        DuplicateIndex index = index(3);
+        int[][] signatures = new int[6][];
+        for (int i = 0; i < 6; i++) {
+            signatures[i] = randomSignature();
+            index.add(hash(i), signatures[i], Instant.now());
+        }
+
+        assertEquals(3, index.size());
+        for (int i = 0; i < 3; i++) {
+            assertFalse(index.find(hash(i), signatures[i], THRESHOLD).duplicate(), "evicted entry " + i);
+        }
+        for (int i = 3; i < 6; i++) {
+            assertTrue(index.find(hash(i), signatures[i], THRESHOLD).exact(), "kept entry " + i);
+            assertEquals(hash(i), index.find(hash(100 + i), signatures[i], THRESHOLD).matchedHash());
+        }
+    }
+
+    @Test
+    void bucketChainsSkipEvictedAndReusedSlots() {
+        DuplicateIndex index = index(4);
+        // All entries share their first band, so they form one chain in that bucket
+        int[] base = randomSignature();
+        for (int i = 0; i < 10; i++) {
+            int[] signature = randomSignature();
+            System.arraycopy(base, 0, signature, 0, ROWS);
+            index.add(hash(i), signature, Instant.now());
+        }
+
+        int[] probe = randomSignature();
+        System.arraycopy(base, 0, probe, 0, ROWS);
+        DuplicateCheckResult result = index.find(hash(50), probe, 0.05);
+
+        assertTrue(result.duplicate());
+        int matched = Integer.parseInt(result.matchedHash().substring(56), 16);
+        assertTrue(matched >= 6, "matched an evicted entry: " + matched);
+    }
+
+    @Test
+    void evictsEntriesOutsideTheWindow() {
+        DuplicateIndex index = index(100);
+        Instant start = Instant.parse("2025-01-01T00:00:00Z");
+        int[] old = randomSignature();
+        index.add(hash(1), old, start);
+        index.add(hash(2), randomSignature(), start.plusSeconds(3600));
+
+        assertEquals(1, index.evictOlderThan(start.plusSeconds(60)));
+        assertEquals(0, index.evictOlderThan(start.plusSeconds(60)));
+        assertEquals(1, index.size());
+        assertFalse(index.find(hash(3), old, THRESHOLD).duplicate());
+        assertTrue(index.add(hash(1), old, start.plusSeconds(7200)));
+    }
+
+    @Test
+    void followsOnlyTheNewestEntriesOfACrowdedBucket() {
+        int[] probe = randomSignature();
+        // Shares the first band and one value of every other band, so it is only reachable through the first bucket
+        int[] target = randomSignature();
+        for (int i = 0; i < BANDS * ROWS; i++) {
+            if (i < ROWS || i % ROWS == 0) {
+                target[i] = probe[i];
+            }
+        }
+        DuplicateIndex capped = new DuplicateIndex(BANDS, ROWS, 100, 3, 100);
+        DuplicateIndex uncapped = index(100);
+        for (DuplicateIndex index : new DuplicateIndex[]{capped, uncapped}) {
+            index.add(hash(1), target, Instant.now());
+            for (int i = 2; i < 7; i++) {
+                int[] filler = randomSignature();
+                System.arraycopy(probe, 0, filler, 0, ROWS);
+                index.add(hash(i), filler, Instant.now());
+            }
+        }
+
+        assertFalse(capped.find(hash(50), probe, 0.2).duplicate());
+        DuplicateCheckResult result = uncapped.find(hash(50), probe, 0.2);
+        assertTrue(result.duplicate());
+        assertEquals(hash(1), result.matchedHash());
+    }
+
+    private static DuplicateIndex index(int maxEntries) {
+        return new DuplicateIndex(BANDS, ROWS, maxEntries, 64, 256);
+    }
+
+    private int[] randomSignature() {
+        int[] signature = new int[BANDS * ROWS];
+        for (int i = 0; i < signature.length; i++) {
+            signature[i] = random.nextInt();
+        }
+        return signature;
+    }
+
+    private static String hash(int n) {
+        return "ab".repeat(28) + HexFormat.of().toHexDigits(n);
+    }
+}
@@ -0,0 +1,194 @@
+package com.subhajit.email.classification.extraction;
+
+import com.subhajit.email.classification.cache.ExtractionCache;
+import com.subhajit.email.classification.configuration.CacheProperties;
+import com.subhajit.email.classification.configuration.ExtractionProperties;
+import com.subhajit.email.classification.configuration.InstrumentationProperties;
+import com.subhajit.email.classification.configuration.OcrProperties;
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.metrics.PipelineMetrics;
+import com.subhajit.email.classification.model.EmailAttachment;
+import com.subhajit.email.classification.parser.AttachmentSource;
+import com.subhajit.email.classification.parser.ExtractionResult;
+import com.subhajit.email.classification.util.AttachmentParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AttachmentExtractionEngineTest {
+
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics(new SimpleMeterRegistry(),
+            new InstrumentationProperties());
+    private final RecordingParser parser = new RecordingParser(pipelineMetrics);
+    private AttachmentExtractionEngine engine;
+
+    @AfterEach
+    void shutdown() {
+        parser.release.countDown();
+        if (engine != null) {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void returnsResultsInInputOrder() {
+        engine = engine(properties(4, 8));
+
+        List<String> results = engine.extract(attachments("slow-1", "a", "slow-2", "b"));
+
+        assertEquals(List.of("text of slow-1", "text of a", "text of slow-2", "text of b"), results);
+    }
+
+    @Test
+    void reportsAFailureOnlyForItsAttachment() {
+        engine = engine(properties(2, 8));
+
+        List<String> results = engine.extract(attachments("a", "fail", "b"));
+
+        assertEquals("text of a", results.get(0));
+        assertEquals("Error extracting attachment from fail: broken", results.get(1));
+        assertEquals("text of b", results.get(2));
+    }
+
+    @Test
+    void rejectsAttachmentsAtAFullQueue() throws Exception {
+        ExtractionProperties properties = properties(1, 1);
+        properties.setQueueTimeout(Duration.ofMillis(200));
+        engine = engine(properties);
+        startBlocking();
+
+        // "block" holds the only thread and "queued" fills the queue
+        List<String> results = engine.extract(attachments("queued", "rejected"));
+
+        assertEquals("Error extracting attachment from rejected: busy, try again later", results.get(1));
+        assertFalse(parser.parsed.contains("rejected"));
+    }
+
+    @Test
+    void abandonsAnAttachmentThatWaitsTooLongInTheQueue() throws Exception {
+        ExtractionProperties properties = properties(1, 1);
+        properties.setQueueTimeout(Duration.ofMillis(100));
+        engine = engine(properties);
+        Thread blocking = startBlocking();
+
+        List<String> results = engine.extract(attachments("queued"));
+        assertEquals("Error extracting attachment from queued: timed out waiting in queue", results.get(0));
+
+        // The abandoned task left the queue, so the next attachment is queued rather than rejected
+        List<String> next = engine.extract(attachments("next"));
+        assertEquals("Error extracting attachment from next: timed out waiting in queue", next.get(0));
+
+        parser.release.countDown();
+        blocking.join(5_000);
+        Thread.sleep(100);
+        assertEquals(List.of("block"), parser.parsed);
+    }
+
+    @Test
+    void timesOutAnAttachmentThatTakesTooLong() {
+        ExtractionProperties properties = properties(1, 1);
+        properties.setAttachmentTimeout(Duration.ofMillis(100));
+        engine = engine(properties);
+
+        List<String> results = engine.extract(attachments("block"));
+
+        assertEquals("Error extracting attachment from block: timed out extracting", results.get(0));
+    }
+
+    @Test
+    void cachesOnlyCompleteResults() {
+        engine = engine(properties(2, 8), true);
+
+        engine.extract(attachments("a", "partial"));
+        List<String> results = engine.extract(attachments("a", "partial"));
+
+        assertEquals(List.of("text of a", "text of partial"), results);
+        assertEquals(List.of("a", "partial", "partial"), parser.parsed.stream().sorted().toList());
+    }
+
+    /**
+     * Extracts "block" on another thread and returns once it occupies a worker.
+     */
+    private Thread startBlocking() throws InterruptedException {
+        Thread thread = new Thread(() -> engine.extract(attachments("block")));
+        thread.start();
+        assertTrue(parser.started.await(5, TimeUnit.SECONDS));
+        return thread;
+    }
+
+    private AttachmentExtractionEngine engine(ExtractionProperties properties) {
+        return engine(properties, false);
+    }
+
+    private AttachmentExtractionEngine engine(ExtractionProperties properties, boolean cached) {
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.setEnabled(cached);
+        ExtractionCache cache = new ExtractionCache(cacheProperties, new ParserProperties(), new OcrProperties());
+        return new AttachmentExtractionEngine(parser, cache, properties, pipelineMetrics);
+    }
+
+    private static ExtractionProperties properties(int threads, int queueCapacity) {
+        ExtractionProperties properties = new ExtractionProperties();
+        properties.getConcurrency().setText(threads);
+        properties.setQueueCapacity(queueCapacity);
+        properties.setAttachmentTimeout(Duration.ofSeconds(5));
+        properties.setQueueTimeout(Duration.ofSeconds(5));
+        return properties;
+    }
+
+    private static List<EmailAttachment> attachments(String... names) {
+        List<EmailAttachment> attachments = new ArrayList<>();
+        for (String name : names) {
+            attachments.add(EmailAttachment.ofBytes(name, name.getBytes(StandardCharsets.UTF_8)));
+        }
+        return attachments;
+    }
+
+    /**
+     * Treats every attachment as CSV and answers by name: "block" waits for {@link #release}, names starting
+     * with "slow" take a while, "fail" throws, "partial" returns degraded text and anything else returns at once.
+     */
+    private static class RecordingParser extends AttachmentParser {
+
+        private final List<String> parsed = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        RecordingParser(PipelineMetrics pipelineMetrics) {
+            super(null, pipelineMetrics);
+        }
+
+        @Override
+        public String detectMimeType(AttachmentSource source) {
+            return "text/csv";
+        }
+
+        @Override
+        public ExtractionResult parseAttachment(AttachmentSource source, String mimeType) throws Exception {
+            String name = source.getName();
+            parsed.add(name);
+            if (name.equals("block")) {
+                started.countDown();
+                release.await();
+            } else if (name.startsWith("slow")) {
+                Thread.sleep(100);
+            } else if (name.equals("fail")) {
+                throw new IllegalStateException("broken");
+            }
+            ExtractionResult result = ExtractionResult.of("text of " + name);
+            return name.equals("partial") ? result.asDegraded() : result;
+        }
+    }
+}
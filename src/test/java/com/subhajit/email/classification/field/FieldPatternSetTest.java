@@ -0,0 +1,109 @@
+package com.subhajit.email.classification.field;
+
+import com.subhajit.email.classification.configuration.FieldExtractionProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FieldPatternSetTest {
+
+    private static final int AMOUNT = 0;
+    private static final int ACCOUNT = 1;
+    private static final int DEAL = 2;
+
+    private final FieldPatternSet patterns = new FieldPatternSet(List.of(
+            field("Amount", "(?:USD\\s?)?\\d+(?:\\.\\d{2})?", false, "amount", "total amount"),
+            field("Account Number", "[A-Z0-9][A-Z0-9-]{3,33}", true, "account number", "account"),
+            field("Deal Name", "[A-Za-z0-9][^\\r\\n;]{1,80}", true, "deal name", "deal")), 40);
+
+    @Test
+    void findsValuesAfterLabelsCaseInsensitively() {
+        List<String> values = scan("Please pay the Total Amount: USD 1250.00 to ACCOUNT NUMBER: AB-1234 today.");
+
+        assertEquals(List.of("0=USD 1250.00", "0=USD 1250.00", "1=AB-1234"), values);
+    }
+
+    @Test
+    void requiresWholeWordLabels() {
+        // "amounts" and "accounting" contain labels but are different words
+        assertEquals(List.of(), scan("The amounts 100 are in accounting: X-99999."));
+    }
+
+    @Test
+    void reportsBothOverlappingLabels() {
+        // "total amount" and its suffix "amount" end at the same position; both announce the same value
+        assertEquals(List.of("0=42", "0=42"), scan("total amount 42"));
+    }
+
+    @Test
+    void requiredSeparatorKeepsProseOut() {
+        assertEquals(List.of(), scan("This deal closes next week"));
+        assertEquals(List.of("2=Harbour Term Loan B"), scan("Deal: Harbour Term Loan B; see attached"));
+    }
+
+    @Test
+    void valuePatternOnlyLooksWithinTheWindow() {
+        assertEquals(List.of(), scan("amount" + " ".repeat(60) + "500"));
+    }
+
+    @Test
+    void skipsFieldsTheListenerNoLongerWants() {
+        List<String> values = new ArrayList<>();
+        patterns.scan("amount 1 amount 2 account: ACCT-1", new FieldPatternSet.ValueListener() {
+            @Override
+            public boolean wants(int field) {
+                return field != AMOUNT || values.isEmpty();
+            }
+
+            @Override
+            public void onValue(int field, CharSequence text, int start, int end) {
+                values.add(field + "=" + text.subSequence(start, end));
+            }
+        });
+
+        assertEquals(List.of("0=1", ACCOUNT + "=ACCT-1"), values);
+    }
+
+    @Test
+    void matchesLabelsWithNonAsciiCharacters() {
+        FieldPatternSet accented = new FieldPatternSet(List.of(
+                field("Montant", "\\d+", false, "montant dû")), 20);
+        List<String> values = new ArrayList<>();
+        accented.scan("Le MONTANT DÛ: 300", listener(values));
+
+        assertEquals(List.of("0=300"), values);
+    }
+
+    private List<String> scan(String text) {
+        List<String> values = new ArrayList<>();
+        patterns.scan(text, listener(values));
+        return values;
+    }
+
+    private static FieldPatternSet.ValueListener listener(List<String> values) {
+        return new FieldPatternSet.ValueListener() {
+            @Override
+            public boolean wants(int field) {
+                return true;
+            }
+
+            @Override
+            public void onValue(int field, CharSequence text, int start, int end) {
+                values.add(field + "=" + text.subSequence(start, end));
+            }
+        };
+    }
+
+    private static FieldExtractionProperties.Field field(String name, String pattern, boolean requireSeparator,
+                                                         String... labels) {
+        FieldExtractionProperties.Field field = new FieldExtractionProperties.Field();
+        field.setName(name);
+        field.setPattern(pattern);
+        field.setRequireSeparator(requireSeparator);
+        field.setLabels(List.of(labels));
+        return field;
+    }
+}
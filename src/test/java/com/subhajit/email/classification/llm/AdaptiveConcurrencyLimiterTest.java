@@ -0,0 +1,104 @@
+package com.subhajit.email.classification.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void waitsWhenTheLimitIsReached() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 8);
+
+        assertTrue(limiter.acquire(0, TimeUnit.MILLISECONDS));
+        assertTrue(limiter.acquire(0, TimeUnit.MILLISECONDS));
+        assertFalse(limiter.acquire(20, TimeUnit.MILLISECONDS));
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    void releasingAPermitWakesAWaiter() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 8);
+        assertTrue(limiter.acquire(0, TimeUnit.MILLISECONDS));
+
+        CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limiter.acquire(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(waiter.isDone());
+        limiter.release();
+
+        assertTrue(waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void growsByAboutOnePerRoundOfFullyUsedCalls() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 8);
+        assertTrue(limiter.acquire(0, TimeUnit.MILLISECONDS));
+        assertTrue(limiter.acquire(0, TimeUnit.MILLISECONDS));
+
+        // Under steady load every finished call is replaced at once, so each success sees the limit fully used
+        for (int i = 0; i < 2; i++) {
+            limiter.onSuccess();
+            assertTrue(limiter.acquire(0, TimeUnit.MILLISECONDS));
+        }
+        assertEquals(2, limiter.getLimit());
+        for (int i = 0; i < 2; i++) {
+            limiter.onSuccess();
+            assertTrue(limiter.acquire(0, TimeUnit.MILLISECONDS));
+        }
+
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    void doesNotGrowWhenTheLimitIsNotUsed() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 8);
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limiter.acquire(0, TimeUnit.MILLISECONDS));
+            limiter.onSuccess();
+        }
+
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void halvesOnThrottlingDownToTheMinimum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 3, 16);
+
+        limiter.onThrottled();
+        assertEquals(4, limiter.getLimit());
+        limiter.onThrottled();
+        assertEquals(3, limiter.getLimit());
+        assertEquals(2, limiter.getThrottled());
+    }
+
+    @Test
+    void clampsTheInitialLimit() {
+        assertEquals(4, new AdaptiveConcurrencyLimiter(10, 1, 4).getLimit());
+        assertEquals(2, new AdaptiveConcurrencyLimiter(0, 2, 4).getLimit());
+    }
+
+    @Test
+    void failureReleasesWithoutChangingTheLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 8);
+        assertTrue(limiter.acquire(0, TimeUnit.MILLISECONDS));
+
+        limiter.onFailure();
+
+        assertEquals(1, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+}
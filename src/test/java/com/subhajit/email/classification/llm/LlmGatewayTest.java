@@ -0,0 +1,84 @@
+package com.subhajit.email.classification.llm;
+
+import com.subhajit.email.classification.classification.ClassificationInput;
+import com.subhajit.email.classification.configuration.ClassifierProperties;
+import com.subhajit.email.classification.model.EmailClassification;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LlmGatewayTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<String> prompts = new ArrayList<>();
+    private LlmGateway gateway;
+
+    @AfterEach
+    void stop() {
+        gateway.stop();
+    }
+
+    @Test
+    void countsRequestsCallsRetriesAndBatchedEmails() throws Exception {
+        ClassifierProperties properties = new ClassifierProperties();
+        properties.getLlm().setBatchWindow(Duration.ofMillis(200));
+        properties.getLlm().setInitialBackoff(Duration.ofMillis(1));
+        gateway = new LlmGateway(properties, this::answer);
+        gateway.bindTo(registry);
+        List<ClassifierProperties.Rule> allowed = List.of(rule("Payment"), rule("Loan"));
+
+        // Queued before the batcher starts, so the identical request is still in flight and shares the first
+        CompletableFuture<EmailClassification> first = gateway.submit(input("Refund please"), allowed);
+        CompletableFuture<EmailClassification> same = gateway.submit(input("Refund please"), allowed);
+        CompletableFuture<EmailClassification> other = gateway.submit(input("Loan terms"), allowed);
+        gateway.start();
+
+        assertEquals("Payment", first.get(5, TimeUnit.SECONDS).getRequestType());
+        assertEquals("Payment", same.get(5, TimeUnit.SECONDS).getRequestType());
+        assertEquals("Loan", other.get(5, TimeUnit.SECONDS).getRequestType());
+        // One batch of two emails, throttled once and then retried
+        assertEquals(2, prompts.size());
+        assertEquals(prompts.get(0), prompts.get(1));
+        assertEquals(3, counter("email.llm.requests", "outcome", "requested"));
+        assertEquals(1, counter("email.llm.requests", "outcome", "coalesced"));
+        assertEquals(0, counter("email.llm.requests", "outcome", "failed"));
+        assertEquals(1, counter("email.llm.calls", "attempt", "first"));
+        assertEquals(1, counter("email.llm.calls", "attempt", "retry"));
+        assertEquals(1, counter("email.llm.calls", "attempt", "throttled"));
+        assertEquals(2, registry.get("email.llm.batched.emails").functionCounter().count());
+        assertTrue(counter("email.llm.tokens", "kind", "sent") > 0);
+        assertEquals(0, registry.get("email.llm.queued").gauge().value());
+        assertEquals(0, registry.get("email.llm.in.flight").gauge().value());
+    }
+
+    private synchronized String answer(String prompt) throws LlmTransportException {
+        prompts.add(prompt);
+        if (prompts.size() == 1) {
+            throw LlmTransportException.forStatus(429, "Too many requests", null);
+        }
+        return "[{\"id\": 1, \"requestType\": \"Payment\"}, {\"id\": 2, \"requestType\": \"Loan\"}]";
+    }
+
+    private double counter(String name, String tag, String value) {
+        return registry.get(name).tag(tag, value).functionCounter().count();
+    }
+
+    private static ClassificationInput input(String subject) {
+        return new ClassificationInput(subject, "Body of " + subject, List.of());
+    }
+
+    private static ClassifierProperties.Rule rule(String requestType) {
+        ClassifierProperties.Rule rule = new ClassifierProperties.Rule();
+        rule.setRequestType(requestType);
+        return rule;
+    }
+}
@@ -0,0 +1,268 @@
+package com.subhajit.email.classification.mailbox;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.user.GreenMailUser;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.subhajit.email.classification.configuration.MailboxProperties;
+import com.subhajit.email.classification.entity.MailboxCheckpoint;
+import com.subhajit.email.classification.model.ParsedEmailResponse;
+import com.subhajit.email.classification.repository.MailboxCheckpointRepository;
+import com.subhajit.email.classification.service.EmailProcessingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class MailboxPollerTest {
+
+    private static final String ADDRESS = "user@localhost";
+    private static final String MAILBOX = "user@localhost/INBOX";
+
+    @RegisterExtension
+    static final GreenMailExtension GREEN_MAIL = new GreenMailExtension(ServerSetupTest.IMAP);
+
+    private final CheckpointStore checkpoints = new CheckpointStore();
+    private final RecordingService service = new RecordingService();
+    private GreenMailUser user;
+
+    @BeforeEach
+    void createUser() {
+        user = GREEN_MAIL.setUser(ADDRESS, "user", "password");
+    }
+
+    @Test
+    void advancesTheCheckpointAcrossPolls() throws Exception {
+        deliver("one", "two");
+        MailboxPoller poller = poller(properties());
+        poller.start();
+        try {
+            await(() -> lastUid() == 2);
+            deliver("three");
+            await(() -> lastUid() == 3);
+        } finally {
+            poller.stop();
+        }
+
+        assertEquals(List.of("one", "two", "three"), service.subjects);
+    }
+
+    @Test
+    void resumesFromTheCheckpointAfterARestart() throws Exception {
+        deliver("one", "two");
+        MailboxPoller first = poller(properties());
+        first.start();
+        try {
+            await(() -> lastUid() == 2);
+        } finally {
+            first.stop();
+        }
+        deliver("three");
+        service.subjects.clear();
+
+        MailboxPoller second = poller(properties());
+        second.start();
+        try {
+            await(() -> lastUid() == 3);
+        } finally {
+            second.stop();
+        }
+
+        assertEquals(List.of("three"), service.subjects);
+    }
+
+    @Test
+    void synchronizesAgainWhenUidValidityChanges() throws Exception {
+        deliver("one", "two");
+        checkpoints.stored.put(MAILBOX, new MailboxCheckpoint(MAILBOX, 42, 100, Instant.now()));
+
+        MailboxPoller poller = poller(properties());
+        poller.start();
+        try {
+            await(() -> lastUid() == 2);
+        } finally {
+            poller.stop();
+        }
+
+        assertEquals(List.of("one", "two"), service.subjects);
+        assertNotEquals(42, checkpoints.stored.get(MAILBOX).getUidValidity());
+    }
+
+    @Test
+    void keepsTheCheckpointBelowARangeThatLostItsConnection() throws Exception {
+        deliver("one", "two", "three");
+        service.dropConnectionOnce = "two";
+        MailboxPoller poller = poller(properties());
+        poller.start();
+        try {
+            await(() -> lastUid() == 3);
+        } finally {
+            poller.stop();
+        }
+
+        // "two" was read again in a later poll, and the checkpoint never passed it before that
+        assertEquals(2, Collections.frequency(service.subjects, "two"));
+        assertTrue(service.checkpointWhenRetried.get() < 2, "checkpoint " + service.checkpointWhenRetried);
+    }
+
+    @Test
+    void refusesToStartOnAnInMemoryDatabase() {
+        MailboxPoller poller = poller(properties(), "jdbc:h2:mem:testdb");
+
+        assertThrows(IllegalStateException.class, poller::start);
+    }
+
+    @Test
+    void startsOnAnInMemoryDatabaseWhenAllowed() throws Exception {
+        deliver("one");
+        MailboxProperties properties = properties();
+        properties.setAllowVolatileCheckpoints(true);
+        MailboxPoller poller = poller(properties, "jdbc:h2:mem:testdb");
+        poller.start();
+        try {
+            await(() -> lastUid() == 1);
+        } finally {
+            poller.stop();
+        }
+    }
+
+    @Test
+    void recognisesInMemoryUrls() {
+        assertTrue(MailboxPoller.isInMemory(null));
+        assertTrue(MailboxPoller.isInMemory("jdbc:h2:mem:testdb"));
+        assertTrue(MailboxPoller.isInMemory("jdbc:hsqldb:mem:test"));
+        assertFalse(MailboxPoller.isInMemory("jdbc:h2:file:./data/email-classification"));
+        assertFalse(MailboxPoller.isInMemory("jdbc:postgresql://localhost/email"));
+    }
+
+    private MailboxProperties properties() {
+        MailboxProperties properties = new MailboxProperties();
+        properties.setEnabled(true);
+        properties.setProtocol("imap");
+        properties.setPort(ServerSetupTest.IMAP.getPort());
+        properties.setUsername("user");
+        properties.setPassword("password");
+        properties.setPollInterval(Duration.ofMillis(100));
+        properties.setConnections(1);
+        properties.setFetchBatchSize(1);
+        properties.setShutdownTimeout(Duration.ofSeconds(5));
+        return properties;
+    }
+
+    private MailboxPoller poller(MailboxProperties properties) {
+        return poller(properties, "jdbc:h2:file:./build/mailbox-test");
+    }
+
+    private MailboxPoller poller(MailboxProperties properties, String datasourceUrl) {
+        MockEnvironment environment = new MockEnvironment().withProperty("spring.datasource.url", datasourceUrl);
+        return new MailboxPoller(properties, service, checkpoints.proxy(), new SimpleMeterRegistry(), environment);
+    }
+
+    private void deliver(String... subjects) throws Exception {
+        for (String subject : subjects) {
+            user.deliver(GreenMailUtil.createTextEmail(ADDRESS, "sender@localhost", subject, "Body of " + subject,
+                    ServerSetupTest.SMTP));
+        }
+    }
+
+    private long lastUid() {
+        MailboxCheckpoint checkpoint = checkpoints.stored.get(MAILBOX);
+        return checkpoint == null ? -1 : checkpoint.getLastUid();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                fail("condition not met within 10s");
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * Records the subjects of the messages it is given, optionally dropping the connection once for one of them.
+     */
+    private class RecordingService implements EmailProcessingService {
+
+        private final List<String> subjects = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicBoolean dropped = new AtomicBoolean();
+        private final AtomicLong checkpointWhenRetried = new AtomicLong(-1);
+        private volatile String dropConnectionOnce;
+
+        @Override
+        public ParsedEmailResponse processMessage(String name, MimeMessage message, String format) {
+            try {
+                String subject = message.getSubject();
+                subjects.add(subject);
+                if (subject.equals(dropConnectionOnce)) {
+                    if (dropped.compareAndSet(false, true)) {
+                        message.getFolder().close(false);
+                        throw new IllegalStateException("connection lost");
+                    }
+                    checkpointWhenRetried.set(lastUid());
+                }
+                return new ParsedEmailResponse();
+            } catch (MessagingException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        @Override
+        public ParsedEmailResponse processEmail(MultipartFile file) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ParsedEmailResponse processEmail(String fileName, InputStream inputStream) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Keeps checkpoints in a map, standing in for the JPA repository across poller restarts.
+     */
+    private static class CheckpointStore {
+
+        private final Map<String, MailboxCheckpoint> stored = new ConcurrentHashMap<>();
+
+        MailboxCheckpointRepository proxy() {
+            Class<?>[] interfaces = {MailboxCheckpointRepository.class};
+            return (MailboxCheckpointRepository) Proxy.newProxyInstance(getClass().getClassLoader(), interfaces,
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "findById" -> Optional.ofNullable(stored.get((String) args[0]));
+                        case "save" -> {
+                            MailboxCheckpoint checkpoint = (MailboxCheckpoint) args[0];
+                            stored.put(checkpoint.getMailbox(), checkpoint);
+                            yield checkpoint;
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.subhajit.email.classification.mailbox;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UidWatermarkTest {
+
+    private static final long[] UIDS = {11, 12, 15, 20, 21, 30};
+
+    @Test
+    void startsAtThePreviousCheckpoint() {
+        UidWatermark watermark = new UidWatermark(10, UIDS);
+
+        assertEquals(10, watermark.value());
+    }
+
+    @Test
+    void advancesOverUidsDoneInOrder() {
+        UidWatermark watermark = new UidWatermark(10, UIDS);
+
+        watermark.complete(0);
+        watermark.complete(1);
+
+        assertEquals(12, watermark.value());
+    }
+
+    @Test
+    void waitsForTheFirstUidNotDone() {
+        UidWatermark watermark = new UidWatermark(10, UIDS);
+
+        watermark.complete(1);
+        watermark.complete(2);
+        assertEquals(10, watermark.value());
+
+        watermark.complete(0);
+        assertEquals(15, watermark.value());
+    }
+
+    @Test
+    void staysBelowAFailedRange() {
+        UidWatermark watermark = new UidWatermark(10, UIDS);
+        // Ranges of two UIDs: the middle one lost its connection and never completes
+        watermark.complete(0);
+        watermark.complete(1);
+        watermark.complete(4);
+        watermark.complete(5);
+
+        assertEquals(12, watermark.value());
+    }
+
+    @Test
+    void reachesTheLastUidWhenAllAreDone() {
+        UidWatermark watermark = new UidWatermark(10, UIDS);
+
+        for (int i = UIDS.length - 1; i >= 0; i--) {
+            watermark.complete(i);
+        }
+
+        assertEquals(30, watermark.value());
+    }
+}
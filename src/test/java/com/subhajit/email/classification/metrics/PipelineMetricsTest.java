@@ -0,0 +1,136 @@
+package com.subhajit.email.classification.metrics;
+
+import com.subhajit.email.classification.configuration.InstrumentationProperties;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PipelineMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final InstrumentationProperties properties = new InstrumentationProperties();
+    private final MockHttpServletRequest request = new MockHttpServletRequest();
+
+    @AfterEach
+    void resetRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void timesStagesBackToBackAndTheEmailEndToEnd() throws Exception {
+        PipelineMetrics metrics = new PipelineMetrics(registry, properties);
+
+        EmailTimings timings = metrics.startEmail();
+        assertEquals(1, registry.get("email.pipeline.in.flight").gauge().value());
+        timings.begin(PipelineStage.PARSE);
+        Thread.sleep(5);
+        timings.begin(PipelineStage.EXTRACT);
+        timings.begin(PipelineStage.EXTRACT);
+        timings.succeeded();
+        timings.close();
+        timings.close();
+
+        assertEquals(1, stageTimer("parse").count());
+        assertTrue(stageTimer("parse").totalTime(TimeUnit.MILLISECONDS) >= 5);
+        assertEquals(2, stageTimer("extract").count());
+        assertEquals(0, stageTimer("classify").count());
+        assertEquals(1, registry.get("email.pipeline.emails").tag("outcome", "success").timer().count());
+        assertEquals(0, registry.get("email.pipeline.emails").tag("outcome", "error").timer().count());
+        assertEquals(0, registry.get("email.pipeline.in.flight").gauge().value());
+        assertTrue(timings.totalMillis() >= 5);
+    }
+
+    @Test
+    void countsErrorsAgainstTheRunningStageByRootCause() {
+        PipelineMetrics metrics = new PipelineMetrics(registry, properties);
+
+        try (EmailTimings timings = metrics.startEmail()) {
+            timings.begin(PipelineStage.PARSE);
+            timings.begin(PipelineStage.CLASSIFY);
+            timings.failed(new IllegalStateException("LLM failed", new SocketTimeoutException("read timed out")));
+        }
+
+        assertEquals(1, registry.get("email.errors").tag("stage", "classify")
+                .tag("cause", "SocketTimeoutException").counter().count());
+        assertEquals(1, registry.get("email.pipeline.emails").tag("outcome", "error").timer().count());
+    }
+
+    @Test
+    void capsTheNumberOfMimeTypeTags() {
+        properties.setMaxMimeTypeTags(2);
+        PipelineMetrics metrics = new PipelineMetrics(registry, properties);
+
+        for (String mimeType : new String[]{"application/pdf", "Text/Plain; charset=UTF-8", "image/png", "text/csv"}) {
+            metrics.attachmentStarted();
+            metrics.attachmentFinished(mimeType, 1_000_000, 100, 10);
+        }
+
+        assertEquals(1, attachmentTimer("application/pdf"));
+        assertEquals(1, attachmentTimer("text/plain"));
+        assertEquals(2, attachmentTimer("other"));
+        assertEquals(0, registry.get("email.attachment.in.flight").gauge().value());
+    }
+
+    @Test
+    void addsAServerTimingHeaderToTheResponseOfTheRequestThatProcessedTheEmail() throws Exception {
+        properties.setTimingHeaders(true);
+        PipelineMetrics metrics = new PipelineMetrics(registry, properties);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        EmailTimings timings = metrics.startEmail();
+        timings.begin(PipelineStage.PARSE);
+        Thread.sleep(1);
+        timings.begin(PipelineStage.CLASSIFY);
+        Thread.sleep(1);
+        timings.succeeded();
+        timings.close();
+
+        String header = writeResponse().getHeader("Server-Timing");
+        assertEquals(timings.toServerTiming(), header);
+        assertTrue(header.matches("parse;dur=\\d+\\.\\d, classify;dur=\\d+\\.\\d, total;dur=\\d+\\.\\d"), header);
+    }
+
+    @Test
+    void addsNoServerTimingHeaderUnlessEnabled() throws Exception {
+        PipelineMetrics metrics = new PipelineMetrics(registry, properties);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        try (EmailTimings timings = metrics.startEmail()) {
+            timings.begin(PipelineStage.PARSE);
+        }
+
+        assertNull(writeResponse().getHeader("Server-Timing"));
+    }
+
+    private MockHttpServletResponse writeResponse() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ServletServerHttpResponse serverResponse = new ServletServerHttpResponse(response);
+        new ServerTimingAdvice().beforeBodyWrite("body", null, null, null, new ServletServerHttpRequest(request),
+                serverResponse);
+        serverResponse.flush();
+        return response;
+    }
+
+    private Timer stageTimer(String stage) {
+        return registry.get("email.pipeline.stage").tag("stage", stage).timer();
+    }
+
+    private long attachmentTimer(String mimeType) {
+        return registry.get("email.attachment.extraction").tag("mime.type", mimeType).timer().count();
+    }
+}
@@ -0,0 +1,110 @@
+package com.subhajit.email.classification.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmailAttachmentTest {
+
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    void keepsContentUpToTheThresholdInMemory() throws Exception {
+        byte[] content = content(64);
+
+        try (EmailAttachment attachment = read(content, 64)) {
+            assertTrue(attachment.isInMemory());
+            assertNull(attachment.getFile());
+            assertEquals(64, attachment.getSize());
+            assertArrayEquals(content, attachment.toByteArray());
+        }
+        assertEquals(0, spillFiles());
+    }
+
+    @Test
+    void spillsContentOverTheThresholdToAFile() throws Exception {
+        byte[] content = content(65);
+
+        try (EmailAttachment attachment = read(content, 64)) {
+            assertFalse(attachment.isInMemory());
+            assertEquals(spillDirectory, attachment.getFile().toPath().getParent());
+            assertEquals(65, attachment.getSize());
+            assertArrayEquals(content, attachment.toByteArray());
+            // The content can be read more than once
+            try (InputStream first = attachment.openStream(); InputStream second = attachment.openStream()) {
+                assertArrayEquals(content, first.readAllBytes());
+                assertArrayEquals(content, second.readAllBytes());
+            }
+        }
+    }
+
+    @Test
+    void closeDeletesTheSpillFile() throws Exception {
+        EmailAttachment attachment = read(content(1_000), 10);
+        Path file = attachment.getFile().toPath();
+        assertTrue(Files.exists(file));
+
+        attachment.close();
+
+        assertFalse(Files.exists(file));
+        assertEquals(0, spillFiles());
+        // Closing again is harmless
+        attachment.close();
+    }
+
+    @Test
+    void deletesTheSpillFileWhenTheStreamFails() {
+        InputStream failing = new InputStream() {
+            private int remaining = 100;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining == 0) {
+                    throw new IOException("connection reset");
+                }
+                remaining--;
+                return 'x';
+            }
+        };
+
+        IOException ex = assertThrows(IOException.class,
+                () -> EmailAttachment.read("broken.bin", failing, 10, spillDirectory));
+
+        assertEquals("connection reset", ex.getMessage());
+        assertEquals(0, spillFiles());
+    }
+
+    private EmailAttachment read(byte[] content, long spillThreshold) throws IOException {
+        return EmailAttachment.read("data.bin", new ByteArrayInputStream(content), spillThreshold, spillDirectory);
+    }
+
+    private long spillFiles() {
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            return files.count();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) i;
+        }
+        return content;
+    }
+}
@@ -0,0 +1,169 @@
+package com.subhajit.email.classification.ocr;
+
+import com.subhajit.email.classification.configuration.OcrProperties;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OcrPreprocessorTest {
+
+    private final FakeOcrPool ocrPool = new FakeOcrPool();
+    private final OcrProperties.Preprocessing properties = new OcrProperties.Preprocessing();
+
+    @Test
+    void passesLargeColourImagesAsBinaryGreyImagesWithinThePixelLimit() throws Exception {
+        properties.setMaxPixels(500_000);
+        properties.setTextRegions(false);
+
+        OcrPreprocessor preprocessor = preprocessor();
+
+        String text = preprocessor.recognize(page(BufferedImage.TYPE_INT_RGB, 2000, 1000, Color.BLUE, 200, 600),
+                () -> false);
+
+        assertEquals("scanned text\n", text);
+        BufferedImage ocrImage = ocrPool.only();
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, ocrImage.getType());
+        assertEquals(1000, ocrImage.getWidth());
+        assertEquals(500, ocrImage.getHeight());
+        for (byte value : pixels(ocrImage)) {
+            int level = value & 0xFF;
+            assertTrue(level == 0 || level == 255, "grey level " + level);
+        }
+        assertEquals(1, preprocessor.metrics().downscaled());
+    }
+
+    @Test
+    void keepsImagesWithinThePixelLimitAtTheirSize() throws Exception {
+        properties.setTextRegions(false);
+
+        recognize(page(BufferedImage.TYPE_INT_RGB, 400, 300, Color.BLACK, 100));
+
+        BufferedImage ocrImage = ocrPool.only();
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, ocrImage.getType());
+        assertEquals(400, ocrImage.getWidth());
+        assertEquals(300, ocrImage.getHeight());
+    }
+
+    @Test
+    void drawsTransparentImagesOnWhite() throws Exception {
+        properties.setTextRegions(false);
+
+        recognize(page(BufferedImage.TYPE_INT_ARGB, 400, 300, Color.BLACK, 100));
+
+        BufferedImage ocrImage = ocrPool.only();
+        assertEquals(255, pixels(ocrImage)[0] & 0xFF);
+        assertEquals(0, pixels(ocrImage)[105 * 400 + 200] & 0xFF);
+    }
+
+    @Test
+    void readsOnlyTheBandsOfText() throws Exception {
+        OcrPreprocessor preprocessor = preprocessor();
+
+        String text = preprocessor.recognize(page(BufferedImage.TYPE_INT_RGB, 1000, 800, Color.BLACK, 100, 500),
+                () -> false);
+
+        assertEquals("scanned text\nscanned text\n", text);
+        assertEquals(2, ocrPool.images.size());
+        // Each line is 500x12 pixels, padded by 8 on every side
+        for (BufferedImage region : ocrPool.images) {
+            assertEquals(BufferedImage.TYPE_BYTE_GRAY, region.getType());
+            assertEquals(516, region.getWidth());
+            assertEquals(28, region.getHeight());
+        }
+        OcrPreprocessingMetrics metrics = preprocessor.metrics();
+        assertEquals(1, metrics.cropped());
+        assertEquals(2, metrics.regions());
+        assertEquals(2 * 516 * 28, metrics.ocrPixels());
+    }
+
+    @Test
+    void skipsSmallAndBlankImagesWithoutOcr() throws Exception {
+        OcrPreprocessor preprocessor = preprocessor();
+
+        assertEquals("", preprocessor.recognize(page(BufferedImage.TYPE_INT_RGB, 20, 10, Color.BLACK), () -> false));
+        assertEquals("", preprocessor.recognize(page(BufferedImage.TYPE_INT_RGB, 400, 300, Color.BLACK), () -> false));
+
+        assertTrue(ocrPool.images.isEmpty());
+        assertEquals(1, preprocessor.metrics().skippedSmall());
+        assertEquals(1, preprocessor.metrics().skippedBlank());
+    }
+
+    @Test
+    void answersARepeatedImageWithTheTextRecognisedTheFirstTime() throws Exception {
+        OcrPreprocessor preprocessor = preprocessor();
+        BufferedImage logo = page(BufferedImage.TYPE_INT_RGB, 120, 60, Color.BLACK, 20);
+
+        String first = preprocessor.recognize(logo, () -> false);
+        String second = preprocessor.recognize(logo, () -> false);
+
+        assertEquals(first, second);
+        assertEquals(1, ocrPool.images.size());
+        assertEquals(1, preprocessor.metrics().skippedDuplicate());
+    }
+
+    private String recognize(BufferedImage image) throws InterruptedException {
+        return preprocessor().recognize(image, () -> false);
+    }
+
+    private OcrPreprocessor preprocessor() {
+        return new OcrPreprocessor(ocrPool, properties);
+    }
+
+    private static byte[] pixels(BufferedImage gray) {
+        return ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * An image with a white background, or a transparent one if it has alpha, and a bar standing in for a line of
+     * text at each of {@code lines}, from a tenth of the width to six tenths and 12 pixels high.
+     */
+    private static BufferedImage page(int type, int width, int height, Color ink, int... lines) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            if (!image.getColorModel().hasAlpha()) {
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+            }
+            graphics.setColor(ink);
+            for (int y : lines) {
+                graphics.fillRect(width / 10, y, width / 2, 12);
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Answers every image with the same text and keeps it, without loading Tesseract.
+     */
+    private static class FakeOcrPool extends OcrWorkerPool {
+
+        private final List<BufferedImage> images = new ArrayList<>();
+
+        FakeOcrPool() {
+            super(null, "eng", 1, 0, Duration.ZERO);
+        }
+
+        @Override
+        public String doOCR(BufferedImage image) {
+            images.add(image);
+            return "scanned text\n";
+        }
+
+        BufferedImage only() {
+            assertEquals(1, images.size());
+            return images.get(0);
+        }
+    }
+}
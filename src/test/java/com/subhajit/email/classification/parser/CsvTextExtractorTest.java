@@ -0,0 +1,127 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.model.EmailAttachment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvTextExtractorTest {
+
+    private static final int CHUNK = 1 << 20;
+    private static final String HEADER = "id,amount,note\n";
+    private static final String QUOTED = "\"spans\nthe, \"\"chunk\"\"\nboundary\"";
+
+    @TempDir
+    Path spillDirectory;
+
+    private final CsvTextExtractor extractor = new CsvTextExtractor(properties());
+
+    @AfterEach
+    void close() {
+        extractor.close();
+    }
+
+    @Test
+    void countsEveryRecordAcrossChunks() throws Exception {
+        StringBuilder csv = new StringBuilder(HEADER);
+        int rows = 0;
+        while (csv.length() < 3 * CHUNK) {
+            csv.append(rows).append(',').append(rows % 100).append(',')
+                    .append(rows % 5 == 0 ? "\"a, b\nc\"" : "note " + rows).append('\n');
+            rows++;
+        }
+
+        String summary = summarize(csv.toString());
+
+        assertTrue(summary.startsWith("CSV summary: " + rows + " rows, 3 columns"), summary);
+        assertFalse(summary.contains("different number of fields"), summary);
+    }
+
+    @Test
+    void startsTheNextChunkAfterAQuotedFieldCrossingTheBoundary() throws Exception {
+        StringBuilder csv = new StringBuilder(HEADER);
+        int rows = 0;
+        // Fill up to just before the first chunk boundary, so that the quoted field spans it
+        while (csv.length() < CHUNK - 12) {
+            csv.append(rows).append(",1,plain\n");
+            rows++;
+        }
+        csv.append(rows++).append(",1,").append(QUOTED).append('\n');
+        while (csv.length() < 2 * CHUNK + CHUNK / 2) {
+            csv.append(rows).append(",1,plain\n");
+            rows++;
+        }
+
+        String summary = summarize(csv.toString());
+
+        assertTrue(summary.startsWith("CSV summary: " + rows + " rows, 3 columns"), summary);
+        assertFalse(summary.contains("different number of fields"), summary);
+    }
+
+    @Test
+    void readsEscapedQuotesWithoutLosingTheQuoteState() throws Exception {
+        StringBuilder csv = new StringBuilder(HEADER);
+        int rows = 0;
+        while (csv.length() < 2 * CHUNK + CHUNK / 2) {
+            // Escaped quotes on both sides of a line break inside every quoted field
+            csv.append(rows).append(",2,\"say \"\"hi\"\", \"\"\n\"\"\"\n");
+            rows++;
+        }
+
+        String summary = summarize(csv.toString());
+
+        assertTrue(summary.startsWith("CSV summary: " + rows + " rows, 3 columns"), summary);
+        assertFalse(summary.contains("different number of fields"), summary);
+    }
+
+    @Test
+    void splitsRecordsAtBareCarriageReturns() throws Exception {
+        StringBuilder csv = new StringBuilder("id;amount;status\r");
+        int rows = 0;
+        while (csv.length() < 2 * CHUNK) {
+            csv.append(rows).append(';').append(rows % 100).append(';').append(rows % 2 == 0 ? "OPEN" : "CLOSED")
+                    .append('\r');
+            rows++;
+        }
+
+        String summary = summarize(csv.toString());
+
+        assertTrue(summary.startsWith("CSV summary: " + rows + " rows, 3 columns, delimiter ';'"), summary);
+    }
+
+    @Test
+    void recognisesCarriageReturnLineEndings() {
+        assertTrue(CsvTextExtractor.crLineEndings("a,b\r1,2\r"));
+        assertFalse(CsvTextExtractor.crLineEndings("a,b\r\n1,2\r\n"));
+        assertFalse(CsvTextExtractor.crLineEndings("a,b\n1,2\n"));
+        assertEquals(';', CsvTextExtractor.detectDelimiter("a;b,c;d\r1;2,5;3\r4;5;6\r"));
+    }
+
+    private String summarize(String csv) throws Exception {
+        byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+        ParseLimits limits = ParseLimits.startingNow(100_000, Long.MAX_VALUE, Duration.ofSeconds(30));
+        try (EmailAttachment attachment = EmailAttachment.read("data.csv", new ByteArrayInputStream(bytes), 0,
+                spillDirectory)) {
+            return extractor.extract(attachment, limits);
+        }
+    }
+
+    private static ParserProperties.Csv properties() {
+        ParserProperties.Csv properties = new ParserProperties.Csv();
+        properties.setMode(ParserProperties.Csv.Mode.SUMMARY);
+        properties.setChunkSize(DataSize.ofBytes(CHUNK));
+        properties.setScanThreads(4);
+        return properties;
+    }
+}
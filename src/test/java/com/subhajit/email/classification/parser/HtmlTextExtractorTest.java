@@ -0,0 +1,68 @@
+package com.subhajit.email.classification.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HtmlTextExtractorTest {
+
+    @Test
+    void skipsScriptStyleAndHead() throws Exception {
+        String html = "<html><head><title>Title</title><style>p { color: red; }</style></head>"
+                + "<body><p>Hello <b>world</b></p><script>var tag = '<p>';</script><p>Bye</p></body></html>";
+
+        assertEquals("Hello world\nBye", extract(html));
+    }
+
+    @Test
+    void decodesNamedAndNumericEntities() throws Exception {
+        String html = "Fish &amp; chips &lt;3 &#8364;5 &#x41;&nbsp;&quot;q&quot;";
+
+        assertEquals("Fish & chips <3 €5 A \"q\"", extract(html));
+    }
+
+    @Test
+    void keepsUnknownEntitiesAndBareAmpersandsAsText() throws Exception {
+        assertEquals("&bogus; AT&T R&D", extract("&bogus; AT&T R&D"));
+    }
+
+    @Test
+    void writesTableRowsAsLinesOfTabSeparatedCells() throws Exception {
+        String html = "<table><tr><td>Amount</td><td>100</td></tr><tr><th>Date</th><td>today</td></tr></table>";
+
+        assertEquals("Amount\t100\nDate\ttoday", extract(html));
+    }
+
+    @Test
+    void collapsesWhitespaceAndDropsComments() throws Exception {
+        String html = "<div>\n   one \t two<!-- <p>hidden</p> --></div>\n\n<div>three</div>";
+
+        assertEquals("one two\nthree", extract(html));
+    }
+
+    @Test
+    void treatsMalformedMarkupAsText() throws Exception {
+        assertEquals("1 < 2 and 3 > 2", extract("1 < 2 and 3 > 2"));
+        // A quoted '>' does not end the tag
+        assertEquals("see link", extract("see <a href=\"x>y\" title='>'>link</a>"));
+        // An unterminated tag swallows the rest instead of failing
+        assertEquals("text", extract("text<p class=\"open"));
+    }
+
+    @Test
+    void stopsAtTheCharacterLimit() {
+        BoundedTextBuilder out = new BoundedTextBuilder(5);
+
+        assertThrows(BoundedTextBuilder.LimitReachedException.class,
+                () -> HtmlTextExtractor.extract(new StringReader("<p>0123456789</p>"), out));
+    }
+
+    private static String extract(String html) throws Exception {
+        BoundedTextBuilder out = new BoundedTextBuilder(10_000);
+        HtmlTextExtractor.extract(new StringReader(html), out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,250 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.model.EmailAttachment;
+import com.subhajit.email.classification.model.ParsedEmail;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MimeWalkerTest {
+
+    @Test
+    void readsThePlainAlternativeOfANestedMultipartAndItsAttachment() throws Exception {
+        String email = mime(
+                "From: Alice <alice@example.com>",
+                "Subject: Invoice",
+                "MIME-Version: 1.0",
+                "Content-Type: multipart/mixed; boundary=\"outer\"",
+                "",
+                "--outer",
+                "Content-Type: multipart/alternative; boundary=\"alt\"",
+                "",
+                "--alt",
+                "Content-Type: text/plain; charset=UTF-8",
+                "",
+                "Plain body",
+                "--alt",
+                "Content-Type: text/html; charset=UTF-8",
+                "",
+                "<p>HTML body</p>",
+                "--alt--",
+                "--outer",
+                "Content-Type: text/csv; name=\"data.csv\"",
+                "Content-Disposition: attachment; filename=\"data.csv\"",
+                "Content-Transfer-Encoding: base64",
+                "",
+                "aWQsYW1vdW50CjEsMTAK",
+                "--outer--");
+
+        try (ParsedEmail parsed = walk(email, new ParserProperties.Mime())) {
+            assertEquals("Alice <alice@example.com>", parsed.getFrom());
+            assertEquals("Invoice", parsed.getSubject());
+            assertEquals("Plain body", parsed.getBody());
+            assertEquals(List.of("data.csv"), names(parsed));
+            assertEquals("id,amount\n1,10\n", content(parsed.getAttachments().get(0)));
+        }
+    }
+
+    @Test
+    void readsTheRichestAlternativeWithoutScriptsOrEntities() throws Exception {
+        String email = mime(
+                "Subject: Welcome",
+                "Content-Type: multipart/alternative; boundary=\"alt\"",
+                "",
+                "--alt",
+                "Content-Type: text/enriched",
+                "",
+                "<bold>Hi</bold>",
+                "--alt",
+                "Content-Type: text/html; charset=UTF-8",
+                "",
+                "<html><head><style>p { margin: 0 }</style></head><body>",
+                "<p>Hi &amp; welcome</p><script>track('<p>');</script><p>Team</p>",
+                "</body></html>",
+                "--alt--");
+
+        try (ParsedEmail parsed = walk(email, new ParserProperties.Mime())) {
+            assertEquals("Hi & welcome\nTeam", parsed.getBody());
+            assertTrue(parsed.getAttachments().isEmpty());
+        }
+    }
+
+    @Test
+    void tellsInlineBodyPartsFromAttachments() throws Exception {
+        String email = mime(
+                "Subject: Inline",
+                "Content-Type: multipart/mixed; boundary=\"b\"",
+                "",
+                "--b",
+                "Content-Type: text/plain",
+                "",
+                "Body",
+                "--b",
+                "Content-Type: image/png",
+                "Content-Disposition: inline",
+                "Content-Transfer-Encoding: base64",
+                "",
+                "iVBORw0KGgo=",
+                "--b",
+                "Content-Type: text/plain",
+                "Content-Disposition: inline; filename=\"notes.txt\"",
+                "",
+                "Notes",
+                "--b",
+                "Content-Type: text/plain",
+                "",
+                "Signature",
+                "--b--");
+
+        try (ParsedEmail parsed = walk(email, new ParserProperties.Mime())) {
+            assertEquals("Body\nSignature", parsed.getBody());
+            // The unnamed inline image is named after its position and type
+            assertEquals(List.of("part-3.png", "notes.txt"), names(parsed));
+            assertEquals("Notes", content(parsed.getAttachments().get(1)));
+        }
+    }
+
+    @Test
+    void followsForwardedMessages() throws Exception {
+        String email = mime(
+                "Subject: Fwd: Original",
+                "Content-Type: multipart/mixed; boundary=\"outer\"",
+                "",
+                "--outer",
+                "Content-Type: text/plain",
+                "",
+                "See below",
+                "--outer",
+                "Content-Type: message/rfc822",
+                "",
+                "From: Bob <bob@example.com>",
+                "Subject: Original",
+                "Content-Type: multipart/mixed; boundary=\"inner\"",
+                "",
+                "--inner",
+                "Content-Type: text/plain",
+                "",
+                "Original text",
+                "--inner",
+                "Content-Type: text/plain",
+                "Content-Disposition: attachment; filename=\"report.txt\"",
+                "Content-Transfer-Encoding: base64",
+                "",
+                "UmVwb3J0IGJvZHkK",
+                "--inner--",
+                "--outer--");
+
+        try (ParsedEmail parsed = walk(email, new ParserProperties.Mime())) {
+            String body = parsed.getBody();
+            assertTrue(body.startsWith("See below\n\n---------- Forwarded message ----------\n"
+                    + "From: Bob <bob@example.com>\nSubject: Original\n"), body);
+            assertTrue(body.endsWith("\nOriginal text"), body);
+            assertEquals(List.of("report.txt"), names(parsed));
+            assertEquals("Report body\n", content(parsed.getAttachments().get(0)));
+        }
+    }
+
+    @Test
+    void decodesDeclaredCharsetsAndFallsBackToUtf8ForUnknownOnes() throws Exception {
+        String email = mime(
+                "Subject: Charsets",
+                "Content-Type: multipart/mixed; boundary=\"b\"",
+                "",
+                "--b",
+                "Content-Type: text/plain; charset=ISO-8859-1",
+                "Content-Transfer-Encoding: quoted-printable",
+                "",
+                "Gr=FC=DFe",
+                "--b",
+                "Content-Type: text/plain; charset=x-no-such-charset",
+                "Content-Transfer-Encoding: 8bit",
+                "",
+                "Grüße",
+                "--b--");
+
+        try (ParsedEmail parsed = walk(email, new ParserProperties.Mime())) {
+            assertEquals("Grüße\nGrüße", parsed.getBody());
+        }
+    }
+
+    @Test
+    void toleratesAMissingClosingBoundary() throws Exception {
+        String email = mime(
+                "Subject: Truncated",
+                "Content-Type: multipart/mixed; boundary=\"b\"",
+                "",
+                "--b",
+                "Content-Type: text/plain",
+                "",
+                "Body",
+                "--b",
+                "Content-Type: text/plain",
+                "Content-Disposition: attachment; filename=\"cut.txt\"",
+                "",
+                "Cut short");
+
+        try (ParsedEmail parsed = walk(email, new ParserProperties.Mime())) {
+            assertEquals("Body", parsed.getBody());
+            assertEquals(List.of("cut.txt"), names(parsed));
+        }
+    }
+
+    @Test
+    void skipsAttachmentsOverTheSizeLimitAndKeepsTheRest() throws Exception {
+        String email = mime(
+                "Subject: Limits",
+                "Content-Type: multipart/mixed; boundary=\"b\"",
+                "",
+                "--b",
+                "Content-Type: text/plain",
+                "",
+                "Body",
+                "--b",
+                "Content-Type: text/plain",
+                "Content-Disposition: attachment; filename=\"large.txt\"",
+                "",
+                "More than sixteen bytes of text",
+                "--b",
+                "Content-Type: text/plain",
+                "Content-Disposition: attachment; filename=\"small.txt\"",
+                "",
+                "Small",
+                "--b--");
+        ParserProperties.Mime limits = new ParserProperties.Mime();
+        limits.setMaxAttachmentSize(DataSize.ofBytes(16));
+
+        try (ParsedEmail parsed = walk(email, limits)) {
+            assertEquals("Body", parsed.getBody());
+            assertEquals(List.of("small.txt"), names(parsed));
+        }
+    }
+
+    private static ParsedEmail walk(String email, ParserProperties.Mime limits) throws Exception {
+        MimeMessage message = new MimeMessage(Session.getDefaultInstance(new Properties()),
+                new ByteArrayInputStream(email.getBytes(StandardCharsets.UTF_8)));
+        return MimeWalker.walk(message, limits, 1024 * 1024, null);
+    }
+
+    private static String mime(String... lines) {
+        return String.join("\r\n", lines) + "\r\n";
+    }
+
+    private static List<String> names(ParsedEmail parsed) {
+        return parsed.getAttachments().stream().map(EmailAttachment::getName).toList();
+    }
+
+    private static String content(EmailAttachment attachment) throws IOException {
+        return new String(attachment.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,79 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.model.EmailAttachment;
+import com.subhajit.email.classification.model.ParsedEmail;
+import org.apache.poi.poifs.filesystem.DirectoryEntry;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MsgReaderTest {
+
+    // Attachment numbers in the order the directories are created, which is not the order they were attached in
+    private static final int[] CREATION_ORDER = {2, 0, 10, 1};
+
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    void readsInMemoryMessagesWithAttachmentsInAttachmentOrder() throws Exception {
+        assertMessage(1024 * 1024);
+    }
+
+    @Test
+    void readsSpilledMessagesWithAttachmentsInAttachmentOrder() throws Exception {
+        assertMessage(0);
+    }
+
+    private void assertMessage(long spillThreshold) throws Exception {
+        try (ParsedEmail parsed = MsgReader.read(new ByteArrayInputStream(msg()), new ParserProperties.Mime(),
+                spillThreshold, spillDirectory)) {
+            assertEquals("Alice", parsed.getFrom());
+            assertEquals("Invoice", parsed.getSubject());
+            assertEquals("Please find the files attached", parsed.getBody());
+            assertEquals(List.of("file-0.txt", "file-1.txt", "file-2.txt", "file-10.txt"),
+                    parsed.getAttachments().stream().map(EmailAttachment::getName).toList());
+            assertEquals("content 10",
+                    new String(parsed.getAttachments().get(3).toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * A .msg container with a subject, sender and body, and one text attachment per entry of
+     * {@link #CREATION_ORDER}.
+     */
+    private static byte[] msg() throws IOException {
+        try (POIFSFileSystem fileSystem = new POIFSFileSystem();
+             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            DirectoryEntry root = fileSystem.getRoot();
+            property(root, "0037001F", unicode("Invoice"));
+            property(root, "0C1A001F", unicode("Alice"));
+            property(root, "1000001F", unicode("Please find the files attached\0"));
+            for (int number : CREATION_ORDER) {
+                DirectoryEntry attachment = root.createDirectory(String.format("__attach_version1.0_#%08X", number));
+                property(attachment, "3707001F", unicode("file-" + number + ".txt"));
+                property(attachment, "37010102", ("content " + number).getBytes(StandardCharsets.UTF_8));
+            }
+            fileSystem.writeFilesystem(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static void property(DirectoryEntry directory, String tag, byte[] value) throws IOException {
+        directory.createDocument("__substg1.0_" + tag, new ByteArrayInputStream(value));
+    }
+
+    private static byte[] unicode(String value) {
+        return value.getBytes(StandardCharsets.UTF_16LE);
+    }
+}
@@ -0,0 +1,124 @@
+package com.subhajit.email.classification.parser;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OoxmlTextHandlerTest {
+
+    private static final String DOCUMENT = "<w:document"
+            + " xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\""
+            + " xmlns:a=\"http://schemas.openxmlformats.org/drawingml/2006/main\""
+            + " xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\""
+            + " xmlns:mc=\"http://schemas.openxmlformats.org/markup-compatibility/2006\">"
+            + "<w:body>%s</w:body></w:document>";
+    private static final String SLIDE = "<p:sld"
+            + " xmlns:p=\"http://schemas.openxmlformats.org/presentationml/2006/main\""
+            + " xmlns:a=\"http://schemas.openxmlformats.org/drawingml/2006/main\""
+            + " xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+            + "<p:cSld><p:spTree>%s</p:spTree></p:cSld></p:sld>";
+
+    private final List<String> embedded = new ArrayList<>();
+
+    @Test
+    void writesParagraphsAndTabsInsideRuns() throws Exception {
+        String body = "<w:p><w:pPr><w:tabs><w:tab w:val=\"left\"/></w:tabs></w:pPr>"
+                + "<w:r><w:t>Dear</w:t></w:r><w:r><w:tab/><w:t xml:space=\"preserve\"> team,</w:t></w:r></w:p>"
+                + "<w:p><w:r><w:t>Last</w:t><w:br/><w:t>line</w:t></w:r></w:p>";
+
+        assertEquals("Dear\t team,\nLast\nline\n", parse(DOCUMENT, body));
+    }
+
+    @Test
+    void keepsEachTableRowOnOneLine() throws Exception {
+        String body = "<w:tbl><w:tr>"
+                + "<w:tc><w:p><w:r><w:t>Amount</w:t></w:r></w:p></w:tc>"
+                + "<w:tc><w:p><w:r><w:t>USD 1,000</w:t></w:r></w:p><w:p><w:r><w:t>net</w:t></w:r></w:p></w:tc>"
+                + "</w:tr><w:tr>"
+                + "<w:tc><w:p><w:r><w:t>Date</w:t></w:r></w:p></w:tc>"
+                + "<w:tc><w:p><w:r><w:t>2024-01-01</w:t></w:r></w:p></w:tc>"
+                + "</w:tr></w:tbl>";
+
+        assertEquals("Amount\tUSD 1,000 net\t\nDate\t2024-01-01\t\n", parse(DOCUMENT, body));
+    }
+
+    @Test
+    void readsTextBoxesOnceWhereTheyAreAnchored() throws Exception {
+        String box = "<w:txbxContent><w:p><w:r><w:t>Box text</w:t></w:r></w:p></w:txbxContent>";
+        String body = "<w:p><w:r><w:t>Before box</w:t></w:r><w:r><mc:AlternateContent>"
+                + "<mc:Choice><w:drawing>" + box + "<a:blip r:embed=\"rId5\"/></w:drawing></mc:Choice>"
+                + "<mc:Fallback><w:pict>" + box + "</w:pict></mc:Fallback>"
+                + "</mc:AlternateContent></w:r><w:r><w:t>after</w:t></w:r></w:p>";
+
+        assertEquals("Before box\nBox text\nafter\n", parse(DOCUMENT, body));
+        assertEquals(List.of("rId5"), embedded);
+    }
+
+    @Test
+    void skipsDeletedAndFieldText() throws Exception {
+        String body = "<w:p><w:r><w:delText>deleted</w:delText><w:instrText>PAGE</w:instrText>"
+                + "<w:t>kept</w:t></w:r></w:p>";
+
+        assertEquals("kept\n", parse(DOCUMENT, body));
+    }
+
+    @Test
+    void reportsOleObjectsOfSlidesButNotTheirPreviews() throws Exception {
+        String tree = "<p:sp><p:txBody><a:p><a:r><a:t>Title</a:t></a:r></a:p></p:txBody></p:sp>"
+                + "<p:graphicFrame><a:graphic><a:graphicData><p:oleObj r:id=\"rId3\"><p:pic><p:blipFill>"
+                + "<a:blip r:embed=\"rId4\"/></p:blipFill></p:pic></p:oleObj>"
+                + "</a:graphicData></a:graphic></p:graphicFrame>"
+                + "<p:graphicFrame><a:graphic><a:graphicData><a:tbl><a:tr>"
+                + "<a:tc><a:txBody><a:p><a:r><a:t>A1</a:t></a:r></a:p></a:txBody></a:tc>"
+                + "<a:tc><a:txBody><a:p><a:r><a:t>B1</a:t></a:r></a:p></a:txBody></a:tc>"
+                + "</a:tr></a:tbl></a:graphicData></a:graphic></p:graphicFrame>";
+
+        assertEquals("Title\nA1\tB1\t\n", parse(SLIDE, tree));
+        assertEquals(List.of("rId3"), embedded);
+    }
+
+    @Test
+    void stopsAtTheCharacterLimit() {
+        String body = "<w:p><w:r><w:t>0123456789</w:t></w:r></w:p>";
+        ParseLimits limits = ParseLimits.startingNow(5, Long.MAX_VALUE, Duration.ofSeconds(5));
+
+        assertThrows(BoundedTextBuilder.LimitReachedException.class, () -> parse(DOCUMENT, body, limits));
+        assertFalse(limits.isDegraded());
+    }
+
+    @Test
+    void stopsAtTheDeadline() {
+        String body = "<w:p><w:r><w:t>late</w:t></w:r></w:p>";
+        ParseLimits limits = ParseLimits.startingNow(1_000, Long.MAX_VALUE, Duration.ZERO);
+
+        assertThrows(BoundedTextBuilder.LimitReachedException.class, () -> parse(DOCUMENT, body, limits));
+        assertTrue(limits.isDegraded());
+    }
+
+    private String parse(String part, String content) throws Exception {
+        return parse(part, content, ParseLimits.startingNow(10_000, Long.MAX_VALUE, Duration.ofSeconds(5)));
+    }
+
+    private String parse(String part, String content, ParseLimits limits) throws Exception {
+        BoundedTextBuilder sb = limits.newTextBuilder();
+        OoxmlTextHandler handler = new OoxmlTextHandler(sb, limits, embedded::add);
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        XMLReader reader = factory.newSAXParser().getXMLReader();
+        reader.setContentHandler(handler);
+        reader.parse(new InputSource(new StringReader(part.formatted(content))));
+        handler.endLine();
+        return sb.toString();
+    }
+}
@@ -0,0 +1,147 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.model.EmailAttachment;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParserRegistryTest {
+
+    private final FakeHandler pdf = new FakeHandler("pdf", "application/pdf");
+    private final FakeHandler csv = new FakeHandler("csv", "text/csv");
+    private final FakeHandler png = new FakeHandler("png", "image/png");
+    private final FakeHandler image = new FakeHandler("image", "image/*");
+    private final FakeHandler tika = new FakeHandler("tika");
+    private final ParserProperties properties = new ParserProperties();
+
+    @Test
+    void prefersExactMimeTypesOverTopLevelWildcards() {
+        ParserRegistry registry = registry();
+
+        assertSame(png, registry.handlerFor("image/png"));
+        assertSame(image, registry.handlerFor("image/jpeg"));
+        assertSame(png, registry.handlerFor("IMAGE/PNG; name=\"logo.png\""));
+        assertSame(tika, registry.handlerFor("application/zip"));
+        assertSame(tika, registry.handlerFor("text"));
+        assertSame(tika, registry.handlerFor(null));
+    }
+
+    @Test
+    void keepsTheFirstHandlerClaimingAMimeType() {
+        FakeHandler otherPdf = new FakeHandler("other-pdf", "application/pdf");
+
+        ParserRegistry registry = new ParserRegistry(List.of(pdf, otherPdf, tika), properties);
+
+        assertSame(pdf, registry.handlerFor("application/pdf"));
+    }
+
+    @Test
+    void requiresAFallbackHandler() {
+        assertThrows(IllegalStateException.class, () -> new ParserRegistry(List.of(pdf, csv), properties));
+    }
+
+    @Test
+    void choosesTheHandlerOfEmbeddedObjectsByTheirSniffedContentOverTheirExtension() throws Exception {
+        ParserRegistry registry = registry();
+        ParseLimits limits = ParseLimits.startingNow(1_000, Long.MAX_VALUE, Duration.ofSeconds(30));
+
+        // The PDF signature outweighs a misleading extension
+        assertEquals("pdf", extractEmbedded(registry, "report.txt", "%PDF-1.4\n%âãÏÓ\n", limits));
+        assertEquals(List.of("application/pdf"), pdf.mimeTypesSeen);
+        // Plain text has no signature, so the extension refines it
+        assertEquals("csv", extractEmbedded(registry, "data.csv", "id,amount\n1,10\n", limits));
+        assertEquals(List.of("text/csv"), csv.mimeTypesSeen);
+        // Neither tells anything, so the fallback reads it
+        assertEquals("tika", extractEmbedded(registry, "blob", "\u0001\u0002\u0003", limits));
+    }
+
+    @Test
+    void rejectsAttachmentsOverTheByteLimitOfTheirHandlerWithoutParsing() throws Exception {
+        ParserProperties.Limits pdfLimits = new ParserProperties.Limits();
+        pdfLimits.setMaxBytes(DataSize.ofBytes(4));
+        properties.getHandlerLimits().put("pdf", pdfLimits);
+
+        ExtractionResult result = extract(registry(), "big.pdf", "0123456789", "application/pdf");
+
+        assertTrue(result.failed());
+        assertEquals("Error extracting attachment from big.pdf: larger than 4 bytes", result.text());
+        assertTrue(pdf.mimeTypesSeen.isEmpty());
+        // Other handlers keep the default limit
+        assertEquals("csv", extract(registry(), "big.csv", "0123456789", "text/csv").text());
+    }
+
+    @Test
+    void cutsTextOverTheCharacterLimitOfTheHandler() throws Exception {
+        ParserProperties.Limits csvLimits = new ParserProperties.Limits();
+        csvLimits.setMaxChars(2L);
+        properties.getHandlerLimits().put("csv", csvLimits);
+
+        ExtractionResult result = extract(registry(), "data.csv", "id\n1\n", "text/csv");
+
+        assertEquals("cs\n[Truncated: character limit of 2 reached]", result.text());
+        assertTrue(result.complete());
+    }
+
+    private ParserRegistry registry() {
+        return new ParserRegistry(List.of(pdf, csv, png, image, tika), properties);
+    }
+
+    private static ExtractionResult extract(ParserRegistry registry, String name, String content, String mimeType)
+            throws Exception {
+        try (AttachmentSource source = source(name, content)) {
+            return registry.extract(source, mimeType);
+        }
+    }
+
+    private static String extractEmbedded(ParserRegistry registry, String name, String content, ParseLimits limits)
+            throws Exception {
+        try (AttachmentSource source = source(name, content)) {
+            return registry.extractEmbedded(source, limits);
+        }
+    }
+
+    private static AttachmentSource source(String name, String content) {
+        return new AttachmentSource(EmailAttachment.ofBytes(name, content.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    /**
+     * Answers with its own name and records the MIME types it was given.
+     */
+    private static class FakeHandler implements AttachmentHandler {
+
+        private final String name;
+        private final List<String> mimeTypes;
+        private final List<String> mimeTypesSeen = new ArrayList<>();
+
+        FakeHandler(String name, String... mimeTypes) {
+            this.name = name;
+            this.mimeTypes = List.of(mimeTypes);
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public List<String> mimeTypes() {
+            return mimeTypes;
+        }
+
+        @Override
+        public ExtractionResult extract(AttachmentSource source, String mimeType, ParseLimits limits) {
+            mimeTypesSeen.add(mimeType);
+            return ExtractionResult.of(name);
+        }
+    }
+}
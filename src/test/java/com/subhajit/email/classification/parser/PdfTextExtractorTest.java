@@ -0,0 +1,175 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.model.EmailAttachment;
+import com.subhajit.email.classification.ocr.OcrWorkerPool;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PdfTextExtractorTest {
+
+    @TempDir
+    Path spillDirectory;
+
+    private final FakeOcrPool ocrPool = new FakeOcrPool();
+
+    @Test
+    void joinsPageRangesReadInParallelInPageOrder() throws Exception {
+        String text = extract(properties(), pdf(20, Set.of()));
+
+        assertPagesInOrder(text, 20);
+        assertEquals(0, ocrPool.calls.get());
+    }
+
+    @Test
+    void readsSpilledDocumentsFromTheirFile() throws Exception {
+        try (EmailAttachment attachment = EmailAttachment.read("report.pdf",
+                new ByteArrayInputStream(pdf(10, Set.of())), 0, spillDirectory);
+             PdfTextExtractor extractor = new PdfTextExtractor(properties(), ocrPool)) {
+            assertFalse(attachment.isInMemory());
+
+            assertPagesInOrder(extractor.extract(attachment, limits()), 10);
+        }
+    }
+
+    @Test
+    void sendsOnlyPagesWithoutATextLayerToOcr() throws Exception {
+        String text = extract(properties(), pdf(6, Set.of(2, 5)));
+
+        assertEquals(2, ocrPool.calls.get());
+        assertTrue(text.indexOf("Page 1 of the report") < text.indexOf("scanned text"), text);
+        assertTrue(text.indexOf("scanned text") < text.indexOf("Page 3 of the report"), text);
+        assertEquals(2, text.split("scanned text", -1).length - 1, text);
+    }
+
+    @Test
+    void sharesOneOcrBudgetAcrossPageRanges() throws Exception {
+        ParserProperties.Pdf properties = properties();
+        properties.setMaxOcrPages(3);
+
+        String text = extract(properties, pdf(12, Set.of(1, 4, 6, 9, 12)));
+
+        assertEquals(3, ocrPool.calls.get());
+        assertEquals(3, text.split("scanned text", -1).length - 1, text);
+    }
+
+    @Test
+    void keepsTheTextLayerOfPagesTheOcrPoolRejects() throws Exception {
+        ocrPool.busy = true;
+        ParseLimits limits = limits();
+
+        String text;
+        try (PdfTextExtractor extractor = new PdfTextExtractor(properties(), ocrPool)) {
+            text = extractor.extract(EmailAttachment.ofBytes("report.pdf", pdf(4, Set.of(2, 3))), limits);
+        }
+
+        assertFalse(text.contains("scanned text"), text);
+        assertTrue(text.contains("Page 4 of the report"), text);
+        // A rejected page gives its budget back, so every blank page was offered to the pool
+        assertEquals(2, ocrPool.calls.get());
+        assertTrue(limits.isDegraded());
+    }
+
+    @Test
+    void stopsAtThePageLimit() throws Exception {
+        ParserProperties.Pdf properties = properties();
+        properties.setMaxPages(3);
+
+        String text = extract(properties, pdf(5, Set.of()));
+
+        assertPagesInOrder(text, 3);
+        assertFalse(text.contains("Page 4 of the report"), text);
+        assertTrue(text.endsWith("[Truncated: page limit of 3 reached, document has 5 pages]"), text);
+    }
+
+    private String extract(ParserProperties.Pdf properties, byte[] pdf) throws Exception {
+        try (PdfTextExtractor extractor = new PdfTextExtractor(properties, ocrPool)) {
+            return extractor.extract(EmailAttachment.ofBytes("report.pdf", pdf), limits());
+        }
+    }
+
+    private static void assertPagesInOrder(String text, int pages) {
+        int previous = -1;
+        for (int page = 1; page <= pages; page++) {
+            int index = text.indexOf("Page " + page + " of the report");
+            assertTrue(index > previous, "page " + page + " missing or out of order in " + text);
+            previous = index;
+        }
+    }
+
+    private static ParseLimits limits() {
+        return ParseLimits.startingNow(1_000_000, Long.MAX_VALUE, Duration.ofSeconds(30));
+    }
+
+    private static ParserProperties.Pdf properties() {
+        ParserProperties.Pdf properties = new ParserProperties.Pdf();
+        properties.setPageThreads(3);
+        properties.setPagesPerChunk(2);
+        properties.setOcrDpi(36);
+        return properties;
+    }
+
+    /**
+     * A document of {@code pages} pages, each reading "Page n of the report" except the blank ones.
+     */
+    private static byte[] pdf(int pages, Set<Integer> blank) throws IOException {
+        try (PDDocument document = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            for (int page = 1; page <= pages; page++) {
+                PDPage pdPage = new PDPage();
+                document.addPage(pdPage);
+                if (blank.contains(page)) {
+                    continue;
+                }
+                try (PDPageContentStream content = new PDPageContentStream(document, pdPage)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText("Page " + page + " of the report");
+                    content.endText();
+                }
+            }
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Answers every page with the same text, or rejects it while {@link #busy}, without loading Tesseract.
+     */
+    private static class FakeOcrPool extends OcrWorkerPool {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile boolean busy;
+
+        FakeOcrPool() {
+            super(null, "eng", 1, 0, Duration.ZERO);
+        }
+
+        @Override
+        public String doOCR(BufferedImage image) {
+            calls.incrementAndGet();
+            if (busy) {
+                throw new RejectedExecutionException("OCR queue is full");
+            }
+            return "scanned text\n";
+        }
+    }
+}
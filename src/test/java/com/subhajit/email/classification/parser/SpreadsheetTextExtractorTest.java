@@ -0,0 +1,135 @@
+package com.subhajit.email.classification.parser;
+
+import com.subhajit.email.classification.configuration.ParserProperties;
+import com.subhajit.email.classification.model.EmailAttachment;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpreadsheetTextExtractorTest {
+
+    private static final String XLSX = SpreadsheetTextExtractor.XLSX_MIME_TYPE;
+    private static final String XLS = SpreadsheetTextExtractor.XLS_MIME_TYPE;
+    private static final String TWO_ROWS = "Sheet: Invoices\nItem\tAmount\titem 1\t1.5\titem 2\t3\t"
+            + "Sheet: Notes\npaid\t";
+
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    void streamsXlsxSheetsAndCells() throws Exception {
+        assertEquals(TWO_ROWS, extract(properties(true), workbook(true, 2), XLSX));
+    }
+
+    @Test
+    void streamsXlsRecords() throws Exception {
+        assertEquals(TWO_ROWS, extract(properties(true), workbook(false, 2), XLS));
+    }
+
+    @Test
+    void writesTheSameTextAsTheWorkbookReader() throws Exception {
+        assertEquals(TWO_ROWS, extract(properties(false), workbook(true, 2), XLSX));
+        assertEquals(TWO_ROWS, extract(properties(false), workbook(false, 2), XLS));
+    }
+
+    @Test
+    void readsSpilledWorkbooksFromTheirFile() throws Exception {
+        for (boolean xlsx : new boolean[]{true, false}) {
+            try (EmailAttachment attachment = EmailAttachment.read("spilled", new ByteArrayInputStream(
+                    workbook(xlsx, 2)), 0, spillDirectory)) {
+                assertFalse(attachment.isInMemory());
+                String text = new SpreadsheetTextExtractor(properties(true)).extract(attachment, xlsx ? XLSX : XLS,
+                        limits(Duration.ofSeconds(30)));
+                assertEquals(TWO_ROWS, text);
+            }
+        }
+    }
+
+    @Test
+    void stopsAtTheRowLimit() throws Exception {
+        ParserProperties.Spreadsheet properties = properties(true);
+        properties.setMaxRows(3);
+
+        for (boolean xlsx : new boolean[]{true, false}) {
+            String text = extract(properties, workbook(xlsx, 5), xlsx ? XLSX : XLS);
+
+            assertEquals("Sheet: Invoices\nItem\tAmount\titem 1\t1.5\titem 2\t3\t\n[Truncated: row limit of 3 reached]",
+                    text);
+        }
+    }
+
+    @Test
+    void stopsAtTheCellLimit() throws Exception {
+        ParserProperties.Spreadsheet properties = properties(true);
+        properties.setMaxCells(3);
+
+        for (boolean xlsx : new boolean[]{true, false}) {
+            String text = extract(properties, workbook(xlsx, 5), xlsx ? XLSX : XLS);
+
+            assertEquals("Sheet: Invoices\nItem\tAmount\titem 1\t\n[Truncated: cell limit of 3 reached]", text);
+        }
+    }
+
+    @Test
+    void stopsAtTheDeadline() throws Exception {
+        ParseLimits limits = limits(Duration.ZERO);
+        EmailAttachment attachment = EmailAttachment.ofBytes("late.xlsx", workbook(true, 2));
+
+        String text = new SpreadsheetTextExtractor(properties(true)).extract(attachment, XLSX, limits);
+
+        assertTrue(text.endsWith("[Truncated: time limit of 0s reached]"), text);
+        assertFalse(text.contains("Item"), text);
+        assertTrue(limits.isDegraded());
+    }
+
+    private static String extract(ParserProperties.Spreadsheet properties, byte[] workbook, String mimeType)
+            throws Exception {
+        EmailAttachment attachment = EmailAttachment.ofBytes("book", workbook);
+        return new SpreadsheetTextExtractor(properties).extract(attachment, mimeType, limits(Duration.ofSeconds(30)));
+    }
+
+    private static ParseLimits limits(Duration timeout) {
+        return ParseLimits.startingNow(100_000, Long.MAX_VALUE, timeout);
+    }
+
+    private static ParserProperties.Spreadsheet properties(boolean streaming) {
+        ParserProperties.Spreadsheet properties = new ParserProperties.Spreadsheet();
+        properties.setStreaming(streaming);
+        return properties;
+    }
+
+    /**
+     * A workbook with an "Invoices" sheet of a header and {@code rows} item rows, and a "Notes" sheet of one cell.
+     */
+    private static byte[] workbook(boolean xlsx, int rows) throws IOException {
+        try (Workbook workbook = xlsx ? new XSSFWorkbook() : new HSSFWorkbook();
+             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet invoices = workbook.createSheet("Invoices");
+            Row header = invoices.createRow(0);
+            header.createCell(0).setCellValue("Item");
+            header.createCell(1).setCellValue("Amount");
+            for (int i = 1; i <= rows; i++) {
+                Row row = invoices.createRow(i);
+                row.createCell(0).setCellValue("item " + i);
+                row.createCell(1).setCellValue(i * 1.5);
+            }
+            workbook.createSheet("Notes").createRow(0).createCell(0).setCellValue("paid");
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+}
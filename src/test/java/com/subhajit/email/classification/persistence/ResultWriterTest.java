@@ -0,0 +1,144 @@
+package com.subhajit.email.classification.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.subhajit.email.classification.configuration.InstrumentationProperties;
+import com.subhajit.email.classification.configuration.PersistenceProperties;
+import com.subhajit.email.classification.entity.EmailResult;
+import com.subhajit.email.classification.metrics.PipelineMetrics;
+import com.subhajit.email.classification.repository.EmailResultRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultWriterTest {
+
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics(new SimpleMeterRegistry(),
+            new InstrumentationProperties());
+
+    @Test
+    void dropNewestKeepsTheQueuedResults() {
+        FakeRepository repository = new FakeRepository();
+        ResultWriter writer = writer(PersistenceProperties.OverflowPolicy.DROP_NEWEST, repository);
+
+        record(writer, "a", "b", "c");
+        writer.start();
+        writer.stop();
+
+        assertEquals(List.of("a", "b"), repository.saved);
+        assertCounts(writer.metrics(), 3, 2, 1, 0);
+    }
+
+    @Test
+    void dropOldestKeepsTheLatestResults() {
+        FakeRepository repository = new FakeRepository();
+        ResultWriter writer = writer(PersistenceProperties.OverflowPolicy.DROP_OLDEST, repository);
+
+        record(writer, "a", "b", "c", "d");
+        writer.start();
+        writer.stop();
+
+        assertEquals(List.of("c", "d"), repository.saved);
+        assertCounts(writer.metrics(), 4, 2, 2, 0);
+    }
+
+    @Test
+    void blockDropsTheResultAfterTheOfferTimeout() {
+        FakeRepository repository = new FakeRepository();
+        ResultWriter writer = writer(PersistenceProperties.OverflowPolicy.BLOCK, repository);
+
+        long start = System.nanoTime();
+        record(writer, "a", "b", "c");
+        long waitedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        writer.start();
+        writer.stop();
+
+        assertEquals(List.of("a", "b"), repository.saved);
+        assertCounts(writer.metrics(), 3, 2, 1, 0);
+        assertTrue(waitedMillis >= 20, "waited " + waitedMillis + "ms");
+    }
+
+    @Test
+    void savesRowByRowWhenTheBatchFails() {
+        FakeRepository repository = new FakeRepository();
+        repository.failBatches = true;
+        repository.rejected = "b";
+        ResultWriter writer = writer(PersistenceProperties.OverflowPolicy.DROP_NEWEST, repository);
+
+        record(writer, "a", "b");
+        writer.start();
+        writer.stop();
+
+        assertEquals(List.of("a"), repository.saved);
+        assertCounts(writer.metrics(), 2, 1, 0, 1);
+    }
+
+    private ResultWriter writer(PersistenceProperties.OverflowPolicy policy, FakeRepository repository) {
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.setQueueCapacity(2);
+        properties.setOverflowPolicy(policy);
+        properties.setOfferTimeout(Duration.ofMillis(20));
+        properties.setFlushInterval(Duration.ofMillis(10));
+        properties.setRetention(Duration.ZERO);
+        return new ResultWriter(properties, repository.proxy(), new ObjectMapper());
+    }
+
+    private void record(ResultWriter writer, String... fileNames) {
+        for (String fileName : fileNames) {
+            writer.recordFailure(fileName, "error", pipelineMetrics.startEmail());
+        }
+    }
+
+    private static void assertCounts(ResultWriterMetrics metrics, long submitted, long written, long dropped,
+                                     long failed) {
+        assertEquals(submitted, metrics.submitted(), "submitted");
+        assertEquals(written, metrics.written(), "written");
+        assertEquals(dropped, metrics.dropped(), "dropped");
+        assertEquals(failed, metrics.failed(), "failed");
+        assertEquals(0, metrics.queued(), "queued");
+    }
+
+    /**
+     * Records the file names of saved results. Only the repository methods used by the writer are implemented.
+     */
+    private static class FakeRepository {
+
+        private final List<String> saved = Collections.synchronizedList(new ArrayList<>());
+        private boolean failBatches;
+        private String rejected;
+
+        EmailResultRepository proxy() {
+            return (EmailResultRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{EmailResultRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                        case "saveAll" -> {
+                            if (failBatches) {
+                                throw new IllegalStateException("batch rejected");
+                            }
+                            List<EmailResult> results = new ArrayList<>();
+                            for (Object result : (Iterable<?>) args[0]) {
+                                results.add((EmailResult) result);
+                            }
+                            results.forEach(result -> saved.add(result.getFileName()));
+                            yield results;
+                        }
+                        case "save" -> {
+                            EmailResult result = (EmailResult) args[0];
+                            if (result.getFileName().equals(rejected)) {
+                                throw new IllegalStateException("row rejected");
+                            }
+                            saved.add(result.getFileName());
+                            yield result;
+                        }
+                        case "deleteProcessedBefore" -> 0;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+    }
+}